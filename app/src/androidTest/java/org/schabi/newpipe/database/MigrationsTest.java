@@ -0,0 +1,112 @@
+package org.schabi.newpipe.database;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.MediumTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.schabi.newpipe.database.playlist.model.PlaylistFtsEntity;
+import org.schabi.newpipe.database.playlist.model.PlaylistRemoteFtsEntity;
+import org.schabi.newpipe.database.search.LocalSearchDAO;
+import org.schabi.newpipe.database.stream.dao.StreamDAO;
+import org.schabi.newpipe.database.stream.model.StreamEntity;
+import org.schabi.newpipe.database.stream.model.StreamFtsEntity;
+import org.schabi.newpipe.database.subscription.SubscriptionFtsEntity;
+import org.schabi.newpipe.extractor.stream.StreamType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.schabi.newpipe.database.Migrations.MIGRATION_18_4_18_5;
+
+/**
+ * Instrumented test of {@link Migrations#MIGRATION_18_4_18_5} and of the triggers it creates.
+ * The schemas are not exported, so a database of the previous version is made by dropping the
+ * full-text indexes from a new database, which only differs from it by them.
+ */
+@RunWith(AndroidJUnit4.class)
+@MediumTest
+public class MigrationsTest {
+    private static final int MAX_RESULTS = 10;
+
+    private AppDatabase database;
+    private StreamDAO streamTable;
+    private LocalSearchDAO searchTable;
+
+    @Before
+    public void setUp() {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        streamTable = database.streamDAO();
+        searchTable = database.localSearchDAO();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void migration_18_4_18_5_indexesExistingStreams() {
+        final SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        dropFullTextIndexes(db);
+        streamTable.insert(makeStream("Lofi beats to relax to", "Chill Uploader"));
+
+        MIGRATION_18_4_18_5.migrate(db);
+
+        assertEquals(1, searchTable.searchStreams("lofi*", MAX_RESULTS).size());
+        assertEquals(1, searchTable.searchStreams("chill*", MAX_RESULTS).size());
+        assertTrue(searchTable.searchStreams("jazz*", MAX_RESULTS).isEmpty());
+    }
+
+    @Test
+    public void migration_18_4_18_5_keepsStreamsInSync() {
+        final SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        dropFullTextIndexes(db);
+        MIGRATION_18_4_18_5.migrate(db);
+
+        final StreamEntity stream = makeStream("Lofi beats to relax to", "Chill Uploader");
+        stream.setUid(streamTable.insert(stream));
+        assertEquals(1, searchTable.searchStreams("lofi*", MAX_RESULTS).size());
+
+        stream.setTitle("Jazz for studying");
+        streamTable.update(stream);
+        assertTrue(searchTable.searchStreams("lofi*", MAX_RESULTS).isEmpty());
+        assertEquals(1, searchTable.searchStreams("jazz*", MAX_RESULTS).size());
+
+        streamTable.delete(stream);
+        assertTrue(searchTable.searchStreams("jazz*", MAX_RESULTS).isEmpty());
+        assertTrue(searchTable.searchStreams("chill*", MAX_RESULTS).isEmpty());
+    }
+
+    private static void dropFullTextIndexes(final SupportSQLiteDatabase db) {
+        final List<String> triggers = new ArrayList<>();
+        try (Cursor cursor = db.query("SELECT name FROM sqlite_master WHERE type = 'trigger'" +
+                " AND name LIKE 'room_fts_content_sync_%'")) {
+            while (cursor.moveToNext()) triggers.add(cursor.getString(0));
+        }
+        for (final String trigger : triggers) {
+            db.execSQL("DROP TRIGGER `" + trigger + "`");
+        }
+
+        db.execSQL("DROP TABLE `" + StreamFtsEntity.STREAM_FTS_TABLE + "`");
+        db.execSQL("DROP TABLE `" + PlaylistFtsEntity.PLAYLIST_FTS_TABLE + "`");
+        db.execSQL("DROP TABLE `" + PlaylistRemoteFtsEntity.REMOTE_PLAYLIST_FTS_TABLE + "`");
+        db.execSQL("DROP TABLE `" + SubscriptionFtsEntity.SUBSCRIPTION_FTS_TABLE + "`");
+    }
+
+    private static StreamEntity makeStream(final String title, final String uploader) {
+        return new StreamEntity(0, title, "https://example.com/watch?v=" + title.hashCode(),
+                StreamType.VIDEO_STREAM, null, uploader, 600L);
+    }
+}
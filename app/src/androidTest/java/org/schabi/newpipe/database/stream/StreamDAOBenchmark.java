@@ -0,0 +1,99 @@
+package org.schabi.newpipe.database.stream;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.schabi.newpipe.database.AppDatabase;
+import org.schabi.newpipe.database.stream.dao.StreamDAO;
+import org.schabi.newpipe.database.stream.model.StreamEntity;
+import org.schabi.newpipe.extractor.stream.StreamType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Instrumented benchmark of {@link StreamDAO#upsertAll(List)} against upserting the same
+ * streams one by one, on a synthetic database holding part of them already.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class StreamDAOBenchmark {
+    private static final String TAG = "StreamDAOBenchmark";
+
+    private static final int STORED_STREAMS = 20000;
+    private static final int UPSERTED_STREAMS = 5000;
+
+    private final List<AppDatabase> databases = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (final AppDatabase database : databases) {
+            database.close();
+        }
+    }
+
+    @Test
+    public void upsertAll_matchesSingleUpserts() {
+        // Half of the streams are stored already, some of those with new titles
+        final int firstStream = STORED_STREAMS - UPSERTED_STREAMS / 2;
+
+        final StreamDAO batchTable = createDatabase().streamDAO();
+        long start = System.nanoTime();
+        final List<Long> batchIds = batchTable.upsertAll(makeUpserted(firstStream));
+        final long batchMillis = (System.nanoTime() - start) / 1000000;
+
+        final AppDatabase singleDatabase = createDatabase();
+        final StreamDAO singleTable = singleDatabase.streamDAO();
+        final List<Long> singleIds = new ArrayList<>(UPSERTED_STREAMS);
+        start = System.nanoTime();
+        singleDatabase.runInTransaction(() -> {
+            for (final StreamEntity stream : makeUpserted(firstStream)) {
+                singleIds.add(singleTable.upsert(stream));
+            }
+        });
+        final long singleMillis = (System.nanoTime() - start) / 1000000;
+
+        Log.i(TAG, "Upserted [" + UPSERTED_STREAMS + "] streams in [" + batchMillis +
+                "] ms at once, [" + singleMillis + "] ms one by one");
+        assertEquals(singleIds, batchIds);
+        assertEquals(singleTable.getAll().blockingFirst().size(),
+                batchTable.getAll().blockingFirst().size());
+    }
+
+    private AppDatabase createDatabase() {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final AppDatabase database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .build();
+        databases.add(database);
+
+        final List<StreamEntity> stored = new ArrayList<>(STORED_STREAMS);
+        for (int i = 0; i < STORED_STREAMS; i++) {
+            stored.add(makeStream(i, "Stream " + i));
+        }
+        database.streamDAO().insertAll(stored);
+        return database;
+    }
+
+    private static List<StreamEntity> makeUpserted(final int firstStream) {
+        final List<StreamEntity> streams = new ArrayList<>(UPSERTED_STREAMS);
+        for (int i = firstStream; i < firstStream + UPSERTED_STREAMS; i++) {
+            streams.add(makeStream(i, i % 10 == 0 ? "Renamed stream " + i : "Stream " + i));
+        }
+        return streams;
+    }
+
+    private static StreamEntity makeStream(final int id, final String title) {
+        return new StreamEntity(0, title, "https://example.com/watch?v=" + id,
+                StreamType.VIDEO_STREAM, null, "Uploader", 600L);
+    }
+}
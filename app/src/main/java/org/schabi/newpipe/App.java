@@ -23,6 +23,7 @@ import org.acra.config.ConfigurationBuilder;
 import org.acra.sender.ReportSenderFactory;
 import org.schabi.newpipe.extractor.NewPipe;
 import org.schabi.newpipe.extractor.downloader.Downloader;
+import org.schabi.newpipe.local.feed.service.FeedSyncScheduler;
 import org.schabi.newpipe.report.AcraReportSenderFactory;
 import org.schabi.newpipe.report.ErrorActivity;
 import org.schabi.newpipe.report.UserAction;
@@ -105,6 +106,7 @@ public class App extends Application {
         initNotificationChannel();
 
         ServiceHelper.initServices(this);
+        FeedSyncScheduler.update(this);
 
         // Initialize image loader
         ImageLoader.getInstance().init(getImageLoaderConfigurations(10, 50));
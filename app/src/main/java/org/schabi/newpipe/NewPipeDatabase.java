@@ -2,15 +2,28 @@ package org.schabi.newpipe;
 
 import androidx.room.Room;
 import android.content.Context;
+import android.util.Log;
+
 import androidx.annotation.NonNull;
 
 import org.schabi.newpipe.database.AppDatabase;
 
+import java.io.File;
+
 import static org.schabi.newpipe.database.AppDatabase.DATABASE_NAME;
 import static org.schabi.newpipe.database.Migrations.MIGRATION_11_12;
+import static org.schabi.newpipe.database.Migrations.MIGRATION_12_18;
+import static org.schabi.newpipe.database.Migrations.MIGRATION_18_0_18_1;
+import static org.schabi.newpipe.database.Migrations.MIGRATION_18_1_18_2;
+import static org.schabi.newpipe.database.Migrations.MIGRATION_18_2_18_3;
+import static org.schabi.newpipe.database.Migrations.MIGRATION_18_3_18_4;
+import static org.schabi.newpipe.database.Migrations.MIGRATION_18_4_18_5;
 
 public final class NewPipeDatabase {
 
+    private static final String TAG = "NewPipeDatabase";
+    private static final String RESTORED_SUFFIX = ".restore";
+
     private static volatile AppDatabase databaseInstance;
 
     private NewPipeDatabase() {
@@ -20,7 +33,9 @@ public final class NewPipeDatabase {
     private static AppDatabase getDatabase(Context context) {
         return Room
                 .databaseBuilder(context.getApplicationContext(), AppDatabase.class, DATABASE_NAME)
-                .addMigrations(MIGRATION_11_12)
+                .addMigrations(MIGRATION_11_12, MIGRATION_12_18, MIGRATION_18_0_18_1,
+                        MIGRATION_18_1_18_2, MIGRATION_18_2_18_3, MIGRATION_18_3_18_4,
+                        MIGRATION_18_4_18_5)
                 .fallbackToDestructiveMigration()
                 .build();
     }
@@ -32,6 +47,7 @@ public final class NewPipeDatabase {
             synchronized (NewPipeDatabase.class) {
                 result = databaseInstance;
                 if (result == null) {
+                    applyRestoredDatabase(context);
                     databaseInstance = (result = getDatabase(context));
                 }
             }
@@ -39,4 +55,31 @@ public final class NewPipeDatabase {
 
         return result;
     }
+
+    /**
+     * @return the file of an imported database, which replaces the database when it is opened
+     * next, i.e. on the next start of the app.
+     * */
+    @NonNull
+    public static File getRestoredDatabaseFile(@NonNull Context context) {
+        return new File(context.getDatabasePath(DATABASE_NAME).getPath() + RESTORED_SUFFIX);
+    }
+
+    /**
+     * Replaces the database with the imported one, if any. The log and journal of the current
+     * database are deleted first, so they are never applied to the imported one.
+     * */
+    private static void applyRestoredDatabase(@NonNull Context context) {
+        final File restoredFile = getRestoredDatabaseFile(context);
+        if (!restoredFile.isFile()) return;
+
+        final File databaseFile = context.getDatabasePath(DATABASE_NAME);
+        for (final String suffix : new String[]{"-journal", "-wal", "-shm"}) {
+            new File(databaseFile.getPath() + suffix).delete();
+        }
+        if (!restoredFile.renameTo(databaseFile)) {
+            Log.e(TAG, "Could not replace the database with the imported one");
+            restoredFile.delete();
+        }
+    }
 }
@@ -4,6 +4,9 @@ import androidx.room.Database;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
 
+import org.schabi.newpipe.database.feed.dao.FeedDAO;
+import org.schabi.newpipe.database.feed.model.FeedEntity;
+import org.schabi.newpipe.database.feed.model.FeedLastUpdatedEntity;
 import org.schabi.newpipe.database.history.dao.SearchHistoryDAO;
 import org.schabi.newpipe.database.history.dao.StreamHistoryDAO;
 import org.schabi.newpipe.database.history.model.SearchHistoryEntry;
@@ -12,25 +15,40 @@ import org.schabi.newpipe.database.playlist.dao.PlaylistDAO;
 import org.schabi.newpipe.database.playlist.dao.PlaylistRemoteDAO;
 import org.schabi.newpipe.database.playlist.dao.PlaylistStreamDAO;
 import org.schabi.newpipe.database.playlist.model.PlaylistEntity;
+import org.schabi.newpipe.database.playlist.model.PlaylistFtsEntity;
 import org.schabi.newpipe.database.playlist.model.PlaylistRemoteEntity;
+import org.schabi.newpipe.database.playlist.model.PlaylistRemoteFtsEntity;
 import org.schabi.newpipe.database.playlist.model.PlaylistStreamEntity;
+import org.schabi.newpipe.database.search.LocalSearchDAO;
 import org.schabi.newpipe.database.stream.dao.StreamDAO;
 import org.schabi.newpipe.database.stream.dao.StreamStateDAO;
+import org.schabi.newpipe.database.stream.dao.StreamStatisticsDAO;
 import org.schabi.newpipe.database.stream.model.StreamEntity;
+import org.schabi.newpipe.database.stream.model.StreamFtsEntity;
 import org.schabi.newpipe.database.stream.model.StreamStateEntity;
+import org.schabi.newpipe.database.stream.model.StreamStatisticsEntity;
+import org.schabi.newpipe.database.subscription.ImportCheckpointDAO;
+import org.schabi.newpipe.database.subscription.ImportCheckpointEntity;
+import org.schabi.newpipe.database.subscription.ImportFailureEntity;
 import org.schabi.newpipe.database.subscription.SubscriptionDAO;
 import org.schabi.newpipe.database.subscription.SubscriptionEntity;
+import org.schabi.newpipe.database.subscription.SubscriptionFtsEntity;
 
-import static org.schabi.newpipe.database.Migrations.DB_VER_12_0;
+import static org.schabi.newpipe.database.Migrations.DB_VER_18_5;
 
 @TypeConverters({Converters.class})
 @Database(
         entities = {
                 SubscriptionEntity.class, SearchHistoryEntry.class,
                 StreamEntity.class, StreamHistoryEntity.class, StreamStateEntity.class,
-                PlaylistEntity.class, PlaylistStreamEntity.class, PlaylistRemoteEntity.class
+                StreamStatisticsEntity.class,
+                PlaylistEntity.class, PlaylistStreamEntity.class, PlaylistRemoteEntity.class,
+                FeedEntity.class, FeedLastUpdatedEntity.class,
+                ImportCheckpointEntity.class, ImportFailureEntity.class,
+                StreamFtsEntity.class, PlaylistFtsEntity.class, PlaylistRemoteFtsEntity.class,
+                SubscriptionFtsEntity.class
         },
-        version = DB_VER_12_0,
+        version = DB_VER_18_5,
         exportSchema = false
 )
 public abstract class AppDatabase extends RoomDatabase {
@@ -47,9 +65,17 @@ public abstract class AppDatabase extends RoomDatabase {
 
     public abstract StreamStateDAO streamStateDAO();
 
+    public abstract StreamStatisticsDAO streamStatisticsDAO();
+
     public abstract PlaylistDAO playlistDAO();
 
     public abstract PlaylistStreamDAO playlistStreamDAO();
 
     public abstract PlaylistRemoteDAO playlistRemoteDAO();
+
+    public abstract FeedDAO feedDAO();
+
+    public abstract ImportCheckpointDAO importCheckpointDAO();
+
+    public abstract LocalSearchDAO localSearchDAO();
 }
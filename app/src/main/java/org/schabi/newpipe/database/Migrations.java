@@ -11,6 +11,12 @@ public class Migrations {
 
     public static final int DB_VER_11_0 = 1;
     public static final int DB_VER_12_0 = 2;
+    public static final int DB_VER_18_0 = 3;
+    public static final int DB_VER_18_1 = 4;
+    public static final int DB_VER_18_2 = 5;
+    public static final int DB_VER_18_3 = 6;
+    public static final int DB_VER_18_4 = 7;
+    public static final int DB_VER_18_5 = 8;
 
     public static final boolean DEBUG = !BuildConfig.BUILD_TYPE.equals("release");
     private static final String TAG = Migrations.class.getName();
@@ -71,4 +77,85 @@ public class Migrations {
             }
         }
     };
+
+    public static final Migration MIGRATION_12_18 = new Migration(DB_VER_12_0, DB_VER_18_0) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE  INDEX `index_stream_history_access_date_stream_id` ON `stream_history` (`access_date`, `stream_id`)");
+        }
+    };
+
+    public static final Migration MIGRATION_18_0_18_1 = new Migration(DB_VER_18_0, DB_VER_18_1) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `stream_statistics` (`stream_id` INTEGER NOT NULL, `latest_access_date` INTEGER NOT NULL, `watch_count` INTEGER NOT NULL, PRIMARY KEY(`stream_id`), FOREIGN KEY(`stream_id`) REFERENCES `streams`(`uid`) ON UPDATE CASCADE ON DELETE CASCADE )");
+            database.execSQL("CREATE  INDEX `index_stream_statistics_latest_access_date` ON `stream_statistics` (`latest_access_date`)");
+            database.execSQL("CREATE  INDEX `index_stream_statistics_watch_count` ON `stream_statistics` (`watch_count`)");
+
+            // Aggregate the existing history once, it is kept up to date from now on
+            database.execSQL("INSERT INTO stream_statistics (stream_id, latest_access_date, watch_count) " +
+                    "SELECT stream_id, MAX(access_date), SUM(repeat_count) " +
+                    "FROM stream_history GROUP BY stream_id");
+        }
+    };
+
+    public static final Migration MIGRATION_18_1_18_2 = new Migration(DB_VER_18_1, DB_VER_18_2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `feed` (`stream_id` INTEGER NOT NULL, `subscription_id` INTEGER NOT NULL, `upload_date` INTEGER NOT NULL, `textual_upload_date` TEXT, PRIMARY KEY(`stream_id`), FOREIGN KEY(`stream_id`) REFERENCES `streams`(`uid`) ON UPDATE CASCADE ON DELETE CASCADE , FOREIGN KEY(`subscription_id`) REFERENCES `subscriptions`(`uid`) ON UPDATE CASCADE ON DELETE CASCADE )");
+            database.execSQL("CREATE  INDEX `index_feed_subscription_id` ON `feed` (`subscription_id`)");
+            database.execSQL("CREATE  INDEX `index_feed_upload_date` ON `feed` (`upload_date`)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `feed_last_updated` (`subscription_id` INTEGER NOT NULL, `last_updated` INTEGER NOT NULL, PRIMARY KEY(`subscription_id`), FOREIGN KEY(`subscription_id`) REFERENCES `subscriptions`(`uid`) ON UPDATE CASCADE ON DELETE CASCADE )");
+        }
+    };
+
+    public static final Migration MIGRATION_18_2_18_3 = new Migration(DB_VER_18_2, DB_VER_18_3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `feed_last_updated` ADD COLUMN `failed_attempts` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    public static final Migration MIGRATION_18_3_18_4 = new Migration(DB_VER_18_3, DB_VER_18_4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `import_checkpoints` (`source_hash` TEXT NOT NULL, `processed_count` INTEGER NOT NULL, `updated_at` INTEGER NOT NULL, PRIMARY KEY(`source_hash`))");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `import_failures` (`source_hash` TEXT NOT NULL, `service_id` INTEGER NOT NULL, `url` TEXT NOT NULL, `name` TEXT, PRIMARY KEY(`source_hash`, `service_id`, `url`), FOREIGN KEY(`source_hash`) REFERENCES `import_checkpoints`(`source_hash`) ON UPDATE CASCADE ON DELETE CASCADE )");
+        }
+    };
+
+    public static final Migration MIGRATION_18_4_18_5 = new Migration(DB_VER_18_4, DB_VER_18_5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Full-text indexes kept in sync with their tables by triggers, then filled with
+            // the existing rows
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `streams_fts` USING FTS4(`title` TEXT, `uploader` TEXT, content=`streams`)");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_streams_fts_BEFORE_UPDATE BEFORE UPDATE ON `streams` BEGIN DELETE FROM `streams_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_streams_fts_BEFORE_DELETE BEFORE DELETE ON `streams` BEGIN DELETE FROM `streams_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_streams_fts_AFTER_UPDATE AFTER UPDATE ON `streams` BEGIN INSERT INTO `streams_fts`(`docid`, `title`, `uploader`) VALUES (NEW.`rowid`, NEW.`title`, NEW.`uploader`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_streams_fts_AFTER_INSERT AFTER INSERT ON `streams` BEGIN INSERT INTO `streams_fts`(`docid`, `title`, `uploader`) VALUES (NEW.`rowid`, NEW.`title`, NEW.`uploader`); END");
+            database.execSQL("INSERT INTO `streams_fts`(`streams_fts`) VALUES ('rebuild')");
+
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `playlists_fts` USING FTS4(`name` TEXT, content=`playlists`)");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_playlists_fts_BEFORE_UPDATE BEFORE UPDATE ON `playlists` BEGIN DELETE FROM `playlists_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_playlists_fts_BEFORE_DELETE BEFORE DELETE ON `playlists` BEGIN DELETE FROM `playlists_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_playlists_fts_AFTER_UPDATE AFTER UPDATE ON `playlists` BEGIN INSERT INTO `playlists_fts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_playlists_fts_AFTER_INSERT AFTER INSERT ON `playlists` BEGIN INSERT INTO `playlists_fts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END");
+            database.execSQL("INSERT INTO `playlists_fts`(`playlists_fts`) VALUES ('rebuild')");
+
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `remote_playlists_fts` USING FTS4(`name` TEXT, `uploader` TEXT, content=`remote_playlists`)");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_remote_playlists_fts_BEFORE_UPDATE BEFORE UPDATE ON `remote_playlists` BEGIN DELETE FROM `remote_playlists_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_remote_playlists_fts_BEFORE_DELETE BEFORE DELETE ON `remote_playlists` BEGIN DELETE FROM `remote_playlists_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_remote_playlists_fts_AFTER_UPDATE AFTER UPDATE ON `remote_playlists` BEGIN INSERT INTO `remote_playlists_fts`(`docid`, `name`, `uploader`) VALUES (NEW.`rowid`, NEW.`name`, NEW.`uploader`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_remote_playlists_fts_AFTER_INSERT AFTER INSERT ON `remote_playlists` BEGIN INSERT INTO `remote_playlists_fts`(`docid`, `name`, `uploader`) VALUES (NEW.`rowid`, NEW.`name`, NEW.`uploader`); END");
+            database.execSQL("INSERT INTO `remote_playlists_fts`(`remote_playlists_fts`) VALUES ('rebuild')");
+
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `subscriptions_fts` USING FTS4(`name` TEXT, content=`subscriptions`)");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_subscriptions_fts_BEFORE_UPDATE BEFORE UPDATE ON `subscriptions` BEGIN DELETE FROM `subscriptions_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_subscriptions_fts_BEFORE_DELETE BEFORE DELETE ON `subscriptions` BEGIN DELETE FROM `subscriptions_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_subscriptions_fts_AFTER_UPDATE AFTER UPDATE ON `subscriptions` BEGIN INSERT INTO `subscriptions_fts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_subscriptions_fts_AFTER_INSERT AFTER INSERT ON `subscriptions` BEGIN INSERT INTO `subscriptions_fts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END");
+            database.execSQL("INSERT INTO `subscriptions_fts`(`subscriptions_fts`) VALUES ('rebuild')");
+        }
+    };
 }
@@ -0,0 +1,63 @@
+package org.schabi.newpipe.database.feed;
+
+import androidx.room.ColumnInfo;
+
+import org.schabi.newpipe.database.feed.model.FeedEntity;
+import org.schabi.newpipe.database.stream.model.StreamEntity;
+import org.schabi.newpipe.extractor.localization.DateWrapper;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.extractor.stream.StreamType;
+
+import java.util.Calendar;
+
+public class FeedEntry {
+    @ColumnInfo(name = StreamEntity.STREAM_ID)
+    final public long uid;
+    @ColumnInfo(name = StreamEntity.STREAM_SERVICE_ID)
+    final public int serviceId;
+    @ColumnInfo(name = StreamEntity.STREAM_URL)
+    final public String url;
+    @ColumnInfo(name = StreamEntity.STREAM_TITLE)
+    final public String title;
+    @ColumnInfo(name = StreamEntity.STREAM_TYPE)
+    final public StreamType streamType;
+    @ColumnInfo(name = StreamEntity.STREAM_DURATION)
+    final public long duration;
+    @ColumnInfo(name = StreamEntity.STREAM_UPLOADER)
+    final public String uploader;
+    @ColumnInfo(name = StreamEntity.STREAM_THUMBNAIL_URL)
+    final public String thumbnailUrl;
+    @ColumnInfo(name = FeedEntity.FEED_UPLOAD_DATE)
+    final public long uploadDate;
+    @ColumnInfo(name = FeedEntity.FEED_TEXTUAL_UPLOAD_DATE)
+    final public String textualUploadDate;
+
+    public FeedEntry(long uid, int serviceId, String url, String title, StreamType streamType,
+                     long duration, String uploader, String thumbnailUrl, long uploadDate,
+                     String textualUploadDate) {
+        this.uid = uid;
+        this.serviceId = serviceId;
+        this.url = url;
+        this.title = title;
+        this.streamType = streamType;
+        this.duration = duration;
+        this.uploader = uploader;
+        this.thumbnailUrl = thumbnailUrl;
+        this.uploadDate = uploadDate;
+        this.textualUploadDate = textualUploadDate;
+    }
+
+    public StreamInfoItem toStreamInfoItem() {
+        StreamInfoItem item = new StreamInfoItem(serviceId, url, title, streamType);
+        item.setDuration(duration);
+        item.setUploaderName(uploader);
+        item.setThumbnailUrl(thumbnailUrl);
+        item.setTextualUploadDate(textualUploadDate);
+        if (uploadDate != FeedEntity.UNKNOWN_UPLOAD_DATE) {
+            final Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(uploadDate);
+            item.setUploadDate(new DateWrapper(calendar));
+        }
+        return item;
+    }
+}
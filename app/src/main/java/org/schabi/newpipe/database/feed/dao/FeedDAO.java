@@ -0,0 +1,109 @@
+package org.schabi.newpipe.database.feed.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import org.schabi.newpipe.database.feed.FeedEntry;
+import org.schabi.newpipe.database.feed.model.FeedEntity;
+import org.schabi.newpipe.database.feed.model.FeedLastUpdatedEntity;
+import org.schabi.newpipe.database.subscription.SubscriptionEntity;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.schabi.newpipe.database.feed.model.FeedEntity.FEED_TABLE;
+import static org.schabi.newpipe.database.feed.model.FeedEntity.FEED_TEXTUAL_UPLOAD_DATE;
+import static org.schabi.newpipe.database.feed.model.FeedEntity.FEED_UPLOAD_DATE;
+import static org.schabi.newpipe.database.feed.model.FeedEntity.JOIN_STREAM_ID;
+import static org.schabi.newpipe.database.feed.model.FeedLastUpdatedEntity.FEED_FAILED_ATTEMPTS;
+import static org.schabi.newpipe.database.feed.model.FeedLastUpdatedEntity.FEED_LAST_UPDATED;
+import static org.schabi.newpipe.database.feed.model.FeedLastUpdatedEntity.FEED_LAST_UPDATED_TABLE;
+import static org.schabi.newpipe.database.feed.model.FeedLastUpdatedEntity.JOIN_SUBSCRIPTION_ID;
+import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_ID;
+import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_TABLE;
+import static org.schabi.newpipe.database.subscription.SubscriptionEntity.SUBSCRIPTION_TABLE;
+import static org.schabi.newpipe.database.subscription.SubscriptionEntity.SUBSCRIPTION_UID;
+
+@Dao
+public abstract class FeedDAO {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract List<Long> insertAll(final List<FeedEntity> entities);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract long setLastUpdated(final FeedLastUpdatedEntity lastUpdated);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    abstract long insertLastUpdatedInternal(final FeedLastUpdatedEntity lastUpdated);
+
+    @Query("UPDATE " + FEED_LAST_UPDATED_TABLE +
+            " SET " + FEED_LAST_UPDATED + " = :failedAt, " +
+            FEED_FAILED_ATTEMPTS + " = " + FEED_FAILED_ATTEMPTS + " + 1" +
+            " WHERE " + JOIN_SUBSCRIPTION_ID + " = :subscriptionId")
+    abstract int incrementFailedAttemptsInternal(final long subscriptionId, final Date failedAt);
+
+    /**
+     * Records that the subscription failed to load, so it is tried again later than others.
+     * */
+    @Transaction
+    public void setFailed(final long subscriptionId, final Date failedAt) {
+        if (insertLastUpdatedInternal(new FeedLastUpdatedEntity(subscriptionId, failedAt, 1)) == -1) {
+            incrementFailedAttemptsInternal(subscriptionId, failedAt);
+        }
+    }
+
+    @Query("DELETE FROM " + FEED_TABLE)
+    public abstract int deleteAll();
+
+    @Query("SELECT " + JOIN_STREAM_ID + " FROM " + FEED_TABLE +
+            " WHERE " + FeedEntity.JOIN_SUBSCRIPTION_ID + " = :subscriptionId" +
+            " AND " + JOIN_STREAM_ID + " NOT IN (:keptStreamIds)")
+    public abstract List<Long> getDroppedStreamIds(final long subscriptionId,
+                                                   final List<Long> keptStreamIds);
+
+    /**
+     * Removes the streams of the subscription which are not among the given ones, e.g. since
+     * they are no longer on the latest page of the channel.
+     * */
+    @Query("DELETE FROM " + FEED_TABLE +
+            " WHERE " + FeedEntity.JOIN_SUBSCRIPTION_ID + " = :subscriptionId" +
+            " AND " + JOIN_STREAM_ID + " NOT IN (:keptStreamIds)")
+    public abstract int deleteDroppedStreams(final long subscriptionId,
+                                             final List<Long> keptStreamIds);
+
+    /**
+     * Streams of the feed, newest first, continuing after the stream uploaded on the given
+     * date with the given id.
+     * */
+    @Query("SELECT " + STREAM_TABLE + ".*, " + FEED_UPLOAD_DATE + ", " + FEED_TEXTUAL_UPLOAD_DATE +
+            " FROM " + FEED_TABLE +
+            " INNER JOIN " + STREAM_TABLE + " ON " + STREAM_ID + " = " + JOIN_STREAM_ID +
+
+            " WHERE " + FEED_UPLOAD_DATE + " < :afterDate" +
+            " OR (" + FEED_UPLOAD_DATE + " = :afterDate AND " + JOIN_STREAM_ID + " < :afterStreamId)" +
+
+            " ORDER BY " + FEED_UPLOAD_DATE + " DESC, " + JOIN_STREAM_ID + " DESC" +
+            " LIMIT :limit")
+    public abstract List<FeedEntry> getFeed(final long afterDate, final long afterStreamId,
+                                            final int limit);
+
+    /**
+     * Subscriptions whose streams were never stored or last stored before the given date,
+     * least recently stored first.
+     * <br><br>
+     * A subscription which failed to load is only returned once its last attempt is older
+     * than the given date by the backoff, doubled for every further failed attempt up to
+     * 64 times the backoff.
+     * */
+    @Query("SELECT " + SUBSCRIPTION_TABLE + ".* FROM " + SUBSCRIPTION_TABLE +
+            " LEFT JOIN " + FEED_LAST_UPDATED_TABLE +
+            " ON " + SUBSCRIPTION_UID + " = " + JOIN_SUBSCRIPTION_ID +
+            " WHERE " + FEED_LAST_UPDATED + " IS NULL" +
+            " OR " + FEED_LAST_UPDATED + " < :updatedBefore" +
+            " - :backoffMillis * ((1 << MIN(" + FEED_FAILED_ATTEMPTS + ", 6)) - 1)" +
+            " ORDER BY " + FEED_LAST_UPDATED)
+    public abstract List<SubscriptionEntity> getOutdatedSubscriptions(final Date updatedBefore,
+                                                                      final long backoffMillis);
+}
@@ -0,0 +1,101 @@
+package org.schabi.newpipe.database.feed.model;
+
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+import org.schabi.newpipe.database.stream.model.StreamEntity;
+import org.schabi.newpipe.database.subscription.SubscriptionEntity;
+
+import static androidx.room.ForeignKey.CASCADE;
+import static org.schabi.newpipe.database.feed.model.FeedEntity.FEED_TABLE;
+import static org.schabi.newpipe.database.feed.model.FeedEntity.FEED_UPLOAD_DATE;
+import static org.schabi.newpipe.database.feed.model.FeedEntity.JOIN_STREAM_ID;
+import static org.schabi.newpipe.database.feed.model.FeedEntity.JOIN_SUBSCRIPTION_ID;
+
+/**
+ * Stream uploaded by a subscribed channel, kept so the feed can be shown without fetching
+ * all channels first.
+ * */
+@Entity(tableName = FEED_TABLE,
+        primaryKeys = {JOIN_STREAM_ID},
+        indices = {
+                @Index(value = {JOIN_SUBSCRIPTION_ID}),
+                @Index(value = {FEED_UPLOAD_DATE})
+        },
+        foreignKeys = {
+                @ForeignKey(entity = StreamEntity.class,
+                        parentColumns = StreamEntity.STREAM_ID,
+                        childColumns = JOIN_STREAM_ID,
+                        onDelete = CASCADE, onUpdate = CASCADE),
+                @ForeignKey(entity = SubscriptionEntity.class,
+                        parentColumns = SubscriptionEntity.SUBSCRIPTION_UID,
+                        childColumns = JOIN_SUBSCRIPTION_ID,
+                        onDelete = CASCADE, onUpdate = CASCADE)
+        })
+public class FeedEntity {
+    final public static String FEED_TABLE                = "feed";
+    final public static String JOIN_STREAM_ID            = "stream_id";
+    final public static String JOIN_SUBSCRIPTION_ID      = "subscription_id";
+    final public static String FEED_UPLOAD_DATE          = "upload_date";
+    final public static String FEED_TEXTUAL_UPLOAD_DATE  = "textual_upload_date";
+
+    /** Upload date of streams whose date is unknown, which sorts them last */
+    public static final long UNKNOWN_UPLOAD_DATE = 0;
+
+    @ColumnInfo(name = JOIN_STREAM_ID)
+    private long streamUid;
+
+    @ColumnInfo(name = JOIN_SUBSCRIPTION_ID)
+    private long subscriptionUid;
+
+    @ColumnInfo(name = FEED_UPLOAD_DATE)
+    private long uploadDate;
+
+    @Nullable
+    @ColumnInfo(name = FEED_TEXTUAL_UPLOAD_DATE)
+    private String textualUploadDate;
+
+    public FeedEntity(long streamUid, long subscriptionUid, long uploadDate,
+                      @Nullable String textualUploadDate) {
+        this.streamUid = streamUid;
+        this.subscriptionUid = subscriptionUid;
+        this.uploadDate = uploadDate;
+        this.textualUploadDate = textualUploadDate;
+    }
+
+    public long getStreamUid() {
+        return streamUid;
+    }
+
+    public void setStreamUid(long streamUid) {
+        this.streamUid = streamUid;
+    }
+
+    public long getSubscriptionUid() {
+        return subscriptionUid;
+    }
+
+    public void setSubscriptionUid(long subscriptionUid) {
+        this.subscriptionUid = subscriptionUid;
+    }
+
+    public long getUploadDate() {
+        return uploadDate;
+    }
+
+    public void setUploadDate(long uploadDate) {
+        this.uploadDate = uploadDate;
+    }
+
+    @Nullable
+    public String getTextualUploadDate() {
+        return textualUploadDate;
+    }
+
+    public void setTextualUploadDate(@Nullable String textualUploadDate) {
+        this.textualUploadDate = textualUploadDate;
+    }
+}
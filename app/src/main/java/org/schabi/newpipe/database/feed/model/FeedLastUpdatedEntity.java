@@ -0,0 +1,77 @@
+package org.schabi.newpipe.database.feed.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+
+import org.schabi.newpipe.database.subscription.SubscriptionEntity;
+
+import java.util.Date;
+
+import static androidx.room.ForeignKey.CASCADE;
+import static org.schabi.newpipe.database.feed.model.FeedLastUpdatedEntity.FEED_LAST_UPDATED_TABLE;
+import static org.schabi.newpipe.database.feed.model.FeedLastUpdatedEntity.JOIN_SUBSCRIPTION_ID;
+
+/**
+ * When the streams of a subscription were last stored in the feed, or last failed to load.
+ * Subscriptions failing repeatedly are refreshed less often, see
+ * {@link org.schabi.newpipe.database.feed.dao.FeedDAO#getOutdatedSubscriptions}.
+ * */
+@Entity(tableName = FEED_LAST_UPDATED_TABLE,
+        primaryKeys = {JOIN_SUBSCRIPTION_ID},
+        foreignKeys = {
+                @ForeignKey(entity = SubscriptionEntity.class,
+                        parentColumns = SubscriptionEntity.SUBSCRIPTION_UID,
+                        childColumns = JOIN_SUBSCRIPTION_ID,
+                        onDelete = CASCADE, onUpdate = CASCADE)
+        })
+public class FeedLastUpdatedEntity {
+    final public static String FEED_LAST_UPDATED_TABLE = "feed_last_updated";
+    final public static String JOIN_SUBSCRIPTION_ID    = "subscription_id";
+    final public static String FEED_LAST_UPDATED       = "last_updated";
+    final public static String FEED_FAILED_ATTEMPTS    = "failed_attempts";
+
+    @ColumnInfo(name = JOIN_SUBSCRIPTION_ID)
+    private long subscriptionUid;
+
+    @NonNull
+    @ColumnInfo(name = FEED_LAST_UPDATED)
+    private Date lastUpdated;
+
+    /** Number of times the subscription failed to load since it was last stored */
+    @ColumnInfo(name = FEED_FAILED_ATTEMPTS)
+    private int failedAttempts;
+
+    public FeedLastUpdatedEntity(long subscriptionUid, @NonNull Date lastUpdated,
+                                 int failedAttempts) {
+        this.subscriptionUid = subscriptionUid;
+        this.lastUpdated = lastUpdated;
+        this.failedAttempts = failedAttempts;
+    }
+
+    public long getSubscriptionUid() {
+        return subscriptionUid;
+    }
+
+    public void setSubscriptionUid(long subscriptionUid) {
+        this.subscriptionUid = subscriptionUid;
+    }
+
+    @NonNull
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(@NonNull Date lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
+    public int getFailedAttempts() {
+        return failedAttempts;
+    }
+
+    public void setFailedAttempts(int failedAttempts) {
+        this.failedAttempts = failedAttempts;
+    }
+}
@@ -6,21 +6,19 @@ import androidx.room.Query;
 import androidx.annotation.Nullable;
 
 import org.schabi.newpipe.database.history.model.StreamHistoryEntry;
-import org.schabi.newpipe.database.stream.StreamStatisticsEntry;
 import org.schabi.newpipe.database.history.model.StreamHistoryEntity;
 
+import java.util.Date;
 import java.util.List;
 
 import io.reactivex.Flowable;
 
-import static org.schabi.newpipe.database.history.model.StreamHistoryEntity.STREAM_REPEAT_COUNT;
-import static org.schabi.newpipe.database.stream.StreamStatisticsEntry.STREAM_LATEST_DATE;
-import static org.schabi.newpipe.database.stream.StreamStatisticsEntry.STREAM_WATCH_COUNT;
 import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_ID;
 import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_TABLE;
 import static org.schabi.newpipe.database.history.model.StreamHistoryEntity.JOIN_STREAM_ID;
 import static org.schabi.newpipe.database.history.model.StreamHistoryEntity.STREAM_ACCESS_DATE;
 import static org.schabi.newpipe.database.history.model.StreamHistoryEntity.STREAM_HISTORY_TABLE;
+import static org.schabi.newpipe.database.history.model.StreamHistoryEntity.STREAM_REPEAT_COUNT;
 
 @Dao
 public abstract class StreamHistoryDAO implements HistoryDAO<StreamHistoryEntity> {
@@ -55,18 +53,25 @@ public abstract class StreamHistoryDAO implements HistoryDAO<StreamHistoryEntity
     @Nullable
     public abstract StreamHistoryEntity getLatestEntry(final long streamId);
 
+    /**
+     * Moves the given entry of the stream to the new access date, counting one more view,
+     * with a single write instead of deleting and inserting it again.
+     * */
+    @Query("UPDATE " + STREAM_HISTORY_TABLE +
+            " SET " + STREAM_ACCESS_DATE + " = :accessDate, " +
+            STREAM_REPEAT_COUNT + " = " + STREAM_REPEAT_COUNT + " + 1" +
+            " WHERE " + JOIN_STREAM_ID + " = :streamId" +
+            " AND " + STREAM_ACCESS_DATE + " = :previousAccessDate")
+    public abstract int onViewedAgain(final long streamId, final Date previousAccessDate,
+                                      final Date accessDate);
+
     @Query("DELETE FROM " + STREAM_HISTORY_TABLE + " WHERE " + JOIN_STREAM_ID + " = :streamId")
     public abstract int deleteStreamHistory(final long streamId);
 
-    @Query("SELECT * FROM " + STREAM_TABLE +
-
-            // Select the latest entry and watch count for each stream id on history table
-            " INNER JOIN " +
-            "(SELECT " + JOIN_STREAM_ID + ", " +
-            "  MAX(" + STREAM_ACCESS_DATE + ") AS " + STREAM_LATEST_DATE + ", " +
-            "  SUM(" + STREAM_REPEAT_COUNT + ") AS " + STREAM_WATCH_COUNT +
-            " FROM " + STREAM_HISTORY_TABLE + " GROUP BY " + JOIN_STREAM_ID + ")" +
-
-            " ON " + STREAM_ID + " = " + JOIN_STREAM_ID)
-    public abstract Flowable<List<StreamStatisticsEntry>> getStatistics();
+    /**
+     * Changes whenever the history does, without loading it. Used to know when loaded pages
+     * of history are outdated.
+     * */
+    @Query("SELECT COUNT(*) FROM " + STREAM_HISTORY_TABLE)
+    public abstract Flowable<Integer> getHistoryCount();
 }
@@ -18,8 +18,9 @@ import static org.schabi.newpipe.database.history.model.StreamHistoryEntity.STRE
 
 @Entity(tableName = STREAM_HISTORY_TABLE,
         primaryKeys = {JOIN_STREAM_ID, STREAM_ACCESS_DATE},
-        // No need to index for timestamp as they will almost always be unique
-        indices = {@Index(value = {JOIN_STREAM_ID})},
+        // Access date first, so the history can be paged by date without sorting all of it
+        indices = {@Index(value = {JOIN_STREAM_ID}),
+                @Index(value = {STREAM_ACCESS_DATE, JOIN_STREAM_ID})},
         foreignKeys = {
                 @ForeignKey(entity = StreamEntity.class,
                         parentColumns = StreamEntity.STREAM_ID,
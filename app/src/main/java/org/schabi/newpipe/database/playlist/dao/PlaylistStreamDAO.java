@@ -54,6 +54,11 @@ public abstract class PlaylistStreamDAO implements BasicDAO<PlaylistStreamEntity
             " ORDER BY " + JOIN_INDEX + " ASC")
     public abstract Flowable<List<PlaylistStreamEntry>> getOrderedStreamsOf(long playlistId);
 
+    @Query("SELECT DISTINCT " + STREAM_URL + " FROM " + STREAM_TABLE +
+            " INNER JOIN " + PLAYLIST_STREAM_JOIN_TABLE +
+            " ON " + STREAM_ID + " = " + JOIN_STREAM_ID)
+    public abstract Flowable<List<String>> getAllStreamUrls();
+
     @Transaction
     @Query("SELECT " + PLAYLIST_ID + ", " + PLAYLIST_NAME + ", " +
             PLAYLIST_THUMBNAIL_URL + ", " +
@@ -0,0 +1,28 @@
+package org.schabi.newpipe.database.playlist.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+import static org.schabi.newpipe.database.playlist.model.PlaylistFtsEntity.PLAYLIST_FTS_TABLE;
+
+/**
+ * Full-text index over the names of the {@link PlaylistEntity local playlists}, kept in sync with
+ * them by triggers.
+ */
+@Fts4(contentEntity = PlaylistEntity.class)
+@Entity(tableName = PLAYLIST_FTS_TABLE)
+public class PlaylistFtsEntity {
+    final public static String PLAYLIST_FTS_TABLE = "playlists_fts";
+
+    @ColumnInfo(name = PlaylistEntity.PLAYLIST_NAME)
+    private String name;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
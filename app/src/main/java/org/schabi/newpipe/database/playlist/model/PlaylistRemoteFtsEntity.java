@@ -0,0 +1,39 @@
+package org.schabi.newpipe.database.playlist.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+import static org.schabi.newpipe.database.playlist.model.PlaylistRemoteFtsEntity.REMOTE_PLAYLIST_FTS_TABLE;
+
+/**
+ * Full-text index over the names and uploaders of the {@link PlaylistRemoteEntity bookmarked
+ * playlists}, kept in sync with them by triggers.
+ */
+@Fts4(contentEntity = PlaylistRemoteEntity.class)
+@Entity(tableName = REMOTE_PLAYLIST_FTS_TABLE)
+public class PlaylistRemoteFtsEntity {
+    final public static String REMOTE_PLAYLIST_FTS_TABLE = "remote_playlists_fts";
+
+    @ColumnInfo(name = PlaylistRemoteEntity.REMOTE_PLAYLIST_NAME)
+    private String name;
+
+    @ColumnInfo(name = PlaylistRemoteEntity.REMOTE_PLAYLIST_UPLOADER_NAME)
+    private String uploader;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getUploader() {
+        return uploader;
+    }
+
+    public void setUploader(String uploader) {
+        this.uploader = uploader;
+    }
+}
@@ -0,0 +1,77 @@
+package org.schabi.newpipe.database.search;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import org.schabi.newpipe.database.playlist.model.PlaylistEntity;
+import org.schabi.newpipe.database.playlist.model.PlaylistRemoteEntity;
+import org.schabi.newpipe.database.stream.model.StreamEntity;
+import org.schabi.newpipe.database.subscription.SubscriptionEntity;
+
+import java.util.List;
+
+import static org.schabi.newpipe.database.history.model.StreamHistoryEntity.JOIN_STREAM_ID;
+import static org.schabi.newpipe.database.history.model.StreamHistoryEntity.STREAM_ACCESS_DATE;
+import static org.schabi.newpipe.database.history.model.StreamHistoryEntity.STREAM_HISTORY_TABLE;
+import static org.schabi.newpipe.database.playlist.model.PlaylistEntity.PLAYLIST_ID;
+import static org.schabi.newpipe.database.playlist.model.PlaylistEntity.PLAYLIST_NAME;
+import static org.schabi.newpipe.database.playlist.model.PlaylistEntity.PLAYLIST_TABLE;
+import static org.schabi.newpipe.database.playlist.model.PlaylistFtsEntity.PLAYLIST_FTS_TABLE;
+import static org.schabi.newpipe.database.playlist.model.PlaylistRemoteEntity.REMOTE_PLAYLIST_ID;
+import static org.schabi.newpipe.database.playlist.model.PlaylistRemoteEntity.REMOTE_PLAYLIST_NAME;
+import static org.schabi.newpipe.database.playlist.model.PlaylistRemoteEntity.REMOTE_PLAYLIST_TABLE;
+import static org.schabi.newpipe.database.playlist.model.PlaylistRemoteFtsEntity.REMOTE_PLAYLIST_FTS_TABLE;
+import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_ID;
+import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_TABLE;
+import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_TITLE;
+import static org.schabi.newpipe.database.stream.model.StreamFtsEntity.STREAM_FTS_TABLE;
+import static org.schabi.newpipe.database.subscription.SubscriptionEntity.SUBSCRIPTION_NAME;
+import static org.schabi.newpipe.database.subscription.SubscriptionEntity.SUBSCRIPTION_TABLE;
+import static org.schabi.newpipe.database.subscription.SubscriptionEntity.SUBSCRIPTION_UID;
+import static org.schabi.newpipe.database.subscription.SubscriptionFtsEntity.SUBSCRIPTION_FTS_TABLE;
+
+/**
+ * Searches the full-text indexes of the local data. The queries take an FTS match expression,
+ * and the shortest matching names come first, as they match the query most closely.
+ */
+@Dao
+public abstract class LocalSearchDAO {
+    private static final String FTS_ID = "docid";
+
+    /**
+     * Streams watched most recently come first, followed by those never watched.
+     */
+    @Query("SELECT " + STREAM_TABLE + ".* FROM " + STREAM_FTS_TABLE +
+            " INNER JOIN " + STREAM_TABLE +
+            " ON " + STREAM_TABLE + "." + STREAM_ID + " = " + STREAM_FTS_TABLE + "." + FTS_ID +
+            " WHERE " + STREAM_FTS_TABLE + " MATCH :match" +
+            " ORDER BY (SELECT MAX(" + STREAM_ACCESS_DATE + ") FROM " + STREAM_HISTORY_TABLE +
+            " WHERE " + JOIN_STREAM_ID + " = " + STREAM_TABLE + "." + STREAM_ID + ") DESC," +
+            " LENGTH(" + STREAM_TABLE + "." + STREAM_TITLE + ")" +
+            " LIMIT :limit")
+    public abstract List<StreamEntity> searchStreams(final String match, final int limit);
+
+    @Query("SELECT " + PLAYLIST_TABLE + ".* FROM " + PLAYLIST_FTS_TABLE +
+            " INNER JOIN " + PLAYLIST_TABLE +
+            " ON " + PLAYLIST_TABLE + "." + PLAYLIST_ID + " = " + PLAYLIST_FTS_TABLE + "." + FTS_ID +
+            " WHERE " + PLAYLIST_FTS_TABLE + " MATCH :match" +
+            " ORDER BY LENGTH(" + PLAYLIST_TABLE + "." + PLAYLIST_NAME + ")" +
+            " LIMIT :limit")
+    public abstract List<PlaylistEntity> searchPlaylists(final String match, final int limit);
+
+    @Query("SELECT " + REMOTE_PLAYLIST_TABLE + ".* FROM " + REMOTE_PLAYLIST_FTS_TABLE +
+            " INNER JOIN " + REMOTE_PLAYLIST_TABLE +
+            " ON " + REMOTE_PLAYLIST_TABLE + "." + REMOTE_PLAYLIST_ID + " = " + REMOTE_PLAYLIST_FTS_TABLE + "." + FTS_ID +
+            " WHERE " + REMOTE_PLAYLIST_FTS_TABLE + " MATCH :match" +
+            " ORDER BY LENGTH(" + REMOTE_PLAYLIST_TABLE + "." + REMOTE_PLAYLIST_NAME + ")" +
+            " LIMIT :limit")
+    public abstract List<PlaylistRemoteEntity> searchRemotePlaylists(final String match, final int limit);
+
+    @Query("SELECT " + SUBSCRIPTION_TABLE + ".* FROM " + SUBSCRIPTION_FTS_TABLE +
+            " INNER JOIN " + SUBSCRIPTION_TABLE +
+            " ON " + SUBSCRIPTION_TABLE + "." + SUBSCRIPTION_UID + " = " + SUBSCRIPTION_FTS_TABLE + "." + FTS_ID +
+            " WHERE " + SUBSCRIPTION_FTS_TABLE + " MATCH :match" +
+            " ORDER BY LENGTH(" + SUBSCRIPTION_TABLE + "." + SUBSCRIPTION_NAME + ")" +
+            " LIMIT :limit")
+    public abstract List<SubscriptionEntity> searchSubscriptions(final String match, final int limit);
+}
@@ -0,0 +1,28 @@
+package org.schabi.newpipe.database.stream;
+
+import androidx.room.ColumnInfo;
+
+import org.schabi.newpipe.database.stream.model.StreamEntity;
+import org.schabi.newpipe.database.stream.model.StreamStateEntity;
+
+/**
+ * State of a stream along with the url it was looked up by.
+ * */
+public class StreamStateEntry {
+    @ColumnInfo(name = StreamEntity.STREAM_URL)
+    final public String url;
+    @ColumnInfo(name = StreamStateEntity.JOIN_STREAM_ID)
+    final public long streamId;
+    @ColumnInfo(name = StreamStateEntity.STREAM_PROGRESS_TIME)
+    final public long progressTime;
+
+    public StreamStateEntry(String url, long streamId, long progressTime) {
+        this.url = url;
+        this.streamId = streamId;
+        this.progressTime = progressTime;
+    }
+
+    public StreamStateEntity toStreamStateEntity() {
+        return new StreamStateEntity(streamId, progressTime);
+    }
+}
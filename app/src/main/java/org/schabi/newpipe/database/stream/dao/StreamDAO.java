@@ -1,18 +1,22 @@
 package org.schabi.newpipe.database.stream.dao;
 
 import androidx.room.Dao;
-import androidx.room.Insert;
-import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Transaction;
 
 import org.schabi.newpipe.database.BasicDAO;
+import org.schabi.newpipe.database.feed.model.FeedEntity;
 import org.schabi.newpipe.database.playlist.model.PlaylistStreamEntity;
 import org.schabi.newpipe.database.stream.model.StreamEntity;
+import org.schabi.newpipe.database.stream.model.StreamStateEntity;
+import org.schabi.newpipe.database.stream.model.StreamStatisticsEntity;
 import org.schabi.newpipe.database.history.model.StreamHistoryEntity;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import io.reactivex.Flowable;
 
@@ -25,6 +29,9 @@ import static org.schabi.newpipe.database.history.model.StreamHistoryEntity.STRE
 
 @Dao
 public abstract class StreamDAO implements BasicDAO<StreamEntity> {
+    /** SQLite allows at most 999 variables per query, leaving room for the service id */
+    private static final int MAX_URLS_PER_QUERY = 900;
+
     @Override
     @Query("SELECT * FROM " + STREAM_TABLE)
     public abstract Flowable<List<StreamEntity>> getAll();
@@ -42,46 +49,102 @@ public abstract class StreamDAO implements BasicDAO<StreamEntity> {
             STREAM_SERVICE_ID + " = :serviceId")
     public abstract Flowable<List<StreamEntity>> getStream(long serviceId, String url);
 
-    @Insert(onConflict = OnConflictStrategy.IGNORE)
-    abstract void silentInsertAllInternal(final List<StreamEntity> streams);
-
-    @Query("SELECT " + STREAM_ID + " FROM " + STREAM_TABLE + " WHERE " +
+    @Query("SELECT * FROM " + STREAM_TABLE + " WHERE " +
             STREAM_URL + " = :url AND " +
             STREAM_SERVICE_ID + " = :serviceId")
-    abstract Long getStreamIdInternal(long serviceId, String url);
+    abstract StreamEntity getStreamInternal(long serviceId, String url);
 
+    @Query("SELECT * FROM " + STREAM_TABLE + " WHERE " +
+            STREAM_SERVICE_ID + " = :serviceId AND " +
+            STREAM_URL + " IN (:urls)")
+    abstract List<StreamEntity> getStreamsInternal(int serviceId, List<String> urls);
+
+    /**
+     * Inserts the stream, or updates the existing row with the same service and url,
+     * unless nothing has changed since rows are upserted far more often than streams change.
+     * */
     @Transaction
     public long upsert(StreamEntity stream) {
-        final Long streamIdCandidate = getStreamIdInternal(stream.getServiceId(), stream.getUrl());
+        final StreamEntity existing = getStreamInternal(stream.getServiceId(), stream.getUrl());
 
-        if (streamIdCandidate == null) {
+        if (existing == null) {
             return insert(stream);
         } else {
-            stream.setUid(streamIdCandidate);
-            update(stream);
-            return streamIdCandidate;
+            stream.setUid(existing.getUid());
+            if (!existing.hasEqualValues(stream)) update(stream);
+            return existing.getUid();
         }
     }
 
+    /**
+     * Upserts all streams at once, returning their ids in the same order. Existing rows are
+     * looked up with a query per chunk of urls of the same service, and, like in
+     * {@link #upsert(StreamEntity)}, only updated if their values changed.
+     * */
     @Transaction
     public List<Long> upsertAll(List<StreamEntity> streams) {
-        silentInsertAllInternal(streams);
+        // The last values of a stream listed more than once win, as they would when upserting
+        // the streams one by one
+        final Map<String, StreamEntity> uniqueStreams = new LinkedHashMap<>();
+        final Map<Integer, List<String>> urlsByService = new HashMap<>();
+        for (final StreamEntity stream : streams) {
+            final String key = keyOf(stream.getServiceId(), stream.getUrl());
+            if (uniqueStreams.put(key, stream) != null) continue;
+
+            List<String> urls = urlsByService.get(stream.getServiceId());
+            if (urls == null) {
+                urls = new ArrayList<>();
+                urlsByService.put(stream.getServiceId(), urls);
+            }
+            urls.add(stream.getUrl());
+        }
 
-        final List<Long> streamIds = new ArrayList<>(streams.size());
-        for (StreamEntity stream : streams) {
-            final Long streamId = getStreamIdInternal(stream.getServiceId(), stream.getUrl());
-            if (streamId == null) {
-                throw new IllegalStateException("StreamID cannot be null just after insertion.");
+        final Map<String, StreamEntity> existingStreams = new HashMap<>();
+        for (final Map.Entry<Integer, List<String>> service : urlsByService.entrySet()) {
+            final List<String> urls = service.getValue();
+            for (int i = 0; i < urls.size(); i += MAX_URLS_PER_QUERY) {
+                final List<String> chunk = urls.subList(i,
+                        Math.min(i + MAX_URLS_PER_QUERY, urls.size()));
+                for (final StreamEntity existing : getStreamsInternal(service.getKey(), chunk)) {
+                    existingStreams.put(keyOf(existing.getServiceId(), existing.getUrl()),
+                            existing);
+                }
             }
+        }
 
-            streamIds.add(streamId);
-            stream.setUid(streamId);
+        final List<StreamEntity> insertedStreams = new ArrayList<>();
+        final List<StreamEntity> updatedStreams = new ArrayList<>();
+        for (final Map.Entry<String, StreamEntity> unique : uniqueStreams.entrySet()) {
+            final StreamEntity stream = unique.getValue();
+            final StreamEntity existing = existingStreams.get(unique.getKey());
+            if (existing == null) {
+                insertedStreams.add(stream);
+            } else {
+                stream.setUid(existing.getUid());
+                if (!existing.hasEqualValues(stream)) updatedStreams.add(stream);
+            }
+        }
+
+        final List<Long> insertedIds = insertAll(insertedStreams);
+        for (int i = 0; i < insertedStreams.size(); i++) {
+            insertedStreams.get(i).setUid(insertedIds.get(i));
         }
+        if (!updatedStreams.isEmpty()) update(updatedStreams);
 
-        update(streams);
+        final List<Long> streamIds = new ArrayList<>(streams.size());
+        for (final StreamEntity stream : streams) {
+            final long streamId = uniqueStreams.get(
+                    keyOf(stream.getServiceId(), stream.getUrl())).getUid();
+            stream.setUid(streamId);
+            streamIds.add(streamId);
+        }
         return streamIds;
     }
 
+    private static String keyOf(final int serviceId, final String url) {
+        return serviceId + ":" + url;
+    }
+
     @Query("DELETE FROM " + STREAM_TABLE + " WHERE " + STREAM_ID +
             " NOT IN " +
             "(SELECT DISTINCT " + STREAM_ID + " FROM " + STREAM_TABLE +
@@ -95,4 +158,21 @@ public abstract class StreamDAO implements BasicDAO<StreamEntity> {
             PlaylistStreamEntity.PLAYLIST_STREAM_JOIN_TABLE + "." + PlaylistStreamEntity.JOIN_STREAM_ID +
             ")")
     public abstract int deleteOrphans();
+
+    /**
+     * Deletes those of the given streams which nothing refers to anymore, e.g. after they
+     * were removed from the feed.
+     * */
+    @Query("DELETE FROM " + STREAM_TABLE + " WHERE " + STREAM_ID + " IN (:streamIds)" +
+            " AND " + STREAM_ID + " NOT IN (SELECT " + StreamHistoryEntity.JOIN_STREAM_ID +
+            " FROM " + STREAM_HISTORY_TABLE + ")" +
+            " AND " + STREAM_ID + " NOT IN (SELECT " + PlaylistStreamEntity.JOIN_STREAM_ID +
+            " FROM " + PLAYLIST_STREAM_JOIN_TABLE + ")" +
+            " AND " + STREAM_ID + " NOT IN (SELECT " + StreamStateEntity.JOIN_STREAM_ID +
+            " FROM " + StreamStateEntity.STREAM_STATE_TABLE + ")" +
+            " AND " + STREAM_ID + " NOT IN (SELECT " + StreamStatisticsEntity.JOIN_STREAM_ID +
+            " FROM " + StreamStatisticsEntity.STREAM_STATISTICS_TABLE + ")" +
+            " AND " + STREAM_ID + " NOT IN (SELECT " + FeedEntity.JOIN_STREAM_ID +
+            " FROM " + FeedEntity.FEED_TABLE + ")")
+    public abstract int deleteUnreferenced(final List<Long> streamIds);
 }
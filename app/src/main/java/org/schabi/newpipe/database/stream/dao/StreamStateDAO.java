@@ -7,13 +7,19 @@ import androidx.room.Query;
 import androidx.room.Transaction;
 
 import org.schabi.newpipe.database.BasicDAO;
+import org.schabi.newpipe.database.stream.StreamStateEntry;
 import org.schabi.newpipe.database.stream.model.StreamStateEntity;
 
 import java.util.List;
 
 import io.reactivex.Flowable;
 
+import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_ID;
+import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_SERVICE_ID;
+import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_TABLE;
+import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_URL;
 import static org.schabi.newpipe.database.stream.model.StreamStateEntity.JOIN_STREAM_ID;
+import static org.schabi.newpipe.database.stream.model.StreamStateEntity.STREAM_PROGRESS_TIME;
 import static org.schabi.newpipe.database.stream.model.StreamStateEntity.STREAM_STATE_TABLE;
 
 @Dao
@@ -34,6 +40,30 @@ public abstract class StreamStateDAO implements BasicDAO<StreamStateEntity> {
     @Query("SELECT * FROM " + STREAM_STATE_TABLE + " WHERE " + JOIN_STREAM_ID + " = :streamId")
     public abstract Flowable<List<StreamStateEntity>> getState(final long streamId);
 
+    /**
+     * Looks up the states of many streams at once. Callers must keep the number of ids below
+     * the SQLite limit on query variables.
+     * */
+    @Query("SELECT * FROM " + STREAM_STATE_TABLE + " WHERE " + JOIN_STREAM_ID + " IN (:streamIds)")
+    public abstract List<StreamStateEntity> getStates(final List<Long> streamIds);
+
+    /**
+     * Looks up the states of many streams of the same service by url at once. Streams without
+     * a state are left out. Callers must keep the number of urls below the SQLite limit on
+     * query variables.
+     * */
+    @Query("SELECT " + STREAM_TABLE + "." + STREAM_URL + ", " +
+            STREAM_STATE_TABLE + "." + JOIN_STREAM_ID + ", " +
+            STREAM_STATE_TABLE + "." + STREAM_PROGRESS_TIME +
+            " FROM " + STREAM_TABLE +
+            " INNER JOIN " + STREAM_STATE_TABLE +
+            " ON " + STREAM_TABLE + "." + STREAM_ID + " = " +
+            STREAM_STATE_TABLE + "." + JOIN_STREAM_ID +
+            " WHERE " + STREAM_TABLE + "." + STREAM_SERVICE_ID + " = :serviceId" +
+            " AND " + STREAM_TABLE + "." + STREAM_URL + " IN (:urls)")
+    public abstract List<StreamStateEntry> getStatesByUrl(final int serviceId,
+                                                          final List<String> urls);
+
     @Query("DELETE FROM " + STREAM_STATE_TABLE + " WHERE " + JOIN_STREAM_ID + " = :streamId")
     public abstract int deleteState(final long streamId);
 
@@ -0,0 +1,131 @@
+package org.schabi.newpipe.database.stream.dao;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import org.schabi.newpipe.database.BasicDAO;
+import org.schabi.newpipe.database.stream.StreamStatisticsEntry;
+import org.schabi.newpipe.database.stream.model.StreamStatisticsEntity;
+
+import java.util.Date;
+import java.util.List;
+
+import io.reactivex.Flowable;
+
+import static org.schabi.newpipe.database.history.model.StreamHistoryEntity.STREAM_ACCESS_DATE;
+import static org.schabi.newpipe.database.history.model.StreamHistoryEntity.STREAM_HISTORY_TABLE;
+import static org.schabi.newpipe.database.history.model.StreamHistoryEntity.STREAM_REPEAT_COUNT;
+import static org.schabi.newpipe.database.stream.StreamStatisticsEntry.STREAM_LATEST_DATE;
+import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_ID;
+import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_TABLE;
+import static org.schabi.newpipe.database.stream.model.StreamStatisticsEntity.JOIN_STREAM_ID;
+import static org.schabi.newpipe.database.stream.model.StreamStatisticsEntity.STREAM_LATEST_ACCESS_DATE;
+import static org.schabi.newpipe.database.stream.model.StreamStatisticsEntity.STREAM_STATISTICS_TABLE;
+import static org.schabi.newpipe.database.stream.model.StreamStatisticsEntity.STREAM_WATCH_COUNT;
+
+@Dao
+public abstract class StreamStatisticsDAO implements BasicDAO<StreamStatisticsEntity> {
+    @Override
+    @Query("SELECT * FROM " + STREAM_STATISTICS_TABLE)
+    public abstract Flowable<List<StreamStatisticsEntity>> getAll();
+
+    @Override
+    @Query("DELETE FROM " + STREAM_STATISTICS_TABLE)
+    public abstract int deleteAll();
+
+    @Override
+    public Flowable<List<StreamStatisticsEntity>> listByService(int serviceId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Query("SELECT * FROM " + STREAM_STATISTICS_TABLE + " WHERE " + JOIN_STREAM_ID + " = :streamId")
+    @Nullable
+    public abstract StreamStatisticsEntity getStatistics(final long streamId);
+
+    @Query("DELETE FROM " + STREAM_STATISTICS_TABLE + " WHERE " + JOIN_STREAM_ID + " = :streamId")
+    public abstract int deleteStatistics(final long streamId);
+
+    @Query("DELETE FROM " + STREAM_STATISTICS_TABLE + " WHERE " + JOIN_STREAM_ID + " IN (:streamIds)")
+    public abstract int deleteStatistics(final List<Long> streamIds);
+
+    @Query("SELECT " + JOIN_STREAM_ID + ", " +
+            " MAX(" + STREAM_ACCESS_DATE + ") AS " + STREAM_LATEST_ACCESS_DATE + ", " +
+            " SUM(" + STREAM_REPEAT_COUNT + ") AS " + STREAM_WATCH_COUNT +
+            " FROM " + STREAM_HISTORY_TABLE +
+            " WHERE " + JOIN_STREAM_ID + " IN (:streamIds)" +
+            " GROUP BY " + JOIN_STREAM_ID)
+    public abstract List<StreamStatisticsEntity> aggregateHistory(final List<Long> streamIds);
+
+    /**
+     * Counts a new view of the stream on the given date.
+     * */
+    @Transaction
+    public void onViewed(final long streamId, @NonNull final Date accessDate) {
+        final StreamStatisticsEntity statistics = getStatistics(streamId);
+        if (statistics == null) {
+            insert(new StreamStatisticsEntity(streamId, accessDate, 1));
+        } else {
+            statistics.setLatestAccessDate(accessDate);
+            statistics.setWatchCount(statistics.getWatchCount() + 1);
+            update(statistics);
+        }
+    }
+
+    /**
+     * Recomputes the statistics of the given streams from their history, e.g. after history
+     * entries were added or removed in bulk. Callers must keep the number of ids below the
+     * SQLite limit on query variables.
+     * */
+    @Transaction
+    public void refresh(final List<Long> streamIds) {
+        deleteStatistics(streamIds);
+        insertAll(aggregateHistory(streamIds));
+    }
+
+    /**
+     * Streams on history, most recently played first, continuing after the stream last played
+     * on the given date with the given id.
+     * */
+    @Query("SELECT " + STREAM_TABLE + ".*, " +
+            STREAM_STATISTICS_TABLE + "." + JOIN_STREAM_ID + ", " +
+            STREAM_LATEST_ACCESS_DATE + " AS " + STREAM_LATEST_DATE + ", " +
+            STREAM_WATCH_COUNT + " AS " + StreamStatisticsEntry.STREAM_WATCH_COUNT +
+            " FROM " + STREAM_STATISTICS_TABLE + " INNER JOIN " + STREAM_TABLE +
+            " ON " + STREAM_ID + " = " + STREAM_STATISTICS_TABLE + "." + JOIN_STREAM_ID +
+
+            " WHERE " + STREAM_LATEST_ACCESS_DATE + " < :afterDate" +
+            " OR (" + STREAM_LATEST_ACCESS_DATE + " = :afterDate" +
+            " AND " + STREAM_STATISTICS_TABLE + "." + JOIN_STREAM_ID + " < :afterStreamId)" +
+
+            " ORDER BY " + STREAM_LATEST_ACCESS_DATE + " DESC, " +
+            STREAM_STATISTICS_TABLE + "." + JOIN_STREAM_ID + " DESC" +
+            " LIMIT :limit")
+    public abstract List<StreamStatisticsEntry> getLastPlayed(final long afterDate,
+                                                              final long afterStreamId,
+                                                              final int limit);
+
+    /**
+     * Streams on history, most played first, continuing after the stream played the given
+     * number of times with the given id.
+     * */
+    @Query("SELECT " + STREAM_TABLE + ".*, " +
+            STREAM_STATISTICS_TABLE + "." + JOIN_STREAM_ID + ", " +
+            STREAM_LATEST_ACCESS_DATE + " AS " + STREAM_LATEST_DATE + ", " +
+            STREAM_WATCH_COUNT + " AS " + StreamStatisticsEntry.STREAM_WATCH_COUNT +
+            " FROM " + STREAM_STATISTICS_TABLE + " INNER JOIN " + STREAM_TABLE +
+            " ON " + STREAM_ID + " = " + STREAM_STATISTICS_TABLE + "." + JOIN_STREAM_ID +
+
+            " WHERE " + STREAM_WATCH_COUNT + " < :afterCount" +
+            " OR (" + STREAM_WATCH_COUNT + " = :afterCount" +
+            " AND " + STREAM_STATISTICS_TABLE + "." + JOIN_STREAM_ID + " < :afterStreamId)" +
+
+            " ORDER BY " + STREAM_WATCH_COUNT + " DESC, " +
+            STREAM_STATISTICS_TABLE + "." + JOIN_STREAM_ID + " DESC" +
+            " LIMIT :limit")
+    public abstract List<StreamStatisticsEntry> getMostPlayed(final long afterCount,
+                                                              final long afterStreamId,
+                                                              final int limit);
+}
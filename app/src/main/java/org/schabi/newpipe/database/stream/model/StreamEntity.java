@@ -1,5 +1,6 @@
 package org.schabi.newpipe.database.stream.model;
 
+import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
@@ -13,6 +14,7 @@ import org.schabi.newpipe.player.playqueue.PlayQueueItem;
 import org.schabi.newpipe.util.Constants;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_SERVICE_ID;
 import static org.schabi.newpipe.database.stream.model.StreamEntity.STREAM_TABLE;
@@ -150,4 +152,19 @@ public class StreamEntity implements Serializable {
     public void setThumbnailUrl(String thumbnailUrl) {
         this.thumbnailUrl = thumbnailUrl;
     }
+
+    /**
+     * Checks if the stream data, apart from the id, is the same as that of the other entity,
+     * in which case writing it to the database again can be skipped.
+     * */
+    @Ignore
+    public boolean hasEqualValues(@NonNull final StreamEntity other) {
+        return serviceId == other.serviceId &&
+                Objects.equals(url, other.url) &&
+                Objects.equals(title, other.title) &&
+                streamType == other.streamType &&
+                Objects.equals(duration, other.duration) &&
+                Objects.equals(uploader, other.uploader) &&
+                Objects.equals(thumbnailUrl, other.thumbnailUrl);
+    }
 }
@@ -0,0 +1,39 @@
+package org.schabi.newpipe.database.stream.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+import static org.schabi.newpipe.database.stream.model.StreamFtsEntity.STREAM_FTS_TABLE;
+
+/**
+ * Full-text index over the titles and uploaders of the {@link StreamEntity streams}, kept in
+ * sync with them by triggers.
+ */
+@Fts4(contentEntity = StreamEntity.class)
+@Entity(tableName = STREAM_FTS_TABLE)
+public class StreamFtsEntity {
+    final public static String STREAM_FTS_TABLE = "streams_fts";
+
+    @ColumnInfo(name = StreamEntity.STREAM_TITLE)
+    private String title;
+
+    @ColumnInfo(name = StreamEntity.STREAM_UPLOADER)
+    private String uploader;
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getUploader() {
+        return uploader;
+    }
+
+    public void setUploader(String uploader) {
+        this.uploader = uploader;
+    }
+}
@@ -0,0 +1,78 @@
+package org.schabi.newpipe.database.stream.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+import java.util.Date;
+
+import static androidx.room.ForeignKey.CASCADE;
+import static org.schabi.newpipe.database.stream.model.StreamStatisticsEntity.JOIN_STREAM_ID;
+import static org.schabi.newpipe.database.stream.model.StreamStatisticsEntity.STREAM_LATEST_ACCESS_DATE;
+import static org.schabi.newpipe.database.stream.model.StreamStatisticsEntity.STREAM_STATISTICS_TABLE;
+import static org.schabi.newpipe.database.stream.model.StreamStatisticsEntity.STREAM_WATCH_COUNT;
+
+/**
+ * Latest access date and watch count of each stream on history, kept up to date as the
+ * history is written so they don't have to be aggregated from it on every read.
+ * */
+@Entity(tableName = STREAM_STATISTICS_TABLE,
+        primaryKeys = {JOIN_STREAM_ID},
+        indices = {@Index(value = {STREAM_LATEST_ACCESS_DATE}),
+                @Index(value = {STREAM_WATCH_COUNT})},
+        foreignKeys = {
+                @ForeignKey(entity = StreamEntity.class,
+                        parentColumns = StreamEntity.STREAM_ID,
+                        childColumns = JOIN_STREAM_ID,
+                        onDelete = CASCADE, onUpdate = CASCADE)
+        })
+public class StreamStatisticsEntity {
+    final public static String STREAM_STATISTICS_TABLE   = "stream_statistics";
+    final public static String JOIN_STREAM_ID            = "stream_id";
+    final public static String STREAM_LATEST_ACCESS_DATE = "latest_access_date";
+    final public static String STREAM_WATCH_COUNT        = "watch_count";
+
+    @ColumnInfo(name = JOIN_STREAM_ID)
+    private long streamUid;
+
+    @NonNull
+    @ColumnInfo(name = STREAM_LATEST_ACCESS_DATE)
+    private Date latestAccessDate;
+
+    @ColumnInfo(name = STREAM_WATCH_COUNT)
+    private long watchCount;
+
+    public StreamStatisticsEntity(long streamUid, @NonNull Date latestAccessDate,
+                                  long watchCount) {
+        this.streamUid = streamUid;
+        this.latestAccessDate = latestAccessDate;
+        this.watchCount = watchCount;
+    }
+
+    public long getStreamUid() {
+        return streamUid;
+    }
+
+    public void setStreamUid(long streamUid) {
+        this.streamUid = streamUid;
+    }
+
+    @NonNull
+    public Date getLatestAccessDate() {
+        return latestAccessDate;
+    }
+
+    public void setLatestAccessDate(@NonNull Date latestAccessDate) {
+        this.latestAccessDate = latestAccessDate;
+    }
+
+    public long getWatchCount() {
+        return watchCount;
+    }
+
+    public void setWatchCount(long watchCount) {
+        this.watchCount = watchCount;
+    }
+}
@@ -0,0 +1,54 @@
+package org.schabi.newpipe.database.subscription;
+
+import androidx.annotation.Nullable;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.schabi.newpipe.database.subscription.ImportCheckpointEntity.IMPORT_CHECKPOINT_TABLE;
+import static org.schabi.newpipe.database.subscription.ImportCheckpointEntity.IMPORT_PROCESSED_COUNT;
+import static org.schabi.newpipe.database.subscription.ImportCheckpointEntity.IMPORT_SOURCE_HASH;
+import static org.schabi.newpipe.database.subscription.ImportCheckpointEntity.IMPORT_UPDATED_AT;
+import static org.schabi.newpipe.database.subscription.ImportFailureEntity.IMPORT_FAILURE_SERVICE_ID;
+import static org.schabi.newpipe.database.subscription.ImportFailureEntity.IMPORT_FAILURE_TABLE;
+import static org.schabi.newpipe.database.subscription.ImportFailureEntity.IMPORT_FAILURE_URL;
+import static org.schabi.newpipe.database.subscription.ImportFailureEntity.JOIN_SOURCE_HASH;
+
+@Dao
+public abstract class ImportCheckpointDAO {
+    @Query("SELECT * FROM " + IMPORT_CHECKPOINT_TABLE + " WHERE " + IMPORT_SOURCE_HASH + " = :sourceHash")
+    @Nullable
+    public abstract ImportCheckpointEntity getCheckpoint(final String sourceHash);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    public abstract long insertCheckpoint(final ImportCheckpointEntity checkpoint);
+
+    @Query("UPDATE " + IMPORT_CHECKPOINT_TABLE +
+            " SET " + IMPORT_PROCESSED_COUNT + " = :processedCount, " + IMPORT_UPDATED_AT + " = :updatedAt" +
+            " WHERE " + IMPORT_SOURCE_HASH + " = :sourceHash")
+    public abstract int updateProgress(final String sourceHash, final int processedCount,
+                                       final Date updatedAt);
+
+    /**
+     * Deletes the checkpoint along with its failures.
+     */
+    @Query("DELETE FROM " + IMPORT_CHECKPOINT_TABLE + " WHERE " + IMPORT_SOURCE_HASH + " = :sourceHash")
+    public abstract int deleteCheckpoint(final String sourceHash);
+
+    @Query("DELETE FROM " + IMPORT_CHECKPOINT_TABLE + " WHERE " + IMPORT_UPDATED_AT + " < :updatedBefore")
+    public abstract int deleteCheckpointsBefore(final Date updatedBefore);
+
+    @Query("SELECT * FROM " + IMPORT_FAILURE_TABLE + " WHERE " + JOIN_SOURCE_HASH + " = :sourceHash")
+    public abstract List<ImportFailureEntity> getFailures(final String sourceHash);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract List<Long> insertFailures(final List<ImportFailureEntity> failures);
+
+    @Query("DELETE FROM " + IMPORT_FAILURE_TABLE + " WHERE " + JOIN_SOURCE_HASH + " = :sourceHash" +
+            " AND " + IMPORT_FAILURE_SERVICE_ID + " = :serviceId AND " + IMPORT_FAILURE_URL + " = :url")
+    public abstract int deleteFailure(final String sourceHash, final int serviceId, final String url);
+}
@@ -0,0 +1,68 @@
+package org.schabi.newpipe.database.subscription;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+import java.util.Date;
+
+import static org.schabi.newpipe.database.subscription.ImportCheckpointEntity.IMPORT_CHECKPOINT_TABLE;
+
+/**
+ * Progress of a subscription import, so an interrupted import of the same source can resume
+ * where it stopped.
+ */
+@Entity(tableName = IMPORT_CHECKPOINT_TABLE)
+public class ImportCheckpointEntity {
+    final public static String IMPORT_CHECKPOINT_TABLE     = "import_checkpoints";
+    final public static String IMPORT_SOURCE_HASH          = "source_hash";
+    final public static String IMPORT_PROCESSED_COUNT      = "processed_count";
+    final public static String IMPORT_UPDATED_AT           = "updated_at";
+
+    @NonNull
+    @PrimaryKey
+    @ColumnInfo(name = IMPORT_SOURCE_HASH)
+    private String sourceHash;
+
+    /** How many items from the start of the source were all processed */
+    @ColumnInfo(name = IMPORT_PROCESSED_COUNT)
+    private int processedCount;
+
+    @NonNull
+    @ColumnInfo(name = IMPORT_UPDATED_AT)
+    private Date updatedAt;
+
+    public ImportCheckpointEntity(@NonNull String sourceHash, int processedCount,
+                                  @NonNull Date updatedAt) {
+        this.sourceHash = sourceHash;
+        this.processedCount = processedCount;
+        this.updatedAt = updatedAt;
+    }
+
+    @NonNull
+    public String getSourceHash() {
+        return sourceHash;
+    }
+
+    public void setSourceHash(@NonNull String sourceHash) {
+        this.sourceHash = sourceHash;
+    }
+
+    public int getProcessedCount() {
+        return processedCount;
+    }
+
+    public void setProcessedCount(int processedCount) {
+        this.processedCount = processedCount;
+    }
+
+    @NonNull
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(@NonNull Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
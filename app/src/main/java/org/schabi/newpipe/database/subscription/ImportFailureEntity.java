@@ -0,0 +1,96 @@
+package org.schabi.newpipe.database.subscription;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+
+import org.schabi.newpipe.extractor.subscription.SubscriptionItem;
+
+import static androidx.room.ForeignKey.CASCADE;
+import static org.schabi.newpipe.database.subscription.ImportFailureEntity.IMPORT_FAILURE_TABLE;
+import static org.schabi.newpipe.database.subscription.ImportFailureEntity.IMPORT_FAILURE_URL;
+import static org.schabi.newpipe.database.subscription.ImportFailureEntity.IMPORT_FAILURE_SERVICE_ID;
+import static org.schabi.newpipe.database.subscription.ImportFailureEntity.JOIN_SOURCE_HASH;
+
+/**
+ * Subscription of an import which could not be imported, to be tried again when the same
+ * source is imported next time.
+ */
+@Entity(tableName = IMPORT_FAILURE_TABLE,
+        primaryKeys = {JOIN_SOURCE_HASH, IMPORT_FAILURE_SERVICE_ID, IMPORT_FAILURE_URL},
+        foreignKeys = {
+                @ForeignKey(entity = ImportCheckpointEntity.class,
+                        parentColumns = ImportCheckpointEntity.IMPORT_SOURCE_HASH,
+                        childColumns = JOIN_SOURCE_HASH,
+                        onDelete = CASCADE, onUpdate = CASCADE)
+        })
+public class ImportFailureEntity {
+    final public static String IMPORT_FAILURE_TABLE        = "import_failures";
+    final public static String JOIN_SOURCE_HASH            = "source_hash";
+    final public static String IMPORT_FAILURE_SERVICE_ID   = "service_id";
+    final public static String IMPORT_FAILURE_URL          = "url";
+    final public static String IMPORT_FAILURE_NAME         = "name";
+
+    @NonNull
+    @ColumnInfo(name = JOIN_SOURCE_HASH)
+    private String sourceHash;
+
+    @ColumnInfo(name = IMPORT_FAILURE_SERVICE_ID)
+    private int serviceId;
+
+    @NonNull
+    @ColumnInfo(name = IMPORT_FAILURE_URL)
+    private String url;
+
+    @ColumnInfo(name = IMPORT_FAILURE_NAME)
+    private String name;
+
+    public ImportFailureEntity(@NonNull String sourceHash, int serviceId, @NonNull String url,
+                               String name) {
+        this.sourceHash = sourceHash;
+        this.serviceId = serviceId;
+        this.url = url;
+        this.name = name;
+    }
+
+    @NonNull
+    public String getSourceHash() {
+        return sourceHash;
+    }
+
+    public void setSourceHash(@NonNull String sourceHash) {
+        this.sourceHash = sourceHash;
+    }
+
+    public int getServiceId() {
+        return serviceId;
+    }
+
+    public void setServiceId(int serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    @NonNull
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(@NonNull String url) {
+        this.url = url;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Ignore
+    public SubscriptionItem toSubscriptionItem() {
+        return new SubscriptionItem(serviceId, url, name);
+    }
+}
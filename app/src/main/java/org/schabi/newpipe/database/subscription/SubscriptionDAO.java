@@ -1,5 +1,7 @@
 package org.schabi.newpipe.database.subscription;
 
+import android.database.Cursor;
+
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
@@ -12,6 +14,7 @@ import java.util.List;
 
 import io.reactivex.Flowable;
 
+import static org.schabi.newpipe.database.subscription.SubscriptionEntity.SUBSCRIPTION_NAME;
 import static org.schabi.newpipe.database.subscription.SubscriptionEntity.SUBSCRIPTION_SERVICE_ID;
 import static org.schabi.newpipe.database.subscription.SubscriptionEntity.SUBSCRIPTION_TABLE;
 import static org.schabi.newpipe.database.subscription.SubscriptionEntity.SUBSCRIPTION_UID;
@@ -36,6 +39,14 @@ public abstract class SubscriptionDAO implements BasicDAO<SubscriptionEntity> {
             SUBSCRIPTION_SERVICE_ID + " = :serviceId")
     public abstract Flowable<List<SubscriptionEntity>> getSubscription(int serviceId, String url);
 
+    /**
+     * Service id, url and name of all subscriptions, to be read one by one instead of loading
+     * all of them at once. Must be closed once read.
+     * */
+    @Query("SELECT " + SUBSCRIPTION_SERVICE_ID + ", " + SUBSCRIPTION_URL + ", " + SUBSCRIPTION_NAME +
+            " FROM " + SUBSCRIPTION_TABLE + " ORDER BY " + SUBSCRIPTION_UID)
+    public abstract Cursor getAllCursor();
+
     @Query("SELECT " + SUBSCRIPTION_UID + " FROM " + SUBSCRIPTION_TABLE + " WHERE " +
             SUBSCRIPTION_URL + " LIKE :url AND " +
             SUBSCRIPTION_SERVICE_ID + " = :serviceId")
@@ -44,6 +55,12 @@ public abstract class SubscriptionDAO implements BasicDAO<SubscriptionEntity> {
     @Insert(onConflict = OnConflictStrategy.IGNORE)
     abstract Long insertInternal(final SubscriptionEntity entities);
 
+    /**
+     * Inserts the subscriptions which do not exist yet, leaving the existing ones untouched.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    public abstract List<Long> silentInsertAll(final List<SubscriptionEntity> entities);
+
     @Transaction
     public List<SubscriptionEntity> upsertAll(List<SubscriptionEntity> entities) {
         for (SubscriptionEntity entity : entities) {
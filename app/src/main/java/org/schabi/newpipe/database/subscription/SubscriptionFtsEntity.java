@@ -0,0 +1,28 @@
+package org.schabi.newpipe.database.subscription;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+import static org.schabi.newpipe.database.subscription.SubscriptionFtsEntity.SUBSCRIPTION_FTS_TABLE;
+
+/**
+ * Full-text index over the names of the {@link SubscriptionEntity subscriptions}, kept in sync
+ * with them by triggers.
+ */
+@Fts4(contentEntity = SubscriptionEntity.class)
+@Entity(tableName = SUBSCRIPTION_FTS_TABLE)
+public class SubscriptionFtsEntity {
+    final public static String SUBSCRIPTION_FTS_TABLE = "subscriptions_fts";
+
+    @ColumnInfo(name = SubscriptionEntity.SUBSCRIPTION_NAME)
+    private String name;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
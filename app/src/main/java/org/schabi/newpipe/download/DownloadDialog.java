@@ -292,21 +292,16 @@ public class DownloadDialog extends DialogFragment implements RadioGroup.OnCheck
     private void fetchStreamsSize() {
         disposables.clear();
 
-        disposables.add(StreamSizeWrapper.fetchSizeForWrapper(wrappedVideoStreams).subscribe(result -> {
-            if (radioStreamsGroup.getCheckedRadioButtonId() == R.id.video_button) {
-                setupVideoSpinner();
-            }
-        }));
-        disposables.add(StreamSizeWrapper.fetchSizeForWrapper(wrappedAudioStreams).subscribe(result -> {
-            if (radioStreamsGroup.getCheckedRadioButtonId() == R.id.audio_button) {
-                setupAudioSpinner();
-            }
-        }));
-        disposables.add(StreamSizeWrapper.fetchSizeForWrapper(wrappedSubtitleStreams).subscribe(result -> {
-            if (radioStreamsGroup.getCheckedRadioButtonId() == R.id.subtitle_button) {
-                setupSubtitleSpinner();
-            }
-        }));
+        disposables.add(StreamSizeWrapper.fetchSizeForWrapper(wrappedVideoStreams)
+                .subscribe(index -> videoStreamsAdapter.notifyDataSetChanged()));
+        disposables.add(StreamSizeWrapper.fetchSizeForWrapper(wrappedAudioStreams)
+                .subscribe(index -> {
+                    audioStreamsAdapter.notifyDataSetChanged();
+                    // Video only streams show their size including the audio stream
+                    videoStreamsAdapter.notifyDataSetChanged();
+                }));
+        disposables.add(StreamSizeWrapper.fetchSizeForWrapper(wrappedSubtitleStreams)
+                .subscribe(index -> subtitleStreamsAdapter.notifyDataSetChanged()));
     }
 
     @Override
@@ -32,7 +32,6 @@ import android.widget.TextView;
 
 import org.schabi.newpipe.R;
 import org.schabi.newpipe.ReCaptchaActivity;
-import org.schabi.newpipe.database.history.model.SearchHistoryEntry;
 import org.schabi.newpipe.extractor.InfoItem;
 import org.schabi.newpipe.extractor.ListExtractor;
 import org.schabi.newpipe.extractor.NewPipe;
@@ -51,21 +50,23 @@ import org.schabi.newpipe.util.Constants;
 import org.schabi.newpipe.util.ExtractorHelper;
 import org.schabi.newpipe.util.NavigationHelper;
 import org.schabi.newpipe.util.ServiceHelper;
+import org.schabi.newpipe.util.SuggestionCache;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.SocketException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import icepick.State;
-import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.CompositeDisposable;
@@ -627,62 +628,13 @@ public class SearchFragment
         if (DEBUG) Log.d(TAG, "initSuggestionObserver() called");
         if (suggestionDisposable != null) suggestionDisposable.dispose();
 
-        final Observable<String> observable = suggestionPublisher
-                .debounce(SUGGESTIONS_DEBOUNCE, TimeUnit.MILLISECONDS)
+        suggestionDisposable = suggestionPublisher
                 .startWith(searchString != null
                         ? searchString
                         : "")
-                .filter(searchString -> isSuggestionsEnabled);
-
-        suggestionDisposable = observable
-                .switchMap(query -> {
-                    final Flowable<List<SearchHistoryEntry>> flowable = historyRecordManager
-                            .getRelatedSearches(query, 3, 25);
-                    final Observable<List<SuggestionItem>> local = flowable.toObservable()
-                            .map(searchHistoryEntries -> {
-                                List<SuggestionItem> result = new ArrayList<>();
-                                for (SearchHistoryEntry entry : searchHistoryEntries)
-                                    result.add(new SuggestionItem(true, entry.getSearch()));
-                                return result;
-                            });
-
-                    if (query.length() < THRESHOLD_NETWORK_SUGGESTION) {
-                        // Only pass through if the query length is equal or greater than THRESHOLD_NETWORK_SUGGESTION
-                        return local.materialize();
-                    }
-
-                    final Observable<List<SuggestionItem>> network = ExtractorHelper
-                            .suggestionsFor(serviceId, query)
-                            .toObservable()
-                            .map(strings -> {
-                                List<SuggestionItem> result = new ArrayList<>();
-                                for (String entry : strings) {
-                                    result.add(new SuggestionItem(false, entry));
-                                }
-                                return result;
-                            });
-
-                    return Observable.zip(local, network, (localResult, networkResult) -> {
-                        List<SuggestionItem> result = new ArrayList<>();
-                        if (localResult.size() > 0) result.addAll(localResult);
-
-                        // Remove duplicates
-                        final Iterator<SuggestionItem> iterator = networkResult.iterator();
-                        while (iterator.hasNext() && localResult.size() > 0) {
-                            final SuggestionItem next = iterator.next();
-                            for (SuggestionItem item : localResult) {
-                                if (item.query.equals(next.query)) {
-                                    iterator.remove();
-                                    break;
-                                }
-                            }
-                        }
-
-                        if (networkResult.size() > 0) result.addAll(networkResult);
-                        return result;
-                    }).materialize();
-                })
-                .subscribeOn(Schedulers.io())
+                .filter(searchString -> isSuggestionsEnabled)
+                // A newer query disposes the suggestions still being loaded for the previous one
+                .switchMap(query -> getSuggestions(query).materialize())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(listNotification -> {
                     if (listNotification.isOnNext()) {
@@ -698,6 +650,62 @@ public class SearchFragment
                 });
     }
 
+    /**
+     * Emits the suggestions from the history right away, along with the cached suggestions of
+     * a prefix of the query if there are any. The suggestions of the query itself are only
+     * loaded from the network once no other query came in for {@link #SUGGESTIONS_DEBOUNCE},
+     * unless they are cached.
+     */
+    private Observable<List<SuggestionItem>> getSuggestions(final String query) {
+        final Observable<List<String>> local = historyRecordManager
+                .getRelatedSearches(query, 3, 25)
+                .toObservable();
+
+        if (query.length() < THRESHOLD_NETWORK_SUGGESTION) {
+            // Only pass through if the query length is equal or greater than THRESHOLD_NETWORK_SUGGESTION
+            return local.map(history -> mergeSuggestions(history, Collections.emptyList()));
+        }
+
+        final SuggestionCache suggestionCache = SuggestionCache.getInstance();
+        final List<String> cached = suggestionCache.get(serviceId, query);
+        if (cached != null) {
+            return local.map(history -> mergeSuggestions(history, cached));
+        }
+
+        final List<String> fromPrefix = suggestionCache.getFromPrefix(serviceId, query);
+        final Observable<List<String>> network = ExtractorHelper
+                .suggestionsFor(serviceId, query)
+                // Running on its own thread lets the request be interrupted once disposed
+                .subscribeOn(Schedulers.io())
+                .delaySubscription(SUGGESTIONS_DEBOUNCE, TimeUnit.MILLISECONDS)
+                .toObservable();
+
+        return local.flatMap(history -> {
+            final Observable<List<SuggestionItem>> fromNetwork =
+                    network.map(suggestions -> mergeSuggestions(history, suggestions));
+            if (fromPrefix == null && history.isEmpty()) return fromNetwork;
+
+            return Observable.just(mergeSuggestions(history,
+                    fromPrefix != null ? fromPrefix : Collections.emptyList()))
+                    .concatWith(fromNetwork);
+        });
+    }
+
+    private static List<SuggestionItem> mergeSuggestions(final List<String> history,
+                                                         final List<String> network) {
+        final List<SuggestionItem> result = new ArrayList<>(history.size() + network.size());
+        final Set<String> historyQueries = new HashSet<>(history);
+        for (String entry : history) {
+            result.add(new SuggestionItem(true, entry));
+        }
+
+        // Remove duplicates
+        for (String entry : network) {
+            if (!historyQueries.contains(entry)) result.add(new SuggestionItem(false, entry));
+        }
+        return result;
+    }
+
     @Override
     protected void doInitialLoadLogic() {
         // no-op
@@ -34,6 +34,8 @@ import org.schabi.newpipe.util.OnClickGesture;
 import java.util.ArrayList;
 import java.util.List;
 
+import io.reactivex.disposables.CompositeDisposable;
+
 /*
  * Created by Christian Schabesberger on 01.08.16.
  *
@@ -76,6 +78,7 @@ public class InfoListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
     private final InfoItemBuilder infoItemBuilder;
     private final ArrayList<InfoItem> infoItemList;
     private final HistoryRecordManager recordManager;
+    private final CompositeDisposable prefetchDisposables = new CompositeDisposable();
 
     private boolean useMiniVariant = false;
     private boolean useGridVariant = false;
@@ -129,6 +132,9 @@ public class InfoListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
         if (DEBUG) Log.d(TAG, "addInfoItemList() before > infoItemList.size() = " +
                 infoItemList.size() + ", data.size() = " + data.size());
 
+        // Caches the states of the whole page at once, instead of querying each bound item
+        prefetchDisposables.add(recordManager.prefetchStreamStates(data).subscribe());
+
         int offsetStart = sizeConsideringHeaderOffset();
         infoItemList.addAll(data);
 
@@ -172,6 +178,18 @@ public class InfoListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
         }
     }
 
+    /**
+     * Inserts the item at the given position of the items list, not counting the header.
+     * */
+    public void addInfoItem(final int position, @Nullable final InfoItem data) {
+        if (data == null) {
+            return;
+        }
+
+        infoItemList.add(position, data);
+        notifyItemInserted(position + (header != null ? 1 : 0));
+    }
+
     public void clearStreamItemList() {
         if (infoItemList.isEmpty()) {
             return;
@@ -316,6 +334,12 @@ public class InfoListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
         }
     }
 
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        prefetchDisposables.clear();
+    }
+
     public GridLayoutManager.SpanSizeLookup getSpanSizeLookup(final int spanCount) {
         return new GridLayoutManager.SpanSizeLookup() {
             @Override
@@ -1,6 +1,7 @@
 package org.schabi.newpipe.info_list.holder;
 
 import androidx.core.content.ContextCompat;
+import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
@@ -14,13 +15,18 @@ import org.schabi.newpipe.extractor.stream.StreamType;
 import org.schabi.newpipe.info_list.InfoItemBuilder;
 import org.schabi.newpipe.local.history.HistoryRecordManager;
 import org.schabi.newpipe.util.AnimationUtils;
+import org.schabi.newpipe.util.CachedStreamIndicator;
 import org.schabi.newpipe.util.ImageDisplayConstants;
 import org.schabi.newpipe.util.Localization;
 import org.schabi.newpipe.views.AnimatedProgressBar;
 
 import java.util.concurrent.TimeUnit;
 
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+
 public class StreamMiniInfoItemHolder extends InfoItemHolder {
+    private static final String TAG = "StreamMiniInfoItemHolder";
 
     public final ImageView itemThumbnailView;
     public final TextView itemVideoTitleView;
@@ -28,6 +34,9 @@ public class StreamMiniInfoItemHolder extends InfoItemHolder {
     public final TextView itemDurationView;
     public final AnimatedProgressBar itemProgressView;
 
+    private Disposable cachedIndicator;
+    private Disposable stateLoader;
+
     StreamMiniInfoItemHolder(InfoItemBuilder infoItemBuilder, int layoutId, ViewGroup parent) {
         super(infoItemBuilder, layoutId, parent);
 
@@ -50,24 +59,30 @@ public class StreamMiniInfoItemHolder extends InfoItemHolder {
         itemVideoTitleView.setText(item.getName());
         itemUploaderView.setText(item.getUploaderName());
 
+        if (cachedIndicator != null) cachedIndicator.dispose();
+        if (stateLoader != null) stateLoader.dispose();
         if (item.getDuration() > 0) {
             itemDurationView.setText(Localization.getDurationString(item.getDuration()));
             itemDurationView.setBackgroundColor(ContextCompat.getColor(itemBuilder.getContext(),
                     R.color.duration_background_color));
             itemDurationView.setVisibility(View.VISIBLE);
+            cachedIndicator = CachedStreamIndicator.bind(itemDurationView, item.getUrl());
 
-            StreamStateEntity state2 = historyRecordManager.loadStreamState(infoItem).blockingGet()[0];
-            if (state2 != null) {
-                itemProgressView.setVisibility(View.VISIBLE);
-                itemProgressView.setMax((int) item.getDuration());
-                itemProgressView.setProgress((int) TimeUnit.MILLISECONDS.toSeconds(state2.getProgressTime()));
-            } else {
-                itemProgressView.setVisibility(View.GONE);
-            }
+            itemProgressView.setVisibility(View.GONE);
+            stateLoader = historyRecordManager.loadStreamState(infoItem)
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(states -> {
+                        final StreamStateEntity state = states[0];
+                        if (state == null) return;
+                        itemProgressView.setVisibility(View.VISIBLE);
+                        itemProgressView.setMax((int) item.getDuration());
+                        itemProgressView.setProgress((int) TimeUnit.MILLISECONDS.toSeconds(state.getProgressTime()));
+                    }, error -> Log.e(TAG, "Unable to load stream state", error));
         } else if (item.getStreamType() == StreamType.LIVE_STREAM) {
             itemDurationView.setText(R.string.duration_live);
             itemDurationView.setBackgroundColor(ContextCompat.getColor(itemBuilder.getContext(),
                     R.color.live_duration_background_color));
+            itemDurationView.setCompoundDrawables(null, null, null, null);
             itemDurationView.setVisibility(View.VISIBLE);
             itemProgressView.setVisibility(View.GONE);
         } else {
@@ -106,7 +121,14 @@ public class StreamMiniInfoItemHolder extends InfoItemHolder {
     public void updateState(final InfoItem infoItem, final HistoryRecordManager historyRecordManager) {
         final StreamInfoItem item = (StreamInfoItem) infoItem;
 
-        StreamStateEntity state = historyRecordManager.loadStreamState(infoItem).blockingGet()[0];
+        if (stateLoader != null) stateLoader.dispose();
+        stateLoader = historyRecordManager.loadStreamState(infoItem)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(states -> showState(item, states[0]),
+                        error -> Log.e(TAG, "Unable to load stream state", error));
+    }
+
+    private void showState(final StreamInfoItem item, final StreamStateEntity state) {
         if (state != null && item.getDuration() > 0 && item.getStreamType() != StreamType.LIVE_STREAM) {
             itemProgressView.setMax((int) item.getDuration());
             if (itemProgressView.getVisibility() == View.VISIBLE) {
@@ -29,6 +29,8 @@ import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.List;
 
+import io.reactivex.disposables.CompositeDisposable;
+
 /*
  * Created by Christian Schabesberger on 01.08.16.
  *
@@ -69,6 +71,7 @@ public class LocalItemListAdapter extends RecyclerView.Adapter<RecyclerView.View
     private final LocalItemBuilder localItemBuilder;
     private final ArrayList<LocalItem> localItems;
     private final HistoryRecordManager recordManager;
+    private final CompositeDisposable prefetchDisposables = new CompositeDisposable();
     private final DateFormat dateFormat;
 
     private boolean showFooter = false;
@@ -99,6 +102,9 @@ public class LocalItemListAdapter extends RecyclerView.Adapter<RecyclerView.View
         if (DEBUG) Log.d(TAG, "addItems() before > localItems.size() = " +
                 localItems.size() + ", data.size() = " + data.size());
 
+        // Caches the states of the whole page at once, instead of querying each bound item
+        prefetchDisposables.add(recordManager.prefetchLocalStreamStates(data).subscribe());
+
         int offsetStart = sizeConsideringHeader();
         localItems.addAll(data);
 
@@ -285,6 +291,12 @@ public class LocalItemListAdapter extends RecyclerView.Adapter<RecyclerView.View
         }
     }
 
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        prefetchDisposables.clear();
+    }
+
     public GridLayoutManager.SpanSizeLookup getSpanSizeLookup(final int spanCount) {
         return new GridLayoutManager.SpanSizeLookup() {
             @Override
@@ -0,0 +1,185 @@
+package org.schabi.newpipe.local.feed;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.schabi.newpipe.BuildConfig;
+import org.schabi.newpipe.NewPipeDatabase;
+import org.schabi.newpipe.database.AppDatabase;
+import org.schabi.newpipe.database.feed.FeedEntry;
+import org.schabi.newpipe.database.feed.dao.FeedDAO;
+import org.schabi.newpipe.database.feed.model.FeedEntity;
+import org.schabi.newpipe.database.feed.model.FeedLastUpdatedEntity;
+import org.schabi.newpipe.database.stream.dao.StreamDAO;
+import org.schabi.newpipe.database.stream.model.StreamEntity;
+import org.schabi.newpipe.database.subscription.SubscriptionDAO;
+import org.schabi.newpipe.database.subscription.SubscriptionEntity;
+import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.channel.ChannelInfo;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.util.ExtractorHelper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Keeps the streams of all subscriptions in the database, so the feed can be shown right away
+ * and offline, and only the channels not refreshed for {@link #OUTDATED_THRESHOLD_MILLIS} are
+ * fetched again.
+ * <br><br>
+ * Channels failing for other reasons than the network, e.g. since they were removed, are
+ * refreshed less often every time they fail again. Subscriptions imported without details get
+ * them once their channel is first refreshed.
+ * */
+public class FeedDatabaseManager {
+    private static final boolean DEBUG = !BuildConfig.BUILD_TYPE.equals("release");
+    private static final String TAG = "FeedDatabaseManager";
+
+    private static final long OUTDATED_THRESHOLD_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    /** SQLite allows at most 999 variables per query */
+    private static final int MAX_QUERY_ARGUMENTS = 900;
+
+    private final AppDatabase database;
+    private final StreamDAO streamTable;
+    private final FeedDAO feedTable;
+    private final SubscriptionDAO subscriptionTable;
+
+    public FeedDatabaseManager(final Context context) {
+        database = NewPipeDatabase.getInstance(context);
+        streamTable = database.streamDAO();
+        feedTable = database.feedDAO();
+        subscriptionTable = database.subscriptionDAO();
+    }
+
+    /**
+     * Loads the next streams of the feed, newest first.
+     * @param after the last entry of the previous page, or null to load the first page
+     * */
+    public Single<List<FeedEntry>> getFeedPage(@Nullable final FeedEntry after, final int limit) {
+        final long afterDate = after == null ? Long.MAX_VALUE : after.uploadDate;
+        final long afterStreamId = after == null ? Long.MAX_VALUE : after.uid;
+        return Single.fromCallable(() -> feedTable.getFeed(afterDate, afterStreamId, limit))
+                .subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Fetches the channels which are outdated, storing the streams of each one as it arrives.
+     * Channels which failed because of the network are tried again next time.
+     * */
+    public Observable<FeedEngine.ChannelResult> refreshOutdatedChannels() {
+        return Single.fromCallable(this::getOutdatedSubscriptions)
+                .subscribeOn(Schedulers.io())
+                .flatMapObservable(subscriptions -> {
+                    if (DEBUG) Log.d(TAG, "refreshOutdatedChannels() refreshing ["
+                            + subscriptions.size() + "] channels");
+                    return FeedEngine.fetch(subscriptions, false);
+                })
+                .observeOn(Schedulers.io())
+                .doOnNext(result -> store(Collections.singletonList(result)));
+    }
+
+    /**
+     * @return the subscriptions to refresh, least recently refreshed first.
+     * */
+    public List<SubscriptionEntity> getOutdatedSubscriptions() {
+        return feedTable.getOutdatedSubscriptions(
+                new Date(System.currentTimeMillis() - OUTDATED_THRESHOLD_MILLIS),
+                OUTDATED_THRESHOLD_MILLIS);
+    }
+
+    /**
+     * Stores the streams of all channels which were fetched and records the failures,
+     * in a single transaction.
+     * */
+    public void store(@NonNull final List<FeedEngine.ChannelResult> results) {
+        database.runInTransaction(() -> {
+            final Date now = new Date();
+            for (final FeedEngine.ChannelResult result : results) {
+                if (result.info != null) {
+                    storeStreams(result.subscription.getUid(), result.info.getRelatedItems(), now);
+                    if (result.subscription.getAvatarUrl() == null) {
+                        storeDetails(result.subscription, result.info);
+                    }
+                } else if (result.error != null && !isTemporary(result.error)) {
+                    feedTable.setFailed(result.subscription.getUid(), now);
+                }
+            }
+        });
+    }
+
+    private void storeStreams(final long subscriptionId,
+                              @NonNull final List<? extends InfoItem> items,
+                              @NonNull final Date updatedAt) {
+        final List<StreamInfoItem> streamItems = new ArrayList<>();
+        for (final InfoItem item : items) {
+            if (item instanceof StreamInfoItem) streamItems.add((StreamInfoItem) item);
+        }
+
+        final List<StreamEntity> streams = new ArrayList<>(streamItems.size());
+        for (final StreamInfoItem item : streamItems) {
+            streams.add(new StreamEntity(item));
+        }
+        final List<Long> streamIds = streamTable.upsertAll(streams);
+
+        final List<FeedEntity> feed = new ArrayList<>(streamItems.size());
+        for (int i = 0; i < streamItems.size(); i++) {
+            final StreamInfoItem item = streamItems.get(i);
+            final long uploadDate = item.getUploadDate() == null
+                    ? FeedEntity.UNKNOWN_UPLOAD_DATE
+                    : item.getUploadDate().date().getTimeInMillis();
+            feed.add(new FeedEntity(streamIds.get(i), subscriptionId, uploadDate,
+                    item.getTextualUploadDate()));
+        }
+        feedTable.insertAll(feed);
+        feedTable.setLastUpdated(new FeedLastUpdatedEntity(subscriptionId, updatedAt, 0));
+
+        // An empty page is more likely a glitch of the service than a channel without streams
+        if (!streamIds.isEmpty()) pruneStreams(subscriptionId, streamIds);
+    }
+
+    /**
+     * Only the streams on the latest page of each channel are kept, so the feed does not grow
+     * forever. Dropped streams are deleted as well, unless they are in the history, in a
+     * playlist or have a state.
+     * */
+    private void pruneStreams(final long subscriptionId, @NonNull final List<Long> keptStreamIds) {
+        final List<Long> droppedIds = feedTable.getDroppedStreamIds(subscriptionId, keptStreamIds);
+        if (droppedIds.isEmpty()) return;
+
+        feedTable.deleteDroppedStreams(subscriptionId, keptStreamIds);
+        for (int i = 0; i < droppedIds.size(); i += MAX_QUERY_ARGUMENTS) {
+            streamTable.deleteUnreferenced(droppedIds.subList(i,
+                    Math.min(i + MAX_QUERY_ARGUMENTS, droppedIds.size())));
+        }
+        if (DEBUG) Log.d(TAG, "pruneStreams() dropped [" + droppedIds.size() + "] streams"
+                + " of subscription [" + subscriptionId + "]");
+    }
+
+    private void storeDetails(@NonNull final SubscriptionEntity subscription,
+                              @NonNull final ChannelInfo info) {
+        subscription.setData(info.getName(), info.getAvatarUrl(), info.getDescription(),
+                info.getSubscriberCount());
+        subscriptionTable.update(subscription);
+    }
+
+    /**
+     * @return whether the error is not caused by the channel itself, so it may be refreshed
+     * again as soon as the network or the service allows it.
+     * */
+    public static boolean isTemporary(@NonNull final Throwable error) {
+        return ExtractorHelper.hasAssignableCauseThrowable(error, IOException.class,
+                ReCaptchaException.class);
+    }
+}
@@ -0,0 +1,351 @@
+package org.schabi.newpipe.local.feed;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.schabi.newpipe.BuildConfig;
+import org.schabi.newpipe.database.subscription.SubscriptionEntity;
+import org.schabi.newpipe.extractor.channel.ChannelInfo;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+import org.schabi.newpipe.util.ExtractorHelper;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Fetches the channels of many subscriptions concurrently, emitting each one as it arrives.
+ * <br><br>
+ * How many channels are fetched at once and how fast requests are sent to each service is
+ * decided by a {@link Controller}, which adapts to how the services respond. Fetches failing
+ * because of the network or a reCaptcha are retried a few times after a randomized, growing
+ * delay. Services are taken turns with, so a slow service does not hold back the others.
+ * */
+public final class FeedEngine {
+    private static final boolean DEBUG = !BuildConfig.BUILD_TYPE.equals("release");
+    private static final String TAG = "FeedEngine";
+
+    private static final int MAX_RETRIES = 3;
+    private static final long RETRY_BASE_DELAY_MILLIS = 1000;
+
+    private FeedEngine() {
+        //no instance
+    }
+
+    /**
+     * Fetches the channels of all subscriptions, completing once all were fetched or failed.
+     * Failures are emitted as results rather than errors, so one channel failing doesn't
+     * stop the others.
+     * */
+    @NonNull
+    public static Observable<ChannelResult> fetch(@NonNull final List<SubscriptionEntity> subscriptions,
+                                                  final boolean forceLoad) {
+        return fetch(subscriptions, forceLoad, new Controller());
+    }
+
+    /**
+     * Like {@link #fetch(List, boolean)}, continuing with the parallelism and rate limits the
+     * controller arrived at in previous fetches, e.g. when fetching many channels in batches.
+     * */
+    @NonNull
+    public static Observable<ChannelResult> fetch(@NonNull final List<SubscriptionEntity> subscriptions,
+                                                  final boolean forceLoad,
+                                                  @NonNull final Controller controller) {
+        return Observable.create(emitter ->
+                new Fetch(subscriptions, forceLoad, controller, emitter).start());
+    }
+
+    public static final class ChannelResult {
+        @NonNull public final SubscriptionEntity subscription;
+        @Nullable public final ChannelInfo info;
+        @Nullable public final Throwable error;
+
+        ChannelResult(@NonNull final SubscriptionEntity subscription,
+                      @Nullable final ChannelInfo info, @Nullable final Throwable error) {
+            this.subscription = subscription;
+            this.info = info;
+            this.error = error;
+        }
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Controller
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Decides how many channels are fetched at once and when each service may be sent the
+     * next request.
+     * <br><br>
+     * The parallelism grows by one after each round of successful fetches, unless the fetches
+     * got much slower than the fastest seen so far, in which case it shrinks by one instead.
+     * It is halved when a fetch fails because of the network, staying between
+     * {@link #MIN_PARALLELISM} and {@link #MAX_PARALLELISM}.
+     * <br><br>
+     * Each service has a token bucket allowing bursts of {@link #SERVICE_BURST} requests and
+     * one more request every {@link #SERVICE_REFILL_MILLIS}. A service answering with a
+     * reCaptcha is left alone for {@link #RATE_LIMITED_PAUSE_MILLIS}.
+     * */
+    public static final class Controller {
+        private static final int MIN_PARALLELISM = 2;
+        private static final int INITIAL_PARALLELISM = 4;
+        private static final int MAX_PARALLELISM = 16;
+
+        /** How much slower than the fastest seen fetches may get before backing off */
+        private static final float LATENCY_TOLERANCE = 2.5f;
+        private static final float LATENCY_SMOOTHING = 0.2f;
+
+        private static final int SERVICE_BURST = 4;
+        private static final long SERVICE_REFILL_MILLIS = 100;
+        private static final long RATE_LIMITED_PAUSE_MILLIS = 30000;
+
+        private int parallelism = INITIAL_PARALLELISM;
+        private int successesSinceChange = 0;
+        private float averageLatencyMillis = -1;
+        private float lowestAverageLatencyMillis = Float.MAX_VALUE;
+
+        @NonNull private final Map<Integer, TokenBucket> bucketsByService = new HashMap<>();
+
+        synchronized int getParallelism() {
+            return parallelism;
+        }
+
+        /**
+         * Takes a token of the service if it has one.
+         * @return 0 if the request may be sent now, otherwise how long to wait for a token
+         * */
+        synchronized long acquire(final int serviceId, final long now) {
+            TokenBucket bucket = bucketsByService.get(serviceId);
+            if (bucket == null) {
+                bucket = new TokenBucket(now);
+                bucketsByService.put(serviceId, bucket);
+            }
+            return bucket.acquire(now);
+        }
+
+        synchronized void onSuccess(final long latencyMillis) {
+            averageLatencyMillis = averageLatencyMillis < 0 ? latencyMillis
+                    : averageLatencyMillis + LATENCY_SMOOTHING * (latencyMillis - averageLatencyMillis);
+            lowestAverageLatencyMillis = Math.min(lowestAverageLatencyMillis, averageLatencyMillis);
+
+            if (++successesSinceChange < parallelism) return;
+            successesSinceChange = 0;
+            if (averageLatencyMillis > lowestAverageLatencyMillis * LATENCY_TOLERANCE) {
+                parallelism = Math.max(parallelism - 1, MIN_PARALLELISM);
+            } else {
+                parallelism = Math.min(parallelism + 1, MAX_PARALLELISM);
+            }
+        }
+
+        synchronized void onNetworkError() {
+            successesSinceChange = 0;
+            parallelism = Math.max(parallelism / 2, MIN_PARALLELISM);
+            if (DEBUG) Log.d(TAG, "onNetworkError() parallelism decreased to [" + parallelism + "]");
+        }
+
+        synchronized void onRateLimited(final int serviceId, final long now) {
+            onNetworkError();
+            final TokenBucket bucket = bucketsByService.get(serviceId);
+            if (bucket != null) bucket.pauseUntil(now + RATE_LIMITED_PAUSE_MILLIS);
+        }
+
+        private static final class TokenBucket {
+            private float tokens = SERVICE_BURST;
+            private long refilledAt;
+
+            TokenBucket(final long now) {
+                this.refilledAt = now;
+            }
+
+            long acquire(final long now) {
+                if (now > refilledAt) {
+                    tokens = Math.min(SERVICE_BURST,
+                            tokens + (now - refilledAt) / (float) SERVICE_REFILL_MILLIS);
+                    refilledAt = now;
+                }
+                if (now < refilledAt) return refilledAt - now;
+                if (tokens >= 1) {
+                    tokens--;
+                    return 0;
+                }
+                return (long) Math.ceil((1 - tokens) * SERVICE_REFILL_MILLIS);
+            }
+
+            /** Takes all tokens and refills them starting at the given time only */
+            void pauseUntil(final long time) {
+                tokens = 0;
+                refilledAt = Math.max(refilledAt, time);
+            }
+        }
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Fetch
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private static final class Fetch {
+        @NonNull private final ObservableEmitter<ChannelResult> emitter;
+        private final boolean forceLoad;
+        @NonNull private final Controller controller;
+
+        /** Subscriptions still to fetch, by service, in the order services take turns */
+        @NonNull private final Map<Integer, Queue<SubscriptionEntity>> pendingByService =
+                new LinkedHashMap<>();
+        /** Failed attempts of the subscriptions which are being retried */
+        @NonNull private final Map<SubscriptionEntity, Integer> retriesBySubscription =
+                new IdentityHashMap<>();
+
+        @NonNull private final CompositeDisposable fetches = new CompositeDisposable();
+        @NonNull private final Scheduler.Worker timer = Schedulers.computation().createWorker();
+        @NonNull private final Random random = new Random();
+        private boolean isDispatchScheduled = false;
+
+        private int inFlight = 0;
+        private int pendingCount = 0;
+        private int retryingCount = 0;
+
+        Fetch(@NonNull final List<SubscriptionEntity> subscriptions, final boolean forceLoad,
+              @NonNull final Controller controller,
+              @NonNull final ObservableEmitter<ChannelResult> emitter) {
+            this.emitter = emitter;
+            this.forceLoad = forceLoad;
+            this.controller = controller;
+
+            for (final SubscriptionEntity subscription : subscriptions) {
+                enqueue(subscription);
+            }
+        }
+
+        void start() {
+            emitter.setCancellable(() -> {
+                fetches.dispose();
+                timer.dispose();
+            });
+            dispatch();
+        }
+
+        private void enqueue(@NonNull final SubscriptionEntity subscription) {
+            Queue<SubscriptionEntity> pending = pendingByService.get(subscription.getServiceId());
+            if (pending == null) {
+                pending = new ArrayDeque<>();
+                pendingByService.put(subscription.getServiceId(), pending);
+            }
+            pending.add(subscription);
+            pendingCount++;
+        }
+
+        private synchronized void dispatch() {
+            isDispatchScheduled = false;
+            if (emitter.isDisposed()) return;
+            if (pendingCount == 0 && inFlight == 0 && retryingCount == 0) {
+                emitter.onComplete();
+                return;
+            }
+
+            final long now = SystemClock.elapsedRealtime();
+            long nextDispatchIn = Long.MAX_VALUE;
+            for (final Map.Entry<Integer, Queue<SubscriptionEntity>> service
+                    : pendingByService.entrySet()) {
+                if (inFlight >= controller.getParallelism()) break;
+                if (service.getValue().isEmpty()) continue;
+
+                final long wait = controller.acquire(service.getKey(), now);
+                if (wait > 0) {
+                    nextDispatchIn = Math.min(nextDispatchIn, wait);
+                    continue;
+                }
+
+                startFetch(service.getValue().poll());
+                // The service may have more tokens, give it another turn right away
+                nextDispatchIn = 0;
+            }
+
+            if (pendingCount > 0 && inFlight < controller.getParallelism() &&
+                    !isDispatchScheduled && nextDispatchIn != Long.MAX_VALUE) {
+                isDispatchScheduled = true;
+                timer.schedule(this::dispatch, nextDispatchIn, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void startFetch(@NonNull final SubscriptionEntity subscription) {
+            pendingCount--;
+            inFlight++;
+            final long startedAt = SystemClock.elapsedRealtime();
+            fetches.add(ExtractorHelper.getChannelInfo(subscription.getServiceId(),
+                    subscription.getUrl(), forceLoad)
+                    .subscribeOn(Schedulers.io())
+                    .subscribe(info -> onFetched(subscription, info, null, startedAt),
+                            error -> onFetched(subscription, null, error, startedAt)));
+        }
+
+        private synchronized void onFetched(@NonNull final SubscriptionEntity subscription,
+                                            @Nullable final ChannelInfo info,
+                                            @Nullable final Throwable error,
+                                            final long startedAt) {
+            inFlight--;
+            final long now = SystemClock.elapsedRealtime();
+            boolean isRetryable = false;
+            if (error == null) {
+                controller.onSuccess(now - startedAt);
+            } else if (ExtractorHelper.hasAssignableCauseThrowable(error,
+                    ReCaptchaException.class)) {
+                controller.onRateLimited(subscription.getServiceId(), now);
+                isRetryable = true;
+            } else if (ExtractorHelper.hasAssignableCauseThrowable(error, IOException.class)) {
+                controller.onNetworkError();
+                isRetryable = true;
+            }
+
+            if (isRetryable && scheduleRetry(subscription)) {
+                dispatch();
+                return;
+            }
+
+            retriesBySubscription.remove(subscription);
+            if (!emitter.isDisposed()) emitter.onNext(new ChannelResult(subscription, info, error));
+            dispatch();
+        }
+
+        /**
+         * Fetches the subscription again after a delay growing with each attempt, randomized
+         * so the retries of channels failing at once are spread out.
+         * @return false if the subscription was retried too often already
+         * */
+        private boolean scheduleRetry(@NonNull final SubscriptionEntity subscription) {
+            final Integer retries = retriesBySubscription.get(subscription);
+            final int attempt = retries == null ? 0 : retries;
+            if (attempt >= MAX_RETRIES) return false;
+            retriesBySubscription.put(subscription, attempt + 1);
+
+            final long delay = (long) (RETRY_BASE_DELAY_MILLIS * (1 << attempt)
+                    * (0.5 + random.nextDouble()));
+            if (DEBUG) Log.d(TAG, "scheduleRetry() retrying [" + subscription.getUrl()
+                    + "] in [" + delay + "] ms");
+
+            retryingCount++;
+            timer.schedule(() -> {
+                synchronized (this) {
+                    retryingCount--;
+                    enqueue(subscription);
+                }
+                dispatch();
+            }, delay, TimeUnit.MILLISECONDS);
+            return true;
+        }
+    }
+}
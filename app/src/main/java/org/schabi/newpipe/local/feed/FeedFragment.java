@@ -1,7 +1,6 @@
 package org.schabi.newpipe.local.feed;
 
 import android.os.Bundle;
-import android.os.Handler;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.ActionBar;
@@ -12,48 +11,47 @@ import android.view.MenuInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
-import org.reactivestreams.Subscriber;
-import org.reactivestreams.Subscription;
 import org.schabi.newpipe.R;
+import org.schabi.newpipe.database.feed.FeedEntry;
 import org.schabi.newpipe.database.subscription.SubscriptionEntity;
 import org.schabi.newpipe.extractor.InfoItem;
 import org.schabi.newpipe.extractor.NewPipe;
-import org.schabi.newpipe.extractor.channel.ChannelInfo;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
 import org.schabi.newpipe.fragments.list.BaseListFragment;
 import org.schabi.newpipe.local.subscription.SubscriptionService;
 import org.schabi.newpipe.report.UserAction;
 
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
-import io.reactivex.Flowable;
-import io.reactivex.MaybeObserver;
 import io.reactivex.android.schedulers.AndroidSchedulers;
-import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
 
 public class FeedFragment extends BaseListFragment<List<SubscriptionEntity>, Void> {
 
-    private static final int OFF_SCREEN_ITEMS_COUNT = 3;
-    private static final int MIN_ITEMS_INITIAL_LOAD = 8;
-    private int FEED_LOAD_COUNT = MIN_ITEMS_INITIAL_LOAD;
-
-    private int subscriptionPoolSize;
+    private static final int FEED_PAGE_SIZE = 50;
 
     private SubscriptionService subscriptionService;
+    private FeedDatabaseManager feedDatabaseManager;
 
     private AtomicBoolean allItemsLoaded = new AtomicBoolean(false);
-    private HashSet<String> itemsLoaded = new HashSet<>();
-    private final AtomicInteger requestLoadedAtomic = new AtomicInteger();
+    private final FeedIndex feedIndex = new FeedIndex();
+
+    /** Last stream loaded from the database, the next page continues after it */
+    @Nullable private FeedEntry lastLoadedEntry;
+    private boolean hasMoreFeedItems = true;
+    private boolean isLoadingPage = false;
+    /** Whether the outdated channels are being refreshed, resumed if interrupted */
+    private boolean isRefreshing = false;
+    private boolean hasShownRefreshError = false;
 
-    private CompositeDisposable compositeDisposable = new CompositeDisposable();
     private Disposable subscriptionObserver;
-    private Subscription feedSubscriber;
+    private Disposable pageObserver;
+    private Disposable feedObserver;
 
     /*//////////////////////////////////////////////////////////////////////////
     // Fragment LifeCycle
@@ -63,8 +61,7 @@ public class FeedFragment extends BaseListFragment<List<SubscriptionEntity>, Voi
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         subscriptionService = SubscriptionService.getInstance(activity);
-
-        FEED_LOAD_COUNT = howManyItemsToLoad();
+        feedDatabaseManager = new FeedDatabaseManager(activity);
     }
 
     @Override
@@ -85,7 +82,7 @@ public class FeedFragment extends BaseListFragment<List<SubscriptionEntity>, Voi
     @Override
     public void onResume() {
         super.onResume();
-        if (wasLoading.get()) doInitialLoadLogic();
+        if (wasLoading.get() || isRefreshing) doInitialLoadLogic();
     }
 
     @Override
@@ -94,9 +91,10 @@ public class FeedFragment extends BaseListFragment<List<SubscriptionEntity>, Voi
 
         disposeEverything();
         subscriptionService = null;
-        compositeDisposable = null;
+        feedDatabaseManager = null;
         subscriptionObserver = null;
-        feedSubscriber = null;
+        pageObserver = null;
+        feedObserver = null;
     }
 
     @Override
@@ -141,15 +139,17 @@ public class FeedFragment extends BaseListFragment<List<SubscriptionEntity>, Voi
     public void writeTo(Queue<Object> objectsToSave) {
         super.writeTo(objectsToSave);
         objectsToSave.add(allItemsLoaded);
-        objectsToSave.add(itemsLoaded);
+        objectsToSave.add(hasMoreFeedItems);
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public void readFrom(@NonNull Queue<Object> savedObjects) throws Exception {
         super.readFrom(savedObjects);
         allItemsLoaded = (AtomicBoolean) savedObjects.poll();
-        itemsLoaded = (HashSet<String>) savedObjects.poll();
+        hasMoreFeedItems = (Boolean) savedObjects.poll();
+        feedIndex.reset(infoListAdapter.getItemsList());
+        // Paging starts over, streams already shown are skipped by the index
+        lastLoadedEntry = null;
     }
 
     /*//////////////////////////////////////////////////////////////////////////
@@ -188,189 +188,110 @@ public class FeedFragment extends BaseListFragment<List<SubscriptionEntity>, Voi
 
         if (result.isEmpty()) {
             infoListAdapter.clearStreamItemList();
+            feedIndex.clear();
             showEmptyState();
             return;
         }
 
-        subscriptionPoolSize = result.size();
-        Flowable.fromIterable(result)
+        isLoading.set(true);
+        showListFooter(true);
+        if (infoListAdapter.getItemsList().isEmpty()) {
+            // Show the stored feed right away, even when offline, then refresh it
+            loadFeedPage(entries -> {
+                handleFeedPage(entries);
+                // Further pages can be loaded while the channels are refreshed
+                if (!entries.isEmpty()) isLoading.set(false);
+                refreshFeed();
+            });
+        } else {
+            refreshFeed();
+        }
+    }
+
+    private void refreshFeed() {
+        isRefreshing = true;
+        if (feedObserver != null) feedObserver.dispose();
+        feedObserver = feedDatabaseManager.refreshOutdatedChannels()
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(getSubscriptionObserver());
+                .subscribe(this::handleChannelResult, this::onError, this::onFeedLoaded);
     }
 
     /**
-     * Responsible for reacting to user pulling request and starting a request for new feed stream.
-     * <p>
-     * On initialization, it automatically requests the amount of feed needed to display
-     * a minimum amount required (FEED_LOAD_SIZE).
-     * <p>
-     * Upon receiving a user pull, it creates a Single Observer to fetch the ChannelInfo
-     * containing the feed streams.
-     **/
-    private Subscriber<SubscriptionEntity> getSubscriptionObserver() {
-        return new Subscriber<SubscriptionEntity>() {
-            @Override
-            public void onSubscribe(Subscription s) {
-                if (feedSubscriber != null) feedSubscriber.cancel();
-                feedSubscriber = s;
-
-                int requestSize = FEED_LOAD_COUNT - infoListAdapter.getItemsList().size();
-                if (wasLoading.getAndSet(false)) requestSize = FEED_LOAD_COUNT;
-
-                boolean hasToLoad = requestSize > 0;
-                if (hasToLoad) {
-                    requestLoadedAtomic.set(infoListAdapter.getItemsList().size());
-                    requestFeed(requestSize);
-                }
-                isLoading.set(hasToLoad);
-            }
-
-            @Override
-            public void onNext(SubscriptionEntity subscriptionEntity) {
-                if (!itemsLoaded.contains(subscriptionEntity.getServiceId() + subscriptionEntity.getUrl())) {
-                    subscriptionService.getChannelInfo(subscriptionEntity)
-                            .observeOn(AndroidSchedulers.mainThread())
-                            .onErrorComplete(
-                                    (@io.reactivex.annotations.NonNull Throwable throwable) ->
-                                            FeedFragment.super.onError(throwable))
-                            .subscribe(
-                                    getChannelInfoObserver(subscriptionEntity.getServiceId(),
-                                            subscriptionEntity.getUrl()));
-                } else {
-                    requestFeed(1);
-                }
-            }
+     * Merges the streams of a channel into the feed as soon as it is refreshed, so the newest
+     * streams are shown first regardless of which channel they come from.
+     * */
+    private void handleChannelResult(@NonNull final FeedEngine.ChannelResult result) {
+        final SubscriptionEntity subscription = result.subscription;
+
+        if (result.error != null) {
+            // The stored streams are still shown, one error is enough to tell they are outdated
+            if (hasShownRefreshError) return;
+            hasShownRefreshError = true;
+            showSnackBarError(result.error,
+                    UserAction.SUBSCRIPTION,
+                    NewPipe.getNameOfService(subscription.getServiceId()),
+                    subscription.getUrl(), 0);
+            return;
+        }
+        if (infoListAdapter == null || result.info == null) return;
 
-            @Override
-            public void onError(Throwable exception) {
-                FeedFragment.this.onError(exception);
-            }
+        for (final InfoItem item : result.info.getRelatedItems()) {
+            if (item instanceof StreamInfoItem) addToFeed((StreamInfoItem) item);
+        }
+    }
 
-            @Override
-            public void onComplete() {
-                if (DEBUG) Log.d(TAG, "getSubscriptionObserver > onComplete() called");
-            }
-        };
+    private void onFeedLoaded() {
+        if (DEBUG) Log.d(TAG, "onFeedLoaded() all items loaded");
+        allItemsLoaded.set(true);
+        isRefreshing = false;
+        showListFooter(false);
+        isLoading.set(false);
+        hideLoading();
+        if (infoListAdapter != null && infoListAdapter.getItemsList().isEmpty()) {
+            showEmptyState();
+        }
     }
 
-    /**
-     * On each request, a subscription item from the updated table is transformed
-     * into a ChannelInfo, containing the latest streams from the channel.
-     * <p>
-     * Currently, the feed uses the first into from the list of streams.
-     * <p>
-     * If chosen feed already displayed, then we request another feed from another
-     * subscription, until the subscription table runs out of new items.
-     * <p>
-     * This Observer is self-contained and will close itself when complete. However, this
-     * does not obey the fragment lifecycle and may continue running in the background
-     * until it is complete. This is done due to RxJava2 no longer propagate errors once
-     * an observer is unsubscribed while the thread process is still running.
-     * <p>
-     * To solve the above issue, we can either set a global RxJava Error Handler, or
-     * manage exceptions case by case. This should be done if the current implementation is
-     * too costly when dealing with larger subscription sets.
-     *
-     * @param url + serviceId to put in {@link #allItemsLoaded} to signal that this specific entity has been loaded.
-     */
-    private MaybeObserver<ChannelInfo> getChannelInfoObserver(final int serviceId, final String url) {
-        return new MaybeObserver<ChannelInfo>() {
-            private Disposable observer;
-
-            @Override
-            public void onSubscribe(Disposable d) {
-                observer = d;
-                compositeDisposable.add(d);
-                isLoading.set(true);
-            }
+    /*//////////////////////////////////////////////////////////////////////////
+    // Stored Feed
+    //////////////////////////////////////////////////////////////////////////*/
 
-            // Called only when response is non-empty
-            @Override
-            public void onSuccess(final ChannelInfo channelInfo) {
-                if (infoListAdapter == null || channelInfo.getRelatedItems().isEmpty()) {
-                    onDone();
-                    return;
-                }
-
-                final InfoItem item = channelInfo.getRelatedItems().get(0);
-                // Keep requesting new items if the current one already exists
-                boolean itemExists = doesItemExist(infoListAdapter.getItemsList(), item);
-                if (!itemExists) {
-                    infoListAdapter.addInfoItem(item);
-                    //updateSubscription(channelInfo);
-                } else {
-                    requestFeed(1);
-                }
-                onDone();
-            }
+    private void loadFeedPage(@NonNull final Consumer<List<FeedEntry>> onLoaded) {
+        if (pageObserver != null) pageObserver.dispose();
+        isLoadingPage = true;
+        pageObserver = feedDatabaseManager.getFeedPage(lastLoadedEntry, FEED_PAGE_SIZE)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(entries -> {
+                    isLoadingPage = false;
+                    onLoaded.accept(entries);
+                }, this::onError);
+    }
 
-            @Override
-            public void onError(Throwable exception) {
-                showSnackBarError(exception,
-                        UserAction.SUBSCRIPTION,
-                        NewPipe.getNameOfService(serviceId),
-                        url, 0);
-                requestFeed(1);
-                onDone();
-            }
+    private void handleFeedPage(@NonNull final List<FeedEntry> entries) {
+        hasMoreFeedItems = entries.size() == FEED_PAGE_SIZE;
+        if (entries.isEmpty() || infoListAdapter == null) return;
 
-            // Called only when response is empty
-            @Override
-            public void onComplete() {
-                onDone();
-            }
+        lastLoadedEntry = entries.get(entries.size() - 1);
+        for (final FeedEntry entry : entries) {
+            addToFeed(entry.toStreamInfoItem());
+        }
+        hideLoading();
+    }
 
-            private void onDone() {
-                if (observer.isDisposed()) {
-                    return;
-                }
-
-                itemsLoaded.add(serviceId + url);
-                compositeDisposable.remove(observer);
-
-                int loaded = requestLoadedAtomic.incrementAndGet();
-                if (loaded >= Math.min(FEED_LOAD_COUNT, subscriptionPoolSize)) {
-                    requestLoadedAtomic.set(0);
-                    isLoading.set(false);
-                }
-
-                if (itemsLoaded.size() == subscriptionPoolSize) {
-                    if (DEBUG) Log.d(TAG, "getChannelInfoObserver > All Items Loaded");
-                    allItemsLoaded.set(true);
-                    showListFooter(false);
-                    isLoading.set(false);
-                    hideLoading();
-                    if (infoListAdapter.getItemsList().size() == 0) {
-                        showEmptyState();
-                    }
-                }
-            }
-        };
+    private void addToFeed(@NonNull final StreamInfoItem item) {
+        final int position = feedIndex.add(item);
+        if (position != -1) infoListAdapter.addInfoItem(position, item);
     }
 
     @Override
     protected void loadMoreItems() {
-        isLoading.set(true);
-        delayHandler.removeCallbacksAndMessages(null);
-        // Add a little of a delay when requesting more items because the cache is so fast,
-        // that the view seems stuck to the user when he scroll to the bottom
-        delayHandler.postDelayed(() -> requestFeed(FEED_LOAD_COUNT), 300);
+        if (isLoadingPage) return;
+        loadFeedPage(this::handleFeedPage);
     }
 
     @Override
     protected boolean hasMoreItems() {
-        return !allItemsLoaded.get();
-    }
-
-    private final Handler delayHandler = new Handler();
-
-    private void requestFeed(final int count) {
-        if (DEBUG) Log.d(TAG, "requestFeed() called with: count = [" + count + "], feedSubscriber = [" + feedSubscriber + "]");
-        if (feedSubscriber == null) return;
-
-        isLoading.set(true);
-        delayHandler.removeCallbacksAndMessages(null);
-        feedSubscriber.request(count);
+        return hasMoreFeedItems;
     }
 
     /*//////////////////////////////////////////////////////////////////////////
@@ -379,42 +300,23 @@ public class FeedFragment extends BaseListFragment<List<SubscriptionEntity>, Voi
 
     private void resetFragment() {
         if (DEBUG) Log.d(TAG, "resetFragment() called");
-        if (subscriptionObserver != null) subscriptionObserver.dispose();
-        if (compositeDisposable != null) compositeDisposable.clear();
+        disposeEverything();
         if (infoListAdapter != null) infoListAdapter.clearStreamItemList();
 
-        delayHandler.removeCallbacksAndMessages(null);
-        requestLoadedAtomic.set(0);
+        feedIndex.clear();
         allItemsLoaded.set(false);
         showListFooter(false);
-        itemsLoaded.clear();
+        lastLoadedEntry = null;
+        hasMoreFeedItems = true;
+        isRefreshing = false;
+        hasShownRefreshError = false;
     }
 
     private void disposeEverything() {
         if (subscriptionObserver != null) subscriptionObserver.dispose();
-        if (compositeDisposable != null) compositeDisposable.clear();
-        if (feedSubscriber != null) feedSubscriber.cancel();
-        delayHandler.removeCallbacksAndMessages(null);
-    }
-
-    private boolean doesItemExist(final List<InfoItem> items, final InfoItem item) {
-        for (final InfoItem existingItem : items) {
-            if (existingItem.getInfoType() == item.getInfoType() &&
-                    existingItem.getServiceId() == item.getServiceId() &&
-                    existingItem.getName().equals(item.getName()) &&
-                    existingItem.getUrl().equals(item.getUrl())) return true;
-        }
-        return false;
-    }
-
-    private int howManyItemsToLoad() {
-        int heightPixels = getResources().getDisplayMetrics().heightPixels;
-        int itemHeightPixels = activity.getResources().getDimensionPixelSize(R.dimen.video_item_search_height);
-
-        int items = itemHeightPixels > 0
-                ? heightPixels / itemHeightPixels + OFF_SCREEN_ITEMS_COUNT
-                : MIN_ITEMS_INITIAL_LOAD;
-        return Math.max(MIN_ITEMS_INITIAL_LOAD, items);
+        if (pageObserver != null) pageObserver.dispose();
+        if (feedObserver != null) feedObserver.dispose();
+        isLoadingPage = false;
     }
 
     /*//////////////////////////////////////////////////////////////////////////
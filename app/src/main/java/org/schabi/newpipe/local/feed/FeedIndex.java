@@ -0,0 +1,65 @@
+package org.schabi.newpipe.local.feed;
+
+import androidx.annotation.NonNull;
+
+import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streams of the feed, newest first and without duplicates, as the channels they come from
+ * are loaded in any order. Streams without an upload date are kept after all others.
+ * */
+/* package-private */ final class FeedIndex {
+    private static final Comparator<StreamInfoItem> NEWEST_FIRST = (left, right) ->
+            Long.compare(uploadTimeOf(right), uploadTimeOf(left));
+
+    @NonNull private final List<StreamInfoItem> streams = new ArrayList<>();
+    @NonNull private final Set<String> keys = new HashSet<>();
+
+    /**
+     * @return the position the stream was inserted at, or -1 if it is in the feed already.
+     * */
+    int add(@NonNull final StreamInfoItem stream) {
+        if (!keys.add(keyOf(stream))) return -1;
+
+        int position = Collections.binarySearch(streams, stream, NEWEST_FIRST);
+        if (position < 0) position = -position - 1;
+        streams.add(position, stream);
+        return position;
+    }
+
+    /**
+     * Rebuilds the index from streams already shown in this order, e.g. after being restored.
+     * */
+    void reset(@NonNull final List<InfoItem> items) {
+        clear();
+        for (final InfoItem item : items) {
+            if (item instanceof StreamInfoItem && keys.add(keyOf(item))) {
+                streams.add((StreamInfoItem) item);
+            }
+        }
+    }
+
+    void clear() {
+        streams.clear();
+        keys.clear();
+    }
+
+    private static long uploadTimeOf(@NonNull final StreamInfoItem stream) {
+        return stream.getUploadDate() == null
+                ? Long.MIN_VALUE
+                : stream.getUploadDate().date().getTimeInMillis();
+    }
+
+    @NonNull
+    private static String keyOf(@NonNull final InfoItem item) {
+        return item.getServiceId() + ":" + item.getUrl();
+    }
+}
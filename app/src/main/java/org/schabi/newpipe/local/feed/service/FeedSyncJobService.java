@@ -0,0 +1,50 @@
+package org.schabi.newpipe.local.feed.service;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.RequiresApi;
+
+import io.reactivex.Completable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Runs the {@link FeedSyncWorker} when scheduled by the system,
+ * see {@link FeedSyncScheduler}.
+ * */
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+public class FeedSyncJobService extends JobService {
+    private static final String TAG = "FeedSyncJobService";
+
+    private FeedSyncWorker worker;
+    private Disposable syncer;
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        worker = new FeedSyncWorker(this);
+        syncer = Completable.fromAction(worker::run)
+                .subscribeOn(Schedulers.io())
+                .subscribe(() -> jobFinished(params, false), error -> {
+                    Log.e(TAG, "Unable to sync the feed", error);
+                    jobFinished(params, false);
+                });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(final JobParameters params) {
+        // Interrupts the batch being fetched, the next run fetches it again
+        if (worker != null) worker.cancel();
+        if (syncer != null) syncer.dispose();
+        return false;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (syncer != null) syncer.dispose();
+    }
+}
@@ -0,0 +1,130 @@
+package org.schabi.newpipe.local.feed.service;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import org.schabi.newpipe.BuildConfig;
+import org.schabi.newpipe.R;
+
+/**
+ * Schedules the periodic background sync of the feed, so channels are mostly refreshed by the
+ * time the feed is opened. The sync is off unless enabled in the settings.
+ * <br><br>
+ * Uses {@link JobScheduler} where available, which waits for an unmetered network and, since
+ * Android O, for the battery not to be low. Older devices use an inexact repeating alarm, which
+ * the system delivers together with other alarms, and {@link FeedSyncWorker} checks the
+ * conditions itself.
+ * */
+public final class FeedSyncScheduler {
+    private static final boolean DEBUG = !BuildConfig.BUILD_TYPE.equals("release");
+    private static final String TAG = "FeedSyncScheduler";
+
+    private static final int JOB_ID = 4242;
+    private static final long SYNC_INTERVAL_MILLIS = 3 * AlarmManager.INTERVAL_HOUR;
+
+    private FeedSyncScheduler() {
+        //no instance
+    }
+
+    /**
+     * Schedules or cancels the sync, depending on whether it is enabled in the settings.
+     * */
+    public static void update(@NonNull final Context context) {
+        update(context, PreferenceManager.getDefaultSharedPreferences(context).getBoolean(
+                context.getString(R.string.feed_background_sync_key), false));
+    }
+
+    /**
+     * Schedules the sync unless it is scheduled already, keeping its current period, or
+     * cancels it, including a sync currently running.
+     * */
+    public static void update(@NonNull final Context context, final boolean isEnabled) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            if (isEnabled) {
+                scheduleJob(context);
+            } else {
+                cancelJob(context);
+            }
+        } else {
+            if (isEnabled) {
+                scheduleAlarm(context);
+            } else {
+                cancelAlarm(context);
+            }
+        }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    private static void scheduleJob(@NonNull final Context context) {
+        final JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) return;
+
+        for (final JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) return;
+        }
+
+        final JobInfo.Builder builder = new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, FeedSyncJobService.class))
+                .setPeriodic(SYNC_INTERVAL_MILLIS)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            builder.setRequiresBatteryNotLow(true);
+        }
+
+        if (DEBUG) Log.d(TAG, "scheduleJob() scheduling feed sync");
+        scheduler.schedule(builder.build());
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    private static void cancelJob(@NonNull final Context context) {
+        final JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) return;
+
+        if (DEBUG) Log.d(TAG, "cancelJob() cancelling feed sync");
+        scheduler.cancel(JOB_ID);
+    }
+
+    private static void scheduleAlarm(@NonNull final Context context) {
+        final Intent intent = new Intent(context, FeedSyncService.class);
+        if (PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_NO_CREATE) != null) {
+            return;
+        }
+
+        final AlarmManager alarmManager =
+                (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) return;
+
+        if (DEBUG) Log.d(TAG, "scheduleAlarm() scheduling feed sync");
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS,
+                PendingIntent.getService(context, 0, intent, 0));
+    }
+
+    private static void cancelAlarm(@NonNull final Context context) {
+        final PendingIntent pendingIntent = PendingIntent.getService(context, 0,
+                new Intent(context, FeedSyncService.class), PendingIntent.FLAG_NO_CREATE);
+        if (pendingIntent == null) return;
+
+        final AlarmManager alarmManager =
+                (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager != null) alarmManager.cancel(pendingIntent);
+
+        if (DEBUG) Log.d(TAG, "cancelAlarm() cancelling feed sync");
+        // Cancelled as well, so the next schedule does not take it as still scheduled
+        pendingIntent.cancel();
+    }
+}
@@ -0,0 +1,21 @@
+package org.schabi.newpipe.local.feed.service;
+
+import android.app.IntentService;
+import android.content.Intent;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Runs the {@link FeedSyncWorker} when its alarm goes off, on devices without
+ * {@link android.app.job.JobScheduler}, see {@link FeedSyncScheduler}.
+ * */
+public class FeedSyncService extends IntentService {
+    public FeedSyncService() {
+        super(FeedSyncService.class.getSimpleName());
+    }
+
+    @Override
+    protected void onHandleIntent(@Nullable final Intent intent) {
+        new FeedSyncWorker(this).run();
+    }
+}
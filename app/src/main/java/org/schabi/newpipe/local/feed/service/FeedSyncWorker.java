@@ -0,0 +1,111 @@
+package org.schabi.newpipe.local.feed.service;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.schabi.newpipe.BuildConfig;
+import org.schabi.newpipe.database.subscription.SubscriptionEntity;
+import org.schabi.newpipe.local.feed.FeedDatabaseManager;
+import org.schabi.newpipe.local.feed.FeedEngine;
+
+import java.util.List;
+
+/**
+ * Refreshes the outdated channels of the feed in the background, {@link #BATCH_SIZE} channels
+ * at a time, storing each batch in a single transaction.
+ * <br><br>
+ * Only runs while connected to an unmetered network and while the battery is not low, which
+ * is checked again before every batch, and stops once a whole batch failed because of the
+ * network. The parallelism and rate limits arrived at by the {@link FeedEngine} are kept
+ * between batches.
+ * */
+public final class FeedSyncWorker {
+    private static final boolean DEBUG = !BuildConfig.BUILD_TYPE.equals("release");
+    private static final String TAG = "FeedSyncWorker";
+
+    private static final int BATCH_SIZE = 50;
+    private static final int LOW_BATTERY_PERCENT = 15;
+
+    @NonNull private final Context context;
+    @NonNull private final FeedDatabaseManager feedDatabaseManager;
+    private volatile boolean isCancelled = false;
+
+    public FeedSyncWorker(@NonNull final Context context) {
+        this.context = context;
+        this.feedDatabaseManager = new FeedDatabaseManager(context);
+    }
+
+    /**
+     * Refreshes the channels, blocking until done, cancelled or the conditions are no longer
+     * met. Must not be called on the main thread.
+     * */
+    public void run() {
+        final List<SubscriptionEntity> outdated = feedDatabaseManager.getOutdatedSubscriptions();
+        if (DEBUG) Log.d(TAG, "run() found [" + outdated.size() + "] outdated channels");
+
+        final FeedEngine.Controller controller = new FeedEngine.Controller();
+        for (int from = 0; from < outdated.size(); from += BATCH_SIZE) {
+            if (isCancelled || !canSync(context)) {
+                if (DEBUG) Log.d(TAG, "run() stopped after [" + from + "] channels");
+                return;
+            }
+
+            final List<SubscriptionEntity> batch =
+                    outdated.subList(from, Math.min(from + BATCH_SIZE, outdated.size()));
+            final List<FeedEngine.ChannelResult> results =
+                    FeedEngine.fetch(batch, false, controller).toList().blockingGet();
+            feedDatabaseManager.store(results);
+
+            if (isNetworkLost(results)) {
+                if (DEBUG) Log.d(TAG, "run() stopped, network lost");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Makes {@link #run()} return before its next batch.
+     * */
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    /**
+     * @return whether the device is on an unmetered network and either charging or its battery
+     * is not low.
+     * */
+    public static boolean canSync(@NonNull final Context context) {
+        final ConnectivityManager manager = (ConnectivityManager) context
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (manager == null) return false;
+
+        final NetworkInfo info = manager.getActiveNetworkInfo();
+        if (info == null || !info.isConnected() || manager.isActiveNetworkMetered()) return false;
+
+        final Intent battery = context.registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) return true;
+
+        final int plugged = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0);
+        final int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        final int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        return plugged != 0 || level < 0 || scale <= 0
+                || level * 100 / scale > LOW_BATTERY_PERCENT;
+    }
+
+    private static boolean isNetworkLost(@NonNull final List<FeedEngine.ChannelResult> results) {
+        for (final FeedEngine.ChannelResult result : results) {
+            if (result.error == null || !FeedDatabaseManager.isTemporary(result.error)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
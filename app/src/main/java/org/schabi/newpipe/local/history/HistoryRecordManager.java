@@ -22,6 +22,7 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.schabi.newpipe.NewPipeDatabase;
 import org.schabi.newpipe.R;
@@ -34,9 +35,11 @@ import org.schabi.newpipe.database.history.model.StreamHistoryEntity;
 import org.schabi.newpipe.database.history.model.StreamHistoryEntry;
 import org.schabi.newpipe.database.playlist.PlaylistStreamEntry;
 import org.schabi.newpipe.database.playlist.model.PlaylistStreamEntity;
+import org.schabi.newpipe.database.stream.StreamStateEntry;
 import org.schabi.newpipe.database.stream.StreamStatisticsEntry;
 import org.schabi.newpipe.database.stream.dao.StreamDAO;
 import org.schabi.newpipe.database.stream.dao.StreamStateDAO;
+import org.schabi.newpipe.database.stream.dao.StreamStatisticsDAO;
 import org.schabi.newpipe.database.stream.model.StreamEntity;
 import org.schabi.newpipe.database.stream.model.StreamStateEntity;
 import org.schabi.newpipe.extractor.InfoItem;
@@ -45,8 +48,14 @@ import org.schabi.newpipe.player.playqueue.PlayQueueItem;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.reactivex.Completable;
 import io.reactivex.Flowable;
@@ -55,12 +64,21 @@ import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
 
 public class HistoryRecordManager {
+    /** SQLite allows at most 999 variables per query, leaving some room for the others */
+    private static final int MAX_QUERY_ARGUMENTS = 900;
 
     private final AppDatabase database;
     private final StreamDAO streamTable;
     private final StreamHistoryDAO streamHistoryTable;
     private final SearchHistoryDAO searchHistoryTable;
+    private final SearchHistoryIndex searchHistoryIndex;
     private final StreamStateDAO streamStateTable;
+    private final StreamStatisticsDAO streamStatisticsTable;
+    private final StreamStateWriter streamStateWriter;
+    private final StreamStateCache streamStateCache;
+    /** Prefetches of the states of list items, which the items bound meanwhile wait for */
+    private final Set<Completable> pendingPrefetches =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
     private final SharedPreferences sharedPreferences;
     private final String searchHistoryKey;
     private final String streamHistoryKey;
@@ -70,7 +88,11 @@ public class HistoryRecordManager {
         streamTable = database.streamDAO();
         streamHistoryTable = database.streamHistoryDAO();
         searchHistoryTable = database.searchHistoryDAO();
+        searchHistoryIndex = SearchHistoryIndex.getInstance();
         streamStateTable = database.streamStateDAO();
+        streamStatisticsTable = database.streamStatisticsDAO();
+        streamStateWriter = StreamStateWriter.getInstance(context);
+        streamStateCache = StreamStateCache.getInstance();
         sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
         searchHistoryKey = context.getString(R.string.enable_search_history_key);
         streamHistoryKey = context.getString(R.string.enable_watch_history_key);
@@ -87,12 +109,11 @@ public class HistoryRecordManager {
         return Maybe.fromCallable(() -> database.runInTransaction(() -> {
             final long streamId = streamTable.upsert(new StreamEntity(info));
             StreamHistoryEntity latestEntry = streamHistoryTable.getLatestEntry(streamId);
+            streamStatisticsTable.onViewed(streamId, currentTime);
 
             if (latestEntry != null) {
-                streamHistoryTable.delete(latestEntry);
-                latestEntry.setAccessDate(currentTime);
-                latestEntry.setRepeatCount(latestEntry.getRepeatCount() + 1);
-                return streamHistoryTable.insert(latestEntry);
+                return (long) streamHistoryTable.onViewedAgain(streamId,
+                        latestEntry.getAccessDate(), currentTime);
             } else {
                 return streamHistoryTable.insert(new StreamHistoryEntity(streamId, currentTime));
             }
@@ -100,26 +121,62 @@ public class HistoryRecordManager {
     }
 
     public Single<Integer> deleteStreamHistory(final long streamId) {
-        return Single.fromCallable(() -> streamHistoryTable.deleteStreamHistory(streamId))
-                .subscribeOn(Schedulers.io());
+        return Single.fromCallable(() -> database.runInTransaction(() -> {
+            streamStatisticsTable.deleteStatistics(streamId);
+            return streamHistoryTable.deleteStreamHistory(streamId);
+        })).subscribeOn(Schedulers.io());
     }
 
     public Single<Integer> deleteWholeStreamHistory() {
-        return Single.fromCallable(streamHistoryTable::deleteAll)
-                .subscribeOn(Schedulers.io());
+        return Single.fromCallable(() -> database.runInTransaction(() -> {
+            streamStatisticsTable.deleteAll();
+            return streamHistoryTable.deleteAll();
+        })).subscribeOn(Schedulers.io());
     }
 
     public Single<Integer> deleteCompelteStreamStateHistory() {
-        return Single.fromCallable(streamStateTable::deleteAll)
-                .subscribeOn(Schedulers.io());
+        return Single.fromCallable(() -> {
+            streamStateWriter.discard();
+            final int deleted = streamStateTable.deleteAll();
+            streamStateCache.clear();
+            return deleted;
+        }).subscribeOn(Schedulers.io());
     }
 
     public Flowable<List<StreamHistoryEntry>> getStreamHistory() {
         return streamHistoryTable.getHistory().subscribeOn(Schedulers.io());
     }
 
-    public Flowable<List<StreamStatisticsEntry>> getStreamStatistics() {
-        return streamHistoryTable.getStatistics().subscribeOn(Schedulers.io());
+    /**
+     * Loads the streams on history played most recently, continuing after the given entry,
+     * or from the start if there is none.
+     * */
+    public Single<List<StreamStatisticsEntry>> getLastPlayedStreams(
+            @Nullable final StreamStatisticsEntry after, final int limit) {
+        return Single.fromCallable(() -> after == null
+                ? streamStatisticsTable.getLastPlayed(Long.MAX_VALUE, Long.MAX_VALUE, limit)
+                : streamStatisticsTable.getLastPlayed(after.latestAccessDate.getTime(),
+                        after.streamId, limit))
+                .subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Loads the streams on history played most often, continuing after the given entry,
+     * or from the start if there is none.
+     * */
+    public Single<List<StreamStatisticsEntry>> getMostPlayedStreams(
+            @Nullable final StreamStatisticsEntry after, final int limit) {
+        return Single.fromCallable(() -> after == null
+                ? streamStatisticsTable.getMostPlayed(Long.MAX_VALUE, Long.MAX_VALUE, limit)
+                : streamStatisticsTable.getMostPlayed(after.watchCount, after.streamId, limit))
+                .subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Emits whenever the stream history changes, e.g. to reload the streams loaded from it.
+     * */
+    public Flowable<Integer> getStreamHistoryChanges() {
+        return streamHistoryTable.getHistoryCount().skip(1).subscribeOn(Schedulers.io());
     }
 
     public Single<List<Long>> insertStreamHistory(final Collection<StreamHistoryEntry> entries) {
@@ -127,8 +184,11 @@ public class HistoryRecordManager {
         for (final StreamHistoryEntry entry : entries) {
             entities.add(entry.toStreamHistoryEntity());
         }
-        return Single.fromCallable(() -> streamHistoryTable.insertAll(entities))
-                .subscribeOn(Schedulers.io());
+        return Single.fromCallable(() -> database.runInTransaction(() -> {
+            final List<Long> inserted = streamHistoryTable.insertAll(entities);
+            refreshStatistics(entities);
+            return inserted;
+        })).subscribeOn(Schedulers.io());
     }
 
     public Single<Integer> deleteStreamHistory(final Collection<StreamHistoryEntry> entries) {
@@ -136,8 +196,21 @@ public class HistoryRecordManager {
         for (final StreamHistoryEntry entry : entries) {
             entities.add(entry.toStreamHistoryEntity());
         }
-        return Single.fromCallable(() -> streamHistoryTable.delete(entities))
-                .subscribeOn(Schedulers.io());
+        return Single.fromCallable(() -> database.runInTransaction(() -> {
+            final int deleted = streamHistoryTable.delete(entities);
+            refreshStatistics(entities);
+            return deleted;
+        })).subscribeOn(Schedulers.io());
+    }
+
+    private void refreshStatistics(final List<StreamHistoryEntity> entities) {
+        final Set<Long> streamIds = new HashSet<>();
+        for (final StreamHistoryEntity entity : entities) {
+            streamIds.add(entity.getStreamUid());
+        }
+        for (final List<Long> ids : chunksOf(new ArrayList<>(streamIds))) {
+            streamStatisticsTable.refresh(ids);
+        }
     }
 
     private boolean isStreamHistoryEnabled() {
@@ -162,25 +235,40 @@ public class HistoryRecordManager {
             } else {
                 return searchHistoryTable.insert(newEntry);
             }
-        })).subscribeOn(Schedulers.io());
+        })).doOnSuccess(ignored -> searchHistoryIndex.add(search, currentTime.getTime()))
+                .subscribeOn(Schedulers.io());
     }
 
     public Single<Integer> deleteSearchHistory(final String search) {
-        return Single.fromCallable(() -> searchHistoryTable.deleteAllWhereQuery(search))
-                .subscribeOn(Schedulers.io());
+        return Single.fromCallable(() -> {
+            final int deleted = searchHistoryTable.deleteAllWhereQuery(search);
+            searchHistoryIndex.remove(search);
+            return deleted;
+        }).subscribeOn(Schedulers.io());
     }
 
     public Single<Integer> deleteCompleteSearchHistory() {
-        return Single.fromCallable(searchHistoryTable::deleteAll)
-                .subscribeOn(Schedulers.io());
+        return Single.fromCallable(() -> {
+            final int deleted = searchHistoryTable.deleteAll();
+            searchHistoryIndex.clear();
+            return deleted;
+        }).subscribeOn(Schedulers.io());
     }
 
-    public Flowable<List<SearchHistoryEntry>> getRelatedSearches(final String query,
-                                                                 final int similarQueryLimit,
-                                                                 final int uniqueQueryLimit) {
-        return query.length() > 0
-                ? searchHistoryTable.getSimilarEntries(query, similarQueryLimit)
-                : searchHistoryTable.getUniqueEntries(uniqueQueryLimit);
+    /**
+     * Searches from the history starting with the query, or the most recent searches if the
+     * query is empty. They are looked up in memory, so once the history has been loaded the
+     * result is emitted right away on the subscribing thread.
+     */
+    public Single<List<String>> getRelatedSearches(final String query,
+                                                   final int similarQueryLimit,
+                                                   final int uniqueQueryLimit) {
+        final Single<List<String>> related = Single.fromCallable(() -> {
+            searchHistoryIndex.ensureLoaded(searchHistoryTable);
+            return searchHistoryIndex.getSearches(query,
+                    query.length() > 0 ? similarQueryLimit : uniqueQueryLimit);
+        });
+        return searchHistoryIndex.isLoaded() ? related : related.subscribeOn(Schedulers.io());
     }
 
     private boolean isSearchHistoryEnabled() {
@@ -199,7 +287,8 @@ public class HistoryRecordManager {
     }
 
     public Maybe<StreamStateEntity> loadStreamState(final PlayQueueItem queueItem) {
-        return queueItem.getStream()
+        return streamStateWriter.flush()
+                .andThen(queueItem.getStream())
                 .map((info) -> streamTable.upsert(new StreamEntity(info)))
                 .flatMapPublisher(streamStateTable::getState)
                 .firstElement()
@@ -209,7 +298,8 @@ public class HistoryRecordManager {
     }
 
     public Maybe<StreamStateEntity> loadStreamState(final StreamInfo info) {
-        return Single.fromCallable(() -> streamTable.upsert(new StreamEntity(info)))
+        return streamStateWriter.flush()
+                .andThen(Single.fromCallable(() -> streamTable.upsert(new StreamEntity(info))))
                 .flatMapPublisher(streamStateTable::getState)
                 .firstElement()
                 .flatMap(list -> list.isEmpty() ? Maybe.empty() : Maybe.just(list.get(0)))
@@ -217,84 +307,217 @@ public class HistoryRecordManager {
                 .subscribeOn(Schedulers.io());
     }
 
+    /**
+     * Saves the progress of the stream. The progress is buffered and written together with
+     * that of other streams later on, see {@link #flushStreamStates()}.
+     * */
     public Completable saveStreamState(@NonNull final StreamInfo info, final long progressTime) {
-        return Completable.fromAction(() -> database.runInTransaction(() -> {
-            final long streamId = streamTable.upsert(new StreamEntity(info));
-            final StreamStateEntity state = new StreamStateEntity(streamId, progressTime);
-            if (state.isValid((int) info.getDuration())) {
-                streamStateTable.upsert(state);
-            } else {
-                streamStateTable.deleteState(streamId);
-            }
-        })).subscribeOn(Schedulers.io());
+        return Completable.fromAction(() -> streamStateWriter.save(info, progressTime));
+    }
+
+    /**
+     * Writes all buffered stream states to the database now, e.g. once playback ends.
+     * */
+    public Completable flushStreamStates() {
+        return streamStateWriter.flush();
     }
 
+    /**
+     * Loads the state of a single list item, once the prefetches in progress have cached the
+     * states of their items, so the item is usually found in the cache.
+     * */
     public Single<StreamStateEntity[]> loadStreamState(final InfoItem info) {
-        return Single.fromCallable(() -> {
-            final List<StreamEntity> entities = streamTable.getStream(info.getServiceId(), info.getUrl()).blockingFirst();
-            if (entities.isEmpty()) {
-                return new StreamStateEntity[]{null};
+        return awaitPrefetches().andThen(Single.defer(() -> {
+            if (streamStateCache.contains(info.getServiceId(), info.getUrl())) {
+                return Single.just(new StreamStateEntity[]{
+                        streamStateCache.get(info.getServiceId(), info.getUrl())});
             }
-            final List<StreamStateEntity> states = streamStateTable.getState(entities.get(0).getUid()).blockingFirst();
-            if (states.isEmpty()) {
-                return new StreamStateEntity[]{null};
-            }
-            return new StreamStateEntity[]{states.get(0)};
-        }).subscribeOn(Schedulers.io());
+            return loadStreamStateBatch(Collections.singletonList(info))
+                    .map(states -> new StreamStateEntity[]{states.get(0)});
+        }));
+    }
+
+    /**
+     * Caches the states of the list items about to be bound in a single batch, see
+     * {@link #loadStreamStateBatch(List)}. Items bound before it is done wait for it, through
+     * {@link #loadStreamState(InfoItem)}.
+     * */
+    public Completable prefetchStreamStates(final List<InfoItem> infos) {
+        return addPrefetch(loadStreamStateBatch(infos).ignoreElement());
+    }
+
+    /**
+     * Same as {@link #prefetchStreamStates(List)} for local items, whose states are then
+     * loaded through {@link #loadLocalStreamState(LocalItem)}.
+     * */
+    public Completable prefetchLocalStreamStates(final List<? extends LocalItem> items) {
+        return addPrefetch(loadLocalStreamStateBatch(items).ignoreElement());
+    }
+
+    private Completable awaitPrefetches() {
+        return Completable.defer(() -> Completable.merge(new ArrayList<>(pendingPrefetches)));
+    }
+
+    private Completable addPrefetch(final Completable load) {
+        // Cached, so waiting items do not load again, and failures only mean a cache miss
+        final Completable prefetch = load.onErrorComplete().cache();
+        pendingPrefetches.add(prefetch);
+        return prefetch.doFinally(() -> pendingPrefetches.remove(prefetch));
     }
 
+    /**
+     * Loads the states of all streams in the list, in the same order, with null for items
+     * which are not streams or have no state. States are looked up in a single query per
+     * service, and cached for the items to be bound later.
+     * */
     public Single<List<StreamStateEntity>> loadStreamStateBatch(final List<InfoItem> infos) {
-        return Single.fromCallable(() -> {
-            final List<StreamStateEntity> result = new ArrayList<>(infos.size());
-            for (InfoItem info : infos) {
-                final List<StreamEntity> entities = streamTable.getStream(info.getServiceId(), info.getUrl()).blockingFirst();
-                if (entities.isEmpty()) {
-                    result.add(null);
-                    continue;
+        final List<StreamStateEntity> cachedStates = new ArrayList<>(infos.size());
+        boolean isFullyCached = true;
+        for (final InfoItem info : infos) {
+            if (info.getInfoType() != InfoItem.InfoType.STREAM) {
+                cachedStates.add(null);
+            } else if (streamStateCache.contains(info.getServiceId(), info.getUrl())) {
+                cachedStates.add(streamStateCache.get(info.getServiceId(), info.getUrl()));
+            } else {
+                isFullyCached = false;
+                break;
+            }
+        }
+        if (isFullyCached) return Single.just(cachedStates);
+
+        // Read before flushing, so states saved meanwhile invalidate what is about to be loaded
+        return Single.defer(() -> {
+            final long generation = streamStateCache.getGeneration();
+            return streamStateWriter.flush().andThen(Single.fromCallable(() -> {
+                // Urls of the streams to look up, by service
+                final Map<Integer, Set<String>> urlsByService = new HashMap<>();
+                for (final InfoItem info : infos) {
+                    if (info.getInfoType() != InfoItem.InfoType.STREAM) continue;
+                    Set<String> urls = urlsByService.get(info.getServiceId());
+                    if (urls == null) {
+                        urls = new HashSet<>();
+                        urlsByService.put(info.getServiceId(), urls);
+                    }
+                    urls.add(info.getUrl());
                 }
-                final List<StreamStateEntity> states = streamStateTable.getState(entities.get(0).getUid()).blockingFirst();
-                if (states.isEmpty()) {
-                    result.add(null);
-                    continue;
+
+                final Map<String, StreamStateEntity> states = new HashMap<>();
+                for (final Map.Entry<Integer, Set<String>> service : urlsByService.entrySet()) {
+                    final int serviceId = service.getKey();
+                    for (final List<String> urls : chunksOf(new ArrayList<>(service.getValue()))) {
+                        for (final StreamStateEntry entry :
+                                streamStateTable.getStatesByUrl(serviceId, urls)) {
+                            states.put(serviceId + ":" + entry.url, entry.toStreamStateEntity());
+                        }
+                        for (final String url : urls) {
+                            streamStateCache.put(serviceId, url, states.get(serviceId + ":" + url),
+                                    generation);
+                        }
+                    }
                 }
-                result.add(states.get(0));
-            }
-            return result;
+
+                final List<StreamStateEntity> result = new ArrayList<>(infos.size());
+                for (final InfoItem info : infos) {
+                    result.add(info.getInfoType() != InfoItem.InfoType.STREAM ? null
+                            : states.get(info.getServiceId() + ":" + info.getUrl()));
+                }
+                return result;
+            }));
         }).subscribeOn(Schedulers.io());
     }
 
+    /**
+     * Loads the states of all local items, in the same order, with null for items which are
+     * not streams or have no state. States are looked up in a single query and cached.
+     * */
     public Single<List<StreamStateEntity>> loadLocalStreamStateBatch(final List<? extends LocalItem> items) {
-        return Single.fromCallable(() -> {
-            final List<StreamStateEntity> result = new ArrayList<>(items.size());
-            for (LocalItem item : items) {
-                long streamId;
-                if (item instanceof StreamStatisticsEntry) {
-                    streamId = ((StreamStatisticsEntry) item).streamId;
-                } else if (item instanceof PlaylistStreamEntity) {
-                    streamId = ((PlaylistStreamEntity) item).getStreamUid();
-                } else if (item instanceof PlaylistStreamEntry) {
-                    streamId = ((PlaylistStreamEntry) item).streamId;
-                } else {
-                    result.add(null);
-                    continue;
+        final List<StreamStateEntity> cachedStates = new ArrayList<>(items.size());
+        boolean isFullyCached = true;
+        for (final LocalItem item : items) {
+            final long streamId = streamIdOf(item);
+            if (streamId == -1) {
+                cachedStates.add(null);
+            } else if (streamStateCache.contains(streamId)) {
+                cachedStates.add(streamStateCache.get(streamId));
+            } else {
+                isFullyCached = false;
+                break;
+            }
+        }
+        if (isFullyCached) return Single.just(cachedStates);
+
+        // Read before flushing, so states saved meanwhile invalidate what is about to be loaded
+        return Single.defer(() -> {
+            final long generation = streamStateCache.getGeneration();
+            return streamStateWriter.flush().andThen(Single.fromCallable(() -> {
+                final Set<Long> streamIds = new HashSet<>();
+                for (final LocalItem item : items) {
+                    final long streamId = streamIdOf(item);
+                    if (streamId != -1) streamIds.add(streamId);
                 }
-                final List<StreamStateEntity> states = streamStateTable.getState(streamId).blockingFirst();
-                if (states.isEmpty()) {
-                    result.add(null);
-                    continue;
+
+                final Map<Long, StreamStateEntity> states = new HashMap<>();
+                for (final List<Long> ids : chunksOf(new ArrayList<>(streamIds))) {
+                    for (final StreamStateEntity state : streamStateTable.getStates(ids)) {
+                        states.put(state.getStreamUid(), state);
+                    }
+                    for (final Long id : ids) {
+                        streamStateCache.put(id, states.get(id), generation);
+                    }
                 }
-                result.add(states.get(0));
-            }
-            return result;
+
+                final List<StreamStateEntity> result = new ArrayList<>(items.size());
+                for (final LocalItem item : items) {
+                    result.add(states.get(streamIdOf(item)));
+                }
+                return result;
+            }));
         }).subscribeOn(Schedulers.io());
     }
 
+    /**
+     * Loads the state of a single local list item, once the prefetches in progress have
+     * cached the states of their items, with null if it has no state.
+     * */
+    public Single<StreamStateEntity[]> loadLocalStreamState(final LocalItem item) {
+        return awaitPrefetches().andThen(Single.defer(() ->
+                loadLocalStreamStateBatch(Collections.singletonList(item))))
+                .map(states -> new StreamStateEntity[]{states.get(0)});
+    }
+
+    private static long streamIdOf(final LocalItem item) {
+        if (item instanceof StreamStatisticsEntry) {
+            return ((StreamStatisticsEntry) item).streamId;
+        } else if (item instanceof PlaylistStreamEntity) {
+            return ((PlaylistStreamEntity) item).getStreamUid();
+        } else if (item instanceof PlaylistStreamEntry) {
+            return ((PlaylistStreamEntry) item).streamId;
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Splits the query arguments so each query stays below the SQLite limit on variables.
+     * */
+    private static <T> List<List<T>> chunksOf(final List<T> arguments) {
+        final List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < arguments.size(); i += MAX_QUERY_ARGUMENTS) {
+            chunks.add(arguments.subList(i, Math.min(i + MAX_QUERY_ARGUMENTS, arguments.size())));
+        }
+        return chunks;
+    }
+
     ///////////////////////////////////////////////////////
     // Utility
     ///////////////////////////////////////////////////////
 
     public Single<Integer> removeOrphanedRecords() {
-        return Single.fromCallable(streamTable::deleteOrphans).subscribeOn(Schedulers.io());
+        return Single.fromCallable(() -> {
+            final int deleted = streamTable.deleteOrphans();
+            streamStateCache.clear();
+            return deleted;
+        }).subscribeOn(Schedulers.io());
     }
 
 }
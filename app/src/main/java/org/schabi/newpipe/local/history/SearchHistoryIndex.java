@@ -0,0 +1,247 @@
+package org.schabi.newpipe.local.history;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.schabi.newpipe.database.history.dao.SearchHistoryDAO;
+import org.schabi.newpipe.database.history.model.SearchHistoryEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Prefix tree over the distinct searches of the search history, so searches starting with
+ * what is being typed are found without querying the database on every keystroke.
+ * <br><br>
+ * The tree is loaded from the database once, and then kept up to date by the
+ * {@link HistoryRecordManager}, after its changes are committed. Searches are matched ignoring
+ * case, like the database did, and the most recent ones come first.
+ * <br><br>
+ * No database access happens while holding the lock of the index, so it can be updated by
+ * threads holding the database lock without the two waiting on each other.
+ * <br><br>
+ * Every node keeps the {@link #MAX_SEARCHES} most recent searches below it, so a lookup only
+ * walks down the prefix instead of the whole subtree. These lists are updated along the path
+ * of each search added or removed.
+ * */
+/* package-private */ final class SearchHistoryIndex {
+    /** Most searches ever looked up at once */
+    /* package-private */ static final int MAX_SEARCHES = 25;
+
+    private static final SearchHistoryIndex instance = new SearchHistoryIndex();
+
+    @NonNull private final Node root = new Node();
+    private boolean isLoaded = false;
+    /** Number of changes so far, to know whether any happened during a load */
+    private int changeCount = 0;
+
+    private SearchHistoryIndex() {
+        //no instance
+    }
+
+    @NonNull
+    static SearchHistoryIndex getInstance() {
+        return instance;
+    }
+
+    synchronized boolean isLoaded() {
+        return isLoaded;
+    }
+
+    /**
+     * Loads the search history, unless it was loaded already. The history is queried without
+     * holding the lock, and queried again if the index changed meanwhile, as a search removed
+     * after the query would otherwise come back. Must not be called on the main thread.
+     * */
+    void ensureLoaded(@NonNull final SearchHistoryDAO searchHistoryTable) {
+        while (true) {
+            final int changeCountAtStart;
+            synchronized (this) {
+                if (isLoaded) return;
+                changeCountAtStart = changeCount;
+            }
+
+            final List<SearchHistoryEntry> entries = searchHistoryTable.getAllEntries();
+
+            synchronized (this) {
+                if (isLoaded) return;
+                if (changeCount != changeCountAtStart) continue;
+
+                // Searches added before the load are among the entries, re-adding them does nothing
+                for (final SearchHistoryEntry entry : entries) {
+                    addSearch(entry.getSearch(), entry.getCreationDate().getTime());
+                }
+                isLoaded = true;
+                return;
+            }
+        }
+    }
+
+    synchronized void add(@NonNull final String search, final long searchedAt) {
+        changeCount++;
+        addSearch(search, searchedAt);
+    }
+
+    private void addSearch(@NonNull final String search, final long searchedAt) {
+        final String normalized = normalize(search);
+        final List<Node> path = new ArrayList<>(normalized.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < normalized.length(); i++) {
+            final char c = normalized.charAt(i);
+            Node child = node.children.get(c);
+            if (child == null) {
+                child = new Node();
+                node.children.put(c, child);
+            }
+            node = child;
+            path.add(node);
+        }
+
+        if (node.searches == null) node.searches = new HashMap<>(1);
+        final Long lastSearchedAt = node.searches.get(search);
+        if (lastSearchedAt != null && lastSearchedAt >= searchedAt) return;
+        node.searches.put(search, searchedAt);
+
+        // Being more recent than before, it can only move up in the lists it was in already
+        final Search entry = new Search(search, searchedAt);
+        for (final Node pathNode : path) {
+            pathNode.offer(entry);
+        }
+    }
+
+    synchronized void remove(@NonNull final String search) {
+        changeCount++;
+        final String normalized = normalize(search);
+        final List<Node> path = new ArrayList<>(normalized.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < normalized.length() && node != null; i++) {
+            node = node.children.get(normalized.charAt(i));
+            path.add(node);
+        }
+        if (node == null || node.searches == null || node.searches.remove(search) == null) return;
+        // Empty branches are left, they are few and are reused once searched again
+        if (node.searches.isEmpty()) node.searches = null;
+
+        // If a node does not list the search, the nodes above it, with more searches, do not
+        // list it either
+        for (int i = path.size() - 1; i >= 0 && path.get(i).contains(search); i--) {
+            path.get(i).rebuild();
+        }
+    }
+
+    synchronized void clear() {
+        changeCount++;
+        root.children.clear();
+        root.searches = null;
+        root.recent.clear();
+    }
+
+    /**
+     * @return at most the given number of searches starting with the prefix, most recent first,
+     * and never more than {@link #MAX_SEARCHES}.
+     * */
+    @NonNull
+    synchronized List<String> getSearches(@NonNull final String prefix, final int limit) {
+        final Node start = find(normalize(prefix));
+        if (start == null || limit <= 0) return Collections.emptyList();
+
+        final int count = Math.min(limit, start.recent.size());
+        final List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(start.recent.get(i).search);
+        }
+        return result;
+    }
+
+    @Nullable
+    private Node find(@NonNull final String normalized) {
+        Node node = root;
+        for (int i = 0; i < normalized.length() && node != null; i++) {
+            node = node.children.get(normalized.charAt(i));
+        }
+        return node;
+    }
+
+    @NonNull
+    private static String normalize(@NonNull final String search) {
+        return search.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Search {
+        @NonNull final String search;
+        final long searchedAt;
+
+        Search(@NonNull final String search, final long searchedAt) {
+            this.search = search;
+            this.searchedAt = searchedAt;
+        }
+    }
+
+    private static final class Node {
+        private static final Comparator<Search> MOST_RECENT_FIRST =
+                (a, b) -> Long.compare(b.searchedAt, a.searchedAt);
+
+        @NonNull final Map<Character, Node> children = new HashMap<>(4);
+        /** Searches ending at this node, with the time they were last searched */
+        @Nullable Map<String, Long> searches;
+        /** Most recent searches ending at or below this node, most recent first */
+        @NonNull final List<Search> recent = new ArrayList<>(1);
+
+        boolean contains(@NonNull final String search) {
+            for (final Search entry : recent) {
+                if (entry.search.equals(search)) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Lists the search, or moves it up if listed already, as long as it is among the
+         * most recent ones.
+         * */
+        void offer(@NonNull final Search entry) {
+            for (int i = 0; i < recent.size(); i++) {
+                if (recent.get(i).search.equals(entry.search)) {
+                    recent.remove(i);
+                    break;
+                }
+            }
+
+            int position = 0;
+            while (position < recent.size()
+                    && recent.get(position).searchedAt >= entry.searchedAt) {
+                position++;
+            }
+            if (position >= MAX_SEARCHES) return;
+
+            recent.add(position, entry);
+            if (recent.size() > MAX_SEARCHES) recent.remove(recent.size() - 1);
+        }
+
+        /**
+         * Lists the most recent searches again from those of this node and the lists of its
+         * children, which must be up to date.
+         * */
+        void rebuild() {
+            final List<Search> candidates = new ArrayList<>();
+            if (searches != null) {
+                for (final Map.Entry<String, Long> search : searches.entrySet()) {
+                    candidates.add(new Search(search.getKey(), search.getValue()));
+                }
+            }
+            for (final Node child : children.values()) {
+                candidates.addAll(child.recent);
+            }
+            Collections.sort(candidates, MOST_RECENT_FIRST);
+
+            recent.clear();
+            recent.addAll(candidates.subList(0, Math.min(MAX_SEARCHES, candidates.size())));
+        }
+    }
+}
@@ -8,6 +8,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.google.android.material.snackbar.Snackbar;
 import androidx.appcompat.app.AlertDialog;
+import androidx.recyclerview.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -18,13 +19,12 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import org.reactivestreams.Subscriber;
-import org.reactivestreams.Subscription;
 import org.schabi.newpipe.R;
 import org.schabi.newpipe.database.LocalItem;
 import org.schabi.newpipe.database.stream.StreamStatisticsEntry;
 import org.schabi.newpipe.extractor.stream.StreamInfoItem;
 import org.schabi.newpipe.extractor.stream.StreamType;
+import org.schabi.newpipe.fragments.OnScrollBelowItemsListener;
 import org.schabi.newpipe.info_list.InfoItemDialog;
 import org.schabi.newpipe.local.BaseLocalListFragment;
 import org.schabi.newpipe.player.playqueue.PlayQueue;
@@ -42,12 +42,16 @@ import java.util.Collections;
 import java.util.List;
 
 import icepick.State;
+import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
 
 public class StatisticsPlaylistFragment
-        extends BaseLocalListFragment<List<StreamStatisticsEntry>, Void> {
+        extends BaseLocalListFragment<List<StreamStatisticsEntry>, List<StreamStatisticsEntry>> {
+    /** Number of streams loaded at once, more are loaded when scrolling to the end */
+    private static final int PAGE_SIZE = 100;
 
     private View headerPlayAllButton;
     private View headerPopupButton;
@@ -61,7 +65,10 @@ public class StatisticsPlaylistFragment
     protected Parcelable itemsListState;
 
     /* Used for independent events */
-    private Subscription databaseSubscription;
+    private Disposable pageLoader;
+    private Disposable historyObserver;
+    /** Whether the last page loaded was full, i.e. there may be more streams to load */
+    private boolean hasMoreItems = false;
     private HistoryRecordManager recordManager;
     private final CompositeDisposable disposables = new CompositeDisposable();
 
@@ -72,20 +79,6 @@ public class StatisticsPlaylistFragment
 
     StatisticSortMode sortMode = StatisticSortMode.LAST_PLAYED;
 
-    protected List<StreamStatisticsEntry> processResult(final List<StreamStatisticsEntry> results) {
-        switch (sortMode) {
-            case LAST_PLAYED:
-                Collections.sort(results, (left, right) ->
-                    right.latestAccessDate.compareTo(left.latestAccessDate));
-                return results;
-            case MOST_PLAYED:
-                Collections.sort(results, (left, right) ->
-                        Long.compare(right.watchCount, left.watchCount));
-                return results;
-            default: return null;
-        }
-    }
-
     ///////////////////////////////////////////////////////////////////////////
     // Fragment LifeCycle - Creation
     ///////////////////////////////////////////////////////////////////////////
@@ -166,6 +159,14 @@ public class StatisticsPlaylistFragment
                 }
             }
         });
+
+        itemsList.clearOnScrollListeners();
+        itemsList.addOnScrollListener(new OnScrollBelowItemsListener() {
+            @Override
+            public void onScrolledDown(RecyclerView recyclerView) {
+                if (hasMoreItems && !isLoading.get()) loadMoreItems();
+            }
+        });
     }
 
     @Override
@@ -222,9 +223,49 @@ public class StatisticsPlaylistFragment
     @Override
     public void startLoading(boolean forceLoad) {
         super.startLoading(forceLoad);
-        recordManager.getStreamStatistics()
+        loadItems(null, PAGE_SIZE, this::handleResult);
+
+        if (historyObserver != null) historyObserver.dispose();
+        historyObserver = recordManager.getStreamHistoryChanges()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(changes -> reloadItems(), this::onError);
+    }
+
+    private void loadMoreItems() {
+        final List<LocalItem> items = itemListAdapter.getItemsList();
+        if (items.isEmpty()) return;
+
+        isLoading.set(true);
+        showListFooter(true);
+        loadItems((StreamStatisticsEntry) items.get(items.size() - 1), PAGE_SIZE,
+                this::handleNextItems);
+    }
+
+    /**
+     * Reloads as many streams as are shown, once the history changed.
+     * */
+    private void reloadItems() {
+        if (itemListAdapter == null || itemsList == null) return;
+
+        itemsListState = itemsList.getLayoutManager().onSaveInstanceState();
+        loadItems(null, Math.max(itemListAdapter.getItemsList().size(), PAGE_SIZE),
+                this::handleResult);
+    }
+
+    private void loadItems(@Nullable final StreamStatisticsEntry after, final int limit,
+                           @NonNull final Consumer<List<StreamStatisticsEntry>> onLoaded) {
+        final Single<List<StreamStatisticsEntry>> loader =
+                sortMode == StatisticSortMode.MOST_PLAYED
+                        ? recordManager.getMostPlayedStreams(after, limit)
+                        : recordManager.getLastPlayedStreams(after, limit);
+
+        if (pageLoader != null) pageLoader.dispose();
+        pageLoader = loader
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(getHistoryObserver());
+                .subscribe(streams -> {
+                    hasMoreItems = streams.size() == limit;
+                    onLoaded.accept(streams);
+                }, this::onError);
     }
 
     ///////////////////////////////////////////////////////////////////////////
@@ -246,8 +287,10 @@ public class StatisticsPlaylistFragment
         if (headerPlayAllButton != null) headerPlayAllButton.setOnClickListener(null);
         if (headerPopupButton != null) headerPopupButton.setOnClickListener(null);
 
-        if (databaseSubscription != null) databaseSubscription.cancel();
-        databaseSubscription = null;
+        if (pageLoader != null) pageLoader.dispose();
+        if (historyObserver != null) historyObserver.dispose();
+        pageLoader = null;
+        historyObserver = null;
     }
 
     @Override
@@ -261,37 +304,10 @@ public class StatisticsPlaylistFragment
     // Statistics Loader
     ///////////////////////////////////////////////////////////////////////////
 
-    private Subscriber<List<StreamStatisticsEntry>> getHistoryObserver() {
-        return new Subscriber<List<StreamStatisticsEntry>>() {
-            @Override
-            public void onSubscribe(Subscription s) {
-                showLoading();
-
-                if (databaseSubscription != null) databaseSubscription.cancel();
-                databaseSubscription = s;
-                databaseSubscription.request(1);
-            }
-
-            @Override
-            public void onNext(List<StreamStatisticsEntry> streams) {
-                handleResult(streams);
-                if (databaseSubscription != null) databaseSubscription.request(1);
-            }
-
-            @Override
-            public void onError(Throwable exception) {
-                StatisticsPlaylistFragment.this.onError(exception);
-            }
-
-            @Override
-            public void onComplete() {
-            }
-        };
-    }
-
     @Override
     public void handleResult(@NonNull List<StreamStatisticsEntry> result) {
         super.handleResult(result);
+        isLoading.set(false);
         if (itemListAdapter == null) return;
 
         playlistCtrl.setVisibility(View.VISIBLE);
@@ -303,7 +319,7 @@ public class StatisticsPlaylistFragment
             return;
         }
 
-        itemListAdapter.addItems(processResult(result));
+        itemListAdapter.addItems(result);
         if (itemsListState != null) {
             itemsList.getLayoutManager().onRestoreInstanceState(itemsListState);
             itemsListState = null;
@@ -319,6 +335,14 @@ public class StatisticsPlaylistFragment
 
         hideLoading();
     }
+
+    @Override
+    public void handleNextItems(List<StreamStatisticsEntry> result) {
+        super.handleNextItems(result);
+        showListFooter(false);
+        if (itemListAdapter != null) itemListAdapter.addItems(result);
+    }
+
     ///////////////////////////////////////////////////////////////////////////
     // Fragment Error Handling
     ///////////////////////////////////////////////////////////////////////////
@@ -326,7 +350,8 @@ public class StatisticsPlaylistFragment
     @Override
     protected void resetFragment() {
         super.resetFragment();
-        if (databaseSubscription != null) databaseSubscription.cancel();
+        if (pageLoader != null) pageLoader.dispose();
+        if (historyObserver != null) historyObserver.dispose();
     }
 
     @Override
@@ -0,0 +1,123 @@
+package org.schabi.newpipe.local.history;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LruCache;
+
+import org.schabi.newpipe.database.stream.model.StreamStateEntity;
+
+/**
+ * Keeps the states of the streams shown recently, so list items can show their progress
+ * without querying the database every time they are bound.
+ * <br><br>
+ * Streams without a state are cached as well, as most streams in a list have never been
+ * played. States are looked up either by service and url, for items from the network, or by
+ * stream id, for local items.
+ * <br><br>
+ * Saving the state of a stream invalidates it, by stream id once the id is known. Since loads
+ * and saves run concurrently, a loaded state is only cached if nothing has been invalidated
+ * since the load started.
+ * */
+/* package-private */ final class StreamStateCache {
+    private static final int MAX_ITEMS_ON_CACHE = 1000;
+
+    /** Marks streams known to have no state */
+    private static final StreamStateEntity NO_STATE = new StreamStateEntity(-1, 0);
+
+    private static final StreamStateCache instance = new StreamStateCache();
+
+    @NonNull private final LruCache<String, StreamStateEntity> statesByUrl =
+            new LruCache<>(MAX_ITEMS_ON_CACHE);
+    @NonNull private final LruCache<Long, StreamStateEntity> statesById =
+            new LruCache<>(MAX_ITEMS_ON_CACHE);
+    private long generation = 0;
+
+    private StreamStateCache() {
+        //no instance
+    }
+
+    @NonNull
+    static StreamStateCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return the generation to pass to the puts of the states about to be loaded.
+     * */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return whether the state of the stream is cached, in which case
+     * {@link #get(int, String)} returns it.
+     * */
+    synchronized boolean contains(final int serviceId, @NonNull final String url) {
+        return statesByUrl.get(keyOf(serviceId, url)) != null;
+    }
+
+    /**
+     * @return the cached state of the stream, or null if it has no state or is not cached.
+     * */
+    @Nullable
+    synchronized StreamStateEntity get(final int serviceId, @NonNull final String url) {
+        return unwrap(statesByUrl.get(keyOf(serviceId, url)));
+    }
+
+    synchronized boolean contains(final long streamId) {
+        return statesById.get(streamId) != null;
+    }
+
+    @Nullable
+    synchronized StreamStateEntity get(final long streamId) {
+        return unwrap(statesById.get(streamId));
+    }
+
+    synchronized void put(final int serviceId, @NonNull final String url,
+                          @Nullable final StreamStateEntity state, final long loadGeneration) {
+        if (loadGeneration != generation) return;
+        statesByUrl.put(keyOf(serviceId, url), state == null ? NO_STATE : state);
+    }
+
+    synchronized void put(final long streamId, @Nullable final StreamStateEntity state,
+                          final long loadGeneration) {
+        if (loadGeneration != generation) return;
+        statesById.put(streamId, state == null ? NO_STATE : state);
+    }
+
+    /**
+     * Drops the state of the stream, which is about to be saved. If its id is not known yet,
+     * its state cached by id is only dropped once the id is resolved, see
+     * {@link #invalidate(long)}.
+     * */
+    synchronized void invalidate(final int serviceId, @NonNull final String url,
+                                 final long streamId) {
+        generation++;
+        statesByUrl.remove(keyOf(serviceId, url));
+        if (streamId != -1) statesById.remove(streamId);
+    }
+
+    /**
+     * Drops the state of the stream cached by id, once it has been written.
+     * */
+    synchronized void invalidate(final long streamId) {
+        generation++;
+        statesById.remove(streamId);
+    }
+
+    synchronized void clear() {
+        generation++;
+        statesByUrl.evictAll();
+        statesById.evictAll();
+    }
+
+    @Nullable
+    private static StreamStateEntity unwrap(@Nullable final StreamStateEntity state) {
+        return state == NO_STATE ? null : state;
+    }
+
+    @NonNull
+    private static String keyOf(final int serviceId, @NonNull final String url) {
+        return serviceId + ":" + url;
+    }
+}
@@ -0,0 +1,179 @@
+package org.schabi.newpipe.local.history;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.collection.LruCache;
+
+import org.schabi.newpipe.BuildConfig;
+import org.schabi.newpipe.NewPipeDatabase;
+import org.schabi.newpipe.database.AppDatabase;
+import org.schabi.newpipe.database.stream.dao.StreamDAO;
+import org.schabi.newpipe.database.stream.dao.StreamStateDAO;
+import org.schabi.newpipe.database.stream.model.StreamEntity;
+import org.schabi.newpipe.database.stream.model.StreamStateEntity;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Write-behind buffer for stream states, i.e. playback progress.
+ * <br><br>
+ * Players save the progress on every pause, seek and item change, which adds up to a lot of
+ * small transactions. Instead, only the latest progress of each stream is kept here, and all
+ * of them are written in a single transaction once {@link #FLUSH_DELAY_MILLIS} have passed
+ * since the first pending one, or earlier when {@link #flush()} is called, e.g. once the
+ * player is closed or the states are about to be read.
+ * */
+/* package-private */ final class StreamStateWriter {
+    private static final boolean DEBUG = !BuildConfig.BUILD_TYPE.equals("release");
+    private static final String TAG = "StreamStateWriter";
+
+    private static final long FLUSH_DELAY_MILLIS = 10000;
+    private static final int MAX_KNOWN_STREAM_IDS = 100;
+
+    private static volatile StreamStateWriter instance;
+
+    @NonNull private final AppDatabase database;
+    @NonNull private final StreamDAO streamTable;
+    @NonNull private final StreamStateDAO streamStateTable;
+    @NonNull private final StreamStateCache streamStateCache;
+
+    /** Ids of the streams written recently, so their cached states can be invalidated by id */
+    @NonNull private final LruCache<String, Long> streamIds =
+            new LruCache<>(MAX_KNOWN_STREAM_IDS);
+
+    /** Latest state of each stream, in the order the streams were first saved */
+    @NonNull private final Map<String, PendingState> pendingStates = new LinkedHashMap<>();
+    private boolean isFlushScheduled = false;
+
+    /** Keeps flushes, which may run on several io threads, in order */
+    @NonNull private final Object flushLock = new Object();
+
+    private StreamStateWriter(@NonNull final Context context) {
+        this.database = NewPipeDatabase.getInstance(context);
+        this.streamTable = database.streamDAO();
+        this.streamStateTable = database.streamStateDAO();
+        this.streamStateCache = StreamStateCache.getInstance();
+    }
+
+    @NonNull
+    static StreamStateWriter getInstance(@NonNull final Context context) {
+        StreamStateWriter result = instance;
+        if (result == null) {
+            synchronized (StreamStateWriter.class) {
+                result = instance;
+                if (result == null) {
+                    instance = (result = new StreamStateWriter(context.getApplicationContext()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Buffers the progress of the stream, replacing any progress of the same stream which
+     * has not been written yet.
+     * */
+    void save(@NonNull final StreamInfo info, final long progressTime) {
+        final PendingState state = new PendingState(new StreamEntity(info), progressTime,
+                (int) info.getDuration());
+        final String key = keyOf(info.getServiceId(), info.getUrl());
+        final Long streamId = streamIds.get(key);
+        streamStateCache.invalidate(info.getServiceId(), info.getUrl(),
+                streamId == null ? -1 : streamId);
+        synchronized (pendingStates) {
+            pendingStates.put(key, state);
+            if (isFlushScheduled) return;
+            isFlushScheduled = true;
+        }
+
+        Schedulers.io().scheduleDirect(this::flushPendingStates,
+                FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes all buffered states now. Completes once they are in the database, so states
+     * read afterwards are up to date.
+     * */
+    @NonNull
+    Completable flush() {
+        return Completable.fromAction(this::flushPendingStates).subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Drops all buffered states, e.g. since all states are being deleted. Waits for a flush in
+     * progress to finish first, so states it already took are not written after the deletion.
+     * Must not be called on the main thread.
+     * */
+    void discard() {
+        synchronized (flushLock) {
+            synchronized (pendingStates) {
+                pendingStates.clear();
+            }
+        }
+    }
+
+    private void flushPendingStates() {
+        synchronized (flushLock) {
+            final List<PendingState> states;
+            synchronized (pendingStates) {
+                isFlushScheduled = false;
+                if (pendingStates.isEmpty()) return;
+                states = new ArrayList<>(pendingStates.values());
+                pendingStates.clear();
+            }
+
+            if (DEBUG) Log.d(TAG, "flushPendingStates() writing [" + states.size() + "] states");
+            try {
+                database.runInTransaction(() -> {
+                    for (final PendingState state : states) {
+                        write(state);
+                    }
+                });
+            } catch (final RuntimeException e) {
+                Log.e(TAG, "Unable to save [" + states.size() + "] stream states", e);
+            }
+        }
+    }
+
+    private void write(@NonNull final PendingState pending) {
+        // Only actually written if the stream data changed since it was last stored
+        final long streamId = streamTable.upsert(pending.stream);
+        streamIds.put(keyOf(pending.stream.getServiceId(), pending.stream.getUrl()), streamId);
+        streamStateCache.invalidate(streamId);
+
+        final StreamStateEntity state = new StreamStateEntity(streamId, pending.progressTime);
+        if (state.isValid(pending.duration)) {
+            streamStateTable.upsert(state);
+        } else {
+            streamStateTable.deleteState(streamId);
+        }
+    }
+
+    @NonNull
+    private static String keyOf(final int serviceId, @NonNull final String url) {
+        return serviceId + ":" + url;
+    }
+
+    private static final class PendingState {
+        @NonNull final StreamEntity stream;
+        final long progressTime;
+        final int duration;
+
+        PendingState(@NonNull final StreamEntity stream, final long progressTime,
+                     final int duration) {
+            this.stream = stream;
+            this.progressTime = progressTime;
+            this.duration = duration;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.schabi.newpipe.local.holder;
 
 import androidx.core.content.ContextCompat;
+import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
@@ -15,15 +16,19 @@ import org.schabi.newpipe.extractor.NewPipe;
 import org.schabi.newpipe.local.LocalItemBuilder;
 import org.schabi.newpipe.local.history.HistoryRecordManager;
 import org.schabi.newpipe.util.AnimationUtils;
+import org.schabi.newpipe.util.CachedStreamIndicator;
 import org.schabi.newpipe.util.ImageDisplayConstants;
 import org.schabi.newpipe.util.Localization;
 import org.schabi.newpipe.views.AnimatedProgressBar;
 
 import java.text.DateFormat;
-import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+
 public class LocalPlaylistStreamItemHolder extends LocalItemHolder {
+    private static final String TAG = "LocalPlaylistStreamItemHolder";
 
     public final ImageView itemThumbnailView;
     public final TextView itemVideoTitleView;
@@ -32,6 +37,9 @@ public class LocalPlaylistStreamItemHolder extends LocalItemHolder {
     public final View itemHandleView;
     public final AnimatedProgressBar itemProgressView;
 
+    private Disposable cachedIndicator;
+    private Disposable stateLoader;
+
     LocalPlaylistStreamItemHolder(LocalItemBuilder infoItemBuilder, int layoutId, ViewGroup parent) {
         super(infoItemBuilder, layoutId, parent);
 
@@ -56,20 +64,25 @@ public class LocalPlaylistStreamItemHolder extends LocalItemHolder {
         itemAdditionalDetailsView.setText(Localization.concatenateStrings(item.uploader,
                 NewPipe.getNameOfService(item.serviceId)));
 
+        if (cachedIndicator != null) cachedIndicator.dispose();
+        if (stateLoader != null) stateLoader.dispose();
         if (item.duration > 0) {
             itemDurationView.setText(Localization.getDurationString(item.duration));
             itemDurationView.setBackgroundColor(ContextCompat.getColor(itemBuilder.getContext(),
                     R.color.duration_background_color));
             itemDurationView.setVisibility(View.VISIBLE);
-
-            StreamStateEntity state = historyRecordManager.loadLocalStreamStateBatch(new ArrayList<LocalItem>() {{ add(localItem); }}).blockingGet().get(0);
-            if (state != null) {
-                itemProgressView.setVisibility(View.VISIBLE);
-                itemProgressView.setMax((int) item.duration);
-                itemProgressView.setProgress((int) TimeUnit.MILLISECONDS.toSeconds(state.getProgressTime()));
-            } else {
-                itemProgressView.setVisibility(View.GONE);
-            }
+            cachedIndicator = CachedStreamIndicator.bind(itemDurationView, item.url);
+
+            itemProgressView.setVisibility(View.GONE);
+            stateLoader = historyRecordManager.loadLocalStreamState(localItem)
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(states -> {
+                        final StreamStateEntity state = states[0];
+                        if (state == null) return;
+                        itemProgressView.setVisibility(View.VISIBLE);
+                        itemProgressView.setMax((int) item.duration);
+                        itemProgressView.setProgress((int) TimeUnit.MILLISECONDS.toSeconds(state.getProgressTime()));
+                    }, error -> Log.e(TAG, "Unable to load stream state", error));
         } else {
             itemDurationView.setVisibility(View.GONE);
         }
@@ -101,7 +114,14 @@ public class LocalPlaylistStreamItemHolder extends LocalItemHolder {
         if (!(localItem instanceof PlaylistStreamEntry)) return;
         final PlaylistStreamEntry item = (PlaylistStreamEntry) localItem;
 
-        StreamStateEntity state = historyRecordManager.loadLocalStreamStateBatch(new ArrayList<LocalItem>() {{ add(localItem); }}).blockingGet().get(0);
+        if (stateLoader != null) stateLoader.dispose();
+        stateLoader = historyRecordManager.loadLocalStreamState(localItem)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(states -> showState(item, states[0]),
+                        error -> Log.e(TAG, "Unable to load stream state", error));
+    }
+
+    private void showState(final PlaylistStreamEntry item, final StreamStateEntity state) {
         if (state != null && item.duration > 0) {
             itemProgressView.setMax((int) item.duration);
             if (itemProgressView.getVisibility() == View.VISIBLE) {
@@ -2,6 +2,7 @@ package org.schabi.newpipe.local.holder;
 
 import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
+import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
@@ -15,14 +16,17 @@ import org.schabi.newpipe.extractor.NewPipe;
 import org.schabi.newpipe.local.LocalItemBuilder;
 import org.schabi.newpipe.local.history.HistoryRecordManager;
 import org.schabi.newpipe.util.AnimationUtils;
+import org.schabi.newpipe.util.CachedStreamIndicator;
 import org.schabi.newpipe.util.ImageDisplayConstants;
 import org.schabi.newpipe.util.Localization;
 import org.schabi.newpipe.views.AnimatedProgressBar;
 
 import java.text.DateFormat;
-import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+
 /*
  * Created by Christian Schabesberger on 01.08.16.
  * <p>
@@ -44,6 +48,7 @@ import java.util.concurrent.TimeUnit;
  */
 
 public class LocalStatisticStreamItemHolder extends LocalItemHolder {
+    private static final String TAG = "LocalStatisticStreamItemHolder";
 
     public final ImageView itemThumbnailView;
     public final TextView itemVideoTitleView;
@@ -53,6 +58,9 @@ public class LocalStatisticStreamItemHolder extends LocalItemHolder {
     public final TextView itemAdditionalDetails;
     public final AnimatedProgressBar itemProgressView;
 
+    private Disposable cachedIndicator;
+    private Disposable stateLoader;
+
     public LocalStatisticStreamItemHolder(LocalItemBuilder itemBuilder, ViewGroup parent) {
         this(itemBuilder, R.layout.list_stream_item, parent);
     }
@@ -85,20 +93,25 @@ public class LocalStatisticStreamItemHolder extends LocalItemHolder {
         itemVideoTitleView.setText(item.title);
         itemUploaderView.setText(item.uploader);
 
+        if (cachedIndicator != null) cachedIndicator.dispose();
+        if (stateLoader != null) stateLoader.dispose();
         if (item.duration > 0) {
             itemDurationView.setText(Localization.getDurationString(item.duration));
             itemDurationView.setBackgroundColor(ContextCompat.getColor(itemBuilder.getContext(),
                     R.color.duration_background_color));
             itemDurationView.setVisibility(View.VISIBLE);
+            cachedIndicator = CachedStreamIndicator.bind(itemDurationView, item.url);
 
-            StreamStateEntity state = historyRecordManager.loadLocalStreamStateBatch(new ArrayList<LocalItem>() {{ add(localItem); }}).blockingGet().get(0);
-            if (state != null) {
-                itemProgressView.setVisibility(View.VISIBLE);
-                itemProgressView.setMax((int) item.duration);
-                itemProgressView.setProgress((int) TimeUnit.MILLISECONDS.toSeconds(state.getProgressTime()));
-            } else {
-                itemProgressView.setVisibility(View.GONE);
-            }
+            itemProgressView.setVisibility(View.GONE);
+            stateLoader = historyRecordManager.loadLocalStreamState(localItem)
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(states -> {
+                        final StreamStateEntity state = states[0];
+                        if (state == null) return;
+                        itemProgressView.setVisibility(View.VISIBLE);
+                        itemProgressView.setMax((int) item.duration);
+                        itemProgressView.setProgress((int) TimeUnit.MILLISECONDS.toSeconds(state.getProgressTime()));
+                    }, error -> Log.e(TAG, "Unable to load stream state", error));
         } else {
             itemDurationView.setVisibility(View.GONE);
             itemProgressView.setVisibility(View.GONE);
@@ -132,7 +145,14 @@ public class LocalStatisticStreamItemHolder extends LocalItemHolder {
         if (!(localItem instanceof StreamStatisticsEntry)) return;
         final StreamStatisticsEntry item = (StreamStatisticsEntry) localItem;
 
-        StreamStateEntity state = historyRecordManager.loadLocalStreamStateBatch(new ArrayList<LocalItem>() {{ add(localItem); }}).blockingGet().get(0);
+        if (stateLoader != null) stateLoader.dispose();
+        stateLoader = historyRecordManager.loadLocalStreamState(localItem)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(states -> showState(item, states[0]),
+                        error -> Log.e(TAG, "Unable to load stream state", error));
+    }
+
+    private void showState(final StreamStatisticsEntry item, final StreamStateEntity state) {
         if (state != null && item.duration > 0) {
             itemProgressView.setMax((int) item.duration);
             if (itemProgressView.getVisibility() == View.VISIBLE) {
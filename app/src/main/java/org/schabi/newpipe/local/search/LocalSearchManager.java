@@ -0,0 +1,103 @@
+package org.schabi.newpipe.local.search;
+
+import androidx.annotation.NonNull;
+
+import org.schabi.newpipe.database.AppDatabase;
+import org.schabi.newpipe.database.playlist.model.PlaylistEntity;
+import org.schabi.newpipe.database.playlist.model.PlaylistRemoteEntity;
+import org.schabi.newpipe.database.search.LocalSearchDAO;
+import org.schabi.newpipe.database.stream.model.StreamEntity;
+import org.schabi.newpipe.database.subscription.SubscriptionEntity;
+
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Searches the streams, local and remote playlists and subscriptions stored in the database,
+ * through their full-text indexes.
+ */
+public class LocalSearchManager {
+    private static final int MAX_RESULTS_PER_TYPE = 50;
+
+    private final AppDatabase database;
+    private final LocalSearchDAO searchTable;
+
+    public LocalSearchManager(final AppDatabase db) {
+        database = db;
+        searchTable = db.localSearchDAO();
+    }
+
+    /**
+     * Finds the items with words starting with each of the words of the query, ignoring case
+     * for latin letters.
+     */
+    public Single<Result> search(@NonNull final String query) {
+        final String match = toMatchExpression(query);
+        if (match.isEmpty()) return Single.just(Result.EMPTY);
+
+        return Single.fromCallable(() -> database.runInTransaction(() -> new Result(
+                searchTable.searchStreams(match, MAX_RESULTS_PER_TYPE),
+                searchTable.searchPlaylists(match, MAX_RESULTS_PER_TYPE),
+                searchTable.searchRemotePlaylists(match, MAX_RESULTS_PER_TYPE),
+                searchTable.searchSubscriptions(match, MAX_RESULTS_PER_TYPE))
+        )).subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Turns the query into a prefix search for each of its words, splitting and folding it the
+     * way the index does, so no part of the query is taken as FTS syntax, e.g. as operators.
+     */
+    @NonNull
+    /* package-private */ static String toMatchExpression(@NonNull final String query) {
+        final StringBuilder match = new StringBuilder();
+        boolean isInWord = false;
+        for (int i = 0; i < query.length(); i++) {
+            final char c = query.charAt(i);
+            if (isWordChar(c)) {
+                if (!isInWord && match.length() > 0) match.append(' ');
+                match.append(c < 0x80 ? Character.toLowerCase(c) : c);
+                isInWord = true;
+            } else if (isInWord) {
+                match.append('*');
+                isInWord = false;
+            }
+        }
+        if (isInWord) match.append('*');
+        return match.toString();
+    }
+
+    /**
+     * The default FTS tokenizer takes all non-ASCII characters as part of words, and only folds
+     * the case of ASCII letters.
+     */
+    private static boolean isWordChar(final char c) {
+        return c >= 0x80 || Character.isLetterOrDigit(c);
+    }
+
+    public static final class Result {
+        static final Result EMPTY = new Result(Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+
+        public final List<StreamEntity> streams;
+        public final List<PlaylistEntity> playlists;
+        public final List<PlaylistRemoteEntity> remotePlaylists;
+        public final List<SubscriptionEntity> subscriptions;
+
+        Result(final List<StreamEntity> streams, final List<PlaylistEntity> playlists,
+               final List<PlaylistRemoteEntity> remotePlaylists,
+               final List<SubscriptionEntity> subscriptions) {
+            this.streams = streams;
+            this.playlists = playlists;
+            this.remotePlaylists = remotePlaylists;
+            this.subscriptions = subscriptions;
+        }
+
+        public boolean isEmpty() {
+            return streams.isEmpty() && playlists.isEmpty() && remotePlaylists.isEmpty()
+                    && subscriptions.isEmpty();
+        }
+    }
+}
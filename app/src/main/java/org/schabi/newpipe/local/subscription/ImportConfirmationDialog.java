@@ -15,6 +15,8 @@ import org.schabi.newpipe.util.ThemeHelper;
 import icepick.Icepick;
 import icepick.State;
 
+import static org.schabi.newpipe.local.subscription.services.SubscriptionsImportService.KEY_WITHOUT_DETAILS;
+
 public class ImportConfirmationDialog extends DialogFragment {
     @State
     protected Intent resultServiceIntent;
@@ -38,6 +40,13 @@ public class ImportConfirmationDialog extends DialogFragment {
                 .setMessage(R.string.import_network_expensive_warning)
                 .setCancelable(true)
                 .setNegativeButton(R.string.cancel, null)
+                .setNeutralButton(R.string.import_without_details, (dialogInterface, i) -> {
+                    if (resultServiceIntent != null && getContext() != null) {
+                        getContext().startService(new Intent(resultServiceIntent)
+                                .putExtra(KEY_WITHOUT_DETAILS, true));
+                    }
+                    dismiss();
+                })
                 .setPositiveButton(android.R.string.ok, (dialogInterface, i) -> {
                     if (resultServiceIntent != null && getContext() != null) {
                         getContext().startService(resultServiceIntent);
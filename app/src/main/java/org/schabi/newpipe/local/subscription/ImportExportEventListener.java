@@ -4,7 +4,7 @@ public interface ImportExportEventListener {
     /**
      * Called when the size has been resolved.
      *
-     * @param size how many items there are to import/export
+     * @param size how many items there are to import/export, or -1 if not known in advance
      */
     void onSizeReceived(int size);
 
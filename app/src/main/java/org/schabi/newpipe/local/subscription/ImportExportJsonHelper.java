@@ -19,12 +19,10 @@
 
 package org.schabi.newpipe.local.subscription;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.grack.nanojson.JsonAppendableWriter;
-import com.grack.nanojson.JsonArray;
-import com.grack.nanojson.JsonObject;
-import com.grack.nanojson.JsonParser;
 import com.grack.nanojson.JsonSink;
 import com.grack.nanojson.JsonWriter;
 
@@ -32,14 +30,23 @@ import org.schabi.newpipe.BuildConfig;
 import org.schabi.newpipe.extractor.subscription.SubscriptionExtractor.InvalidSourceException;
 import org.schabi.newpipe.extractor.subscription.SubscriptionItem;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
  * A JSON implementation capable of importing and exporting subscriptions, it has the advantage
  * of being able to transfer subscriptions to any device.
+ * <br><br>
+ * Subscriptions are read and written one at a time, so the memory used does not depend on
+ * how many there are.
  */
 public class ImportExportJsonHelper {
 
@@ -60,37 +67,17 @@ public class ImportExportJsonHelper {
      * Read a JSON source through the input stream and return the parsed subscription items.
      *
      * @param in            the input stream (e.g. a file)
-     * @param eventListener listener for the events generated
+     * @param eventListener listener for the events generated, the size is not known in advance
+     * @see SubscriptionReader
      */
     public static List<SubscriptionItem> readFrom(InputStream in, @Nullable ImportExportEventListener eventListener) throws InvalidSourceException {
-        if (in == null) throw new InvalidSourceException("input is null");
-
+        final SubscriptionReader reader = new SubscriptionReader(in);
         final List<SubscriptionItem> channels = new ArrayList<>();
 
-        try {
-            JsonObject parentObject = JsonParser.object().from(in);
-            JsonArray channelsArray = parentObject.getArray(JSON_SUBSCRIPTIONS_ARRAY_KEY);
-            if (eventListener != null) eventListener.onSizeReceived(channelsArray.size());
-
-            if (channelsArray == null) {
-                throw new InvalidSourceException("Channels array is null");
-            }
-
-            for (Object o : channelsArray) {
-                if (o instanceof JsonObject) {
-                    JsonObject itemObject = (JsonObject) o;
-                    int serviceId = itemObject.getInt(JSON_SERVICE_ID_KEY, 0);
-                    String url = itemObject.getString(JSON_URL_KEY);
-                    String name = itemObject.getString(JSON_NAME_KEY);
-
-                    if (url != null && name != null && !url.isEmpty() && !name.isEmpty()) {
-                        channels.add(new SubscriptionItem(serviceId, url, name));
-                        if (eventListener != null) eventListener.onItemCompleted(name);
-                    }
-                }
-            }
-        } catch (Throwable e) {
-            throw new InvalidSourceException("Couldn't parse json", e);
+        SubscriptionItem item;
+        while ((item = reader.next()) != null) {
+            channels.add(item);
+            if (eventListener != null) eventListener.onItemCompleted(item.getName());
         }
 
         return channels;
@@ -104,8 +91,21 @@ public class ImportExportJsonHelper {
      * @param eventListener listener for the events generated
      */
     public static void writeTo(List<SubscriptionItem> items, OutputStream out, @Nullable ImportExportEventListener eventListener) {
+        writeTo(items.size(), items.iterator(), out, eventListener);
+    }
+
+    /**
+     * Write the subscriptions items as JSON to the output as they are iterated, e.g. while
+     * they are read from the database.
+     *
+     * @param size          how many items there are
+     * @param items         the subscriptions items
+     * @param out           the output stream (e.g. a file)
+     * @param eventListener listener for the events generated
+     */
+    public static void writeTo(int size, Iterator<SubscriptionItem> items, OutputStream out, @Nullable ImportExportEventListener eventListener) {
         JsonAppendableWriter writer = JsonWriter.on(out);
-        writeTo(items, writer, eventListener);
+        writeTo(size, items, writer, eventListener);
         writer.done();
     }
 
@@ -113,7 +113,11 @@ public class ImportExportJsonHelper {
      * @see #writeTo(List, OutputStream, ImportExportEventListener)
      */
     public static void writeTo(List<SubscriptionItem> items, JsonSink writer, @Nullable ImportExportEventListener eventListener) {
-        if (eventListener != null) eventListener.onSizeReceived(items.size());
+        writeTo(items.size(), items.iterator(), writer, eventListener);
+    }
+
+    private static void writeTo(int size, Iterator<SubscriptionItem> items, JsonSink writer, @Nullable ImportExportEventListener eventListener) {
+        if (eventListener != null) eventListener.onSizeReceived(size);
 
         writer.object();
 
@@ -121,7 +125,8 @@ public class ImportExportJsonHelper {
         writer.value(JSON_APP_VERSION_INT_KEY, BuildConfig.VERSION_CODE);
 
         writer.array(JSON_SUBSCRIPTIONS_ARRAY_KEY);
-        for (SubscriptionItem item : items) {
+        while (items.hasNext()) {
+            final SubscriptionItem item = items.next();
             writer.object();
             writer.value(JSON_SERVICE_ID_KEY, item.getServiceId());
             writer.value(JSON_URL_KEY, item.getUrl());
@@ -135,4 +140,244 @@ public class ImportExportJsonHelper {
         writer.end();
     }
 
+    /*//////////////////////////////////////////////////////////////////////////
+    // Streaming reader
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Reads the subscriptions of a JSON source one at a time, parsing only as much of the
+     * source as needed for the next one.
+     * <br><br>
+     * Array elements which are not objects or have no url or name are skipped, as are all
+     * other keys. The source is only known to be valid once {@link #next()} returned null.
+     */
+    public static class SubscriptionReader {
+        @NonNull private final Reader reader;
+
+        private boolean isInArray = false;
+        private boolean isFinished = false;
+        private int peeked = -2;
+
+        public SubscriptionReader(InputStream in) throws InvalidSourceException {
+            if (in == null) throw new InvalidSourceException("input is null");
+            this.reader = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")));
+        }
+
+        /**
+         * @return the next subscription item, or null once all of them were read.
+         */
+        @Nullable
+        public SubscriptionItem next() throws InvalidSourceException {
+            if (isFinished) return null;
+
+            try {
+                if (!isInArray) {
+                    seekSubscriptionsArray();
+                    isInArray = true;
+                    if (peekToken() == ']') {
+                        readToken();
+                        finishArray();
+                        return null;
+                    }
+                }
+
+                while (true) {
+                    final SubscriptionItem item = peekToken() == '{' ? readItem() : skipValue();
+
+                    final int token = readToken();
+                    if (token == ']') {
+                        finishArray();
+                    } else if (token != ',') {
+                        throw new InvalidSourceException("Expected ',' or ']' in channels array");
+                    }
+
+                    if (item != null) return item;
+                    if (isFinished) return null;
+                }
+            } catch (IOException | NumberFormatException e) {
+                throw new InvalidSourceException("Couldn't parse json", e);
+            }
+        }
+
+        private void seekSubscriptionsArray() throws IOException, InvalidSourceException {
+            expect('{');
+            if (peekToken() == '}') throw new InvalidSourceException("Channels array is null");
+
+            while (true) {
+                final String key = readString();
+                expect(':');
+                if (JSON_SUBSCRIPTIONS_ARRAY_KEY.equals(key) && peekToken() == '[') {
+                    expect('[');
+                    return;
+                }
+                skipValue();
+
+                if (readToken() != ',') throw new InvalidSourceException("Channels array is null");
+            }
+        }
+
+        /**
+         * Skips the keys after the array, so the rest of the source is validated as well.
+         */
+        private void finishArray() throws IOException, InvalidSourceException {
+            isFinished = true;
+            int token = readToken();
+            while (token == ',') {
+                readString();
+                expect(':');
+                skipValue();
+                token = readToken();
+            }
+            if (token != '}') throw new InvalidSourceException("Expected '}' after channels array");
+            if (readToken() != -1) throw new InvalidSourceException("Unexpected content after json");
+        }
+
+        @Nullable
+        private SubscriptionItem readItem() throws IOException, InvalidSourceException {
+            int serviceId = 0;
+            String url = null;
+            String name = null;
+
+            expect('{');
+            if (peekToken() == '}') {
+                readToken();
+                return null;
+            }
+
+            int token;
+            do {
+                final String key = readString();
+                expect(':');
+                if (JSON_SERVICE_ID_KEY.equals(key) && isNumber(peekToken())) {
+                    serviceId = (int) Double.parseDouble(readLiteral());
+                } else if (JSON_URL_KEY.equals(key) && peekToken() == '"') {
+                    url = readString();
+                } else if (JSON_NAME_KEY.equals(key) && peekToken() == '"') {
+                    name = readString();
+                } else {
+                    skipValue();
+                }
+            } while ((token = readToken()) == ',');
+            if (token != '}') throw new InvalidSourceException("Expected '}' after channel");
+
+            if (url == null || name == null || url.isEmpty() || name.isEmpty()) return null;
+            return new SubscriptionItem(serviceId, url, name);
+        }
+
+        /**
+         * @return always null, for use in place of an item which was skipped
+         */
+        @Nullable
+        private SubscriptionItem skipValue() throws IOException, InvalidSourceException {
+            final int token = peekToken();
+            if (token == '"') {
+                readString();
+            } else if (token == '{' || token == '[') {
+                final int end = token == '{' ? '}' : ']';
+                readToken();
+                if (peekToken() == end) {
+                    readToken();
+                    return null;
+                }
+
+                int next;
+                do {
+                    if (token == '{') {
+                        readString();
+                        expect(':');
+                    }
+                    skipValue();
+                } while ((next = readToken()) == ',');
+                if (next != end) throw new InvalidSourceException("Unterminated object or array");
+            } else {
+                // true, false, null or a number
+                if (readLiteral().isEmpty()) throw new InvalidSourceException("Expected a value");
+            }
+            return null;
+        }
+
+        private String readString() throws IOException, InvalidSourceException {
+            expect('"');
+            final StringBuilder builder = new StringBuilder();
+            while (true) {
+                int c = read();
+                if (c == -1) throw new InvalidSourceException("Unterminated string");
+                if (c == '"') return builder.toString();
+                if (c == '\\') {
+                    c = read();
+                    switch (c) {
+                        case 'b': builder.append('\b'); break;
+                        case 'f': builder.append('\f'); break;
+                        case 'n': builder.append('\n'); break;
+                        case 'r': builder.append('\r'); break;
+                        case 't': builder.append('\t'); break;
+                        case 'u':
+                            final char[] hex = new char[4];
+                            for (int i = 0; i < hex.length; i++) {
+                                final int h = read();
+                                if (h == -1) throw new InvalidSourceException("Unterminated string");
+                                hex[i] = (char) h;
+                            }
+                            builder.append((char) Integer.parseInt(new String(hex), 16));
+                            break;
+                        case '"': case '\\': case '/':
+                            builder.append((char) c);
+                            break;
+                        default:
+                            throw new InvalidSourceException("Invalid escape in string");
+                    }
+                } else {
+                    builder.append((char) c);
+                }
+            }
+        }
+
+        private String readLiteral() throws IOException {
+            final StringBuilder builder = new StringBuilder();
+            int c = peekToken();
+            while (c != -1 && (Character.isLetterOrDigit(c) || c == '-' || c == '+' || c == '.')) {
+                builder.append((char) read());
+                c = peek();
+            }
+            return builder.toString();
+        }
+
+        private static boolean isNumber(final int c) {
+            return c == '-' || (c >= '0' && c <= '9');
+        }
+
+        private void expect(final char expected) throws IOException, InvalidSourceException {
+            if (readToken() != expected) {
+                throw new InvalidSourceException("Expected '" + expected + "'");
+            }
+        }
+
+        /**
+         * @return the next character which is not whitespace, without consuming it
+         */
+        private int peekToken() throws IOException {
+            int c = peek();
+            while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                read();
+                c = peek();
+            }
+            return c;
+        }
+
+        private int readToken() throws IOException {
+            peekToken();
+            return read();
+        }
+
+        private int peek() throws IOException {
+            if (peeked == -2) peeked = reader.read();
+            return peeked;
+        }
+
+        private int read() throws IOException {
+            final int c = peek();
+            peeked = -2;
+            return c;
+        }
+    }
 }
@@ -10,21 +10,15 @@ import org.schabi.newpipe.database.AppDatabase;
 import org.schabi.newpipe.database.subscription.SubscriptionDAO;
 import org.schabi.newpipe.database.subscription.SubscriptionEntity;
 import org.schabi.newpipe.extractor.channel.ChannelInfo;
-import org.schabi.newpipe.util.ExtractorHelper;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Completable;
 import io.reactivex.CompletableSource;
 import io.reactivex.Flowable;
-import io.reactivex.Maybe;
-import io.reactivex.Scheduler;
 import io.reactivex.functions.Function;
-import io.reactivex.schedulers.Schedulers;
 
 /**
  * Subscription Service singleton:
@@ -53,19 +47,13 @@ public class SubscriptionService {
     protected final String TAG = "SubscriptionService@" + Integer.toHexString(hashCode());
     protected static final boolean DEBUG = MainActivity.DEBUG;
     private static final int SUBSCRIPTION_DEBOUNCE_INTERVAL = 500;
-    private static final int SUBSCRIPTION_THREAD_POOL_SIZE = 4;
 
     private final AppDatabase db;
     private final Flowable<List<SubscriptionEntity>> subscription;
 
-    private final Scheduler subscriptionScheduler;
-
     private SubscriptionService(Context context) {
         db = NewPipeDatabase.getInstance(context.getApplicationContext());
         subscription = getSubscriptionInfos();
-
-        final Executor subscriptionExecutor = Executors.newFixedThreadPool(SUBSCRIPTION_THREAD_POOL_SIZE);
-        subscriptionScheduler = Schedulers.from(subscriptionExecutor);
     }
 
     /**
@@ -98,14 +86,6 @@ public class SubscriptionService {
         return subscription;
     }
 
-    public Maybe<ChannelInfo> getChannelInfo(final SubscriptionEntity subscriptionEntity) {
-        if (DEBUG) Log.d(TAG, "getChannelInfo() called with: subscriptionEntity = [" + subscriptionEntity + "]");
-
-        return Maybe.fromSingle(ExtractorHelper
-                .getChannelInfo(subscriptionEntity.getServiceId(), subscriptionEntity.getUrl(), false))
-                .subscribeOn(subscriptionScheduler);
-    }
-
     /**
      * Returns the database access interface for subscription table.
      */
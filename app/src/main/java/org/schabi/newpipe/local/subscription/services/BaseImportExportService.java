@@ -128,7 +128,9 @@ public abstract class BaseImportExportService extends Service {
     protected void updateNotification(String text) {
         notificationBuilder.setProgress(maxProgress.get(), currentProgress.get(), maxProgress.get() == -1);
 
-        final String progressText = currentProgress + "/" + maxProgress;
+        final String progressText = maxProgress.get() == -1
+                ? String.valueOf(currentProgress)
+                : currentProgress + "/" + maxProgress;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
             if (!TextUtils.isEmpty(text)) text = text + "  (" + progressText + ")";
         } else {
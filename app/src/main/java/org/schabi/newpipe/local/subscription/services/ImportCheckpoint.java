@@ -0,0 +1,173 @@
+package org.schabi.newpipe.local.subscription.services;
+
+import androidx.annotation.NonNull;
+
+import org.schabi.newpipe.database.AppDatabase;
+import org.schabi.newpipe.database.subscription.ImportCheckpointDAO;
+import org.schabi.newpipe.database.subscription.ImportCheckpointEntity;
+import org.schabi.newpipe.database.subscription.ImportFailureEntity;
+import org.schabi.newpipe.database.subscription.SubscriptionEntity;
+import org.schabi.newpipe.extractor.subscription.SubscriptionItem;
+import org.schabi.newpipe.local.feed.FeedEngine;
+import org.schabi.newpipe.local.subscription.ImportExportEventListener;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+
+/**
+ * Keeps track of how far an import got, so importing the same source again after it was
+ * interrupted continues where it stopped.
+ * <br><br>
+ * Items are numbered in the order the source gives them. Since channels are fetched in
+ * parallel, they do not finish in that order, so only the count of items from the start of
+ * the source which all finished is stored. The items which could not be imported are stored
+ * as well, and are tried again first when the import is resumed.
+ * <br><br>
+ * The progress is recorded in the same transaction that stores the subscriptions, so it never
+ * gets ahead of them.
+ * */
+/* package-private */ final class ImportCheckpoint {
+    /** Checkpoints not touched for this long are dropped, as their source likely is gone */
+    private static final long MAX_CHECKPOINT_AGE = TimeUnit.DAYS.toMillis(7);
+
+    /** Index of the items retried from a previous import */
+    private static final int RETRIED_INDEX = -1;
+
+    @NonNull private final ImportCheckpointDAO checkpointTable;
+    @NonNull private final String sourceHash;
+    private final int processedCount;
+    @NonNull private final List<ImportFailureEntity> failures;
+
+    @NonNull private final Map<SubscriptionEntity, Integer> pendingIndexes = new IdentityHashMap<>();
+    /** Indexes finished ahead of {@link #watermark} */
+    @NonNull private final TreeSet<Integer> finishedIndexes = new TreeSet<>();
+    private int watermark;
+    private int itemCount = 0;
+
+    private ImportCheckpoint(@NonNull final ImportCheckpointDAO checkpointTable,
+                             @NonNull final String sourceHash, final int processedCount,
+                             @NonNull final List<ImportFailureEntity> failures) {
+        this.checkpointTable = checkpointTable;
+        this.sourceHash = sourceHash;
+        this.processedCount = processedCount;
+        this.failures = failures;
+        this.watermark = processedCount;
+    }
+
+    /**
+     * Loads the checkpoint of the source, creating it if the source was never imported or
+     * its import finished. Must not be called on the main thread.
+     * */
+    @NonNull
+    static ImportCheckpoint open(@NonNull final AppDatabase database,
+                                 @NonNull final String sourceHash) {
+        final ImportCheckpointDAO checkpointTable = database.importCheckpointDAO();
+        final Date now = new Date();
+
+        return database.runInTransaction(() -> {
+            checkpointTable.deleteCheckpointsBefore(new Date(now.getTime() - MAX_CHECKPOINT_AGE));
+            checkpointTable.insertCheckpoint(new ImportCheckpointEntity(sourceHash, 0, now));
+
+            final ImportCheckpointEntity checkpoint = checkpointTable.getCheckpoint(sourceHash);
+            final int processedCount = checkpoint != null ? checkpoint.getProcessedCount() : 0;
+            return new ImportCheckpoint(checkpointTable, sourceHash, processedCount,
+                    checkpointTable.getFailures(sourceHash));
+        });
+    }
+
+    /**
+     * Turns the items of the source into the subscriptions still to import: first those which
+     * failed last time, then the items after the ones already processed. The skipped items
+     * which were imported successfully are reported as completed.
+     * */
+    @NonNull
+    Flowable<SubscriptionEntity> resume(@NonNull final Flowable<SubscriptionItem> items,
+                                        @NonNull final ImportExportEventListener listener) {
+        final Set<String> failedKeys = new HashSet<>();
+        for (final ImportFailureEntity failure : failures) {
+            failedKeys.add(keyOf(failure.getServiceId(), failure.getUrl()));
+        }
+
+        final Flowable<SubscriptionEntity> retried = Flowable.fromIterable(failures)
+                .map(failure -> track(failure.toSubscriptionItem(), RETRIED_INDEX));
+
+        final Flowable<SubscriptionEntity> remaining = items.concatMap(item -> {
+            final int index = itemCount++;
+            if (index >= processedCount) return Flowable.just(track(item, index));
+
+            if (!failedKeys.contains(keyOf(item.getServiceId(), item.getUrl()))) {
+                listener.onItemCompleted("");
+            }
+            return Flowable.empty();
+        });
+
+        return retried.concatWith(remaining);
+    }
+
+    /**
+     * Records the results, which must have been stored already in the current transaction.
+     * */
+    void record(@NonNull final List<FeedEngine.ChannelResult> results) {
+        final List<ImportFailureEntity> newFailures = new ArrayList<>();
+        final int processed;
+
+        synchronized (this) {
+            for (final FeedEngine.ChannelResult result : results) {
+                final Integer index = pendingIndexes.remove(result.subscription);
+                if (index == null) continue;
+
+                final SubscriptionEntity subscription = result.subscription;
+                if (result.info == null) {
+                    newFailures.add(new ImportFailureEntity(sourceHash,
+                            subscription.getServiceId(), subscription.getUrl(),
+                            subscription.getName()));
+                } else if (index == RETRIED_INDEX) {
+                    checkpointTable.deleteFailure(sourceHash, subscription.getServiceId(),
+                            subscription.getUrl());
+                }
+
+                if (index != RETRIED_INDEX) finishedIndexes.add(index);
+            }
+
+            while (!finishedIndexes.isEmpty() && finishedIndexes.first() == watermark) {
+                finishedIndexes.pollFirst();
+                watermark++;
+            }
+            processed = watermark;
+        }
+
+        if (!newFailures.isEmpty()) checkpointTable.insertFailures(newFailures);
+        checkpointTable.updateProgress(sourceHash, processed, new Date());
+    }
+
+    /**
+     * Drops the checkpoint, along with its failures, once the import went through the whole
+     * source, so importing it again starts from scratch instead of skipping the items imported
+     * this time.
+     * */
+    void finish() {
+        checkpointTable.deleteCheckpoint(sourceHash);
+    }
+
+    @NonNull
+    private synchronized SubscriptionEntity track(@NonNull final SubscriptionItem item,
+                                                  final int index) {
+        final SubscriptionEntity subscription = SubscriptionsImportService.toPlaceholder(item);
+        pendingIndexes.put(subscription, index);
+        return subscription;
+    }
+
+    @NonNull
+    private static String keyOf(final int serviceId, @NonNull final String url) {
+        return serviceId + ":" + url;
+    }
+}
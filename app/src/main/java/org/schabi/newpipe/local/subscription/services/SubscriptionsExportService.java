@@ -20,6 +20,7 @@
 package org.schabi.newpipe.local.subscription.services;
 
 import android.content.Intent;
+import android.database.Cursor;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import android.text.TextUtils;
 import android.util.Log;
@@ -34,11 +35,11 @@ import org.schabi.newpipe.local.subscription.ImportExportJsonHelper;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
+import io.reactivex.Flowable;
 import io.reactivex.android.schedulers.AndroidSchedulers;
-import io.reactivex.functions.Function;
 import io.reactivex.schedulers.Schedulers;
 
 import static org.schabi.newpipe.MainActivity.DEBUG;
@@ -96,17 +97,7 @@ public class SubscriptionsExportService extends BaseImportExportService {
     private void startExport() {
         showToast(R.string.export_ongoing);
 
-        subscriptionService.subscriptionTable()
-                .getAll()
-                .take(1)
-                .map(subscriptionEntities -> {
-                    final List<SubscriptionItem> result = new ArrayList<>(subscriptionEntities.size());
-                    for (SubscriptionEntity entity : subscriptionEntities) {
-                        result.add(new SubscriptionItem(entity.getServiceId(), entity.getUrl(), entity.getName()));
-                    }
-                    return result;
-                })
-                .map(exportToFile())
+        Flowable.fromCallable(this::exportToFile)
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(getSubscriber());
@@ -140,11 +131,42 @@ public class SubscriptionsExportService extends BaseImportExportService {
         };
     }
 
-    private Function<List<SubscriptionItem>, File> exportToFile() {
-        return subscriptionItems -> {
-            ImportExportJsonHelper.writeTo(subscriptionItems, outputStream, eventListener);
-            return outFile;
-        };
+    /**
+     * Writes the subscriptions while they are read from the database, so they are never all
+     * held in memory.
+     */
+    private File exportToFile() {
+        try (Cursor cursor = subscriptionService.subscriptionTable().getAllCursor()) {
+            ImportExportJsonHelper.writeTo(cursor.getCount(), new CursorItemIterator(cursor),
+                    outputStream, eventListener);
+        }
+        return outFile;
+    }
+
+    private static class CursorItemIterator implements Iterator<SubscriptionItem> {
+        private final Cursor cursor;
+        private final int serviceIdIndex;
+        private final int urlIndex;
+        private final int nameIndex;
+
+        CursorItemIterator(Cursor cursor) {
+            this.cursor = cursor;
+            serviceIdIndex = cursor.getColumnIndexOrThrow(SubscriptionEntity.SUBSCRIPTION_SERVICE_ID);
+            urlIndex = cursor.getColumnIndexOrThrow(SubscriptionEntity.SUBSCRIPTION_URL);
+            nameIndex = cursor.getColumnIndexOrThrow(SubscriptionEntity.SUBSCRIPTION_NAME);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor.getPosition() + 1 < cursor.getCount();
+        }
+
+        @Override
+        public SubscriptionItem next() {
+            if (!cursor.moveToNext()) throw new NoSuchElementException();
+            return new SubscriptionItem(cursor.getInt(serviceIdIndex), cursor.getString(urlIndex),
+                    cursor.getString(nameIndex));
+        }
     }
 
     protected void handleError(Throwable error) {
@@ -28,25 +28,29 @@ import android.util.Log;
 
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
+import org.schabi.newpipe.NewPipeDatabase;
 import org.schabi.newpipe.R;
 import org.schabi.newpipe.database.subscription.SubscriptionEntity;
 import org.schabi.newpipe.extractor.NewPipe;
 import org.schabi.newpipe.extractor.channel.ChannelInfo;
 import org.schabi.newpipe.extractor.subscription.SubscriptionItem;
+import org.schabi.newpipe.local.feed.FeedEngine;
 import org.schabi.newpipe.local.subscription.ImportExportJsonHelper;
 import org.schabi.newpipe.util.Constants;
-import org.schabi.newpipe.util.ExtractorHelper;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Emitter;
 import io.reactivex.Flowable;
-import io.reactivex.Notification;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
@@ -60,6 +64,11 @@ public class SubscriptionsImportService extends BaseImportExportService {
     public static final int PREVIOUS_EXPORT_MODE = 2;
     public static final String KEY_MODE = "key_mode";
     public static final String KEY_VALUE = "key_value";
+    /**
+     * Whether to only store the subscriptions as they are given, without fetching their
+     * channels. Their details are filled in once the feed refreshes them.
+     */
+    public static final String KEY_WITHOUT_DETAILS = "key_without_details";
 
     /**
      * A {@link LocalBroadcastManager local broadcast} will be made with this action when the import is successfully completed.
@@ -69,11 +78,16 @@ public class SubscriptionsImportService extends BaseImportExportService {
     private Subscription subscription;
     private int currentMode;
     private int currentServiceId;
+    private boolean isWithoutDetails;
 
     @Nullable
     private String channelUrl;
     @Nullable
+    private String filePath;
+    @Nullable
     private InputStream inputStream;
+    @Nullable
+    private ImportCheckpoint checkpoint;
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
@@ -81,11 +95,12 @@ public class SubscriptionsImportService extends BaseImportExportService {
 
         currentMode = intent.getIntExtra(KEY_MODE, -1);
         currentServiceId = intent.getIntExtra(Constants.KEY_SERVICE_ID, Constants.NO_SERVICE_ID);
+        isWithoutDetails = intent.getBooleanExtra(KEY_WITHOUT_DETAILS, false);
 
         if (currentMode == CHANNEL_URL_MODE) {
             channelUrl = intent.getStringExtra(KEY_VALUE);
         } else {
-            final String filePath = intent.getStringExtra(KEY_VALUE);
+            filePath = intent.getStringExtra(KEY_VALUE);
             if (TextUtils.isEmpty(filePath)) {
                 stopAndReportError(new IllegalStateException("Importing from input stream, but file path is empty or null"), "Importing subscriptions");
                 return START_NOT_STICKY;
@@ -106,7 +121,8 @@ public class SubscriptionsImportService extends BaseImportExportService {
         }
 
         startImport();
-        return START_NOT_STICKY;
+        // Should the service get killed, the import is resumed from its checkpoint
+        return START_REDELIVER_INTENT;
     }
 
     @Override
@@ -130,9 +146,10 @@ public class SubscriptionsImportService extends BaseImportExportService {
     //////////////////////////////////////////////////////////////////////////*/
 
     /**
-     * How many extractions running in parallel.
+     * Number of subscriptions handed to the {@link FeedEngine} at once. The parallelism and
+     * rate limits it arrives at are kept between batches.
      */
-    public static final int PARALLEL_EXTRACTIONS = 8;
+    public static final int FETCH_BATCH_SIZE = 100;
 
     /**
      * Number of items to buffer to mass-insert in the subscriptions table, this leads to
@@ -143,7 +160,7 @@ public class SubscriptionsImportService extends BaseImportExportService {
     private void startImport() {
         showToast(R.string.import_ongoing);
 
-        Flowable<List<SubscriptionItem>> flowable = null;
+        Flowable<SubscriptionItem> flowable = null;
         switch (currentMode) {
             case CHANNEL_URL_MODE:
                 flowable = importFromChannelUrl();
@@ -162,27 +179,8 @@ public class SubscriptionsImportService extends BaseImportExportService {
             return;
         }
 
-        flowable.doOnNext(subscriptionItems -> eventListener.onSizeReceived(subscriptionItems.size()))
-                .flatMap(Flowable::fromIterable)
-
-                .parallel(PARALLEL_EXTRACTIONS)
-                .runOn(Schedulers.io())
-                .map((Function<SubscriptionItem, Notification<ChannelInfo>>) subscriptionItem -> {
-                    try {
-                        return Notification.createOnNext(ExtractorHelper
-                                .getChannelInfo(subscriptionItem.getServiceId(), subscriptionItem.getUrl(), true)
-                                .blockingGet());
-                    } catch (Throwable e) {
-                        return Notification.createOnError(e);
-                    }
-                })
-                .sequential()
-
-                .observeOn(Schedulers.io())
-                .doOnNext(getNotificationsConsumer())
-                .buffer(BUFFER_COUNT_BEFORE_INSERT)
-                .map(upsertBatch())
-
+        (isWithoutDetails ? importWithoutDetails(flowable.map(SubscriptionsImportService::toPlaceholder))
+                : importWithDetails(flowable))
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(getSubscriber());
@@ -209,6 +207,10 @@ public class SubscriptionsImportService extends BaseImportExportService {
 
             @Override
             public void onComplete() {
+                if (checkpoint != null) {
+                    final ImportCheckpoint finished = checkpoint;
+                    Schedulers.io().scheduleDirect(finished::finish);
+                }
                 LocalBroadcastManager.getInstance(SubscriptionsImportService.this).sendBroadcast(new Intent(IMPORT_COMPLETE_ACTION));
                 showToast(R.string.import_complete_toast);
                 stopService();
@@ -216,13 +218,61 @@ public class SubscriptionsImportService extends BaseImportExportService {
         };
     }
 
-    private Consumer<Notification<ChannelInfo>> getNotificationsConsumer() {
-        return notification -> {
-            if (notification.isOnNext()) {
-                String name = notification.getValue().getName();
+    /**
+     * Fetches the channels of the subscriptions, as fast as the services allow, and stores
+     * them with their details.
+     * <br><br>
+     * The progress is kept in an {@link ImportCheckpoint}, so if the same source was partially
+     * imported before, only the items it did not get to and those which failed are imported.
+     */
+    private Flowable<List<SubscriptionEntity>> importWithDetails(final Flowable<SubscriptionItem> items) {
+        final FeedEngine.Controller controller = new FeedEngine.Controller();
+        return resumeFromCheckpoint(items)
+                .buffer(FETCH_BATCH_SIZE)
+                .concatMap(batch -> FeedEngine.fetch(batch, true, controller)
+                        .toFlowable(BackpressureStrategy.BUFFER))
+
+                .observeOn(Schedulers.io())
+                .doOnNext(getResultsConsumer())
+                .buffer(BUFFER_COUNT_BEFORE_INSERT)
+                .map(upsertBatch());
+    }
+
+    private Flowable<SubscriptionEntity> resumeFromCheckpoint(final Flowable<SubscriptionItem> items) {
+        return Flowable.defer(() -> {
+            checkpoint = ImportCheckpoint.open(NewPipeDatabase.getInstance(this), getSourceHash());
+            return checkpoint.resume(items, eventListener);
+        });
+    }
+
+    /**
+     * Stores the subscriptions right away, keeping the details of those already subscribed to.
+     */
+    private Flowable<List<SubscriptionEntity>> importWithoutDetails(final Flowable<SubscriptionEntity> subscriptions) {
+        return subscriptions
+                .doOnNext(subscription -> eventListener.onItemCompleted(subscription.getName()))
+                .buffer(BUFFER_COUNT_BEFORE_INSERT)
+                .map(batch -> {
+                    subscriptionService.subscriptionTable().silentInsertAll(batch);
+                    return batch;
+                });
+    }
+
+    /* package-private */ static SubscriptionEntity toPlaceholder(final SubscriptionItem item) {
+        final SubscriptionEntity subscription = new SubscriptionEntity();
+        subscription.setServiceId(item.getServiceId());
+        subscription.setUrl(item.getUrl());
+        subscription.setName(item.getName());
+        return subscription;
+    }
+
+    private Consumer<FeedEngine.ChannelResult> getResultsConsumer() {
+        return result -> {
+            if (result.info != null) {
+                String name = result.info.getName();
                 eventListener.onItemCompleted(!TextUtils.isEmpty(name) ? name : "");
-            } else if (notification.isOnError()) {
-                final Throwable error = notification.getError();
+            } else if (result.error != null) {
+                final Throwable error = result.error;
                 final Throwable cause = error.getCause();
                 if (error instanceof IOException) {
                     throw (IOException) error;
@@ -235,31 +285,81 @@ public class SubscriptionsImportService extends BaseImportExportService {
         };
     }
 
-    private Function<List<Notification<ChannelInfo>>, List<SubscriptionEntity>> upsertBatch() {
-        return notificationList -> {
-            final List<ChannelInfo> infoList = new ArrayList<>(notificationList.size());
-            for (Notification<ChannelInfo> n : notificationList) {
-                if (n.isOnNext()) infoList.add(n.getValue());
+    private Function<List<FeedEngine.ChannelResult>, List<SubscriptionEntity>> upsertBatch() {
+        return results -> {
+            final List<ChannelInfo> infoList = new ArrayList<>(results.size());
+            for (FeedEngine.ChannelResult result : results) {
+                if (result.info != null) infoList.add(result.info);
             }
 
-            return subscriptionService.upsertAll(infoList);
+            return NewPipeDatabase.getInstance(this).runInTransaction(() -> {
+                final List<SubscriptionEntity> upserted = subscriptionService.upsertAll(infoList);
+                if (checkpoint != null) checkpoint.record(results);
+                return upserted;
+            });
         };
     }
 
-    private Flowable<List<SubscriptionItem>> importFromChannelUrl() {
-        return Flowable.fromCallable(() -> NewPipe.getService(currentServiceId)
+    /**
+     * Identifies the source being imported, i.e. the contents of the file or the channel url.
+     */
+    private String getSourceHash() throws Exception {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        digest.update((currentMode + ":" + currentServiceId + ":").getBytes("UTF-8"));
+
+        if (currentMode == CHANNEL_URL_MODE) {
+            digest.update(String.valueOf(channelUrl).getBytes("UTF-8"));
+        } else {
+            try (InputStream fileStream = new FileInputStream(new File(filePath))) {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = fileStream.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+
+        final StringBuilder hash = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            hash.append(String.format("%02x", b));
+        }
+        return hash.toString();
+    }
+
+    private Flowable<SubscriptionItem> importFromChannelUrl() {
+        return importFromList(() -> NewPipe.getService(currentServiceId)
                 .getSubscriptionExtractor()
                 .fromChannelUrl(channelUrl));
     }
 
-    private Flowable<List<SubscriptionItem>> importFromInputStream() {
-        return Flowable.fromCallable(() -> NewPipe.getService(currentServiceId)
+    private Flowable<SubscriptionItem> importFromInputStream() {
+        return importFromList(() -> NewPipe.getService(currentServiceId)
                 .getSubscriptionExtractor()
                 .fromInputStream(inputStream));
     }
 
-    private Flowable<List<SubscriptionItem>> importFromPreviousExport() {
-        return Flowable.fromCallable(() -> ImportExportJsonHelper.readFrom(inputStream, null));
+    private Flowable<SubscriptionItem> importFromList(final Callable<List<SubscriptionItem>> items) {
+        return Flowable.fromCallable(items)
+                .doOnNext(subscriptionItems -> eventListener.onSizeReceived(subscriptionItems.size()))
+                .flatMap(Flowable::fromIterable);
+    }
+
+    /**
+     * Reads the items only as fast as their channels are extracted, so the whole export is
+     * never held in memory.
+     */
+    private Flowable<SubscriptionItem> importFromPreviousExport() {
+        return Flowable.generate(() -> {
+            eventListener.onSizeReceived(-1);
+            return new ImportExportJsonHelper.SubscriptionReader(inputStream);
+        }, (ImportExportJsonHelper.SubscriptionReader reader, Emitter<SubscriptionItem> emitter) -> {
+            final SubscriptionItem item = reader.next();
+            if (item != null) {
+                emitter.onNext(item);
+            } else {
+                emitter.onComplete();
+            }
+        });
     }
 
     protected void handleError(@NonNull Throwable error) {
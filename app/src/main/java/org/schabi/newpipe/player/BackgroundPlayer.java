@@ -121,7 +121,8 @@ public final class BackgroundPlayer extends Service {
         if (basePlayerImpl.mediaSessionManager != null) {
             basePlayerImpl.mediaSessionManager.handleMediaButtonIntent(intent);
         }
-        return START_NOT_STICKY;
+        // Restarted with a null intent after process death, to resume from the journal
+        return START_STICKY;
     }
 
     @Override
@@ -282,6 +283,7 @@ public final class BackgroundPlayer extends Service {
         BasePlayerImpl(Context context) {
             super(context);
             this.resolver = new AudioPlaybackResolver(context, dataSource);
+            this.loadControl.setBackgroundPlayback(true);
         }
 
         @Override
@@ -20,13 +20,17 @@
 package org.schabi.newpipe.player;
 
 import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.media.AudioManager;
+import android.net.ConnectivityManager;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.View;
@@ -38,7 +42,6 @@ import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.DefaultRenderersFactory;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.ExoPlayerFactory;
-import com.google.android.exoplayer2.LoadControl;
 import com.google.android.exoplayer2.PlaybackParameters;
 import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.RenderersFactory;
@@ -61,20 +64,24 @@ import org.schabi.newpipe.extractor.stream.StreamInfo;
 import org.schabi.newpipe.local.history.HistoryRecordManager;
 import org.schabi.newpipe.player.helper.AudioReactor;
 import org.schabi.newpipe.player.helper.LoadController;
+import org.schabi.newpipe.player.helper.MediaCacheManager;
 import org.schabi.newpipe.player.helper.MediaSessionManager;
 import org.schabi.newpipe.player.helper.PlayerDataSource;
 import org.schabi.newpipe.player.helper.PlayerHelper;
 import org.schabi.newpipe.player.mediasource.FailedMediaSource;
+import org.schabi.newpipe.player.metrics.PlaybackMetricsCollector;
 import org.schabi.newpipe.player.playback.BasePlayerMediaSession;
 import org.schabi.newpipe.player.playback.CustomTrackSelector;
 import org.schabi.newpipe.player.playback.MediaSourceManager;
 import org.schabi.newpipe.player.playback.PlaybackListener;
 import org.schabi.newpipe.player.playqueue.PlayQueue;
 import org.schabi.newpipe.player.playqueue.PlayQueueAdapter;
+import org.schabi.newpipe.player.playqueue.PlayQueueHandoff;
+import org.schabi.newpipe.player.playqueue.PlayQueueJournal;
 import org.schabi.newpipe.player.playqueue.PlayQueueItem;
+import org.schabi.newpipe.player.playqueue.events.PlayQueueEventType;
 import org.schabi.newpipe.player.resolver.MediaSourceTag;
 import org.schabi.newpipe.util.ImageDisplayConstants;
-import org.schabi.newpipe.util.SerializedCache;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
@@ -121,7 +128,7 @@ public abstract class BasePlayer implements
     final protected PlayerDataSource dataSource;
 
     @NonNull
-    final private LoadControl loadControl;
+    final protected LoadController loadControl;
     @NonNull
     final private RenderersFactory renderFactory;
 
@@ -129,6 +136,10 @@ public abstract class BasePlayer implements
     final private SerialDisposable progressUpdateReactor;
     @NonNull
     final private CompositeDisposable databaseUpdateReactor;
+    @NonNull
+    final private SerialDisposable cachePriorityReactor;
+    @NonNull
+    final private SerialDisposable journalReactor;
     /*//////////////////////////////////////////////////////////////////////////
     // Intent
     //////////////////////////////////////////////////////////////////////////*/
@@ -181,13 +192,26 @@ public abstract class BasePlayer implements
     protected final static int PLAY_PREV_ACTIVATION_LIMIT_MILLIS = 5000; // 5 seconds
     protected final static int PROGRESS_LOOP_INTERVAL_MILLIS = 500;
     protected final static int RECOVERY_SKIP_THRESHOLD_MILLIS = 3000; // 3 seconds
+    protected final static int JOURNAL_INTERVAL_MILLIS = 5000; // 5 seconds
 
     protected SimpleExoPlayer simpleExoPlayer;
     protected AudioReactor audioReactor;
     protected MediaSessionManager mediaSessionManager;
+    @NonNull
+    protected final MediaCacheManager cacheManager;
+    @NonNull
+    protected final PlayQueueJournal queueJournal;
+    @NonNull
+    private final PlayQueueJournal.Session journalSession;
 
+    @NonNull
+    final private ComponentCallbacks2 memoryCallbacks;
+    /** Only collected once the user opted in, read when the player is created */
+    @Nullable
+    final private PlaybackMetricsCollector metricsCollector;
     private boolean isPrepared = false;
     private Disposable stateLoader;
+    private long lastJournaledAt;
 
     //////////////////////////////////////////////////////////////////////////*/
 
@@ -207,6 +231,11 @@ public abstract class BasePlayer implements
 
         this.progressUpdateReactor = new SerialDisposable();
         this.databaseUpdateReactor = new CompositeDisposable();
+        this.cachePriorityReactor = new SerialDisposable();
+        this.journalReactor = new SerialDisposable();
+        this.cacheManager = MediaCacheManager.getInstance(context);
+        this.queueJournal = PlayQueueJournal.getInstance(context);
+        this.journalSession = queueJournal.openSession();
 
         final String userAgent = DownloaderImpl.USER_AGENT;
         final DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter.Builder(context).build();
@@ -216,6 +245,27 @@ public abstract class BasePlayer implements
         this.trackSelector = new CustomTrackSelector(trackSelectionFactory);
 
         this.loadControl = new LoadController(context);
+        this.loadControl.setUnmeteredNetwork(isUnmeteredNetwork());
+        this.memoryCallbacks = new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                loadControl.onTrimMemory(level);
+                // The process is more likely to be killed from here on
+                if (level >= TRIM_MEMORY_BACKGROUND) flushPlaybackStates();
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {}
+
+            @Override
+            public void onLowMemory() {
+                loadControl.onTrimMemory(TRIM_MEMORY_COMPLETE);
+            }
+        };
+        context.registerComponentCallbacks(memoryCallbacks);
+
+        this.metricsCollector = PlayerHelper.isPlaybackMetricsEnabled(context)
+                ? new PlaybackMetricsCollector(context, loadControl) : null;
         this.renderFactory = new DefaultRenderersFactory(context);
     }
 
@@ -231,6 +281,7 @@ public abstract class BasePlayer implements
 
         simpleExoPlayer = ExoPlayerFactory.newSimpleInstance(context, renderFactory, trackSelector, loadControl);
         simpleExoPlayer.addListener(this);
+        if (metricsCollector != null) simpleExoPlayer.addAnalyticsListener(metricsCollector);
         simpleExoPlayer.setPlayWhenReady(playOnReady);
         simpleExoPlayer.setSeekParameters(PlayerHelper.getSeekParameters(context));
 
@@ -246,13 +297,21 @@ public abstract class BasePlayer implements
 
     public void handleIntent(Intent intent) {
         if (DEBUG) Log.d(TAG, "handleIntent() called with: intent = [" + intent + "]");
-        if (intent == null) return;
+        if (intent == null) {
+            // The service has been restarted by the system after the process was killed
+            if (playQueue == null) resumeFromJournal();
+            return;
+        }
 
         // Resolve play queue
         if (!intent.hasExtra(PLAY_QUEUE_KEY)) return;
         final String intentCacheKey = intent.getStringExtra(PLAY_QUEUE_KEY);
-        final PlayQueue queue = SerializedCache.getInstance().take(intentCacheKey, PlayQueue.class);
-        if (queue == null) return;
+        final PlayQueue queue = PlayQueueHandoff.take(intentCacheKey);
+        if (queue == null) {
+            Log.w(TAG, "Play queue is no longer available for hand-off, key=[" +
+                    intentCacheKey + "]");
+            return;
+        }
 
         // Resolve append intents
         if (intent.getBooleanExtra(APPEND_ONLY, false) && playQueue != null) {
@@ -307,6 +366,41 @@ public abstract class BasePlayer implements
                 /*playOnInit=*/true);
     }
 
+    /**
+     * Restores the queue, position and quality of the last player from the
+     * {@link PlayQueueJournal}, after the process has been killed while playing. Playback is
+     * only started again if it was not paused. Shuts the player down if there is nothing to
+     * resume.
+     * */
+    private void resumeFromJournal() {
+        if (DEBUG) Log.d(TAG, "resumeFromJournal() called");
+        final int repeatMode = getRepeatMode();
+        final float playbackSpeed = getPlaybackSpeed();
+        final float playbackPitch = getPlaybackPitch();
+        final boolean playbackSkipSilence = getPlaybackSkipSilence();
+
+        if (stateLoader != null) stateLoader.dispose();
+        stateLoader = queueJournal.restore()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(restored -> {
+                            if (playQueue != null) return;
+                            if (restored.getPlaybackQuality() != null) {
+                                setPlaybackQuality(restored.getPlaybackQuality());
+                            }
+                            initPlayback(restored.getQueue(), repeatMode, playbackSpeed,
+                                    playbackPitch, playbackSkipSilence,
+                                    restored.getPlayWhenReady());
+                        },
+                        error -> {
+                            Log.e(TAG, "Unable to restore play queue journal", error);
+                            if (playQueue == null) onPlaybackShutdown();
+                        },
+                        () -> {
+                            if (playQueue == null) onPlaybackShutdown();
+                        });
+        databaseUpdateReactor.add(stateLoader);
+    }
+
     protected void initPlayback(@NonNull final PlayQueue queue,
                                 @Player.RepeatMode final int repeatMode,
                                 final float playbackSpeed,
@@ -320,8 +414,11 @@ public abstract class BasePlayer implements
 
         playQueue = queue;
         playQueue.init();
+        cachePriorityReactor.set(getCachePriorityReactor(queue));
+        journalReactor.set(getJournalReactor(queue));
         if (playbackManager != null) playbackManager.dispose();
-        playbackManager = new MediaSourceManager(this, playQueue);
+        playbackManager = new MediaSourceManager(this, playQueue,
+                PlayerHelper.getPlayQueuePrefetchDistance(context));
 
         if (playQueueAdapter != null) playQueueAdapter.dispose();
         playQueueAdapter = new PlayQueueAdapter(context, playQueue);
@@ -329,8 +426,10 @@ public abstract class BasePlayer implements
 
     public void destroyPlayer() {
         if (DEBUG) Log.d(TAG, "destroyPlayer() called");
+        if (metricsCollector != null) metricsCollector.onSessionEnded();
         if (simpleExoPlayer != null) {
             simpleExoPlayer.removeListener(this);
+            if (metricsCollector != null) simpleExoPlayer.removeAnalyticsListener(metricsCollector);
             simpleExoPlayer.stop();
             simpleExoPlayer.release();
         }
@@ -351,10 +450,16 @@ public abstract class BasePlayer implements
         if (DEBUG) Log.d(TAG, "destroy() called");
         destroyPlayer();
         unregisterBroadcastReceiver();
+        context.unregisterComponentCallbacks(memoryCallbacks);
 
         databaseUpdateReactor.clear();
         progressUpdateReactor.set(null);
+        cachePriorityReactor.set(null);
+        journalReactor.set(null);
 
+        // Closed on purpose, there is nothing to resume
+        journalSession.clear();
+        flushPlaybackStates();
     }
 
     /*//////////////////////////////////////////////////////////////////////////
@@ -408,6 +513,7 @@ public abstract class BasePlayer implements
      */
     protected void setupBroadcastReceiver(IntentFilter intentFilter) {
         intentFilter.addAction(AudioManager.ACTION_AUDIO_BECOMING_NOISY);
+        intentFilter.addAction(ConnectivityManager.CONNECTIVITY_ACTION);
     }
 
     public void onBroadcastReceived(Intent intent) {
@@ -416,9 +522,18 @@ public abstract class BasePlayer implements
             case AudioManager.ACTION_AUDIO_BECOMING_NOISY:
                 onPause();
                 break;
+            case ConnectivityManager.CONNECTIVITY_ACTION:
+                loadControl.setUnmeteredNetwork(isUnmeteredNetwork());
+                break;
         }
     }
 
+    private boolean isUnmeteredNetwork() {
+        final ConnectivityManager manager = (ConnectivityManager) context
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        return manager != null && !manager.isActiveNetworkMetered();
+    }
+
     protected void registerBroadcastReceiver() {
         // Try to unregister current first
         unregisterBroadcastReceiver();
@@ -480,6 +595,7 @@ public abstract class BasePlayer implements
     public void onPlaying() {
         if (DEBUG) Log.d(TAG, "onPlaying() called");
         if (!isProgressLoopRunning()) startProgressLoop();
+        checkpointQueue();
     }
 
     public void onBuffering() {
@@ -487,6 +603,7 @@ public abstract class BasePlayer implements
 
     public void onPaused() {
         if (isProgressLoopRunning()) stopProgressLoop();
+        checkpointQueue();
     }
 
     public void onPausedSeek() {
@@ -557,10 +674,59 @@ public abstract class BasePlayer implements
     private Disposable getProgressReactor() {
         return Observable.interval(PROGRESS_LOOP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(ignored -> triggerProgressUpdate(),
+                .subscribe(ignored -> {
+                            triggerProgressUpdate();
+                            if (SystemClock.elapsedRealtime() - lastJournaledAt >=
+                                    JOURNAL_INTERVAL_MILLIS) {
+                                checkpointQueue();
+                            }
+                        },
                         error -> Log.e(TAG, "Progress update failure: ", error));
     }
 
+    /*//////////////////////////////////////////////////////////////////////////
+    // Media Cache
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Keeps the media cache informed of the streams in the queue, so they are evicted last
+     * while the player is switching between them or to another player.
+     * */
+    private Disposable getCachePriorityReactor(@NonNull final PlayQueue queue) {
+        if (queue.getBroadcastReceiver() == null) return null;
+        return queue.getBroadcastReceiver()
+                .filter(event -> event.type() != PlayQueueEventType.SELECT &&
+                        event.type() != PlayQueueEventType.RECOVERY)
+                .subscribe(ignored -> cacheManager.setQueuedItems(queue.getStreams()),
+                        error -> Log.e(TAG, "Cache priority update failure: ", error));
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Queue Journal
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Journals the queue on every change, so it can be resumed after process death.
+     * */
+    private Disposable getJournalReactor(@NonNull final PlayQueue queue) {
+        if (queue.getBroadcastReceiver() == null) return null;
+        return queue.getBroadcastReceiver()
+                .subscribe(ignored -> checkpointQueue(),
+                        error -> Log.e(TAG, "Queue journal update failure: ", error));
+    }
+
+    private void checkpointQueue() {
+        if (playQueue == null) return;
+
+        // The position is only meaningful while the player is at the current queue index
+        final long position = simpleExoPlayer != null && isPrepared &&
+                simpleExoPlayer.getCurrentWindowIndex() == playQueue.getIndex()
+                ? simpleExoPlayer.getCurrentPosition() : PlayQueueItem.RECOVERY_UNSET;
+        journalSession.checkpoint(playQueue, position, getPlaybackQuality(),
+                simpleExoPlayer != null && simpleExoPlayer.getPlayWhenReady());
+        lastJournaledAt = SystemClock.elapsedRealtime();
+    }
+
     /*//////////////////////////////////////////////////////////////////////////
     // ExoPlayer Listener
     //////////////////////////////////////////////////////////////////////////*/
@@ -833,6 +999,7 @@ public abstract class BasePlayer implements
         // If nothing to synchronize
         if (!hasPlayQueueItemChanged) return;
         currentItem = item;
+        if (metricsCollector != null) metricsCollector.onItemStarted(item);
 
         // Check if on wrong window
         if (currentPlayQueueIndex != playQueue.getIndex()) {
@@ -862,6 +1029,14 @@ public abstract class BasePlayer implements
         }
     }
 
+    @Override
+    public void onPlaybackResolved(@NonNull final PlayQueueItem item, final long extractionMillis,
+                                   final boolean isResolved) {
+        if (metricsCollector != null) {
+            metricsCollector.onResolved(item, extractionMillis, isResolved);
+        }
+    }
+
     protected void onMetadataChanged(@NonNull final MediaSourceTag tag) {
         final StreamInfo info = tag.getMetadata();
         if (DEBUG) {
@@ -1049,7 +1224,8 @@ public abstract class BasePlayer implements
         }
 
         if (playQueue != null) {
-            playbackManager = new MediaSourceManager(this, playQueue);
+            playbackManager = new MediaSourceManager(this, playQueue,
+                    PlayerHelper.getPlayQueuePrefetchDistance(context));
         }
     }
 
@@ -1089,6 +1265,15 @@ public abstract class BasePlayer implements
         savePlaybackState(info, 0);
     }
 
+    /**
+     * Writes the playback states saved so far, which are otherwise buffered for a while,
+     * to the database.
+     * */
+    private void flushPlaybackStates() {
+        recordManager.flushStreamStates().subscribe(() -> {},
+                error -> Log.e(TAG, "Unable to flush playback states", error));
+    }
+
     public void savePlaybackState() {
         if (simpleExoPlayer == null || currentMetadata == null) return;
         final StreamInfo currentInfo = currentMetadata.getMetadata();
@@ -1226,6 +1411,17 @@ public abstract class BasePlayer implements
         return getPlaybackParameters().skipSilence;
     }
 
+    /**
+     * Returns the quality selected for playback, if the player plays video.
+     * */
+    @Nullable
+    public String getPlaybackQuality() {
+        return null;
+    }
+
+    public void setPlaybackQuality(@Nullable final String quality) {
+    }
+
     public void setPlaybackSpeed(float speed) {
         setPlaybackParameters(speed, getPlaybackPitch(), getPlaybackSkipSilence());
     }
@@ -72,6 +72,7 @@ import org.schabi.newpipe.player.resolver.MediaSourceTag;
 import org.schabi.newpipe.player.resolver.VideoPlaybackResolver;
 import org.schabi.newpipe.util.ListHelper;
 import org.schabi.newpipe.util.NavigationHelper;
+import org.schabi.newpipe.util.PermissionHelper;
 import org.schabi.newpipe.util.ThemeHelper;
 
 import java.util.List;
@@ -156,6 +157,11 @@ public final class PopupVideoPlayer extends Service {
     public int onStartCommand(final Intent intent, int flags, int startId) {
         if (DEBUG)
             Log.d(TAG, "onStartCommand() called with: intent = [" + intent + "], flags = [" + flags + "], startId = [" + startId + "]");
+        if (intent == null && !PermissionHelper.isPopupEnabled(this)) {
+            // Restarted after process death, but the popup can no longer be shown
+            stopSelf();
+            return START_NOT_STICKY;
+        }
         if (playerImpl.getPlayer() == null) {
             initPopup();
             initPopupCloseOverlay();
@@ -164,7 +170,8 @@ public final class PopupVideoPlayer extends Service {
 
         playerImpl.handleIntent(intent);
 
-        return START_NOT_STICKY;
+        // Restarted with a null intent after process death, to resume from the journal
+        return START_STICKY;
     }
 
     @Override
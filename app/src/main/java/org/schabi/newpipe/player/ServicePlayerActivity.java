@@ -22,6 +22,7 @@ import android.widget.PopupMenu;
 import android.widget.ProgressBar;
 import android.widget.SeekBar;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.google.android.exoplayer2.PlaybackParameters;
 import com.google.android.exoplayer2.Player;
@@ -31,6 +32,7 @@ import org.schabi.newpipe.extractor.stream.StreamInfo;
 import org.schabi.newpipe.fragments.OnScrollBelowItemsListener;
 import org.schabi.newpipe.local.dialog.PlaylistAppendDialog;
 import org.schabi.newpipe.player.event.PlayerEventListener;
+import org.schabi.newpipe.player.helper.MediaCacheManager;
 import org.schabi.newpipe.player.helper.PlaybackParameterDialog;
 import org.schabi.newpipe.player.playqueue.PlayQueueAdapter;
 import org.schabi.newpipe.player.playqueue.PlayQueueItem;
@@ -41,6 +43,7 @@ import org.schabi.newpipe.util.Localization;
 import org.schabi.newpipe.util.NavigationHelper;
 import org.schabi.newpipe.util.ThemeHelper;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -148,6 +151,24 @@ public abstract class ServicePlayerActivity extends AppCompatActivity
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        final MediaCacheManager cacheManager = MediaCacheManager.getInstance(this);
+        menu.findItem(R.id.action_cancel_pin).setVisible(cacheManager.isPinning());
+
+        boolean hasPinnedItems = false;
+        if (player != null && player.getPlayQueue() != null) {
+            for (final PlayQueueItem item : player.getPlayQueue().getStreams()) {
+                if (cacheManager.isPinned(item.getUrl())) {
+                    hasPinnedItems = true;
+                    break;
+                }
+            }
+        }
+        menu.findItem(R.id.action_unpin_offline).setVisible(hasPinnedItems);
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
@@ -157,6 +178,16 @@ public abstract class ServicePlayerActivity extends AppCompatActivity
             case R.id.action_append_playlist:
                 appendAllToPlaylist();
                 return true;
+            case R.id.action_pin_offline:
+                pinAllForOffline();
+                return true;
+            case R.id.action_cancel_pin:
+                MediaCacheManager.getInstance(this).cancelPinning();
+                Toast.makeText(this, R.string.offline_pin_cancelled, Toast.LENGTH_SHORT).show();
+                return true;
+            case R.id.action_unpin_offline:
+                unpinAllFromOffline();
+                return true;
             case R.id.action_settings:
                 NavigationHelper.openSettings(this);
                 redraw = true;
@@ -521,6 +552,27 @@ public abstract class ServicePlayerActivity extends AppCompatActivity
         }
     }
 
+    private void pinAllForOffline() {
+        if (player == null || player.getPlayQueue() == null) return;
+
+        final boolean audioOnly = !(player instanceof VideoPlayer);
+        final String quality = audioOnly ? null : ((VideoPlayer) player).getPlaybackQuality();
+        MediaCacheManager.getInstance(this).pinForOffline(player.getPlayQueue().getStreams(),
+                audioOnly, quality);
+        Toast.makeText(this, R.string.offline_pin_started, Toast.LENGTH_SHORT).show();
+    }
+
+    private void unpinAllFromOffline() {
+        if (player == null || player.getPlayQueue() == null) return;
+
+        final List<String> urls = new ArrayList<>();
+        for (final PlayQueueItem item : player.getPlayQueue().getStreams()) {
+            urls.add(item.getUrl());
+        }
+        MediaCacheManager.getInstance(this).unpin(urls);
+        Toast.makeText(this, R.string.offline_unpinned, Toast.LENGTH_SHORT).show();
+    }
+
     private void openPlaylistAppendDialog(final List<PlayQueueItem> playlist) {
         PlaylistAppendDialog.fromPlayQueueItems(playlist)
                 .show(getSupportFragmentManager(), getTag());
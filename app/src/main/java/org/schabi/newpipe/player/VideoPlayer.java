@@ -406,9 +406,20 @@ public abstract class VideoPlayer extends BasePlayer
 
     protected void onMetadataChanged(@NonNull final MediaSourceTag tag) {
         super.onMetadataChanged(tag);
+        updateVideoSizeConstraints(tag);
         updateStreamRelatedViews();
     }
 
+    private void updateVideoSizeConstraints(@NonNull final MediaSourceTag tag) {
+        if (tag.isAdaptive()) {
+            trackSelector.setParameters(trackSelector.buildUponParameters()
+                    .setMaxVideoSize(Integer.MAX_VALUE, tag.getAdaptiveMaxHeight()));
+        } else {
+            trackSelector.setParameters(trackSelector.buildUponParameters()
+                    .clearVideoSizeConstraints());
+        }
+    }
+
     @Override
     @Nullable
     public MediaSource sourceOf(final PlayQueueItem item, final StreamInfo info) {
@@ -892,11 +903,13 @@ public abstract class VideoPlayer extends BasePlayer
     // Getters and Setters
     //////////////////////////////////////////////////////////////////////////*/
 
+    @Override
     public void setPlaybackQuality(final String quality) {
         this.resolver.setPlaybackQuality(quality);
     }
 
     @Nullable
+    @Override
     public String getPlaybackQuality() {
         return resolver.getPlaybackQuality();
     }
@@ -0,0 +1,55 @@
+package org.schabi.newpipe.player.helper;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps stream urls to the cache keys holding their qualities, so a stream can be looked up in
+ * the cache without going through every key. Kept up to date by {@link PriorityCacheEvictor},
+ * which is told about every span added to or removed from the cache.
+ * */
+/* package-private */ final class CacheKeyIndex {
+    /** Number of cached spans of each key, by the stream url of the key */
+    @NonNull private final Map<String, Map<String, Integer>> spanCounts = new HashMap<>();
+
+    synchronized void onSpanAdded(@NonNull final String key) {
+        final String streamUrl = PlayerHelper.streamUrlOf(key);
+        if (streamUrl == null) return;
+
+        Map<String, Integer> keys = spanCounts.get(streamUrl);
+        if (keys == null) {
+            keys = new HashMap<>(2);
+            spanCounts.put(streamUrl, keys);
+        }
+        final Integer count = keys.get(key);
+        keys.put(key, count == null ? 1 : count + 1);
+    }
+
+    synchronized void onSpanRemoved(@NonNull final String key) {
+        final String streamUrl = PlayerHelper.streamUrlOf(key);
+        final Map<String, Integer> keys = spanCounts.get(streamUrl);
+        if (keys == null) return;
+
+        final Integer count = keys.get(key);
+        if (count == null) return;
+        if (count > 1) {
+            keys.put(key, count - 1);
+            return;
+        }
+        keys.remove(key);
+        if (keys.isEmpty()) spanCounts.remove(streamUrl);
+    }
+
+    /**
+     * @return the keys of the stream having at least one cached span.
+     * */
+    @NonNull
+    synchronized List<String> getKeys(@NonNull final String streamUrl) {
+        final Map<String, Integer> keys = spanCounts.get(streamUrl);
+        return keys == null ? new ArrayList<>() : new ArrayList<>(keys.keySet());
+    }
+}
@@ -1,20 +1,72 @@
 package org.schabi.newpipe.player.helper;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
 
-import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.LoadControl;
 import com.google.android.exoplayer2.Renderer;
 import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.Util;
 
+import org.schabi.newpipe.BuildConfig;
+
+/**
+ * Load control whose buffer targets follow the playback conditions instead of being fixed
+ * when the player is created:
+ * <ul>
+ *     <li>Background audio buffers minutes ahead and then stops loading until most of it has
+ *     been played, so the radio can sleep between bursts. Bursts are larger on unmetered
+ *     networks.</li>
+ *     <li>Memory pressure reported by {@link #onTrimMemory(int)} shrinks both the buffer
+ *     duration and the allocator for a while.</li>
+ *     <li>The allocator is sized by the bitrate of the selected tracks and the maximum buffer
+ *     duration, so low bitrate streams do not hold on to video sized buffers.</li>
+ * </ul>
+ * */
 public class LoadController implements LoadControl {
 
     public static final String TAG = "LoadController";
+    private static final boolean DEBUG = !BuildConfig.BUILD_TYPE.equals("release");
+
+    private static final int BACKGROUND_UNMETERED_MIN_BUFFER_MS = 60_000;
+    private static final int BACKGROUND_UNMETERED_MAX_BUFFER_MS = 600_000;
+    private static final int BACKGROUND_METERED_MAX_BUFFER_MS = 180_000;
+    private static final int MEMORY_CONSTRAINED_MIN_BUFFER_MS = 10_000;
+    private static final int MEMORY_CONSTRAINED_MAX_BUFFER_MS = 15_000;
+    private static final long MEMORY_PRESSURE_TIMEOUT_MS = 60_000;
+
+    private static final int MIN_TARGET_BUFFER_BYTES = 2 * 1024 * 1024;
+    private static final int MAX_TARGET_BUFFER_BYTES = 64 * 1024 * 1024;
+    private static final int MEMORY_CONSTRAINED_TARGET_BUFFER_BYTES = 8 * 1024 * 1024;
+    /** Room for container overhead and for bitrates that peak above their average */
+    private static final float TARGET_BUFFER_BITRATE_MARGIN = 1.25f;
 
     private final long initialPlaybackBufferUs;
-    private final LoadControl internalLoadControl;
+    private final long minimumPlaybackBufferUs;
+    private final long optimalPlaybackBufferUs;
+
+    private final DefaultAllocator allocator;
+
+    private volatile boolean isBackgroundPlayback = false;
+    private volatile boolean isUnmeteredNetwork = false;
+    private volatile long lastMemoryPressureMs = -MEMORY_PRESSURE_TIMEOUT_MS;
+
+    // Only accessed from the playback thread
+    private int selectedBitrate = Format.NO_VALUE;
+    private int defaultTargetBufferBytes;
+    private int targetBufferBytes;
+    private boolean isBuffering;
+    private boolean isRebuffering;
+
+    private volatile int rebufferCount;
 
     /*//////////////////////////////////////////////////////////////////////////
     // Default Load Control
@@ -29,12 +81,101 @@ public class LoadController implements LoadControl {
     private LoadController(final int initialPlaybackBufferMs,
                            final int minimumPlaybackbufferMs,
                            final int optimalPlaybackBufferMs) {
-        this.initialPlaybackBufferUs = initialPlaybackBufferMs * 1000;
+        this.initialPlaybackBufferUs = C.msToUs(initialPlaybackBufferMs);
+        this.minimumPlaybackBufferUs = C.msToUs(minimumPlaybackbufferMs);
+        this.optimalPlaybackBufferUs = C.msToUs(optimalPlaybackBufferMs);
+
+        this.allocator = new DefaultAllocator(/*trimOnReset=*/true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Buffer Policy
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Marks the player as playing audio without any visible UI, in which case long bursts
+     * are preferred over a steady trickle of small loads.
+     * */
+    public void setBackgroundPlayback(final boolean isBackgroundPlayback) {
+        this.isBackgroundPlayback = isBackgroundPlayback;
+    }
+
+    public void setUnmeteredNetwork(final boolean isUnmeteredNetwork) {
+        this.isUnmeteredNetwork = isUnmeteredNetwork;
+    }
+
+    /**
+     * Shrinks the buffer for a while when the system is running low on memory, the
+     * level is one of the {@link ComponentCallbacks2} trim memory levels.
+     * */
+    public void onTrimMemory(final int level) {
+        if (level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) return;
+        if (DEBUG) Log.d(TAG, "onTrimMemory() called with: level = [" + level + "]");
+        lastMemoryPressureMs = SystemClock.elapsedRealtime();
+    }
+
+    private boolean isMemoryConstrained() {
+        return SystemClock.elapsedRealtime() - lastMemoryPressureMs < MEMORY_PRESSURE_TIMEOUT_MS;
+    }
+
+    private long getMinBufferUs() {
+        if (isMemoryConstrained()) {
+            return Math.min(minimumPlaybackBufferUs, C.msToUs(MEMORY_CONSTRAINED_MIN_BUFFER_MS));
+        } else if (isBackgroundPlayback && isUnmeteredNetwork) {
+            return Math.max(minimumPlaybackBufferUs, C.msToUs(BACKGROUND_UNMETERED_MIN_BUFFER_MS));
+        }
+        return minimumPlaybackBufferUs;
+    }
+
+    private long getMaxBufferUs() {
+        if (isMemoryConstrained()) {
+            return Math.min(optimalPlaybackBufferUs, C.msToUs(MEMORY_CONSTRAINED_MAX_BUFFER_MS));
+        } else if (isBackgroundPlayback) {
+            return Math.max(optimalPlaybackBufferUs, C.msToUs(isUnmeteredNetwork
+                    ? BACKGROUND_UNMETERED_MAX_BUFFER_MS : BACKGROUND_METERED_MAX_BUFFER_MS));
+        }
+        return optimalPlaybackBufferUs;
+    }
 
-        DefaultLoadControl.Builder builder = new DefaultLoadControl.Builder();
-        builder.setBufferDurationsMs(minimumPlaybackbufferMs, optimalPlaybackBufferMs,
-                initialPlaybackBufferMs, initialPlaybackBufferMs);
-        internalLoadControl = builder.createDefaultLoadControl();
+    private void updateTargetBufferSize() {
+        final boolean isMemoryConstrained = isMemoryConstrained();
+        int target;
+        if (selectedBitrate == Format.NO_VALUE) {
+            target = defaultTargetBufferBytes;
+        } else {
+            final double bytesPerSecond = selectedBitrate / 8.0;
+            target = (int) Math.min(Integer.MAX_VALUE, bytesPerSecond
+                    * getMaxBufferUs() / C.MICROS_PER_SECOND * TARGET_BUFFER_BITRATE_MARGIN);
+        }
+        target = Math.min(target, isMemoryConstrained
+                ? MEMORY_CONSTRAINED_TARGET_BUFFER_BYTES : MAX_TARGET_BUFFER_BYTES);
+        target = Math.max(target, isMemoryConstrained
+                ? C.DEFAULT_BUFFER_SEGMENT_SIZE : MIN_TARGET_BUFFER_BYTES);
+
+        if (target == targetBufferBytes) return;
+        if (DEBUG) Log.d(TAG, "updateTargetBufferSize() called, " +
+                "from = [" + targetBufferBytes + "] to = [" + target + "]");
+        targetBufferBytes = target;
+        allocator.setTargetBufferSize(target);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Statistics
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * @return the number of times playback stalled for lack of buffered media since the
+     * player was created.
+     * */
+    public int getRebufferCount() {
+        return rebufferCount;
+    }
+
+    /**
+     * @return the number of bytes of media currently held in memory by the player.
+     * */
+    public long getBufferedBytes() {
+        return allocator.getTotalBytesAllocated();
     }
 
     /*//////////////////////////////////////////////////////////////////////////
@@ -43,52 +184,107 @@ public class LoadController implements LoadControl {
 
     @Override
     public void onPrepared() {
-        internalLoadControl.onPrepared();
+        reset(false);
     }
 
     @Override
     public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroupArray,
                                  TrackSelectionArray trackSelectionArray) {
-        internalLoadControl.onTracksSelected(renderers, trackGroupArray, trackSelectionArray);
+        int bitrate = 0;
+        int defaultBufferBytes = 0;
+        for (int i = 0; i < renderers.length; i++) {
+            final TrackSelection selection = trackSelectionArray.get(i);
+            if (selection == null) continue;
+            final int trackType = renderers[i].getTrackType();
+            defaultBufferBytes += Util.getDefaultBufferSize(trackType);
+            if (trackType != C.TRACK_TYPE_VIDEO && trackType != C.TRACK_TYPE_AUDIO) continue;
+
+            // Adaptive selections may switch to any of their formats, so plan for the highest
+            int selectionBitrate = Format.NO_VALUE;
+            for (int j = 0; j < selection.length(); j++) {
+                selectionBitrate = Math.max(selectionBitrate, selection.getFormat(j).bitrate);
+            }
+            if (selectionBitrate == Format.NO_VALUE || bitrate == Format.NO_VALUE) {
+                bitrate = Format.NO_VALUE;
+            } else {
+                bitrate += selectionBitrate;
+            }
+        }
+        selectedBitrate = bitrate == 0 ? Format.NO_VALUE : bitrate;
+        defaultTargetBufferBytes = defaultBufferBytes;
+        updateTargetBufferSize();
     }
 
     @Override
     public void onStopped() {
-        internalLoadControl.onStopped();
+        reset(true);
     }
 
     @Override
     public void onReleased() {
-        internalLoadControl.onReleased();
+        reset(true);
+    }
+
+    private void reset(final boolean resetAllocator) {
+        targetBufferBytes = 0;
+        isBuffering = false;
+        isRebuffering = false;
+        if (resetAllocator) allocator.reset();
     }
 
     @Override
     public Allocator getAllocator() {
-        return internalLoadControl.getAllocator();
+        return allocator;
     }
 
     @Override
     public long getBackBufferDurationUs() {
-        return internalLoadControl.getBackBufferDurationUs();
+        return 0;
     }
 
     @Override
     public boolean retainBackBufferFromKeyframe() {
-        return internalLoadControl.retainBackBufferFromKeyframe();
+        return false;
     }
 
     @Override
     public boolean shouldContinueLoading(long bufferedDurationUs, float playbackSpeed) {
-        return internalLoadControl.shouldContinueLoading(bufferedDurationUs, playbackSpeed);
+        // Conditions may have changed since the tracks were selected
+        updateTargetBufferSize();
+
+        final long maxBufferUs = getMaxBufferUs();
+        long minBufferUs = getMinBufferUs();
+        if (playbackSpeed > 1) {
+            minBufferUs = Math.min(Util.getMediaDurationForPlayoutDuration(minBufferUs,
+                    playbackSpeed), maxBufferUs);
+        }
+
+        // Below the minimum the buffer is always filled, to avoid stalling on high bitrates.
+        // Between the minimum and the maximum loading carries on only if it already was,
+        // which turns into bursts when the two are far apart.
+        if (bufferedDurationUs < minBufferUs) {
+            isBuffering = true;
+        } else if (bufferedDurationUs >= maxBufferUs ||
+                allocator.getTotalBytesAllocated() >= targetBufferBytes) {
+            isBuffering = false;
+        }
+        return isBuffering;
     }
 
     @Override
     public boolean shouldStartPlayback(long bufferedDurationUs, float playbackSpeed,
                                        boolean rebuffering) {
+        if (rebuffering && !isRebuffering) {
+            isRebuffering = true;
+            rebufferCount++;
+        }
+
         final boolean isInitialPlaybackBufferFilled = bufferedDurationUs >=
                 this.initialPlaybackBufferUs * playbackSpeed;
-        final boolean isInternalStartingPlayback = internalLoadControl.shouldStartPlayback(
-                bufferedDurationUs, playbackSpeed, rebuffering);
-        return isInitialPlaybackBufferFilled || isInternalStartingPlayback;
+        final boolean isTargetBufferSizeReached = targetBufferBytes > 0 &&
+                allocator.getTotalBytesAllocated() >= targetBufferBytes;
+        final boolean shouldStart = isInitialPlaybackBufferFilled || isTargetBufferSizeReached;
+        if (shouldStart) isRebuffering = false;
+        return shouldStart;
     }
 }
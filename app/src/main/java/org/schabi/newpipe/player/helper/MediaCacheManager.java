@@ -0,0 +1,376 @@
+package org.schabi.newpipe.player.helper;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+
+import org.schabi.newpipe.NewPipeDatabase;
+import org.schabi.newpipe.R;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.player.playqueue.PlayQueueItem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+import static org.schabi.newpipe.player.helper.MediaCachePinner.PinBudgetExceededException;
+
+import static org.schabi.newpipe.player.helper.PriorityCacheEvictor.PRIORITY_BOOKMARKED;
+import static org.schabi.newpipe.player.helper.PriorityCacheEvictor.PRIORITY_NORMAL;
+import static org.schabi.newpipe.player.helper.PriorityCacheEvictor.PRIORITY_PINNED;
+import static org.schabi.newpipe.player.helper.PriorityCacheEvictor.PRIORITY_QUEUED;
+
+/**
+ * Process-wide owner of the ExoPlayer media cache.
+ * <br><br>
+ * All players share the same {@link SimpleCache}, so switching between the background,
+ * main and popup players reuses the bytes already downloaded by the previous one.
+ * Eviction is handled by {@link PriorityCacheEvictor}, which drops streams that are neither
+ * in the current play queue nor in any local playlist first.
+ * <br><br>
+ * Streams can also be pinned for offline playback through {@link #pinForOffline}. Pinned cache
+ * keys are persisted, never evicted and limited by their own budget instead. The stream info
+ * of pinned streams is stored as well, since it is needed to play them and would otherwise
+ * have to be fetched again.
+ * <br><br>
+ * Cache keys produced by {@link PlayerHelper#cacheKeyOf} start with the stream url and a
+ * separator, which is how cache entries are mapped back to streams here.
+ * */
+public final class MediaCacheManager {
+    private static final String TAG = "MediaCacheManager";
+    private static final String CACHE_FOLDER_NAME = "exoplayer";
+    private static final String PINNED_INFO_FOLDER_NAME = "pinned_streams";
+
+    private static volatile MediaCacheManager instance;
+
+    @NonNull private final Context context;
+    @NonNull private final SharedPreferences preferences;
+    @NonNull private final String pinnedKeysKey;
+
+    @NonNull private final File pinnedInfoDir;
+    @NonNull private final SimpleCache cache;
+    @NonNull private final PriorityCacheEvictor evictor;
+    @NonNull private final CacheKeyIndex keyIndex = new CacheKeyIndex();
+
+    // Snapshots are replaced wholesale and never mutated, so readers need no locking
+    @NonNull private volatile Set<String> queuedUrls = new HashSet<>();
+    @NonNull private volatile Set<String> bookmarkedUrls = new HashSet<>();
+    @NonNull private volatile Set<String> pinnedKeys;
+
+    @NonNull private final Disposable bookmarkReactor;
+    @NonNull private final CompositeDisposable pinReactor;
+    @NonNull private final AtomicInteger pinningCount = new AtomicInteger();
+
+    private MediaCacheManager(@NonNull final Context context) {
+        this.context = context;
+        preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        pinnedKeysKey = context.getString(R.string.media_cache_pinned_keys_key);
+        // Must be loaded before the cache is built, as the cache index is read right away
+        pinnedKeys = loadPinnedKeys();
+        pinReactor = new CompositeDisposable();
+        pinnedInfoDir = new File(context.getFilesDir(), PINNED_INFO_FOLDER_NAME);
+
+        final File cacheDir = new File(context.getExternalCacheDir(), CACHE_FOLDER_NAME);
+        if (!cacheDir.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            cacheDir.mkdir();
+        }
+
+        evictor = new PriorityCacheEvictor(
+                PlayerHelper.getPreferredCacheSize(context), this::priorityOf, keyIndex);
+        cache = new SimpleCache(cacheDir, evictor, new ExoDatabaseProvider(context));
+
+        bookmarkReactor = NewPipeDatabase.getInstance(context).playlistStreamDAO()
+                .getAllStreamUrls()
+                .subscribeOn(Schedulers.io())
+                .subscribe(urls -> bookmarkedUrls = toUrlSet(urls),
+                        error -> Log.e(TAG, "Unable to load bookmarked streams", error));
+    }
+
+    @NonNull
+    public static MediaCacheManager getInstance(@NonNull final Context context) {
+        MediaCacheManager result = instance;
+        if (result == null) {
+            synchronized (MediaCacheManager.class) {
+                result = instance;
+                if (result == null) {
+                    instance = (result = new MediaCacheManager(context.getApplicationContext()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Exposed Methods
+    //////////////////////////////////////////////////////////////////////////*/
+
+    @NonNull
+    public Cache getCache() {
+        return cache;
+    }
+
+    /**
+     * Marks the streams in the given play queue items as the ones that should be evicted last.
+     * Replaces any previously set queue.
+     * */
+    public void setQueuedItems(@NonNull final Collection<PlayQueueItem> items) {
+        final List<String> urls = new ArrayList<>(items.size());
+        for (final PlayQueueItem item : items) {
+            urls.add(item.getUrl());
+        }
+        queuedUrls = toUrlSet(urls);
+    }
+
+    /**
+     * Checks if any quality of the stream is cached from start to end, meaning it can be
+     * played without network access.
+     * */
+    public boolean isFullyCached(@NonNull final String streamUrl) {
+        for (final String key : keyIndex.getKeys(streamUrl)) {
+            final long length = ContentMetadata.getContentLength(cache.getContentMetadata(key));
+            if (length != C.LENGTH_UNSET && cache.getCachedLength(key, 0, length) >= length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Offline Pinning
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Downloads the given items into the cache in the background and keeps them there until
+     * they are unpinned. Audio only pinning downloads only the audio streams, otherwise the
+     * video stream in the given quality (or the default one) is pinned along with its audio.
+     * <br><br>
+     * Items are pinned one at a time, items which fail to load are skipped. Pinning stops
+     * once the budget from {@link PlayerHelper#getPreferredPinnedCacheSize} is used up.
+     * */
+    public void pinForOffline(@NonNull final List<PlayQueueItem> items,
+                              final boolean audioOnly,
+                              @Nullable final String videoQuality) {
+        final MediaCachePinner pinner = new MediaCachePinner(context, this, audioOnly,
+                videoQuality);
+        pinningCount.incrementAndGet();
+        pinReactor.add(Observable.fromIterable(new ArrayList<>(items))
+                .concatMapCompletable(item -> pinner.pin(item).onErrorResumeNext(error ->
+                        error instanceof PinBudgetExceededException ? Completable.error(error) :
+                                logPinFailure(item, error)))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .doFinally(pinningCount::decrementAndGet)
+                .subscribe(
+                        () -> Toast.makeText(context, R.string.offline_pin_complete,
+                                Toast.LENGTH_SHORT).show(),
+                        error -> {
+                            Log.e(TAG, "Offline pinning stopped", error);
+                            Toast.makeText(context, error instanceof PinBudgetExceededException
+                                    ? R.string.offline_pin_budget_exceeded
+                                    : R.string.offline_pin_failed, Toast.LENGTH_LONG).show();
+                        }));
+    }
+
+    /**
+     * Stops all pinning in progress, keeping what was already pinned.
+     * */
+    public void cancelPinning() {
+        pinReactor.clear();
+    }
+
+    public boolean isPinning() {
+        return pinningCount.get() > 0;
+    }
+
+    public boolean isPinned(@NonNull final String streamUrl) {
+        for (final String key : pinnedKeys) {
+            if (streamUrl.equals(PlayerHelper.streamUrlOf(key))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Unpins all qualities of the streams, leaving them to regular eviction.
+     * */
+    public synchronized void unpin(@NonNull final Collection<String> streamUrls) {
+        final Set<String> urls = new HashSet<>(streamUrls);
+        final Set<String> keys = new HashSet<>();
+        for (final String key : pinnedKeys) {
+            if (!urls.contains(PlayerHelper.streamUrlOf(key))) keys.add(key);
+        }
+        if (keys.size() != pinnedKeys.size()) updatePins(keys);
+    }
+
+    public long getPinnedBytes() {
+        long pinnedBytes = 0;
+        for (final String key : pinnedKeys) {
+            for (final CacheSpan span : cache.getCachedSpans(key)) {
+                pinnedBytes += span.length;
+            }
+        }
+        return pinnedBytes;
+    }
+
+    public long getPinBudget() {
+        return PlayerHelper.getPreferredPinnedCacheSize(context);
+    }
+
+    /**
+     * Loads the stored info of a pinned stream, used to play it when the info can not be
+     * fetched. Its stream urls may have expired, but the pinned media is read from the cache
+     * through the cache keys, which do not depend on them.
+     * */
+    @NonNull
+    public Maybe<StreamInfo> getPinnedStreamInfo(@NonNull final String streamUrl) {
+        return Maybe.fromCallable(() -> {
+            final File file = pinnedInfoFileOf(streamUrl);
+            if (!isPinned(streamUrl) || !file.exists()) return null;
+
+            try (ObjectInputStream input = new ObjectInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                return (StreamInfo) input.readObject();
+            }
+        }).subscribeOn(Schedulers.io());
+    }
+
+    /* package-private */ void savePinnedStreamInfo(@NonNull final StreamInfo info)
+            throws IOException {
+        if (!pinnedInfoDir.exists() && !pinnedInfoDir.mkdirs()) {
+            throw new IOException("Unable to create " + pinnedInfoDir);
+        }
+
+        // Written aside first, so a failed write does not leave a truncated info behind
+        final File file = pinnedInfoFileOf(info.getUrl());
+        final File tempFile = new File(pinnedInfoDir, file.getName() + ".tmp");
+        try (ObjectOutputStream output = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.writeObject(info);
+        }
+        if (!tempFile.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            throw new IOException("Unable to store info of " + info.getUrl());
+        }
+    }
+
+    /* package-private */ synchronized void addPin(@NonNull final String key) {
+        final Set<String> keys = new HashSet<>(pinnedKeys);
+        if (keys.add(key)) updatePins(keys);
+    }
+
+    /* package-private */ synchronized void removePin(@NonNull final String key) {
+        final Set<String> keys = new HashSet<>(pinnedKeys);
+        if (keys.remove(key)) updatePins(keys);
+    }
+
+    /**
+     * Pins of keys from before the stream url was separated from the quality are dropped, as
+     * they can no longer be matched to their stream and would stay pinned forever.
+     * */
+    @NonNull
+    private Set<String> loadPinnedKeys() {
+        final Set<String> keys = new HashSet<>();
+        for (final String key : preferences.getStringSet(pinnedKeysKey, Collections.emptySet())) {
+            if (PlayerHelper.streamUrlOf(key) != null) keys.add(key);
+        }
+        return keys;
+    }
+
+    private synchronized void updatePins(@NonNull final Set<String> keys) {
+        final Set<String> keptUrls = new HashSet<>();
+        for (final String key : keys) {
+            keptUrls.add(PlayerHelper.streamUrlOf(key));
+        }
+        for (final String key : pinnedKeys) {
+            final String streamUrl = PlayerHelper.streamUrlOf(key);
+            if (streamUrl != null && !keptUrls.contains(streamUrl)) {
+                //noinspection ResultOfMethodCallIgnored
+                pinnedInfoFileOf(streamUrl).delete();
+            }
+        }
+
+        pinnedKeys = keys;
+        evictor.onPinsChanged();
+        preferences.edit().putStringSet(pinnedKeysKey, new HashSet<>(keys)).apply();
+    }
+
+    @NonNull
+    private File pinnedInfoFileOf(@NonNull final String streamUrl) {
+        // Urls may be too long or contain characters not allowed in file names
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            final StringBuilder name = new StringBuilder();
+            for (final byte b : digest.digest(streamUrl.getBytes("UTF-8"))) {
+                name.append(String.format("%02x", b));
+            }
+            return new File(pinnedInfoDir, name.toString());
+        } catch (final NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Completable logPinFailure(@NonNull final PlayQueueItem item,
+                                      @NonNull final Throwable error) {
+        Log.e(TAG, "Unable to pin item=[" + item.getTitle() + "], skipping", error);
+        return Completable.complete();
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Eviction Priority
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private int priorityOf(@NonNull final String key) {
+        if (pinnedKeys.contains(key)) return PRIORITY_PINNED;
+
+        final String streamUrl = PlayerHelper.streamUrlOf(key);
+        if (streamUrl == null) return PRIORITY_NORMAL;
+        if (queuedUrls.contains(streamUrl)) return PRIORITY_QUEUED;
+        if (bookmarkedUrls.contains(streamUrl)) return PRIORITY_BOOKMARKED;
+        return PRIORITY_NORMAL;
+    }
+
+    @NonNull
+    private static Set<String> toUrlSet(@NonNull final Collection<String> urls) {
+        final Set<String> result = new HashSet<>(urls.size());
+        for (final String url : urls) {
+            if (url != null) result.add(url);
+        }
+        return result;
+    }
+}
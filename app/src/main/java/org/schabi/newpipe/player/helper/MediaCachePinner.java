@@ -0,0 +1,171 @@
+package org.schabi.newpipe.player.helper;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
+import com.google.android.exoplayer2.util.Util;
+
+import org.schabi.newpipe.BuildConfig;
+import org.schabi.newpipe.DownloaderImpl;
+import org.schabi.newpipe.extractor.MediaFormat;
+import org.schabi.newpipe.extractor.stream.AudioStream;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.StreamType;
+import org.schabi.newpipe.extractor.stream.VideoStream;
+import org.schabi.newpipe.player.playqueue.PlayQueueItem;
+import org.schabi.newpipe.util.ListHelper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Completable;
+
+/**
+ * Downloads the streams the player would pick for a {@link PlayQueueItem} into the media cache
+ * under the same cache keys, so the item can later be played without network access.
+ * <br><br>
+ * Only progressive streams are pinned, since DASH and HLS segments are not cached under
+ * stable keys.
+ * */
+/* package-private */ class MediaCachePinner {
+    private static final boolean DEBUG = !BuildConfig.BUILD_TYPE.equals("release");
+    private static final String TAG = "MediaCachePinner";
+
+    @NonNull private final Context context;
+    @NonNull private final MediaCacheManager cacheManager;
+    @NonNull private final DataSource.Factory upstreamFactory;
+
+    private final boolean audioOnly;
+    @Nullable private final String videoQuality;
+
+    MediaCachePinner(@NonNull final Context context,
+                     @NonNull final MediaCacheManager cacheManager,
+                     final boolean audioOnly,
+                     @Nullable final String videoQuality) {
+        this.context = context;
+        this.cacheManager = cacheManager;
+        this.upstreamFactory = new DefaultDataSourceFactory(context, DownloaderImpl.USER_AGENT);
+        this.audioOnly = audioOnly;
+        this.videoQuality = videoQuality;
+    }
+
+    /**
+     * Pins all streams needed to play the item along with its stream info, failing with
+     * {@link PinBudgetExceededException} once the pin budget is used up. Disposing the returned
+     * completable cancels the download in progress.
+     * */
+    @NonNull
+    Completable pin(@NonNull final PlayQueueItem item) {
+        return item.getStream().flatMapCompletable(info -> Completable.create(emitter -> {
+            final AtomicBoolean isCanceled = new AtomicBoolean(false);
+            emitter.setCancellable(() -> isCanceled.set(true));
+
+            try {
+                for (final PinTarget target : getTargetsOf(info)) {
+                    if (isCanceled.get()) return;
+                    pinTarget(target, isCanceled);
+                }
+            } finally {
+                // Whatever was pinned needs the info to be played offline later
+                if (cacheManager.isPinned(info.getUrl())) saveStreamInfo(info);
+            }
+            emitter.onComplete();
+        }));
+    }
+
+    private void saveStreamInfo(@NonNull final StreamInfo info) {
+        try {
+            cacheManager.savePinnedStreamInfo(info);
+        } catch (final IOException e) {
+            Log.e(TAG, "Unable to store info of pinned stream=[" + info.getUrl() + "]", e);
+        }
+    }
+
+    private void pinTarget(@NonNull final PinTarget target,
+                           @NonNull final AtomicBoolean isCanceled) throws Exception {
+        if (cacheManager.getPinnedBytes() >= cacheManager.getPinBudget()) {
+            throw new PinBudgetExceededException();
+        }
+        if (DEBUG) Log.d(TAG, "pinTarget() called with: key = [" + target.cacheKey + "]");
+
+        cacheManager.addPin(target.cacheKey);
+        try {
+            final DataSpec dataSpec = new DataSpec(Uri.parse(target.url), 0, C.LENGTH_UNSET,
+                    target.cacheKey);
+            CacheUtil.cache(dataSpec, cacheManager.getCache(), /*cacheKeyFactory=*/null,
+                    upstreamFactory.createDataSource(), /*progressListener=*/null, isCanceled);
+        } catch (final Exception error) {
+            cacheManager.removePin(target.cacheKey);
+            throw error;
+        }
+
+        if (cacheManager.getPinnedBytes() > cacheManager.getPinBudget()) {
+            cacheManager.removePin(target.cacheKey);
+            throw new PinBudgetExceededException();
+        }
+    }
+
+    @NonNull
+    private List<PinTarget> getTargetsOf(@NonNull final StreamInfo info) {
+        final List<PinTarget> targets = new ArrayList<>();
+        if (info.getStreamType() == StreamType.LIVE_STREAM ||
+                info.getStreamType() == StreamType.AUDIO_LIVE_STREAM) {
+            return targets;
+        }
+
+        VideoStream video = null;
+        if (!audioOnly) {
+            final List<VideoStream> videos = ListHelper.getSortedStreamVideosList(context,
+                    info.getVideoStreams(), info.getVideoOnlyStreams(), false);
+            final int index = videoQuality == null
+                    ? ListHelper.getDefaultResolutionIndex(context, videos)
+                    : ListHelper.getResolutionIndex(context, videos, videoQuality);
+            if (index >= 0 && index < videos.size()) video = videos.get(index);
+        }
+        if (video != null && isProgressive(video.getFormatId())) {
+            targets.add(new PinTarget(video.getUrl(), PlayerHelper.cacheKeyOf(info, video)));
+        }
+
+        // Same as the resolvers, audio is only needed if the video does not already contain it
+        final List<AudioStream> audioStreams = info.getAudioStreams();
+        if (!audioStreams.isEmpty() && (video == null || video.isVideoOnly)) {
+            final AudioStream audio = audioStreams.get(
+                    ListHelper.getDefaultAudioFormat(context, audioStreams));
+            if (isProgressive(audio.getFormatId())) {
+                targets.add(new PinTarget(audio.getUrl(), PlayerHelper.cacheKeyOf(info, audio)));
+            }
+        }
+        return targets;
+    }
+
+    private static boolean isProgressive(final int formatId) {
+        return Util.inferContentType("." + MediaFormat.getSuffixById(formatId)) == C.TYPE_OTHER;
+    }
+
+    private static class PinTarget {
+        @NonNull final String url;
+        @NonNull final String cacheKey;
+
+        PinTarget(@NonNull final String url, @NonNull final String cacheKey) {
+            this.url = url;
+            this.cacheKey = cacheKey;
+        }
+    }
+
+    static class PinBudgetExceededException extends Exception {
+        PinBudgetExceededException() {
+            super("Offline storage budget exceeded");
+        }
+    }
+}
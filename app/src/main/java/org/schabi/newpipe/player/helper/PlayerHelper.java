@@ -56,6 +56,9 @@ public class PlayerHelper {
     private static final NumberFormat speedFormatter = new DecimalFormat("0.##x");
     private static final NumberFormat pitchFormatter = new DecimalFormat("##%");
 
+    /** Separates the stream url from the quality in cache keys, urls never contain it unescaped */
+    private static final char CACHE_KEY_SEPARATOR = ' ';
+
     @Retention(SOURCE)
     @IntDef({MINIMIZE_ON_EXIT_MODE_NONE, MINIMIZE_ON_EXIT_MODE_BACKGROUND,
             MINIMIZE_ON_EXIT_MODE_POPUP})
@@ -116,12 +119,24 @@ public class PlayerHelper {
 
     @NonNull
     public static String cacheKeyOf(@NonNull final StreamInfo info, @NonNull VideoStream video) {
-        return info.getUrl() + video.getResolution() + video.getFormat().getName();
+        return info.getUrl() + CACHE_KEY_SEPARATOR + video.getResolution()
+                + video.getFormat().getName();
     }
 
     @NonNull
     public static String cacheKeyOf(@NonNull final StreamInfo info, @NonNull AudioStream audio) {
-        return info.getUrl() + audio.getAverageBitrate() + audio.getFormat().getName();
+        return info.getUrl() + CACHE_KEY_SEPARATOR + audio.getAverageBitrate()
+                + audio.getFormat().getName();
+    }
+
+    /**
+     * @return the url of the stream the cache key from {@link #cacheKeyOf} belongs to, or null
+     * if the key is not in that format.
+     * */
+    @Nullable
+    public static String streamUrlOf(@NonNull final String cacheKey) {
+        final int separator = cacheKey.indexOf(CACHE_KEY_SEPARATOR);
+        return separator > 0 ? cacheKey.substring(0, separator) : null;
     }
 
     /**
@@ -186,6 +201,14 @@ public class PlayerHelper {
         return isAutoQueueEnabled(context, false);
     }
 
+    public static boolean isAdaptiveQualityEnabled(@NonNull final Context context) {
+        return isAdaptiveQualityEnabled(context, false);
+    }
+
+    public static boolean isPlaybackMetricsEnabled(@NonNull final Context context) {
+        return isPlaybackMetricsEnabled(context, false);
+    }
+
     @MinimizeMode
     public static int getMinimizeOnExitAction(@NonNull final Context context) {
         final String defaultAction = context.getString(R.string.minimize_on_exit_none_key);
@@ -216,6 +239,14 @@ public class PlayerHelper {
         return 512 * 1024L;
     }
 
+    /**
+     * Returns the maximum number of bytes that can be pinned for offline playback, on top of
+     * {@link #getPreferredCacheSize(Context)}.
+     * */
+    public static long getPreferredPinnedCacheSize(@NonNull final Context context) {
+        return 1024 * 1024 * 1024L;
+    }
+
     /**
      * Returns the number of milliseconds the player buffers for before starting playback.
      * */
@@ -239,6 +270,14 @@ public class PlayerHelper {
         return 60000;
     }
 
+    /**
+     * Returns the number of streams before the end of a paginated play queue, such as a
+     * playlist or channel, at which the next page starts being fetched in the background.
+     * */
+    public static int getPlayQueuePrefetchDistance(@NonNull final Context context) {
+        return 10;
+    }
+
     public static TrackSelection.Factory getQualitySelector(@NonNull final Context context) {
         return new AdaptiveTrackSelection.Factory(
                 /*bufferDurationRequiredForQualityIncrease=*/1000,
@@ -326,6 +365,14 @@ public class PlayerHelper {
         return getPreferences(context).getBoolean(context.getString(R.string.auto_queue_key), b);
     }
 
+    private static boolean isAdaptiveQualityEnabled(@NonNull final Context context, final boolean b) {
+        return getPreferences(context).getBoolean(context.getString(R.string.adaptive_quality_key), b);
+    }
+
+    private static boolean isPlaybackMetricsEnabled(@NonNull final Context context, final boolean b) {
+        return getPreferences(context).getBoolean(context.getString(R.string.collect_playback_metrics_key), b);
+    }
+
     private static void setScreenBrightness(@NonNull final Context context, final float screenBrightness, final long timestamp) {
         SharedPreferences.Editor editor = getPreferences(context).edit();
         editor.putFloat(context.getString(R.string.screen_brightness_key), screenBrightness);
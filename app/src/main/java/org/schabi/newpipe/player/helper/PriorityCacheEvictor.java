@@ -0,0 +1,148 @@
+package org.schabi.newpipe.player.helper;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Evicts cache spans in least recently used order, but only after every span of a lower
+ * priority has been evicted. This keeps the streams in the play queue and in local playlists
+ * around for as long as possible, while streams that were only played in passing are dropped
+ * first.
+ * <br><br>
+ * Pinned spans are never evicted and do not count towards the eviction budget, their size is
+ * limited separately when they are pinned.
+ * <br><br>
+ * As it sees every span of the cache come and go, it also keeps the {@link CacheKeyIndex}
+ * up to date.
+ * */
+/* package-private */ class PriorityCacheEvictor implements CacheEvictor, Comparator<CacheSpan> {
+    static final int PRIORITY_NORMAL = 0;
+    static final int PRIORITY_BOOKMARKED = 1;
+    static final int PRIORITY_QUEUED = 2;
+    static final int PRIORITY_PINNED = 3;
+
+    interface PriorityResolver {
+        int priorityOf(@NonNull final String key);
+    }
+
+    private final long maxBytes;
+    @NonNull private final PriorityResolver resolver;
+    @NonNull private final CacheKeyIndex keyIndex;
+    @NonNull private final TreeSet<CacheSpan> leastRecentlyUsed;
+
+    private long currentSize;
+    private long pinnedSize;
+
+    PriorityCacheEvictor(final long maxBytes, @NonNull final PriorityResolver resolver,
+                         @NonNull final CacheKeyIndex keyIndex) {
+        this.maxBytes = maxBytes;
+        this.resolver = resolver;
+        this.keyIndex = keyIndex;
+        this.leastRecentlyUsed = new TreeSet<>(this);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Cache Evictor
+    //////////////////////////////////////////////////////////////////////////*/
+
+    @Override
+    public void onCacheInitialized() {
+        // Nothing to do
+    }
+
+    @Override
+    public synchronized void onStartFile(Cache cache, String key, long position, long length) {
+        // Pinned files are accounted for by the pin budget instead
+        if (length != C.LENGTH_UNSET && resolver.priorityOf(key) < PRIORITY_PINNED) {
+            evictCache(cache, length);
+        }
+    }
+
+    @Override
+    public synchronized void onSpanAdded(Cache cache, CacheSpan span) {
+        leastRecentlyUsed.add(span);
+        keyIndex.onSpanAdded(span.key);
+        currentSize += span.length;
+        if (isPinned(span)) pinnedSize += span.length;
+        evictCache(cache, 0);
+    }
+
+    @Override
+    public synchronized void onSpanRemoved(Cache cache, CacheSpan span) {
+        leastRecentlyUsed.remove(span);
+        keyIndex.onSpanRemoved(span.key);
+        currentSize -= span.length;
+        if (isPinned(span)) pinnedSize -= span.length;
+    }
+
+    @Override
+    public synchronized void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+        onSpanRemoved(cache, oldSpan);
+        onSpanAdded(cache, newSpan);
+    }
+
+    @Override
+    public int compare(CacheSpan lhs, CacheSpan rhs) {
+        if (lhs.lastTouchTimestamp == rhs.lastTouchTimestamp) return lhs.compareTo(rhs);
+        return lhs.lastTouchTimestamp < rhs.lastTouchTimestamp ? -1 : 1;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Pinning
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Recounts the size of pinned spans, must be called whenever a key is pinned or unpinned
+     * so the eviction budget stays consistent.
+     * */
+    synchronized void onPinsChanged() {
+        pinnedSize = 0;
+        for (final CacheSpan span : leastRecentlyUsed) {
+            if (isPinned(span)) pinnedSize += span.length;
+        }
+    }
+
+    private boolean isPinned(@NonNull final CacheSpan span) {
+        return resolver.priorityOf(span.key) >= PRIORITY_PINNED;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Eviction
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private void evictCache(@NonNull final Cache cache, final long requiredSpace) {
+        long excess = currentSize - pinnedSize + requiredSpace - maxBytes;
+        if (excess <= 0) return;
+
+        // Priorities may change at any time, so they are resolved on eviction instead of
+        // being baked into the span ordering
+        final List<CacheSpan> victims = new ArrayList<>();
+        for (int priority = PRIORITY_NORMAL; priority <= PRIORITY_QUEUED && excess > 0;
+             priority++) {
+            for (final CacheSpan span : leastRecentlyUsed) {
+                if (excess <= 0) break;
+                if (resolver.priorityOf(span.key) != priority) continue;
+
+                victims.add(span);
+                excess -= span.length;
+            }
+        }
+
+        for (final CacheSpan victim : victims) {
+            try {
+                cache.removeSpan(victim);
+            } catch (Cache.CacheException ignored) {
+                // Span is already gone or is being written, nothing we can do about it
+            }
+        }
+    }
+}
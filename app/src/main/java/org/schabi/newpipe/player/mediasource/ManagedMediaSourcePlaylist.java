@@ -1,17 +1,51 @@
 package org.schabi.newpipe.player.mediasource;
 import android.os.Handler;
+import android.os.Looper;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
+import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.ShuffleOrder;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Playlist of {@link ManagedMediaSource} backed by a {@link ConcatenatingMediaSource}.
+ * <br><br>
+ * Every operation on a {@link ConcatenatingMediaSource} makes the player rebuild its timeline
+ * on the playback thread, so mutations are not applied right away. Instead, they are collected
+ * until the looper of the creating thread gets to run again and are then applied as a batch,
+ * merging consecutive additions and removals into single bulk operations. All finalizing
+ * actions of a batch run once the whole batch has been applied.
+ * <br><br>
+ * The playlist content, i.e. {@link #size()} and {@link #get(int)}, always reflects all
+ * mutations made so far, whether they have been applied to the parent media source or not.
+ * Must only be used on the thread it is created on.
+ * */
 public class ManagedMediaSourcePlaylist {
     @NonNull private final ConcatenatingMediaSource internalSource;
 
+    /** Content of the playlist including the mutations not yet applied */
+    @NonNull private final List<ManagedMediaSource> sources;
+
+    @NonNull private final Handler batchHandler;
+    @NonNull private final Runnable batchApplier;
+    @NonNull private final List<Mutation> pendingMutations;
+    @NonNull private final List<Callback> pendingCallbacks;
+    private boolean isBatchScheduled;
+
     public ManagedMediaSourcePlaylist() {
         internalSource = new ConcatenatingMediaSource(/*isPlaylistAtomic=*/false,
                 new ShuffleOrder.UnshuffledShuffleOrder(0));
+        sources = new ArrayList<>();
+
+        batchHandler = new Handler();
+        batchApplier = this::applyPendingMutations;
+        pendingMutations = new ArrayList<>();
+        pendingCallbacks = new ArrayList<>();
     }
 
     /*//////////////////////////////////////////////////////////////////////////
@@ -19,7 +53,7 @@ public class ManagedMediaSourcePlaylist {
     //////////////////////////////////////////////////////////////////////////*/
 
     public int size() {
-        return internalSource.getSize();
+        return sources.size();
     }
 
     /**
@@ -28,8 +62,7 @@ public class ManagedMediaSourcePlaylist {
      * */
     @Nullable
     public ManagedMediaSource get(final int index) {
-        return (index < 0 || index >= size()) ?
-                null : (ManagedMediaSource) internalSource.getMediaSource(index);
+        return (index < 0 || index >= size()) ? null : sources.get(index);
     }
 
     @NonNull
@@ -42,32 +75,36 @@ public class ManagedMediaSourcePlaylist {
     //////////////////////////////////////////////////////////////////////////*/
 
     /**
-     * Expands the {@link ConcatenatingMediaSource} by appending it with a
-     * {@link PlaceholderMediaSource}.
-     *
-     * @see #append(ManagedMediaSource)
+     * Expands the {@link ConcatenatingMediaSource} by appending it with the given number of
+     * {@link PlaceholderMediaSource}, in a single operation.
      * */
-    public synchronized void expand() {
-        append(new PlaceholderMediaSource());
+    public synchronized void expand(final int count) {
+        if (count <= 0) return;
+
+        final List<ManagedMediaSource> placeholders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            placeholders.add(new PlaceholderMediaSource());
+        }
+        add(size(), placeholders);
     }
 
     /**
      * Appends a {@link ManagedMediaSource} to the end of {@link ConcatenatingMediaSource}.
-     * @see ConcatenatingMediaSource#addMediaSource
+     * @see ConcatenatingMediaSource#addMediaSources
      * */
     public synchronized void append(@NonNull final ManagedMediaSource source) {
-        internalSource.addMediaSource(source);
+        add(size(), Collections.singletonList(source));
     }
 
     /**
      * Removes a {@link ManagedMediaSource} from {@link ConcatenatingMediaSource}
      * at the given index. If this index is out of bound, then the removal is ignored.
-     * @see ConcatenatingMediaSource#removeMediaSource(int)
+     * @see ConcatenatingMediaSource#removeMediaSourceRange(int, int)
      * */
     public synchronized void remove(final int index) {
-        if (index < 0 || index > internalSource.getSize()) return;
+        if (index < 0 || index >= size()) return;
 
-        internalSource.removeMediaSource(index);
+        removeAt(index);
     }
 
     /**
@@ -78,9 +115,10 @@ public class ManagedMediaSourcePlaylist {
      * */
     public synchronized void move(final int source, final int target) {
         if (source < 0 || target < 0) return;
-        if (source >= internalSource.getSize() || target >= internalSource.getSize()) return;
+        if (source >= size() || target >= size()) return;
 
-        internalSource.moveMediaSource(source, target);
+        sources.add(target, sources.remove(source));
+        enqueue(Mutation.move(source, target));
     }
 
     /**
@@ -108,26 +146,163 @@ public class ManagedMediaSourcePlaylist {
      * Updates the {@link ManagedMediaSource} in {@link ConcatenatingMediaSource}
      * at the given index with a given {@link ManagedMediaSource}. If the index is out of bound,
      * then the replacement is ignored.
-     * @see ConcatenatingMediaSource#addMediaSource
-     * @see ConcatenatingMediaSource#removeMediaSource(int, Handler, Runnable)
+     * <br><br>
+     * The finalizing action is run on the handler once the batch containing this update has
+     * been applied and the timeline has changed.
+     * @see ConcatenatingMediaSource#addMediaSources
+     * @see ConcatenatingMediaSource#removeMediaSourceRange(int, int, Handler, Runnable)
      * */
     public synchronized void update(final int index, @NonNull final ManagedMediaSource source,
                                     @Nullable final Handler handler,
                                     @Nullable final Runnable finalizingAction) {
-        if (index < 0 || index >= internalSource.getSize()) return;
+        if (index < 0 || index >= size()) return;
 
-        // Add and remove are sequential on the same thread, therefore here, the exoplayer
+        // Add and remove are sequential in the batch, therefore here, the exoplayer
         // message queue must receive and process add before remove, effectively treating them
         // as atomic.
+        add(index + 1, Collections.singletonList(source));
+        removeAt(index);
 
         // Since the finalizing action occurs strictly after the timeline has completed
-        // all its changes on the playback thread, thus, it is possible, in the meantime,
-        // other calls that modifies the playlist media source occur in between. This makes
-        // it unsafe to call remove as the finalizing action of add.
-        internalSource.addMediaSource(index + 1, source);
-
-        // Because of the above race condition, it is thus only safe to synchronize the player
-        // in the finalizing action AFTER the removal is complete and the timeline has changed.
-        internalSource.removeMediaSource(index, handler, finalizingAction);
+        // all its changes on the playback thread, it is only safe to synchronize the player
+        // once the whole batch, including the above removal, has been applied.
+        if (handler != null && finalizingAction != null) {
+            pendingCallbacks.add(new Callback(handler, finalizingAction));
+        }
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Batching
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private void add(final int index, @NonNull final List<ManagedMediaSource> added) {
+        sources.addAll(index, added);
+
+        // Merge with the previous addition if this continues right after it
+        final Mutation last = getLastPendingMutation();
+        if (last != null && last.type == Mutation.ADD &&
+                index == last.from + last.added.size()) {
+            last.added.addAll(added);
+            return;
+        }
+        enqueue(Mutation.add(index, added));
+    }
+
+    private void removeAt(final int index) {
+        sources.remove(index);
+
+        // Merge with the previous removal if this removes the item right before or after it
+        final Mutation last = getLastPendingMutation();
+        if (last != null && last.type == Mutation.REMOVE) {
+            if (index == last.from) {
+                last.to++;
+                return;
+            } else if (index == last.from - 1) {
+                last.from--;
+                return;
+            }
+        }
+        enqueue(Mutation.remove(index));
+    }
+
+    @Nullable
+    private Mutation getLastPendingMutation() {
+        return pendingMutations.isEmpty() ? null :
+                pendingMutations.get(pendingMutations.size() - 1);
+    }
+
+    private void enqueue(@NonNull final Mutation mutation) {
+        pendingMutations.add(mutation);
+        if (!isBatchScheduled) {
+            isBatchScheduled = true;
+            batchHandler.post(batchApplier);
+        }
+    }
+
+    private synchronized void applyPendingMutations() {
+        isBatchScheduled = false;
+        if (pendingMutations.isEmpty()) return;
+
+        final List<Callback> callbacks = new ArrayList<>(pendingCallbacks);
+        pendingCallbacks.clear();
+        final Runnable onBatchApplied = callbacks.isEmpty() ? null : () -> {
+            for (final Callback callback : callbacks) callback.run();
+        };
+
+        final int lastIndex = pendingMutations.size() - 1;
+        for (int i = 0; i <= lastIndex; i++) {
+            final boolean isLast = i == lastIndex;
+            pendingMutations.get(i).applyTo(internalSource,
+                    isLast && onBatchApplied != null ? batchHandler : null,
+                    isLast ? onBatchApplied : null);
+        }
+        pendingMutations.clear();
+    }
+
+    private static final class Mutation {
+        static final int ADD = 0;
+        static final int REMOVE = 1;
+        static final int MOVE = 2;
+
+        final int type;
+        int from;
+        /** Exclusive end index for removals, target index for moves */
+        int to;
+        @NonNull final List<MediaSource> added;
+
+        private Mutation(final int type, final int from, final int to,
+                         @NonNull final List<MediaSource> added) {
+            this.type = type;
+            this.from = from;
+            this.to = to;
+            this.added = added;
+        }
+
+        static Mutation add(final int index, @NonNull final List<ManagedMediaSource> added) {
+            return new Mutation(ADD, index, index, new ArrayList<>(added));
+        }
+
+        static Mutation remove(final int index) {
+            return new Mutation(REMOVE, index, index + 1, Collections.emptyList());
+        }
+
+        static Mutation move(final int source, final int target) {
+            return new Mutation(MOVE, source, target, Collections.emptyList());
+        }
+
+        void applyTo(@NonNull final ConcatenatingMediaSource mediaSource,
+                     @Nullable final Handler handler, @Nullable final Runnable onCompletion) {
+            switch (type) {
+                case ADD:
+                    mediaSource.addMediaSources(from, added, handler, onCompletion);
+                    break;
+                case REMOVE:
+                    mediaSource.removeMediaSourceRange(from, to, handler, onCompletion);
+                    break;
+                case MOVE:
+                    mediaSource.moveMediaSource(from, to, handler, onCompletion);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static final class Callback {
+        @NonNull final Handler handler;
+        @NonNull final Runnable action;
+
+        Callback(@NonNull final Handler handler, @NonNull final Runnable action) {
+            this.handler = handler;
+            this.action = action;
+        }
+
+        void run() {
+            if (handler.getLooper() == Looper.myLooper()) {
+                action.run();
+            } else {
+                handler.post(action);
+            }
+        }
     }
 }
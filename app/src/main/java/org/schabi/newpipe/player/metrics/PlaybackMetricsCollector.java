@@ -0,0 +1,244 @@
+package org.schabi.newpipe.player.metrics;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.source.MediaSourceEventListener;
+
+import org.schabi.newpipe.BuildConfig;
+import org.schabi.newpipe.player.helper.LoadController;
+import org.schabi.newpipe.player.playqueue.PlayQueueItem;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static org.schabi.newpipe.player.metrics.PlaybackSessionRecord.UNSET;
+
+/**
+ * Measures the quality of experience of each play queue item played by a player and hands
+ * the results to the {@link PlaybackMetricsStore} when the player moves on to another item.
+ * <br><br>
+ * Player events are received through {@link AnalyticsListener} on the main thread, while
+ * resolution timings are reported by the media source manager from any thread. Buffer
+ * statistics are read from the player's {@link LoadController} as media is loaded.
+ * <br><br>
+ * Players only collect metrics once the user opted in from the player settings, where they
+ * can be exported as well.
+ * */
+public class PlaybackMetricsCollector implements AnalyticsListener {
+    private static final boolean DEBUG = !BuildConfig.BUILD_TYPE.equals("release");
+    private static final String TAG = "PlaybackMetrics";
+
+    @NonNull private final PlaybackMetricsStore store;
+    @NonNull private final LoadController loadController;
+
+    // Keyed by item identity, entries of items removed from the queue are left to the GC
+    @NonNull private final Map<PlayQueueItem, ResolveTiming> resolveTimings = new WeakHashMap<>();
+
+    @Nullable private Session session;
+
+    public PlaybackMetricsCollector(@NonNull final Context context,
+                                    @NonNull final LoadController loadController) {
+        this.store = PlaybackMetricsStore.getInstance(context);
+        this.loadController = loadController;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Session Lifecycle
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Called when the stream info of the item has been waited for and resolved, successfully
+     * or not, into a media source.
+     * */
+    public void onResolved(@NonNull final PlayQueueItem item, final long extractionMillis,
+                           final boolean isResolved) {
+        synchronized (resolveTimings) {
+            resolveTimings.put(item, new ResolveTiming(extractionMillis,
+                    SystemClock.elapsedRealtime(), isResolved));
+        }
+    }
+
+    /**
+     * Called when the item becomes the one the player is playing, finishing the measurement
+     * of the previous item if there was one.
+     * */
+    public void onItemStarted(@NonNull final PlayQueueItem item) {
+        if (session != null && session.item == item) return;
+        onSessionEnded();
+        session = new Session(item, loadController.getRebufferCount());
+        session.onBufferChanged(loadController.getBufferedBytes());
+    }
+
+    /**
+     * Finishes the measurement of the current item, if any.
+     * */
+    public void onSessionEnded() {
+        if (session == null) return;
+
+        final Session finished = session;
+        session = null;
+
+        final ResolveTiming timing;
+        synchronized (resolveTimings) {
+            timing = resolveTimings.get(finished.item);
+        }
+        store.add(finished.toRecord(timing, loadController.getRebufferCount()));
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Analytics Listener
+    //////////////////////////////////////////////////////////////////////////*/
+
+    @Override
+    public void onPlayerStateChanged(EventTime eventTime, boolean playWhenReady,
+                                     int playbackState) {
+        if (session == null) return;
+        final long now = SystemClock.elapsedRealtime();
+
+        switch (playbackState) {
+            case Player.STATE_READY:
+                if (session.readyAt == UNSET && playWhenReady) session.readyAt = now;
+                if (session.rebufferStartedAt != UNSET) {
+                    session.rebufferMillis += now - session.rebufferStartedAt;
+                    session.rebufferStartedAt = UNSET;
+                }
+                session.isSeeking = false;
+                break;
+            case Player.STATE_BUFFERING:
+                // Buffering after a seek or before the first start is expected
+                if (session.readyAt != UNSET && !session.isSeeking &&
+                        session.rebufferStartedAt == UNSET) {
+                    session.rebufferStartedAt = now;
+                    session.rebufferCount++;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void onLoadCompleted(EventTime eventTime,
+                                MediaSourceEventListener.LoadEventInfo loadEventInfo,
+                                MediaSourceEventListener.MediaLoadData mediaLoadData) {
+        if (session != null) session.onBufferChanged(loadController.getBufferedBytes());
+    }
+
+    @Override
+    public void onSeekStarted(EventTime eventTime) {
+        if (session != null) session.isSeeking = true;
+    }
+
+    @Override
+    public void onRenderedFirstFrame(EventTime eventTime, @Nullable Surface surface) {
+        if (session != null && session.firstFrameAt == UNSET) {
+            session.firstFrameAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    @Override
+    public void onDroppedVideoFrames(EventTime eventTime, int droppedFrames, long elapsedMs) {
+        if (session != null) session.droppedFrames += droppedFrames;
+    }
+
+    @Override
+    public void onDownstreamFormatChanged(EventTime eventTime,
+                                          MediaSourceEventListener.MediaLoadData mediaLoadData) {
+        if (session == null || mediaLoadData.trackFormat == null ||
+                mediaLoadData.trackType != C.TRACK_TYPE_VIDEO) return;
+
+        final int bitrate = mediaLoadData.trackFormat.bitrate;
+        if (session.videoBitrate != Format.NO_VALUE && bitrate != session.videoBitrate) {
+            session.bitrateSwitches++;
+        }
+        session.videoBitrate = bitrate;
+    }
+
+    @Override
+    public void onPlayerError(EventTime eventTime, ExoPlaybackException error) {
+        if (session != null) session.isFailed = true;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Session
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private static final class ResolveTiming {
+        final long extractionMillis;
+        final long resolvedAt;
+        final boolean isResolved;
+
+        ResolveTiming(final long extractionMillis, final long resolvedAt,
+                      final boolean isResolved) {
+            this.extractionMillis = extractionMillis;
+            this.resolvedAt = resolvedAt;
+            this.isResolved = isResolved;
+        }
+    }
+
+    private static final class Session {
+        @NonNull final PlayQueueItem item;
+        final long startedAt = System.currentTimeMillis();
+        final long startedAtElapsed = SystemClock.elapsedRealtime();
+        final int bufferRebuffersAtStart;
+
+        long readyAt = UNSET;
+        long firstFrameAt = UNSET;
+        long rebufferStartedAt = UNSET;
+        long rebufferMillis = 0;
+        int rebufferCount = 0;
+        long peakBufferedBytes = 0;
+        int droppedFrames = 0;
+        int bitrateSwitches = 0;
+        int videoBitrate = Format.NO_VALUE;
+        boolean isSeeking = false;
+        boolean isFailed = false;
+
+        Session(@NonNull final PlayQueueItem item, final int bufferRebuffersAtStart) {
+            this.item = item;
+            this.bufferRebuffersAtStart = bufferRebuffersAtStart;
+        }
+
+        void onBufferChanged(final long bufferedBytes) {
+            peakBufferedBytes = Math.max(peakBufferedBytes, bufferedBytes);
+        }
+
+        @NonNull
+        PlaybackSessionRecord toRecord(@Nullable final ResolveTiming timing,
+                                       final int bufferRebuffers) {
+            if (rebufferStartedAt != UNSET) {
+                rebufferMillis += SystemClock.elapsedRealtime() - rebufferStartedAt;
+            }
+
+            // Items may have been resolved long before they started, e.g. the next item
+            final long displayedAt = firstFrameAt != UNSET ? firstFrameAt : readyAt;
+            final long extractionToFirstFrame = timing == null || displayedAt == UNSET
+                    ? UNSET : displayedAt - Math.max(timing.resolvedAt, startedAtElapsed);
+
+            final PlaybackSessionRecord record = new PlaybackSessionRecord(item.getServiceId(),
+                    item.getUrl(), startedAt,
+                    timing == null ? UNSET : timing.extractionMillis,
+                    readyAt == UNSET ? UNSET : readyAt - startedAtElapsed,
+                    extractionToFirstFrame, rebufferCount, rebufferMillis,
+                    bufferRebuffers - bufferRebuffersAtStart, peakBufferedBytes, droppedFrames,
+                    bitrateSwitches, isFailed || (timing != null && !timing.isResolved));
+            if (DEBUG) Log.d(TAG, "Session finished for url = [" + item.getUrl() + "], " +
+                    "startup = [" + record.getStartupMillis() + "ms], " +
+                    "rebuffers = [" + rebufferCount + "], " +
+                    "peak buffer = [" + peakBufferedBytes + " bytes], " +
+                    "dropped frames = [" + droppedFrames + "]");
+            return record;
+        }
+    }
+}
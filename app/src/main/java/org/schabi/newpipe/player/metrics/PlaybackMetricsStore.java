@@ -0,0 +1,163 @@
+package org.schabi.newpipe.player.metrics;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.grack.nanojson.JsonAppendableWriter;
+import com.grack.nanojson.JsonArray;
+import com.grack.nanojson.JsonObject;
+import com.grack.nanojson.JsonParser;
+import com.grack.nanojson.JsonSink;
+import com.grack.nanojson.JsonStringWriter;
+import com.grack.nanojson.JsonWriter;
+
+import org.schabi.newpipe.BuildConfig;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Keeps the most recent {@link PlaybackSessionRecord}s in a ring buffer which is persisted
+ * to the app's private storage, so they can be exported after the player is gone.
+ * <br><br>
+ * All file access happens on a single background thread, in the order of the calls.
+ * */
+public final class PlaybackMetricsStore {
+    private static final String TAG = "PlaybackMetricsStore";
+
+    private static final int CAPACITY = 100;
+    private static final String FILE_NAME = "playback_metrics.json";
+
+    private static final String JSON_APP_VERSION_KEY = "app_version";
+    private static final String JSON_APP_VERSION_INT_KEY = "app_version_int";
+    private static final String JSON_SESSIONS_ARRAY_KEY = "sessions";
+
+    private static volatile PlaybackMetricsStore instance;
+
+    @NonNull private final File file;
+    @NonNull private final ArrayDeque<PlaybackSessionRecord> records;
+    private boolean isLoaded = false;
+
+    private PlaybackMetricsStore(@NonNull final Context context) {
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+        this.records = new ArrayDeque<>(CAPACITY);
+    }
+
+    @NonNull
+    public static PlaybackMetricsStore getInstance(@NonNull final Context context) {
+        PlaybackMetricsStore result = instance;
+        if (result == null) {
+            synchronized (PlaybackMetricsStore.class) {
+                result = instance;
+                if (result == null) {
+                    instance = (result = new PlaybackMetricsStore(context.getApplicationContext()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Appends the record, dropping the oldest one when the buffer is full.
+     * */
+    public void add(@NonNull final PlaybackSessionRecord record) {
+        Completable.fromAction(() -> {
+            synchronized (records) {
+                ensureLoaded();
+                if (records.size() >= CAPACITY) records.removeFirst();
+                records.addLast(record);
+            }
+            persist();
+        }).subscribeOn(Schedulers.single()).subscribe(() -> {},
+                error -> Log.e(TAG, "Unable to store playback metrics", error));
+    }
+
+    /**
+     * @return all stored records, oldest first, as a JSON document.
+     * */
+    @NonNull
+    public Single<String> exportJson() {
+        return Single.fromCallable(() -> {
+            final JsonStringWriter writer = JsonWriter.string();
+            synchronized (records) {
+                ensureLoaded();
+                writeTo(writer);
+            }
+            return writer.done();
+        }).subscribeOn(Schedulers.single());
+    }
+
+    @NonNull
+    public Completable clear() {
+        return Completable.fromAction(() -> {
+            synchronized (records) {
+                records.clear();
+                isLoaded = true;
+            }
+            if (!file.delete() && file.exists()) {
+                Log.w(TAG, "Unable to delete playback metrics file");
+            }
+        }).subscribeOn(Schedulers.single());
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Persistence
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private void ensureLoaded() {
+        if (isLoaded) return;
+        isLoaded = true;
+        if (!file.exists()) return;
+
+        try (InputStream in = new FileInputStream(file)) {
+            final JsonObject parentObject = JsonParser.object().from(in);
+            final JsonArray sessions = parentObject.getArray(JSON_SESSIONS_ARRAY_KEY);
+            if (sessions == null) return;
+
+            for (final Object session : sessions) {
+                if (!(session instanceof JsonObject)) continue;
+                if (records.size() >= CAPACITY) records.removeFirst();
+                records.addLast(PlaybackSessionRecord.readFrom((JsonObject) session));
+            }
+        } catch (final Exception e) {
+            // Metrics are disposable, start over instead of failing every call
+            Log.w(TAG, "Discarding unreadable playback metrics", e);
+        }
+    }
+
+    private void persist() {
+        try (OutputStream out = new FileOutputStream(file)) {
+            final JsonAppendableWriter writer = JsonWriter.on(out);
+            synchronized (records) {
+                writeTo(writer);
+            }
+            writer.done();
+        } catch (final Exception e) {
+            Log.e(TAG, "Unable to write playback metrics", e);
+        }
+    }
+
+    private void writeTo(@NonNull final JsonSink writer) {
+        writer.object();
+        writer.value(JSON_APP_VERSION_KEY, BuildConfig.VERSION_NAME);
+        writer.value(JSON_APP_VERSION_INT_KEY, BuildConfig.VERSION_CODE);
+
+        writer.array(JSON_SESSIONS_ARRAY_KEY);
+        for (final PlaybackSessionRecord record : records) {
+            record.writeTo(writer);
+        }
+        writer.end();
+
+        writer.end();
+    }
+}
@@ -0,0 +1,180 @@
+package org.schabi.newpipe.player.metrics;
+
+import androidx.annotation.NonNull;
+
+import com.grack.nanojson.JsonObject;
+import com.grack.nanojson.JsonSink;
+
+/**
+ * Quality of experience measured while a single play queue item was playing.
+ * <br><br>
+ * All durations are in milliseconds, {@link #UNSET} marks durations which could not be
+ * measured, e.g. the startup latency of an item skipped before it started playing.
+ * */
+public final class PlaybackSessionRecord {
+    public static final long UNSET = -1;
+
+    private static final String JSON_SERVICE_ID_KEY = "service_id";
+    private static final String JSON_URL_KEY = "url";
+    private static final String JSON_STARTED_AT_KEY = "started_at";
+    private static final String JSON_EXTRACTION_KEY = "extraction_ms";
+    private static final String JSON_STARTUP_KEY = "startup_ms";
+    private static final String JSON_EXTRACTION_TO_FIRST_FRAME_KEY = "extraction_to_first_frame_ms";
+    private static final String JSON_REBUFFER_COUNT_KEY = "rebuffer_count";
+    private static final String JSON_REBUFFER_DURATION_KEY = "rebuffer_ms";
+    private static final String JSON_BUFFER_REBUFFER_COUNT_KEY = "buffer_rebuffer_count";
+    private static final String JSON_PEAK_BUFFERED_BYTES_KEY = "peak_buffered_bytes";
+    private static final String JSON_DROPPED_FRAMES_KEY = "dropped_frames";
+    private static final String JSON_BITRATE_SWITCHES_KEY = "bitrate_switches";
+    private static final String JSON_FAILED_KEY = "failed";
+
+    private final int serviceId;
+    @NonNull private final String url;
+    private final long startedAt;
+    private final long extractionMillis;
+    private final long startupMillis;
+    private final long extractionToFirstFrameMillis;
+    private final int rebufferCount;
+    private final long rebufferMillis;
+    private final int bufferRebufferCount;
+    private final long peakBufferedBytes;
+    private final int droppedFrames;
+    private final int bitrateSwitches;
+    private final boolean isFailed;
+
+    PlaybackSessionRecord(final int serviceId, @NonNull final String url, final long startedAt,
+                          final long extractionMillis, final long startupMillis,
+                          final long extractionToFirstFrameMillis, final int rebufferCount,
+                          final long rebufferMillis, final int bufferRebufferCount,
+                          final long peakBufferedBytes, final int droppedFrames,
+                          final int bitrateSwitches, final boolean isFailed) {
+        this.serviceId = serviceId;
+        this.url = url;
+        this.startedAt = startedAt;
+        this.extractionMillis = extractionMillis;
+        this.startupMillis = startupMillis;
+        this.extractionToFirstFrameMillis = extractionToFirstFrameMillis;
+        this.rebufferCount = rebufferCount;
+        this.rebufferMillis = rebufferMillis;
+        this.bufferRebufferCount = bufferRebufferCount;
+        this.peakBufferedBytes = peakBufferedBytes;
+        this.droppedFrames = droppedFrames;
+        this.bitrateSwitches = bitrateSwitches;
+        this.isFailed = isFailed;
+    }
+
+    public int getServiceId() {
+        return serviceId;
+    }
+
+    @NonNull
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the wall clock time the item became the current one, in epoch milliseconds.
+     * */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return the time spent waiting for the stream info before it could be resolved into
+     * a media source.
+     * */
+    public long getExtractionMillis() {
+        return extractionMillis;
+    }
+
+    /**
+     * @return the time from the item becoming the current one to the player being ready
+     * to play it.
+     * */
+    public long getStartupMillis() {
+        return startupMillis;
+    }
+
+    /**
+     * @return the time from the media source being resolved to its first rendered frame,
+     * or to the player being ready for audio only sources.
+     * */
+    public long getExtractionToFirstFrameMillis() {
+        return extractionToFirstFrameMillis;
+    }
+
+    public int getRebufferCount() {
+        return rebufferCount;
+    }
+
+    public long getRebufferMillis() {
+        return rebufferMillis;
+    }
+
+    /**
+     * @return the number of times playback stalled for lack of buffered media, as seen by the
+     * load control, which does not count buffering after seeks either.
+     * */
+    public int getBufferRebufferCount() {
+        return bufferRebufferCount;
+    }
+
+    /**
+     * @return the most media held in memory by the player at once, in bytes.
+     * */
+    public long getPeakBufferedBytes() {
+        return peakBufferedBytes;
+    }
+
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public int getBitrateSwitches() {
+        return bitrateSwitches;
+    }
+
+    public boolean isFailed() {
+        return isFailed;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Serialization
+    //////////////////////////////////////////////////////////////////////////*/
+
+    void writeTo(@NonNull final JsonSink writer) {
+        writer.object();
+        writer.value(JSON_SERVICE_ID_KEY, serviceId);
+        writer.value(JSON_URL_KEY, url);
+        writer.value(JSON_STARTED_AT_KEY, startedAt);
+        writer.value(JSON_EXTRACTION_KEY, extractionMillis);
+        writer.value(JSON_STARTUP_KEY, startupMillis);
+        writer.value(JSON_EXTRACTION_TO_FIRST_FRAME_KEY, extractionToFirstFrameMillis);
+        writer.value(JSON_REBUFFER_COUNT_KEY, rebufferCount);
+        writer.value(JSON_REBUFFER_DURATION_KEY, rebufferMillis);
+        writer.value(JSON_BUFFER_REBUFFER_COUNT_KEY, bufferRebufferCount);
+        writer.value(JSON_PEAK_BUFFERED_BYTES_KEY, peakBufferedBytes);
+        writer.value(JSON_DROPPED_FRAMES_KEY, droppedFrames);
+        writer.value(JSON_BITRATE_SWITCHES_KEY, bitrateSwitches);
+        writer.value(JSON_FAILED_KEY, isFailed);
+        writer.end();
+    }
+
+    @NonNull
+    static PlaybackSessionRecord readFrom(@NonNull final JsonObject object) {
+        return new PlaybackSessionRecord(
+                object.getInt(JSON_SERVICE_ID_KEY, -1),
+                object.getString(JSON_URL_KEY, ""),
+                object.getLong(JSON_STARTED_AT_KEY, UNSET),
+                object.getLong(JSON_EXTRACTION_KEY, UNSET),
+                object.getLong(JSON_STARTUP_KEY, UNSET),
+                object.getLong(JSON_EXTRACTION_TO_FIRST_FRAME_KEY, UNSET),
+                object.getInt(JSON_REBUFFER_COUNT_KEY, 0),
+                object.getLong(JSON_REBUFFER_DURATION_KEY, 0),
+                object.getInt(JSON_BUFFER_REBUFFER_COUNT_KEY, 0),
+                object.getLong(JSON_PEAK_BUFFERED_BYTES_KEY, 0),
+                object.getInt(JSON_DROPPED_FRAMES_KEY, 0),
+                object.getInt(JSON_BITRATE_SWITCHES_KEY, 0),
+                object.getBoolean(JSON_FAILED_KEY, false));
+    }
+}
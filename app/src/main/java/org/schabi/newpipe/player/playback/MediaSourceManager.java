@@ -1,5 +1,6 @@
 package org.schabi.newpipe.player.playback;
 import android.os.Handler;
+import android.os.SystemClock;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.collection.ArraySet;
@@ -58,6 +59,17 @@ public class MediaSourceManager {
     @NonNull private final PlaybackListener playbackListener;
     @NonNull private final PlayQueue playQueue;
 
+    /**
+     * Determines how many streams before the end of an incomplete play queue the next page
+     * of the queue starts being fetched in the background.
+     * <br><br>
+     * Should be larger than {@link #WINDOW_SIZE}, as playback is blocked once the window
+     * reaches the end of the queue before the next page arrives.
+     *
+     * @see #maybePrefetch()
+     * */
+    private final int prefetchDistance;
+
     /**
      * Determines the gap time between the playback position and the playback duration which
      * the {@link #getEdgeIntervalSignal()} begins to request loading.
@@ -106,14 +118,16 @@ public class MediaSourceManager {
     private Handler removeMediaSourceHandler = new Handler();
 
     public MediaSourceManager(@NonNull final PlaybackListener listener,
-                              @NonNull final PlayQueue playQueue) {
-        this(listener, playQueue, /*loadDebounceMillis=*/400L,
+                              @NonNull final PlayQueue playQueue,
+                              final int prefetchDistance) {
+        this(listener, playQueue, prefetchDistance, /*loadDebounceMillis=*/400L,
                 /*playbackNearEndGapMillis=*/TimeUnit.MILLISECONDS.convert(30, TimeUnit.SECONDS),
                 /*progressUpdateIntervalMillis*/TimeUnit.MILLISECONDS.convert(2, TimeUnit.SECONDS));
     }
 
     private MediaSourceManager(@NonNull final PlaybackListener listener,
                                @NonNull final PlayQueue playQueue,
+                               final int prefetchDistance,
                                final long loadDebounceMillis,
                                final long playbackNearEndGapMillis,
                                final long progressUpdateIntervalMillis) {
@@ -128,6 +142,7 @@ public class MediaSourceManager {
 
         this.playbackListener = listener;
         this.playQueue = playQueue;
+        this.prefetchDistance = Math.max(prefetchDistance, WINDOW_SIZE + 1);
 
         this.playbackNearEndGapMillis = playbackNearEndGapMillis;
         this.progressUpdateIntervalMillis = progressUpdateIntervalMillis;
@@ -250,10 +265,26 @@ public class MediaSourceManager {
         if (!isPlayQueueReady()) {
             maybeBlock();
             playQueue.fetch();
+        } else {
+            maybePrefetch();
         }
         playQueueReactor.request(1);
     }
 
+    /**
+     * Fetches the next page of the play queue in the background once the current index is
+     * within {@link #prefetchDistance} of its end, so playback rarely has to block on it.
+     * Fetches already in progress are not restarted by the play queue.
+     * */
+    private void maybePrefetch() {
+        if (playQueue.isComplete() || playQueue.size() - playQueue.getIndex() > prefetchDistance) {
+            return;
+        }
+        if (DEBUG) Log.d(TAG, "maybePrefetch() called, fetching at index=[" +
+                playQueue.getIndex() + "] of size=[" + playQueue.size() + "]");
+        playQueue.fetch();
+    }
+
     /*//////////////////////////////////////////////////////////////////////////
     // Playback Locking
     //////////////////////////////////////////////////////////////////////////*/
@@ -368,8 +399,11 @@ public class MediaSourceManager {
     }
 
     private Single<ManagedMediaSource> getLoadedMediaSource(@NonNull final PlayQueueItem stream) {
+        final long requestTime = SystemClock.elapsedRealtime();
         return stream.getStream().map(streamInfo -> {
+            final long extractionMillis = SystemClock.elapsedRealtime() - requestTime;
             final MediaSource source = playbackListener.sourceOf(stream, streamInfo);
+            playbackListener.onPlaybackResolved(stream, extractionMillis, source != null);
             if (source == null) {
                 final String message = "Unable to resolve source from stream info." +
                         " URL: " + stream.getUrl() +
@@ -382,8 +416,11 @@ public class MediaSourceManager {
             final long expiration = System.currentTimeMillis() +
                     ServiceHelper.getCacheExpirationMillis(streamInfo.getServiceId());
             return new LoadedMediaSource(source, stream, expiration);
-        }).onErrorReturn(throwable -> new FailedMediaSource(stream,
-                new StreamInfoLoadException(throwable)));
+        }).onErrorReturn(throwable -> {
+            playbackListener.onPlaybackResolved(stream,
+                    SystemClock.elapsedRealtime() - requestTime, false);
+            return new FailedMediaSource(stream, new StreamInfoLoadException(throwable));
+        });
     }
 
     private void onMediaSourceReceived(@NonNull final PlayQueueItem item,
@@ -466,9 +503,7 @@ public class MediaSourceManager {
 
     private void populateSources() {
         if (DEBUG) Log.d(TAG, "populateSources() called.");
-        while (playlist.size() < playQueue.size()) {
-            playlist.expand();
-        }
+        playlist.expand(playQueue.size() - playlist.size());
     }
 
     /*//////////////////////////////////////////////////////////////////////////
@@ -54,6 +54,16 @@ public interface PlaybackListener {
     @Nullable
     MediaSource sourceOf(final PlayQueueItem item, final StreamInfo info);
 
+    /**
+     * Called once loading the stream info of an item finished, with the time it took.
+     * Reports whether a media source could be resolved from it, after {@link #sourceOf}
+     * was called, or not, including when the stream info could not be loaded.
+     *
+     * May be called at any time, from any thread.
+     * */
+    void onPlaybackResolved(@NonNull final PlayQueueItem item, final long extractionMillis,
+                            final boolean isResolved);
+
     /**
      * Called when the play queue can no longer to played or used.
      * Currently, this means the play queue is empty and complete.
@@ -7,15 +7,29 @@ import org.schabi.newpipe.extractor.ListExtractor;
 import org.schabi.newpipe.extractor.ListInfo;
 import org.schabi.newpipe.extractor.stream.StreamInfoItem;
 
+import org.schabi.newpipe.util.ExtractorHelper;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import io.reactivex.Flowable;
 import io.reactivex.SingleObserver;
+import io.reactivex.SingleTransformer;
 import io.reactivex.annotations.NonNull;
 import io.reactivex.disposables.Disposable;
 
 abstract class AbstractInfoPlayQueue<T extends ListInfo, U extends InfoItem> extends PlayQueue {
+    /**
+     * Number of times a page fetch failing on a network error is retried, waiting twice as long
+     * as the previous time before each retry, starting at {@link #FETCH_RETRY_DELAY_MILLIS}.
+     * */
+    private static final int MAX_FETCH_RETRIES = 3;
+    private static final long FETCH_RETRY_DELAY_MILLIS = 1000L;
+
     boolean isInitial;
     boolean isComplete;
 
@@ -51,6 +65,33 @@ abstract class AbstractInfoPlayQueue<T extends ListInfo, U extends InfoItem> ext
         return isComplete;
     }
 
+    /**
+     * Retries fetches failing on network errors with exponential backoff, since pages are
+     * usually prefetched well before they are needed. Other errors, as well as network errors
+     * persisting after {@link #MAX_FETCH_RETRIES}, are passed on to the observers, which then
+     * mark this queue as complete.
+     * <br><br>
+     * Should be composed after the fetch is subscribed on a background scheduler, so each retry
+     * runs there as well.
+     * */
+    <S> SingleTransformer<S, S> retryOnNetworkError() {
+        return upstream -> upstream.retryWhen(errors -> {
+            final AtomicInteger retries = new AtomicInteger();
+            return errors.flatMap(error -> {
+                final int retry = retries.getAndIncrement();
+                if (retry >= MAX_FETCH_RETRIES || ExtractorHelper.isInterruptedCaused(error) ||
+                        !ExtractorHelper.hasAssignableCauseThrowable(error, IOException.class)) {
+                    return Flowable.error(error);
+                }
+
+                final long delay = FETCH_RETRY_DELAY_MILLIS << retry;
+                Log.w(getTag(), "Error fetching more playlist, retrying in " + delay + "ms.",
+                        error);
+                return Flowable.timer(delay, TimeUnit.MILLISECONDS);
+            });
+        });
+    }
+
     SingleObserver<T> getHeadListObserver() {
         return new SingleObserver<T>() {
             @Override
@@ -114,6 +155,15 @@ abstract class AbstractInfoPlayQueue<T extends ListInfo, U extends InfoItem> ext
         };
     }
 
+    @Override
+    @NonNull
+    public synchronized PlayQueue snapshot() {
+        final AbstractInfoPlayQueue copy = (AbstractInfoPlayQueue) super.snapshot();
+        // Pages still being fetched are appended to this queue, the copy fetches its own
+        copy.fetchReactor = null;
+        return copy;
+    }
+
     @Override
     public void dispose() {
         super.dispose();
@@ -38,11 +38,13 @@ public final class ChannelPlayQueue extends AbstractInfoPlayQueue<ChannelInfo, C
         if (this.isInitial) {
             ExtractorHelper.getChannelInfo(this.serviceId, this.baseUrl, false)
                     .subscribeOn(Schedulers.io())
+                    .compose(retryOnNetworkError())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(getHeadListObserver());
         } else {
             ExtractorHelper.getMoreChannelItems(this.serviceId, this.baseUrl, this.nextUrl)
                     .subscribeOn(Schedulers.io())
+                    .compose(retryOnNetworkError())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(getNextPageObserver());
         }
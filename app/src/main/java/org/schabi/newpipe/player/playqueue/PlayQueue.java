@@ -17,10 +17,12 @@ import org.schabi.newpipe.player.playqueue.events.RemoveEvent;
 import org.schabi.newpipe.player.playqueue.events.ReorderEvent;
 import org.schabi.newpipe.player.playqueue.events.SelectEvent;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -36,25 +38,35 @@ import io.reactivex.subjects.BehaviorSubject;
  * This class contains basic manipulation of a playlist while also functions as a
  * message bus, providing all listeners with new updates to the play queue.
  *
- * This class can be serialized for passing intents, but in order to start the
+ * The items are held in an immutable {@link PlayQueueState} which is replaced on every
+ * modification. Modifications are synchronized, while reads are lock-free and look up
+ * items by index or identity in constant time, even on queues of thousands of items.
+ *
+ * A play queue is passed to players in-process as a {@link #snapshot()}, and can be
+ * serialized when it must survive process death. In either case, in order to start the
  * message bus, it must be initialized.
  * */
-public abstract class PlayQueue implements Serializable {
-    private final String TAG = "PlayQueue@" + Integer.toHexString(hashCode());
+public abstract class PlayQueue implements Serializable, Cloneable {
+    private String TAG = "PlayQueue@" + Integer.toHexString(hashCode());
 
     public static final boolean DEBUG = !BuildConfig.BUILD_TYPE.equals("release");
 
-    private ArrayList<PlayQueueItem> backup;
-    private ArrayList<PlayQueueItem> streams;
-    @NonNull private final AtomicInteger queueIndex;
+    private static final int ENCODING_VERSION = 2;
+    private static final int NOT_SHUFFLED = -1;
+
+    @NonNull private transient volatile PlayQueueState state;
+    @NonNull private AtomicInteger queueIndex;
 
     private transient BehaviorSubject<PlayQueueEvent> eventBroadcast;
     private transient Flowable<PlayQueueEvent> broadcastReceiver;
     private transient Subscription reportingReactor;
 
     PlayQueue(final int index, final List<PlayQueueItem> startWith) {
-        streams = new ArrayList<>();
-        streams.addAll(startWith);
+        this(index, new PlayQueueState(startWith));
+    }
+
+    PlayQueue(final int index, @NonNull final PlayQueueState startWith) {
+        state = startWith;
 
         queueIndex = new AtomicInteger(index);
     }
@@ -90,6 +102,33 @@ public abstract class PlayQueue implements Serializable {
         reportingReactor = null;
     }
 
+    /**
+     * Creates a copy of this play queue that can be handed to another player in the same
+     * process without serializing it.
+     *
+     * The copy shares the immutable state of this queue, so taking a snapshot is constant
+     * time regardless of the queue size. Items themselves are shared, the queue handing off
+     * a snapshot must not be played afterwards.
+     *
+     * The snapshot is not initialized, even if this queue is.
+     * */
+    @NonNull
+    public synchronized PlayQueue snapshot() {
+        final PlayQueue copy;
+        try {
+            copy = (PlayQueue) super.clone();
+        } catch (final CloneNotSupportedException e) {
+            throw new IllegalStateException("Play queue must be cloneable", e);
+        }
+
+        copy.TAG = "PlayQueue@" + Integer.toHexString(copy.hashCode());
+        copy.queueIndex = new AtomicInteger(getIndex());
+        copy.eventBroadcast = null;
+        copy.broadcastReceiver = null;
+        copy.reportingReactor = null;
+        return copy;
+    }
+
     /**
      * Checks if the queue is complete.
      *
@@ -123,50 +162,58 @@ public abstract class PlayQueue implements Serializable {
 
     /**
      * Returns the item at the given index.
-     * May throw {@link IndexOutOfBoundsException}.
+     * May be null if the index is out of bounds.
      * */
     public PlayQueueItem getItem(int index) {
-        if (index < 0 || index >= streams.size() || streams.get(index) == null) return null;
-        return streams.get(index);
+        final PlayQueueState current = state;
+        if (index < 0 || index >= current.size()) return null;
+        return current.get(index);
     }
 
     /**
      * Returns the index of the given item using referential equality.
-     * May be null despite play queue contains identical item.
+     * May be -1 despite play queue contains identical item.
      * */
     public int indexOf(@NonNull final PlayQueueItem item) {
-        // referential equality, can't think of a better way to do this
-        // todo: better than this
-        return streams.indexOf(item);
+        return state.indexOf(item);
     }
 
     /**
      * Returns the current size of play queue.
      * */
     public int size() {
-        return streams.size();
+        return state.size();
     }
 
     /**
      * Checks if the play queue is empty.
      * */
     public boolean isEmpty() {
-        return streams.isEmpty();
+        return state.size() == 0;
     }
 
     /**
      * Determines if the current play queue is shuffled.
      * */
     public boolean isShuffled() {
-        return backup != null;
+        return state.isShuffled();
     }
 
     /**
-     * Returns an immutable view of the play queue.
+     * Returns an immutable view of the play queue, which is not affected by any later
+     * modifications.
      * */
     @NonNull
     public List<PlayQueueItem> getStreams() {
-        return Collections.unmodifiableList(streams);
+        return state.asList();
+    }
+
+    /**
+     * Returns the current content of the play queue, which is never modified.
+     * */
+    @NonNull
+    /*package-private*/ PlayQueueState getState() {
+        return state;
     }
 
     /**
@@ -191,10 +238,11 @@ public abstract class PlayQueue implements Serializable {
      * */
     public synchronized void setIndex(final int index) {
         final int oldIndex = getIndex();
+        final int size = size();
 
         int newIndex = index;
         if (index < 0) newIndex = 0;
-        if (index >= streams.size()) newIndex = isComplete() ? index % streams.size() : streams.size() - 1;
+        if (index >= size) newIndex = isComplete() ? index % size : size - 1;
 
         queueIndex.set(newIndex);
         broadcast(new SelectEvent(oldIndex, newIndex));
@@ -221,24 +269,20 @@ public abstract class PlayQueue implements Serializable {
     /**
      * Appends the given {@link PlayQueueItem}s to the current play queue.
      *
-     * If the play queue is shuffled, then append the items to the backup queue as is and
-     * append the shuffle items to the play queue.
+     * If the play queue is shuffled, then the items are kept in order for unshuffling,
+     * while they are played shuffled after the existing items.
      *
      * Will emit a {@link AppendEvent} on any given context.
      * */
     public synchronized void append(@NonNull final List<PlayQueueItem> items) {
-        List<PlayQueueItem> itemList = new ArrayList<>(items);
-
-        if (isShuffled()) {
-            backup.addAll(itemList);
-            Collections.shuffle(itemList);
-        }
-        if (!streams.isEmpty() && streams.get(streams.size() - 1).isAutoQueued() && !itemList.get(0).isAutoQueued()) {
-            streams.remove(streams.size() - 1);
+        final PlayQueueItem last = getItem(size() - 1);
+        if (last != null && last.isAutoQueued() && !items.isEmpty() &&
+                !items.get(0).isAutoQueued()) {
+            state = state.remove(size() - 1);
         }
-        streams.addAll(itemList);
+        state = state.append(items);
 
-        broadcast(new AppendEvent(itemList.size()));
+        broadcast(new AppendEvent(items.size()));
     }
 
     /**
@@ -250,7 +294,7 @@ public abstract class PlayQueue implements Serializable {
      * Will emit a {@link RemoveEvent} if the index is within the play queue index range.
      * */
     public synchronized void remove(final int index) {
-        if (index >= streams.size() || index < 0) return;
+        if (index >= size() || index < 0) return;
         removeInternal(index);
         broadcast(new RemoveEvent(index, getIndex()));
     }
@@ -288,11 +332,7 @@ public abstract class PlayQueue implements Serializable {
             queueIndex.set(0);
         }
 
-        if (backup != null) {
-            final int backupIndex = backup.indexOf(getItem(removeIndex));
-            backup.remove(backupIndex);
-        }
-        streams.remove(removeIndex);
+        state = state.remove(removeIndex);
     }
 
     /**
@@ -306,7 +346,7 @@ public abstract class PlayQueue implements Serializable {
      * */
     public synchronized void move(final int source, final int target) {
         if (source < 0 || target < 0) return;
-        if (source >= streams.size() || target >= streams.size()) return;
+        if (source >= size() || target >= size()) return;
 
         final int current = getIndex();
         if (source == current) {
@@ -317,9 +357,8 @@ public abstract class PlayQueue implements Serializable {
             queueIndex.incrementAndGet();
         }
 
-        PlayQueueItem playQueueItem = streams.remove(source);
-        playQueueItem.setAutoQueued(false);
-        streams.add(target, playQueueItem);
+        state.get(source).setAutoQueued(false);
+        state = state.move(source, target);
         broadcast(new MoveEvent(source, target));
     }
 
@@ -329,9 +368,9 @@ public abstract class PlayQueue implements Serializable {
      * Broadcasts a recovery event.
      * */
     public synchronized void setRecovery(final int index, final long position) {
-        if (index < 0 || index >= streams.size()) return;
+        if (index < 0 || index >= size()) return;
 
-        streams.get(index).setRecoveryPosition(position);
+        state.get(index).setRecoveryPosition(position);
         broadcast(new RecoveryEvent(index, position));
     }
 
@@ -347,47 +386,35 @@ public abstract class PlayQueue implements Serializable {
     /**
      * Shuffles the current play queue.
      *
-     * This method first backs up the existing play queue and item being played.
-     * Then a newly shuffled play queue will be generated along with currently
-     * playing item placed at the beginning of the queue.
+     * The original order is kept aside for unshuffling, then a new playback order is
+     * generated with the currently playing item placed at the beginning of the queue.
      *
      * Will emit a {@link ReorderEvent} in any context.
      * */
     public synchronized void shuffle() {
-        if (backup == null) {
-            backup = new ArrayList<>(streams);
-        }
         final int originIndex = getIndex();
-        final PlayQueueItem current = getItem();
-        Collections.shuffle(streams);
-
-        final int newIndex = streams.indexOf(current);
-        if (newIndex != -1) {
-            streams.add(0, streams.remove(newIndex));
-        }
+        state = state.shuffle(originIndex);
         queueIndex.set(0);
 
         broadcast(new ReorderEvent(originIndex, queueIndex.get()));
     }
 
     /**
-     * Unshuffles the current play queue if a backup play queue exists.
+     * Unshuffles the current play queue if it is shuffled.
      *
-     * This method undoes shuffling and index will be set to the previously playing item if found,
-     * otherwise, the index will reset to 0.
+     * This method restores the original order and index will be set to the previously
+     * playing item if found, otherwise, the index will reset to 0.
      *
-     * Will emit a {@link ReorderEvent} if a backup exists.
+     * Will emit a {@link ReorderEvent} if the queue was shuffled.
      * */
     public synchronized void unshuffle() {
-        if (backup == null) return;
+        if (!isShuffled()) return;
         final int originIndex = getIndex();
         final PlayQueueItem current = getItem();
 
-        streams.clear();
-        streams = backup;
-        backup = null;
+        state = state.unshuffle();
 
-        final int newIndex = streams.indexOf(current);
+        final int newIndex = current == null ? -1 : indexOf(current);
         if (newIndex != -1) {
             queueIndex.set(newIndex);
         } else {
@@ -397,6 +424,58 @@ public abstract class PlayQueue implements Serializable {
         broadcast(new ReorderEvent(originIndex, queueIndex.get()));
     }
 
+    /*//////////////////////////////////////////////////////////////////////////
+    // Serialization
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Writes the items in a compact form instead of as serialized objects, in their
+     * original order followed by the shuffled playback order, if any.
+     * */
+    private void writeObject(@NonNull final ObjectOutputStream out) throws IOException {
+        final PlayQueueState current = state;
+        out.defaultWriteObject();
+        out.writeInt(ENCODING_VERSION);
+
+        final PlayQueueItem[] items = current.getOriginalItems();
+        out.writeInt(items.length);
+        for (final PlayQueueItem item : items) {
+            item.writeCompact(out);
+        }
+
+        final int[] order = current.getOrder();
+        out.writeInt(order == null ? NOT_SHUFFLED : order.length);
+        if (order == null) return;
+        for (final int index : order) {
+            out.writeInt(index);
+        }
+    }
+
+    private void readObject(@NonNull final ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (in.readInt() != ENCODING_VERSION) {
+            throw new InvalidObjectException("Unknown play queue encoding");
+        }
+
+        final PlayQueueItem[] items = new PlayQueueItem[in.readInt()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = PlayQueueItem.readCompact(in);
+        }
+
+        final int orderSize = in.readInt();
+        if (orderSize != NOT_SHUFFLED && orderSize != items.length) {
+            throw new InvalidObjectException("Shuffle order does not match items");
+        }
+        final int[] order = orderSize == NOT_SHUFFLED ? null : new int[orderSize];
+        if (order != null) {
+            for (int i = 0; i < order.length; i++) {
+                order[i] = in.readInt();
+            }
+        }
+        state = new PlayQueueState(items, order);
+    }
+
     /*//////////////////////////////////////////////////////////////////////////
     // Rx Broadcast
     //////////////////////////////////////////////////////////////////////////*/
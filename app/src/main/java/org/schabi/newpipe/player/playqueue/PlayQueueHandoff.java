@@ -0,0 +1,63 @@
+package org.schabi.newpipe.player.playqueue;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LruCache;
+
+import org.schabi.newpipe.BuildConfig;
+
+import java.util.UUID;
+
+/**
+ * Hands play queues over to players running in the same process, e.g. from a fragment to
+ * a player service through an intent, without serializing them.
+ * <br><br>
+ * Only a key is put in the intent, the queue itself is kept here as a
+ * {@link PlayQueue#snapshot() snapshot} until the player takes it. Queues that are never
+ * taken are dropped once newer ones are put.
+ * */
+public final class PlayQueueHandoff {
+    private static final boolean DEBUG = !BuildConfig.BUILD_TYPE.equals("release");
+    private static final String TAG = "PlayQueueHandoff";
+
+    private static final int MAX_PENDING_QUEUES = 5;
+
+    private static final LruCache<String, PlayQueue> pendingQueues =
+            new LruCache<>(MAX_PENDING_QUEUES);
+
+    private PlayQueueHandoff() {
+        //no instance
+    }
+
+    /**
+     * Puts a snapshot of the queue up for hand-off.
+     *
+     * @return the key the queue can be taken with.
+     * */
+    @NonNull
+    public static String put(@NonNull final PlayQueue queue) {
+        final String key = UUID.randomUUID().toString();
+        if (DEBUG) Log.d(TAG, "put() called with: key = [" + key + "], " +
+                "queue size = [" + queue.size() + "]");
+
+        final PlayQueue snapshot = queue.snapshot();
+        synchronized (pendingQueues) {
+            pendingQueues.put(key, snapshot);
+        }
+        return key;
+    }
+
+    /**
+     * @return the queue put with the key, which can only be taken once, or null if there is
+     * none, e.g. because the process was restarted since.
+     * */
+    @Nullable
+    public static PlayQueue take(@NonNull final String key) {
+        if (DEBUG) Log.d(TAG, "take() called with: key = [" + key + "]");
+        synchronized (pendingQueues) {
+            return pendingQueues.remove(key);
+        }
+    }
+}
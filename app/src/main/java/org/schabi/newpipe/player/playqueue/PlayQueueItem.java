@@ -3,12 +3,18 @@ package org.schabi.newpipe.player.playqueue;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import org.schabi.newpipe.App;
 import org.schabi.newpipe.extractor.stream.StreamInfo;
 import org.schabi.newpipe.extractor.stream.StreamInfoItem;
 import org.schabi.newpipe.extractor.stream.StreamType;
+import org.schabi.newpipe.player.helper.MediaCacheManager;
 import org.schabi.newpipe.util.ExtractorHelper;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.Charset;
 
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
@@ -16,6 +22,7 @@ import io.reactivex.schedulers.Schedulers;
 public class PlayQueueItem implements Serializable {
     public final static long RECOVERY_UNSET = Long.MIN_VALUE;
     private final static String EMPTY_STRING = "";
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
 
     @NonNull final private String title;
     @NonNull final private String url;
@@ -99,10 +106,17 @@ public class PlayQueueItem implements Serializable {
         return error;
     }
 
+    /**
+     * Loads the stream info, falling back to the one stored along with the stream if it is
+     * pinned for offline playback and the info can not be fetched.
+     * */
     @NonNull
     public Single<StreamInfo> getStream() {
         return ExtractorHelper.getStreamInfo(this.serviceId, this.url, false)
                 .subscribeOn(Schedulers.io())
+                .onErrorResumeNext(throwable -> MediaCacheManager.getInstance(App.getApp())
+                        .getPinnedStreamInfo(url)
+                        .switchIfEmpty(Single.error(throwable)))
                 .doOnError(throwable -> error = throwable);
     }
 
@@ -121,4 +135,64 @@ public class PlayQueueItem implements Serializable {
     /*package-private*/ void setRecoveryPosition(final long recoveryPosition) {
         this.recoveryPosition = recoveryPosition;
     }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Compact Encoding
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Writes the item in a compact form, for play queues that must survive process death.
+     * Errors are not persisted, as the stream will be extracted again anyway.
+     * */
+    /*package-private*/ void writeCompact(@NonNull final DataOutput out) throws IOException {
+        writeString(out, title);
+        writeString(out, url);
+        out.writeInt(serviceId);
+        out.writeLong(duration);
+        writeString(out, thumbnailUrl);
+        writeString(out, uploader);
+        writeString(out, streamType.name());
+        out.writeBoolean(isAutoQueued);
+        out.writeLong(recoveryPosition);
+    }
+
+    @NonNull
+    /*package-private*/ static PlayQueueItem readCompact(@NonNull final DataInput in)
+            throws IOException {
+        final String title = readString(in);
+        final String url = readString(in);
+        final int serviceId = in.readInt();
+        final long duration = in.readLong();
+        final String thumbnailUrl = readString(in);
+        final String uploader = readString(in);
+        final String streamTypeName = readString(in);
+
+        StreamType streamType;
+        try {
+            streamType = StreamType.valueOf(streamTypeName);
+        } catch (final IllegalArgumentException e) {
+            streamType = StreamType.NONE;
+        }
+
+        final PlayQueueItem item = new PlayQueueItem(title, url, serviceId, duration,
+                thumbnailUrl, uploader, streamType);
+        item.isAutoQueued = in.readBoolean();
+        item.recoveryPosition = in.readLong();
+        return item;
+    }
+
+    private static void writeString(@NonNull final DataOutput out, @NonNull final String value)
+            throws IOException {
+        // Not using writeUTF, which is limited to 64KB
+        final byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @NonNull
+    private static String readString(@NonNull final DataInput in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
 }
@@ -0,0 +1,497 @@
+package org.schabi.newpipe.player.playqueue;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.schabi.newpipe.BuildConfig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Journals the play queue of the active player to the app's private storage, so playback can
+ * be resumed where it was, with the same queue, after the process has been killed.
+ * <br><br>
+ * The journal is a sequence of records which is only appended to while the queue grows,
+ * e.g. while a playlist is being fetched, or while the playing index, position and recovery
+ * positions change. Once the queue changes in any other way, or too many records have been
+ * appended, the journal is compacted by rewriting it from scratch.
+ * <br><br>
+ * Checkpoints are coalesced, only the latest one is written if several are requested while
+ * the journal is busy. All file access happens on a single background thread, in the order
+ * of the calls.
+ * <br><br>
+ * Players write to the journal through their own {@link Session}, so a player being closed
+ * does not delete the journal of another player which has taken over in the meantime.
+ * */
+public final class PlayQueueJournal {
+    private static final boolean DEBUG = !BuildConfig.BUILD_TYPE.equals("release");
+    private static final String TAG = "PlayQueueJournal";
+
+    private static final String FILE_NAME = "play_queue_journal.bin";
+    private static final String COMPACTION_FILE_NAME = "play_queue_journal.tmp";
+
+    private static final int MAGIC = 0x4E50514A;
+    private static final int ENCODING_VERSION = 2;
+
+    private static final byte RECORD_ITEMS = 1;
+    /** Playback order along with the index and position, as the index depends on the order */
+    private static final byte RECORD_ORDER = 2;
+    private static final byte RECORD_RECOVERY = 3;
+    private static final byte RECORD_POSITION = 4;
+
+    private static final int NOT_SHUFFLED = -1;
+
+    /**
+     * Number of records appended since the last compaction after which the journal is
+     * compacted anyway, bounding its size and the time needed to restore it.
+     * */
+    private static final int MAX_APPENDED_RECORDS = 512;
+
+    private static volatile PlayQueueJournal instance;
+
+    @NonNull private final File file;
+    @NonNull private final File compactionFile;
+    @NonNull private final AtomicReference<Checkpoint> pendingCheckpoint;
+
+    // What has been written so far, only accessed on the journal thread
+    @Nullable private Session journaledSession;
+    @Nullable private PlayQueue journaledQueue;
+    @Nullable private PlayQueueItem[] journaledItems;
+    private int journaledSize;
+    @Nullable private int[] journaledOrder;
+    @NonNull private long[] journaledRecoveries = new long[0];
+    private int journaledIndex;
+    private long journaledPosition;
+    @Nullable private String journaledQuality;
+    private boolean journaledPlayWhenReady;
+    private int appendedRecords;
+
+    private PlayQueueJournal(@NonNull final Context context) {
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+        this.compactionFile = new File(context.getFilesDir(), COMPACTION_FILE_NAME);
+        this.pendingCheckpoint = new AtomicReference<>();
+    }
+
+    @NonNull
+    public static PlayQueueJournal getInstance(@NonNull final Context context) {
+        PlayQueueJournal result = instance;
+        if (result == null) {
+            synchronized (PlayQueueJournal.class) {
+                result = instance;
+                if (result == null) {
+                    instance = (result = new PlayQueueJournal(context.getApplicationContext()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Journal
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Starts the session of a new player, through which it journals its queue.
+     * */
+    @NonNull
+    public Session openSession() {
+        return new Session();
+    }
+
+    /**
+     * Reads the journal back into a new, uninitialized, play queue. The position of the
+     * current item is restored as its recovery position, so playback starts where it was.
+     * <br><br>
+     * Paginated queues are restored with the items fetched so far only.
+     *
+     * @return the restored queue, or nothing if there is no journal or it is unreadable.
+     * */
+    @NonNull
+    public Maybe<Restored> restore() {
+        return Maybe.fromCallable(this::read).subscribeOn(Schedulers.single());
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Writing
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private void checkpoint(@NonNull final Checkpoint checkpoint) {
+        if (pendingCheckpoint.getAndSet(checkpoint) != null) return;
+
+        Completable.fromAction(this::writePendingCheckpoint)
+                .subscribeOn(Schedulers.single())
+                .subscribe(() -> {}, error -> {
+                    Log.e(TAG, "Unable to journal play queue", error);
+                    reset();
+                });
+    }
+
+    private void clear(@NonNull final Session session) {
+        final Checkpoint pending = pendingCheckpoint.get();
+        if (pending != null && pending.session == session) {
+            pendingCheckpoint.compareAndSet(pending, null);
+        }
+
+        Completable.fromAction(() -> {
+            // Another session has written the journal since, it is not this one's to delete
+            if (journaledSession != null && journaledSession != session) return;
+
+            reset();
+            if (!file.delete() && file.exists()) {
+                Log.w(TAG, "Unable to delete play queue journal");
+            }
+        }).subscribeOn(Schedulers.single()).subscribe(() -> {},
+                error -> Log.e(TAG, "Unable to clear play queue journal", error));
+    }
+
+    private void writePendingCheckpoint() throws IOException {
+        final Checkpoint checkpoint = pendingCheckpoint.getAndSet(null);
+        if (checkpoint == null) return;
+
+        final PlayQueueItem[] items = checkpoint.state.getOriginalItems();
+        if (checkpoint.queue != journaledQueue || appendedRecords >= MAX_APPENDED_RECORDS ||
+                !isAppendedTo(items)) {
+            compact(checkpoint);
+            return;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file, /*append=*/true)))) {
+            // Recovery positions of the items already journaled, before any new items
+            for (int i = 0; i < journaledSize; i++) {
+                final long recovery = items[i].getRecoveryPosition();
+                if (recovery == journaledRecoveries[i]) continue;
+
+                out.writeByte(RECORD_RECOVERY);
+                out.writeInt(i);
+                out.writeLong(recovery);
+                journaledRecoveries[i] = recovery;
+                appendedRecords++;
+            }
+
+            if (items.length > journaledSize) {
+                out.writeByte(RECORD_ITEMS);
+                writeItems(out, items, journaledSize);
+                appendedRecords++;
+            }
+
+            // The index depends on the order, so both are written in a single record
+            final int[] order = checkpoint.state.getOrder();
+            if (order != journaledOrder) {
+                out.writeByte(RECORD_ORDER);
+                writeOrder(out, order);
+                writePosition(out, checkpoint);
+                appendedRecords++;
+            } else if (checkpoint.index != journaledIndex ||
+                    checkpoint.positionMillis != journaledPosition ||
+                    !equals(checkpoint.quality, journaledQuality) ||
+                    checkpoint.playWhenReady != journaledPlayWhenReady) {
+                out.writeByte(RECORD_POSITION);
+                writePosition(out, checkpoint);
+                appendedRecords++;
+            }
+        }
+        onJournaled(checkpoint, items);
+    }
+
+    /**
+     * Rewrites the whole journal to a separate file first, so a crash halfway through
+     * leaves the previous journal intact.
+     * */
+    private void compact(@NonNull final Checkpoint checkpoint) throws IOException {
+        if (DEBUG) Log.d(TAG, "compact() called with: size = [" +
+                checkpoint.state.size() + "], index = [" + checkpoint.index + "]");
+
+        final PlayQueueItem[] items = checkpoint.state.getOriginalItems();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(compactionFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(ENCODING_VERSION);
+
+            out.writeByte(RECORD_ITEMS);
+            writeItems(out, items, 0);
+            out.writeByte(RECORD_ORDER);
+            writeOrder(out, checkpoint.state.getOrder());
+            writePosition(out, checkpoint);
+        }
+
+        if (!compactionFile.renameTo(file)) {
+            throw new IOException("Unable to replace play queue journal");
+        }
+        appendedRecords = 0;
+        onJournaled(checkpoint, items);
+    }
+
+    private void onJournaled(@NonNull final Checkpoint checkpoint,
+                             @NonNull final PlayQueueItem[] items) {
+        if (journaledRecoveries.length < items.length) {
+            journaledRecoveries = Arrays.copyOf(journaledRecoveries,
+                    Math.max(items.length, journaledRecoveries.length * 2));
+        }
+        for (int i = journaledItems == items ? journaledSize : 0; i < items.length; i++) {
+            journaledRecoveries[i] = items[i].getRecoveryPosition();
+        }
+
+        journaledSession = checkpoint.session;
+        journaledQueue = checkpoint.queue;
+        journaledItems = items;
+        journaledSize = items.length;
+        journaledOrder = checkpoint.state.getOrder();
+        journaledIndex = checkpoint.index;
+        journaledPosition = checkpoint.positionMillis;
+        journaledQuality = checkpoint.quality;
+        journaledPlayWhenReady = checkpoint.playWhenReady;
+    }
+
+    /**
+     * @return whether the items are the journaled items with possibly more appended,
+     * in which case the journal can be appended to as well.
+     * */
+    private boolean isAppendedTo(@NonNull final PlayQueueItem[] items) {
+        if (journaledItems == null || items.length < journaledSize) return false;
+        if (items == journaledItems) return true;
+
+        for (int i = 0; i < journaledSize; i++) {
+            if (items[i] != journaledItems[i]) return false;
+        }
+        return true;
+    }
+
+    private void reset() {
+        journaledSession = null;
+        journaledQueue = null;
+        journaledItems = null;
+        journaledSize = 0;
+        journaledOrder = null;
+        appendedRecords = 0;
+    }
+
+    private static void writeItems(@NonNull final DataOutputStream out,
+                                   @NonNull final PlayQueueItem[] items,
+                                   final int from) throws IOException {
+        out.writeInt(items.length - from);
+        for (int i = from; i < items.length; i++) {
+            items[i].writeCompact(out);
+        }
+    }
+
+    private static void writeOrder(@NonNull final DataOutputStream out,
+                                   @Nullable final int[] order) throws IOException {
+        out.writeInt(order == null ? NOT_SHUFFLED : order.length);
+        if (order == null) return;
+        for (final int index : order) {
+            out.writeInt(index);
+        }
+    }
+
+    private static void writePosition(@NonNull final DataOutputStream out,
+                                      @NonNull final Checkpoint checkpoint) throws IOException {
+        out.writeInt(checkpoint.index);
+        out.writeLong(checkpoint.positionMillis);
+        out.writeBoolean(checkpoint.quality != null);
+        if (checkpoint.quality != null) out.writeUTF(checkpoint.quality);
+        out.writeBoolean(checkpoint.playWhenReady);
+    }
+
+    private static boolean equals(@Nullable final String a, @Nullable final String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Reading
+    //////////////////////////////////////////////////////////////////////////*/
+
+    @Nullable
+    private Restored read() throws IOException {
+        if (!file.exists()) return null;
+
+        final List<PlayQueueItem> items = new ArrayList<>();
+        int[] order = null;
+        int index = 0;
+        long positionMillis = PlayQueueItem.RECOVERY_UNSET;
+        String quality = null;
+        boolean playWhenReady = false;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != ENCODING_VERSION) {
+                Log.w(TAG, "Ignoring play queue journal of unknown encoding");
+                return null;
+            }
+
+            // The last record may have been cut short by the process being killed,
+            // everything before it is still valid
+            try {
+                while (true) {
+                    final byte type = in.readByte();
+                    switch (type) {
+                        case RECORD_ITEMS:
+                            final int count = in.readInt();
+                            final List<PlayQueueItem> appended = new ArrayList<>(count);
+                            for (int i = 0; i < count; i++) {
+                                appended.add(PlayQueueItem.readCompact(in));
+                            }
+                            items.addAll(appended);
+                            break;
+                        case RECORD_ORDER:
+                            final int size = in.readInt();
+                            final int[] newOrder = size == NOT_SHUFFLED ? null : new int[size];
+                            if (newOrder != null) {
+                                for (int i = 0; i < newOrder.length; i++) {
+                                    newOrder[i] = in.readInt();
+                                }
+                            }
+                            final int orderIndex = in.readInt();
+                            final long orderPosition = in.readLong();
+                            final String orderQuality = in.readBoolean() ? in.readUTF() : null;
+                            final boolean orderPlayWhenReady = in.readBoolean();
+                            order = newOrder;
+                            index = orderIndex;
+                            positionMillis = orderPosition;
+                            quality = orderQuality;
+                            playWhenReady = orderPlayWhenReady;
+                            break;
+                        case RECORD_RECOVERY:
+                            final int recoveryIndex = in.readInt();
+                            final long recovery = in.readLong();
+                            if (recoveryIndex < items.size()) {
+                                items.get(recoveryIndex).setRecoveryPosition(recovery);
+                            }
+                            break;
+                        case RECORD_POSITION:
+                            final int newIndex = in.readInt();
+                            final long newPosition = in.readLong();
+                            final String newQuality = in.readBoolean() ? in.readUTF() : null;
+                            final boolean newPlayWhenReady = in.readBoolean();
+                            index = newIndex;
+                            positionMillis = newPosition;
+                            quality = newQuality;
+                            playWhenReady = newPlayWhenReady;
+                            break;
+                        default:
+                            throw new IOException("Unknown play queue journal record: " + type);
+                    }
+                }
+            } catch (final EOFException ignored) {
+                // End of journal
+            }
+        }
+
+        if (items.isEmpty()) return null;
+        if (order != null && order.length != items.size()) order = null;
+        index = Math.max(0, Math.min(index, items.size() - 1));
+
+        final PlayQueueState state = new PlayQueueState(
+                items.toArray(new PlayQueueItem[0]), order);
+        if (positionMillis != PlayQueueItem.RECOVERY_UNSET) {
+            state.get(index).setRecoveryPosition(positionMillis);
+        }
+
+        if (DEBUG) Log.d(TAG, "read() restored: size = [" + items.size() + "], " +
+                "index = [" + index + "], position = [" + positionMillis + "]");
+        return new Restored(new SinglePlayQueue(state, index), quality, playWhenReady);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Entries
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * The journal as seen by a single player, from its creation until it is closed.
+     * */
+    public final class Session {
+        private Session() {}
+
+        /**
+         * Records the queue as it is now, along with the position of its current item, the
+         * playback quality and whether it is playing or paused. Only takes a reference to the
+         * queue content, which is immutable, so this is cheap enough to be called on every
+         * queue change.
+         * */
+        public void checkpoint(@NonNull final PlayQueue queue, final long positionMillis,
+                               @Nullable final String quality, final boolean playWhenReady) {
+            PlayQueueJournal.this.checkpoint(new Checkpoint(this, queue, queue.getState(),
+                    queue.getIndex(), positionMillis, quality, playWhenReady));
+        }
+
+        /**
+         * Deletes the journal, e.g. since the player has been closed on purpose and there is
+         * nothing to resume, unless another session has written to it since.
+         * */
+        public void clear() {
+            PlayQueueJournal.this.clear(this);
+        }
+    }
+
+    private static final class Checkpoint {
+        @NonNull final Session session;
+        @NonNull final PlayQueue queue;
+        @NonNull final PlayQueueState state;
+        final int index;
+        final long positionMillis;
+        @Nullable final String quality;
+        final boolean playWhenReady;
+
+        Checkpoint(@NonNull final Session session, @NonNull final PlayQueue queue,
+                   @NonNull final PlayQueueState state, final int index,
+                   final long positionMillis, @Nullable final String quality,
+                   final boolean playWhenReady) {
+            this.session = session;
+            this.queue = queue;
+            this.state = state;
+            this.index = index;
+            this.positionMillis = positionMillis;
+            this.quality = quality;
+            this.playWhenReady = playWhenReady;
+        }
+    }
+
+    public static final class Restored {
+        @NonNull private final PlayQueue queue;
+        @Nullable private final String playbackQuality;
+        private final boolean playWhenReady;
+
+        Restored(@NonNull final PlayQueue queue, @Nullable final String playbackQuality,
+                 final boolean playWhenReady) {
+            this.queue = queue;
+            this.playbackQuality = playbackQuality;
+            this.playWhenReady = playWhenReady;
+        }
+
+        @NonNull
+        public PlayQueue getQueue() {
+            return queue;
+        }
+
+        @Nullable
+        public String getPlaybackQuality() {
+            return playbackQuality;
+        }
+
+        /**
+         * @return whether the player was playing, rather than paused, when last journaled.
+         * */
+        public boolean getPlayWhenReady() {
+            return playWhenReady;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package org.schabi.newpipe.player.playqueue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.AbstractList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.RandomAccess;
+
+/**
+ * Immutable content of a {@link PlayQueue}, every modification creates a new state.
+ * <br><br>
+ * Items are kept in their original order, with an optional permutation giving the playback
+ * order while shuffled. Shuffling and unshuffling therefore never copy the items, and
+ * unshuffling is a matter of dropping the permutation.
+ * <br><br>
+ * Since states are never modified, they can be read from any thread without locking and
+ * be shared between a queue and its snapshots.
+ * */
+/* package-private */ final class PlayQueueState {
+    private static final Random random = new Random();
+
+    @NonNull private final PlayQueueItem[] items;
+    /** Maps playback positions to indexes in {@link #items}, null if not shuffled */
+    @Nullable private final int[] order;
+
+    /** Lazily built, racing builds produce equal maps so no locking is needed */
+    @Nullable private volatile Map<PlayQueueItem, Integer> positions;
+
+    PlayQueueState(@NonNull final List<PlayQueueItem> items) {
+        this(items.toArray(new PlayQueueItem[0]), null);
+    }
+
+    PlayQueueState(@NonNull final PlayQueueItem[] items, @Nullable final int[] order) {
+        this.items = items;
+        this.order = order;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Readonly ops
+    //////////////////////////////////////////////////////////////////////////*/
+
+    int size() {
+        return items.length;
+    }
+
+    boolean isShuffled() {
+        return order != null;
+    }
+
+    @NonNull
+    PlayQueueItem get(final int position) {
+        return items[order == null ? position : order[position]];
+    }
+
+    /**
+     * Returns the playback position of the item using referential equality, or -1 if the
+     * item is not in this state. Constant time after the first call.
+     * */
+    int indexOf(@NonNull final PlayQueueItem item) {
+        Map<PlayQueueItem, Integer> map = positions;
+        if (map == null) {
+            map = new IdentityHashMap<>(items.length);
+            // Backwards, so the first position wins if an item is queued more than once
+            for (int position = items.length - 1; position >= 0; position--) {
+                map.put(get(position), position);
+            }
+            positions = map;
+        }
+
+        final Integer position = map.get(item);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * @return an unmodifiable list of the items in playback order.
+     * */
+    @NonNull
+    List<PlayQueueItem> asList() {
+        return new ItemList();
+    }
+
+    /**
+     * @return the items in their original, unshuffled, order.
+     * */
+    @NonNull
+    PlayQueueItem[] getOriginalItems() {
+        return items;
+    }
+
+    @Nullable
+    int[] getOrder() {
+        return order;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Write ops
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Appends the items after all others. While shuffled, the new items are shuffled among
+     * themselves, but always come after the existing ones.
+     * */
+    @NonNull
+    PlayQueueState append(@NonNull final List<PlayQueueItem> newItems) {
+        final int size = items.length;
+        final PlayQueueItem[] appended = new PlayQueueItem[size + newItems.size()];
+        System.arraycopy(items, 0, appended, 0, size);
+        for (int i = 0; i < newItems.size(); i++) {
+            appended[size + i] = newItems.get(i);
+        }
+        if (order == null) return new PlayQueueState(appended, null);
+
+        final int[] appendedOrder = new int[appended.length];
+        System.arraycopy(order, 0, appendedOrder, 0, size);
+        for (int i = size; i < appended.length; i++) {
+            appendedOrder[i] = i;
+        }
+        shuffle(appendedOrder, size, appended.length);
+        return new PlayQueueState(appended, appendedOrder);
+    }
+
+    @NonNull
+    PlayQueueState remove(final int position) {
+        final int removedIndex = order == null ? position : order[position];
+
+        final PlayQueueItem[] remaining = new PlayQueueItem[items.length - 1];
+        System.arraycopy(items, 0, remaining, 0, removedIndex);
+        System.arraycopy(items, removedIndex + 1, remaining, removedIndex,
+                items.length - removedIndex - 1);
+        if (order == null) return new PlayQueueState(remaining, null);
+
+        final int[] remainingOrder = new int[order.length - 1];
+        for (int i = 0, j = 0; i < order.length; i++) {
+            if (i == position) continue;
+            remainingOrder[j++] = order[i] > removedIndex ? order[i] - 1 : order[i];
+        }
+        return new PlayQueueState(remaining, remainingOrder);
+    }
+
+    /**
+     * Moves the item at the source position to the target position in playback order.
+     * While shuffled, the original order is left as is.
+     * */
+    @NonNull
+    PlayQueueState move(final int source, final int target) {
+        if (order == null) {
+            final PlayQueueItem[] moved = items.clone();
+            final PlayQueueItem item = moved[source];
+            shift(moved, source, target);
+            moved[target] = item;
+            return new PlayQueueState(moved, null);
+        }
+
+        final int[] movedOrder = order.clone();
+        final int index = movedOrder[source];
+        shift(movedOrder, source, target);
+        movedOrder[target] = index;
+        return new PlayQueueState(items, movedOrder);
+    }
+
+    /**
+     * Shuffles the playback order, with the item at the given position played first.
+     * */
+    @NonNull
+    PlayQueueState shuffle(final int firstPosition) {
+        final int[] shuffled = new int[items.length];
+        for (int i = 0; i < shuffled.length; i++) {
+            shuffled[i] = i;
+        }
+        shuffle(shuffled, 0, shuffled.length);
+
+        if (firstPosition >= 0 && firstPosition < items.length) {
+            final int firstIndex = order == null ? firstPosition : order[firstPosition];
+            for (int i = 0; i < shuffled.length; i++) {
+                if (shuffled[i] != firstIndex) continue;
+                shuffled[i] = shuffled[0];
+                shuffled[0] = firstIndex;
+                break;
+            }
+        }
+        return new PlayQueueState(items, shuffled);
+    }
+
+    /**
+     * Restores the original order.
+     * */
+    @NonNull
+    PlayQueueState unshuffle() {
+        return order == null ? this : new PlayQueueState(items, null);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Utils
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Fisher-Yates shuffle of the range [from, to) of the array.
+     * */
+    private static void shuffle(@NonNull final int[] array, final int from, final int to) {
+        for (int i = to - 1; i > from; i--) {
+            final int j = from + random.nextInt(i - from + 1);
+            final int swap = array[i];
+            array[i] = array[j];
+            array[j] = swap;
+        }
+    }
+
+    /**
+     * Shifts the elements between source and target by one towards source, leaving the
+     * target slot to be filled by the caller.
+     * */
+    private static void shift(@NonNull final Object array, final int source, final int target) {
+        if (source < target) {
+            System.arraycopy(array, source + 1, array, source, target - source);
+        } else if (source > target) {
+            System.arraycopy(array, target, array, target + 1, source - target);
+        }
+    }
+
+    private final class ItemList extends AbstractList<PlayQueueItem> implements RandomAccess {
+        @Override
+        public PlayQueueItem get(final int position) {
+            if (position < 0 || position >= items.length) {
+                throw new IndexOutOfBoundsException("Index: " + position + ", size: " + size());
+            }
+            return PlayQueueState.this.get(position);
+        }
+
+        @Override
+        public int size() {
+            return items.length;
+        }
+
+        @Override
+        public int indexOf(final Object item) {
+            return item instanceof PlayQueueItem
+                    ? PlayQueueState.this.indexOf((PlayQueueItem) item) : -1;
+        }
+    }
+}
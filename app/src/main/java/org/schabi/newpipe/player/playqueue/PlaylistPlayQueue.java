@@ -37,11 +37,13 @@ public final class PlaylistPlayQueue extends AbstractInfoPlayQueue<PlaylistInfo,
         if (this.isInitial) {
             ExtractorHelper.getPlaylistInfo(this.serviceId, this.baseUrl, false)
                     .subscribeOn(Schedulers.io())
+                    .compose(retryOnNetworkError())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(getHeadListObserver());
         } else {
             ExtractorHelper.getMorePlaylistItems(this.serviceId, this.baseUrl, this.nextUrl)
                     .subscribeOn(Schedulers.io())
+                    .compose(retryOnNetworkError())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(getNextPageObserver());
         }
@@ -25,6 +25,10 @@ public final class SinglePlayQueue extends PlayQueue {
         super(index, playQueueItemsOf(items));
     }
 
+    /*package-private*/ SinglePlayQueue(final PlayQueueState state, final int index) {
+        super(index, state);
+    }
+
     private static List<PlayQueueItem> playQueueItemsOf(List<StreamInfoItem> items) {
         List<PlayQueueItem> playQueueItems = new ArrayList<>(items.size());
         for (final StreamInfoItem item : items) {
@@ -15,13 +15,23 @@ public class MediaSourceTag implements Serializable {
 
     @NonNull private final List<VideoStream> sortedAvailableVideoStreams;
     private final int selectedVideoStreamIndex;
+    private final int adaptiveMaxHeight;
 
     public MediaSourceTag(@NonNull final StreamInfo metadata,
                           @NonNull final List<VideoStream> sortedAvailableVideoStreams,
-                          final int selectedVideoStreamIndex) {
+                          final int selectedVideoStreamIndex,
+                          final int adaptiveMaxHeight) {
         this.metadata = metadata;
         this.sortedAvailableVideoStreams = sortedAvailableVideoStreams;
         this.selectedVideoStreamIndex = selectedVideoStreamIndex;
+        this.adaptiveMaxHeight = adaptiveMaxHeight;
+    }
+
+    public MediaSourceTag(@NonNull final StreamInfo metadata,
+                          @NonNull final List<VideoStream> sortedAvailableVideoStreams,
+                          final int selectedVideoStreamIndex) {
+        this(metadata, sortedAvailableVideoStreams, selectedVideoStreamIndex,
+                /*adaptiveNotAvailable=*/-1);
     }
 
     public MediaSourceTag(@NonNull final StreamInfo metadata) {
@@ -42,6 +52,18 @@ public class MediaSourceTag implements Serializable {
         return selectedVideoStreamIndex;
     }
 
+    /**
+     * @return true if the quality is picked by the track selector while playing, in which case
+     * the selected video stream is only the upper bound of the quality.
+     * */
+    public boolean isAdaptive() {
+        return adaptiveMaxHeight > 0;
+    }
+
+    public int getAdaptiveMaxHeight() {
+        return adaptiveMaxHeight;
+    }
+
     @Nullable
     public VideoStream getSelectedVideoStream() {
         return selectedVideoStreamIndex < 0 ||
@@ -20,6 +20,8 @@ import org.schabi.newpipe.util.ListHelper;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.google.android.exoplayer2.C.SELECTION_FLAG_AUTOSELECT;
 import static com.google.android.exoplayer2.C.TIME_UNSET;
@@ -32,6 +34,8 @@ public class VideoPlaybackResolver implements PlaybackResolver {
                                        final String playbackQuality);
     }
 
+    private static final Pattern RESOLUTION_HEIGHT = Pattern.compile("^(\\d+)p");
+
     @NonNull private final Context context;
     @NonNull private final PlayerDataSource dataSource;
     @NonNull private final QualityResolver qualityResolver;
@@ -65,10 +69,21 @@ public class VideoPlaybackResolver implements PlaybackResolver {
         } else {
             index = qualityResolver.getOverrideResolutionIndex(videos, getPlaybackQuality());
         }
-        final MediaSourceTag tag = new MediaSourceTag(info, videos, index);
+
+        // Let the track selector switch between the representations of the service manifest,
+        // capped to the resolution that would have been picked by default
+        final int adaptiveMaxHeight = playbackQuality == null && index >= 0
+                && !info.getDashMpdUrl().isEmpty()
+                && PlayerHelper.isAdaptiveQualityEnabled(context)
+                ? getHeightOf(videos.get(index)) : -1;
+        final MediaSourceTag tag = new MediaSourceTag(info, videos, index, adaptiveMaxHeight);
         @Nullable final VideoStream video = tag.getSelectedVideoStream();
 
-        if (video != null) {
+        if (tag.isAdaptive()) {
+            // The manifest already contains the audio representations
+            mediaSources.add(dataSource.getDashMediaSourceFactory().setTag(tag)
+                    .createMediaSource(Uri.parse(info.getDashMpdUrl())));
+        } else if (video != null) {
             final MediaSource streamSource = buildMediaSource(dataSource, video.getUrl(),
                     PlayerHelper.cacheKeyOf(info, video),
                     MediaFormat.getSuffixById(video.getFormatId()), tag);
@@ -81,7 +96,8 @@ public class VideoPlaybackResolver implements PlaybackResolver {
                 ListHelper.getDefaultAudioFormat(context, audioStreams));
         // Use the audio stream if there is no video stream, or
         // Merge with audio stream in case if video does not contain audio
-        if (audio != null && ((video != null && video.isVideoOnly) || video == null)) {
+        if (!tag.isAdaptive() && audio != null &&
+                ((video != null && video.isVideoOnly) || video == null)) {
             final MediaSource audioSource = buildMediaSource(dataSource, audio.getUrl(),
                     PlayerHelper.cacheKeyOf(info, audio),
                     MediaFormat.getSuffixById(audio.getFormatId()), tag);
@@ -114,6 +130,15 @@ public class VideoPlaybackResolver implements PlaybackResolver {
         }
     }
 
+    /**
+     * Parses the height out of resolutions such as "720p" or "1080p60".
+     * @return the height in pixels, or -1 if the resolution can not be parsed.
+     * */
+    private static int getHeightOf(@NonNull final VideoStream video) {
+        final Matcher matcher = RESOLUTION_HEIGHT.matcher(video.getResolution());
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
     @Nullable
     public String getPlaybackQuality() {
         return playbackQuality;
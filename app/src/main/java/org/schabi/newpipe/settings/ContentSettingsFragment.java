@@ -2,6 +2,7 @@ package org.schabi.newpipe.settings;
 
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -20,12 +21,11 @@ import org.schabi.newpipe.R;
 import org.schabi.newpipe.extractor.NewPipe;
 import org.schabi.newpipe.extractor.localization.ContentCountry;
 import org.schabi.newpipe.extractor.localization.Localization;
+import org.schabi.newpipe.local.feed.service.FeedSyncScheduler;
 import org.schabi.newpipe.report.ErrorActivity;
 import org.schabi.newpipe.report.UserAction;
 import org.schabi.newpipe.util.FilePickerActivityHelper;
-import org.schabi.newpipe.util.ZipHelper;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -37,20 +37,22 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 import java.util.Map;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.ZipException;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.schedulers.Schedulers;
 
 public class ContentSettingsFragment extends BasePreferenceFragment {
 
     private static final int REQUEST_IMPORT_PATH = 8945;
     private static final int REQUEST_EXPORT_PATH = 30945;
 
-    private File databasesDir;
-    private File newpipe_db;
-    private File newpipe_db_journal;
-    private File newpipe_db_shm;
-    private File newpipe_db_wal;
     private File newpipe_settings;
+    private DatabaseBackup databaseBackup;
+    private final CompositeDisposable disposables = new CompositeDisposable();
 
     private String thumbnailLoadToggleKey;
 
@@ -85,17 +87,19 @@ public class ContentSettingsFragment extends BasePreferenceFragment {
     public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
 
         String homeDir = getActivity().getApplicationInfo().dataDir;
-        databasesDir = new File(homeDir + "/databases");
-        newpipe_db = new File(homeDir + "/databases/newpipe.db");
-        newpipe_db_journal = new File(homeDir + "/databases/newpipe.db-journal");
-        newpipe_db_shm = new File(homeDir + "/databases/newpipe.db-shm");
-        newpipe_db_wal = new File(homeDir + "/databases/newpipe.db-wal");
+        databaseBackup = new DatabaseBackup(requireContext());
 
         newpipe_settings = new File(homeDir + "/databases/newpipe.settings");
         newpipe_settings.delete();
 
         addPreferencesFromResource(R.xml.content_settings);
 
+        findPreference(getString(R.string.feed_background_sync_key))
+                .setOnPreferenceChangeListener((Preference p, Object newValue) -> {
+                    FeedSyncScheduler.update(requireContext(), (Boolean) newValue);
+                    return true;
+                });
+
         Preference importDataPreference = findPreference(getString(R.string.import_data));
         importDataPreference.setOnPreferenceClickListener((Preference p) -> {
             Intent i = new Intent(getActivity(), FilePickerActivityHelper.class)
@@ -120,6 +124,7 @@ public class ContentSettingsFragment extends BasePreferenceFragment {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        disposables.clear();
 
         final Localization selectedLocalization = org.schabi.newpipe.util.Localization
                 .getPreferredLocalization(requireContext());
@@ -146,7 +151,21 @@ public class ContentSettingsFragment extends BasePreferenceFragment {
             String path = Utils.getFileForUri(data.getData()).getAbsolutePath();
             if (requestCode == REQUEST_EXPORT_PATH) {
                 SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US);
-                exportDatabase(path + "/NewPipeData-" + sdf.format(new Date()) + ".zip");
+                final String exportPath = path + "/NewPipeData-" + sdf.format(new Date()) + ".zip";
+                if (databaseBackup.canExportChanges(new File(path))) {
+                    new AlertDialog.Builder(getActivity())
+                            .setTitle(R.string.export_changes_title)
+                            .setMessage(R.string.export_changes_message)
+                            .setPositiveButton(R.string.export_changes_only,
+                                    (DialogInterface d, int id) -> exportDatabase(exportPath, true))
+                            .setNeutralButton(R.string.export_everything,
+                                    (DialogInterface d, int id) -> exportDatabase(exportPath, false))
+                            .setNegativeButton(android.R.string.cancel,
+                                    (DialogInterface d, int id) -> d.cancel())
+                            .show();
+                } else {
+                    exportDatabase(exportPath, false);
+                }
             } else {
                 AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
                 builder.setMessage(R.string.override_current_data)
@@ -159,30 +178,25 @@ public class ContentSettingsFragment extends BasePreferenceFragment {
         }
     }
 
-    private void exportDatabase(String path) {
-        try {
-            ZipOutputStream outZip = new ZipOutputStream(
-                    new BufferedOutputStream(
-                            new FileOutputStream(path)));
-            ZipHelper.addFileToZip(outZip, newpipe_db.getPath(), "newpipe.db");
-
-            saveSharedPreferencesToFile(newpipe_settings);
-            ZipHelper.addFileToZip(outZip, newpipe_settings.getPath(), "newpipe.settings");
-
-            outZip.close();
-
-            Toast.makeText(getContext(), R.string.export_complete_toast, Toast.LENGTH_SHORT)
-                    .show();
-        } catch (Exception e) {
-            onError(e);
-        }
+    private void exportDatabase(String path, boolean changesOnly) {
+        final Context context = requireContext().getApplicationContext();
+        Toast.makeText(context, R.string.export_ongoing, Toast.LENGTH_SHORT).show();
+
+        disposables.add(Completable.fromAction(() -> {
+            saveSharedPreferencesToFile(context, newpipe_settings);
+            databaseBackup.exportTo(new File(path), newpipe_settings, changesOnly);
+        })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(() -> Toast.makeText(context, R.string.export_complete_toast,
+                        Toast.LENGTH_SHORT).show(), this::onError));
     }
 
-    private void saveSharedPreferencesToFile(File dst) {
+    private static void saveSharedPreferencesToFile(Context context, File dst) {
         ObjectOutputStream output = null;
         try {
             output = new ObjectOutputStream(new FileOutputStream(dst));
-            SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(getContext());
+            SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(context);
             output.writeObject(pref.getAll());
 
         } catch (FileNotFoundException e) {
@@ -202,62 +216,53 @@ public class ContentSettingsFragment extends BasePreferenceFragment {
     }
 
     private void importDatabase(String filePath) {
-        // check if file is supported
-        ZipFile zipFile = null;
-        try {
-            zipFile = new ZipFile(filePath);
-        } catch (IOException ioe) {
-            Toast.makeText(getContext(), R.string.no_valid_zip_file, Toast.LENGTH_SHORT)
-                    .show();
-            return;
-        } finally {
-            try {
-                zipFile.close();
-            } catch (Exception ignored){}
-        }
-
-        try {
-            if (!databasesDir.exists() && !databasesDir.mkdir()) {
-                throw new Exception("Could not create databases dir");
-            }
+        Toast.makeText(getContext(), R.string.import_ongoing, Toast.LENGTH_SHORT).show();
 
-            final boolean isDbFileExtracted = ZipHelper.extractFileFromZip(filePath,
-                    newpipe_db.getPath(), "newpipe.db");
-
-            if (isDbFileExtracted) {
-                newpipe_db_journal.delete();
-                newpipe_db_wal.delete();
-                newpipe_db_shm.delete();
-
-            } else {
+        disposables.add(Single.fromCallable(() ->
+                databaseBackup.importFrom(new File(filePath), newpipe_settings))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::onDatabaseImported, this::onImportError));
+    }
 
-                Toast.makeText(getContext(), R.string.could_not_import_all_files, Toast.LENGTH_LONG)
-                        .show();
-            }
+    private void onDatabaseImported(DatabaseBackup.ImportResult result) {
+        if (!result.isDatabaseImported) {
+            Toast.makeText(getContext(), R.string.could_not_import_all_files, Toast.LENGTH_LONG)
+                    .show();
+        }
 
-            //If settings file exist, ask if it should be imported.
-            if(ZipHelper.extractFileFromZip(filePath, newpipe_settings.getPath(), "newpipe.settings")) {
-                AlertDialog.Builder alert = new AlertDialog.Builder(getContext());
-                alert.setTitle(R.string.import_settings);
+        //If settings file exist, ask if it should be imported.
+        if (result.isSettingsImported) {
+            AlertDialog.Builder alert = new AlertDialog.Builder(getContext());
+            alert.setTitle(R.string.import_settings);
 
-                alert.setNegativeButton(android.R.string.no, (dialog, which) -> {
-                    dialog.dismiss();
-                    // restart app to properly load db
-                    System.exit(0);
-                });
-                alert.setPositiveButton(android.R.string.yes, (dialog, which) -> {
-                    dialog.dismiss();
-                    loadSharedPreferences(newpipe_settings);
-                    // restart app to properly load db
-                    System.exit(0);
-                });
-                alert.show();
-            } else {
+            alert.setNegativeButton(android.R.string.no, (dialog, which) -> {
+                dialog.dismiss();
                 // restart app to properly load db
                 System.exit(0);
-            }
+            });
+            alert.setPositiveButton(android.R.string.yes, (dialog, which) -> {
+                dialog.dismiss();
+                loadSharedPreferences(newpipe_settings);
+                // restart app to properly load db
+                System.exit(0);
+            });
+            alert.show();
+        } else {
+            // restart app to properly load db
+            System.exit(0);
+        }
+    }
 
-        } catch (Exception e) {
+    private void onImportError(Throwable e) {
+        if (e instanceof DatabaseBackup.MissingExportException) {
+            Toast.makeText(getContext(), getString(R.string.import_missing_full_export,
+                    ((DatabaseBackup.MissingExportException) e).exportName), Toast.LENGTH_LONG)
+                    .show();
+        } else if (e instanceof ZipException) {
+            Toast.makeText(getContext(), R.string.no_valid_zip_file, Toast.LENGTH_SHORT)
+                    .show();
+        } else {
             onError(e);
         }
     }
@@ -0,0 +1,472 @@
+package org.schabi.newpipe.settings;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import org.schabi.newpipe.BuildConfig;
+import org.schabi.newpipe.NewPipeDatabase;
+import org.schabi.newpipe.database.AppDatabase;
+import org.schabi.newpipe.util.ZipHelper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.schabi.newpipe.database.AppDatabase.DATABASE_NAME;
+
+/**
+ * Exports the database and the settings to a zip file and imports them back. Must not be used
+ * on the main thread.
+ * <br><br>
+ * To get a consistent snapshot, the whole write-ahead log is checkpointed into the database
+ * file and truncated. A transaction then holds the write lock while the file is copied, so no
+ * other connection can add to the log, and the log is checked to still be empty once the lock
+ * is held, as a write may have happened in between. The copy is compressed into the zip once
+ * the lock is released, so the app can keep writing meanwhile.
+ * <br><br>
+ * An imported database is only staged, see {@link NewPipeDatabase#getRestoredDatabaseFile},
+ * and replaces the current one on the next start, before any connection is opened to it.
+ * <br><br>
+ * Besides full exports, there are exports of only the changes since the last full export:
+ * the database is split into blocks, and only the blocks which differ from that export are
+ * stored. Importing such an export needs the full export it is based on in the same folder.
+ * */
+/* package-private */ final class DatabaseBackup {
+    private static final boolean DEBUG = !BuildConfig.BUILD_TYPE.equals("release");
+    private static final String TAG = "DatabaseBackup";
+
+    /* package-private */ static final String DATABASE_ENTRY = "newpipe.db";
+    /* package-private */ static final String CHANGES_ENTRY = "newpipe.db.changes";
+    /* package-private */ static final String SETTINGS_ENTRY = "newpipe.settings";
+
+    private static final int BLOCK_SIZE = 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int END_OF_BLOCKS = -1;
+
+    private static final int MAX_SNAPSHOT_ATTEMPTS = 10;
+    private static final long SNAPSHOT_RETRY_DELAY_MILLIS = 200;
+
+    /** Hashes of the blocks of the last full export, the base of exports of only the changes */
+    private static final String BLOCK_INDEX_FILE = "database_export.index";
+    /** Copy of the database taken under the write lock, exported once the lock is released */
+    private static final String SNAPSHOT_FILE = "database_export.snapshot";
+
+    @NonNull private final AppDatabase database;
+    @NonNull private final File databaseFile;
+    @NonNull private final File restoredFile;
+    @NonNull private final File snapshotFile;
+    @NonNull private final File blockIndexFile;
+
+    /* package-private */ DatabaseBackup(@NonNull final Context context) {
+        this.database = NewPipeDatabase.getInstance(context);
+        this.databaseFile = context.getDatabasePath(DATABASE_NAME);
+        this.restoredFile = NewPipeDatabase.getRestoredDatabaseFile(context);
+        this.snapshotFile = new File(context.getCacheDir(), SNAPSHOT_FILE);
+        this.blockIndexFile = new File(context.getFilesDir(), BLOCK_INDEX_FILE);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Export
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * @return whether the last full export is in the given folder, so an export of only the
+     * changes since then can be made there.
+     * */
+    /* package-private */ boolean canExportChanges(@NonNull final File directory) {
+        final BlockIndex lastExport = BlockIndex.read(blockIndexFile);
+        return lastExport != null && new File(directory, lastExport.exportName).isFile();
+    }
+
+    /**
+     * Exports the database and the given settings file to the zip file.
+     *
+     * @param changesOnly whether to only export the changes since the last full export,
+     *                    see {@link #canExportChanges(File)}
+     * */
+    /* package-private */ void exportTo(@NonNull final File target,
+                                        @NonNull final File settingsFile,
+                                        final boolean changesOnly) throws Exception {
+        final BlockIndex lastExport = changesOnly ? BlockIndex.read(blockIndexFile) : null;
+        if (changesOnly && lastExport == null) {
+            throw new IllegalStateException("No full export to export the changes since");
+        }
+
+        final List<byte[]> blockHashes = new ArrayList<>();
+        try (ZipOutputStream outZip = new ZipOutputStream(new BufferedOutputStream(
+                new FileOutputStream(target), BUFFER_SIZE))) {
+            final SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+            beginSnapshot(db);
+            try {
+                try (InputStream input = new FileInputStream(databaseFile);
+                     OutputStream output = new FileOutputStream(snapshotFile)) {
+                    copy(input, output);
+                }
+            } finally {
+                db.endTransaction();
+            }
+
+            if (lastExport == null) {
+                outZip.putNextEntry(new ZipEntry(DATABASE_ENTRY));
+                writeDatabase(outZip, blockHashes, null);
+            } else {
+                outZip.putNextEntry(new ZipEntry(CHANGES_ENTRY));
+                writeDatabase(outZip, blockHashes, lastExport);
+            }
+            outZip.closeEntry();
+
+            ZipHelper.addFileToZip(outZip, settingsFile.getPath(), SETTINGS_ENTRY);
+        } catch (final Exception e) {
+            target.delete();
+            throw e;
+        } finally {
+            snapshotFile.delete();
+        }
+
+        if (lastExport == null) {
+            new BlockIndex(target.getName(), blockHashes).write(blockIndexFile);
+        }
+    }
+
+    /**
+     * Empties the write-ahead log into the database file and begins a transaction, which holds
+     * the write lock until it ends, so the database file is complete and stays as it is.
+     * Retried while other connections keep the log from being emptied.
+     *
+     * @throws IOException if the log could not be emptied
+     * */
+    private void beginSnapshot(@NonNull final SupportSQLiteDatabase db) throws IOException {
+        final File walFile = new File(databaseFile.getPath() + "-wal");
+        for (int attempt = 0; attempt < MAX_SNAPSHOT_ATTEMPTS; attempt++) {
+            if (checkpoint(db)) {
+                db.beginTransaction();
+                // Zero as well if there is no log, i.e. the database does not use one
+                if (walFile.length() == 0) return;
+                db.endTransaction();
+            }
+            SystemClock.sleep(SNAPSHOT_RETRY_DELAY_MILLIS);
+        }
+        throw new IOException("Database is busy, could not take a consistent snapshot");
+    }
+
+    /**
+     * @return whether the whole log was written to the database file and truncated
+     * */
+    private static boolean checkpoint(@NonNull final SupportSQLiteDatabase db) {
+        try (Cursor cursor = db.query("PRAGMA wal_checkpoint(TRUNCATE)")) {
+            if (!cursor.moveToFirst()) return false;
+
+            final int busy = cursor.getInt(0);
+            // The log size is -1 if the database does not use a write-ahead log
+            final int logFrames = cursor.getInt(1);
+            if (DEBUG) Log.d(TAG, "checkpoint() busy=[" + busy + "], " +
+                    "frames=[" + logFrames + "], checkpointed=[" + cursor.getInt(2) + "]");
+            return busy == 0 && logFrames <= 0;
+        }
+    }
+
+    /**
+     * Writes the snapshot of the database, or only its blocks which differ from the given
+     * export, to the output and collects the hashes of all its blocks.
+     * <br><br>
+     * Only the changed blocks are written as their index, length and content, followed by
+     * {@link #END_OF_BLOCKS}. They are preceded by the name of the full export and the length
+     * of the database.
+     * */
+    private void writeDatabase(@NonNull final OutputStream output,
+                               @NonNull final List<byte[]> blockHashes,
+                               @Nullable final BlockIndex lastExport) throws IOException {
+        final MessageDigest digest = newDigest();
+        final byte[] block = new byte[BLOCK_SIZE];
+
+        try (InputStream input = new FileInputStream(snapshotFile)) {
+            final long length = snapshotFile.length();
+            final DataOutputStream changes = lastExport != null ? new DataOutputStream(output) : null;
+            if (changes != null) {
+                changes.writeUTF(lastExport.exportName);
+                changes.writeLong(length);
+            }
+
+            int changedBlocks = 0;
+            int count;
+            for (int index = 0; (count = readBlock(input, block)) > 0; index++) {
+                digest.update(block, 0, count);
+                final byte[] hash = digest.digest();
+                blockHashes.add(hash);
+
+                if (changes == null) {
+                    output.write(block, 0, count);
+                } else if (!lastExport.hasBlock(index, hash)) {
+                    changes.writeInt(index);
+                    changes.writeInt(count);
+                    changes.write(block, 0, count);
+                    changedBlocks++;
+                }
+            }
+
+            if (changes != null) {
+                changes.writeInt(END_OF_BLOCKS);
+                changes.flush();
+            }
+            if (DEBUG) {
+                Log.d(TAG, "writeDatabase() length=[" + length + "], blocks=[" + blockHashes.size()
+                        + "], changed=[" + (changes != null ? changedBlocks : blockHashes.size()) + "]");
+            }
+        }
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Import
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /* package-private */ static final class ImportResult {
+        final boolean isDatabaseImported;
+        final boolean isSettingsImported;
+
+        ImportResult(final boolean isDatabaseImported, final boolean isSettingsImported) {
+            this.isDatabaseImported = isDatabaseImported;
+            this.isSettingsImported = isSettingsImported;
+        }
+    }
+
+    /**
+     * Thrown when importing an export of only the changes whose full export is not next to it.
+     * */
+    /* package-private */ static final class MissingExportException extends FileNotFoundException {
+        @NonNull final String exportName;
+
+        MissingExportException(@NonNull final String exportName) {
+            super("Full export not found: " + exportName);
+            this.exportName = exportName;
+        }
+    }
+
+    /**
+     * Stages the database in the zip file to replace the current one, and extracts the settings
+     * in it to the given file. The app has to be restarted afterwards to load the database.
+     *
+     * @throws ZipException if the file is not a valid zip file
+     * */
+    @NonNull
+    /* package-private */ ImportResult importFrom(@NonNull final File source,
+                                                  @NonNull final File settingsFile) throws Exception {
+        // check if file is supported
+        try (ZipFile ignored = new ZipFile(source)) {
+            if (DEBUG) Log.d(TAG, "importFrom() source=[" + source + "]");
+        } catch (final ZipException e) {
+            throw e;
+        } catch (final IOException e) {
+            throw new ZipException(e.getMessage());
+        }
+
+        final File databasesDir = databaseFile.getParentFile();
+        if (!databasesDir.exists() && !databasesDir.mkdir()) {
+            throw new IOException("Could not create databases dir");
+        }
+
+        boolean isDatabaseImported = false;
+        boolean isSettingsImported = false;
+        try (ZipInputStream inZip = new ZipInputStream(new BufferedInputStream(
+                new FileInputStream(source), BUFFER_SIZE))) {
+            ZipEntry entry;
+            while ((entry = inZip.getNextEntry()) != null) {
+                switch (entry.getName()) {
+                    case DATABASE_ENTRY:
+                        replaceDatabase(inZip, null);
+                        isDatabaseImported = true;
+                        break;
+                    case CHANGES_ENTRY:
+                        replaceDatabase(inZip, source.getParentFile());
+                        isDatabaseImported = true;
+                        break;
+                    case SETTINGS_ENTRY:
+                        try (OutputStream output = new FileOutputStream(settingsFile)) {
+                            copy(inZip, output);
+                        }
+                        isSettingsImported = true;
+                        break;
+                }
+                inZip.closeEntry();
+            }
+        }
+
+        return new ImportResult(isDatabaseImported, isSettingsImported);
+    }
+
+    /**
+     * Writes the new database next to the current one, where it replaces it on the next start.
+     * The current database stays in use until then, as other components keep their own
+     * references to it, and a failed import leaves it intact.
+     *
+     * @param exportDirectory the folder of the full export, if the input has only the changes
+     * */
+    private void replaceDatabase(@NonNull final InputStream input,
+                                 @Nullable final File exportDirectory) throws IOException {
+        final File stagingFile = new File(restoredFile.getPath() + ".tmp");
+        try {
+            try (OutputStream output = new BufferedOutputStream(
+                    new FileOutputStream(stagingFile), BUFFER_SIZE)) {
+                if (exportDirectory == null) {
+                    copy(input, output);
+                } else {
+                    applyChanges(new DataInputStream(input), exportDirectory, output);
+                }
+            }
+
+            // Only staged once complete, so a partial file never replaces the database
+            if (!stagingFile.renameTo(restoredFile)) {
+                throw new IOException("Could not stage " + restoredFile);
+            }
+        } finally {
+            stagingFile.delete();
+        }
+    }
+
+    /**
+     * Writes the database of the full export the changes are based on, with the changed
+     * blocks replaced.
+     * */
+    private static void applyChanges(@NonNull final DataInputStream changes,
+                                     @NonNull final File exportDirectory,
+                                     @NonNull final OutputStream output) throws IOException {
+        final String exportName = changes.readUTF();
+        final long length = changes.readLong();
+        final File export = new File(exportDirectory, exportName);
+        if (!export.isFile()) throw new MissingExportException(exportName);
+
+        try (ZipFile exportZip = new ZipFile(export)) {
+            final ZipEntry entry = exportZip.getEntry(DATABASE_ENTRY);
+            if (entry == null) throw new MissingExportException(exportName);
+
+            try (InputStream base = new BufferedInputStream(
+                    exportZip.getInputStream(entry), BUFFER_SIZE)) {
+                final byte[] block = new byte[BLOCK_SIZE];
+                int nextChanged = changes.readInt();
+                long written = 0;
+
+                for (int index = 0; written < length; index++) {
+                    // The base has to be read past the block either way
+                    int count = readBlock(base, block);
+                    if (index == nextChanged) {
+                        count = changes.readInt();
+                        changes.readFully(block, 0, count);
+                        nextChanged = changes.readInt();
+                    }
+                    if (count <= 0) throw new EOFException("Block " + index + " missing");
+
+                    output.write(block, 0, count);
+                    written += count;
+                }
+            }
+        }
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Utils
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Reads until the block is full or the input ends.
+     *
+     * @return the number of bytes read into the block
+     * */
+    private static int readBlock(@NonNull final InputStream input,
+                                 @NonNull final byte[] block) throws IOException {
+        int count = 0;
+        int read;
+        while (count < block.length && (read = input.read(block, count, block.length - count)) != -1) {
+            count += read;
+        }
+        return count;
+    }
+
+    private static void copy(@NonNull final InputStream input,
+                             @NonNull final OutputStream output) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ((count = input.read(buffer)) != -1) {
+            output.write(buffer, 0, count);
+        }
+    }
+
+    @NonNull
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class BlockIndex {
+        @NonNull final String exportName;
+        @NonNull final List<byte[]> blockHashes;
+
+        BlockIndex(@NonNull final String exportName, @NonNull final List<byte[]> blockHashes) {
+            this.exportName = exportName;
+            this.blockHashes = blockHashes;
+        }
+
+        boolean hasBlock(final int index, @NonNull final byte[] hash) {
+            return index < blockHashes.size() && Arrays.equals(blockHashes.get(index), hash);
+        }
+
+        @Nullable
+        static BlockIndex read(@NonNull final File file) {
+            if (!file.isFile()) return null;
+
+            try (DataInputStream input = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                final String exportName = input.readUTF();
+                final int count = input.readInt();
+                final List<byte[]> blockHashes = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    final byte[] hash = new byte[input.readUnsignedByte()];
+                    input.readFully(hash);
+                    blockHashes.add(hash);
+                }
+                return new BlockIndex(exportName, blockHashes);
+            } catch (final IOException e) {
+                Log.w(TAG, "Unable to read the block index of the last export", e);
+                return null;
+            }
+        }
+
+        void write(@NonNull final File file) throws IOException {
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)))) {
+                output.writeUTF(exportName);
+                output.writeInt(blockHashes.size());
+                for (final byte[] hash : blockHashes) {
+                    output.writeByte(hash.length);
+                    output.write(hash);
+                }
+            }
+        }
+    }
+}
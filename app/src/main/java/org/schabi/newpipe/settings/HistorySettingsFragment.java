@@ -11,6 +11,7 @@ import org.schabi.newpipe.local.history.HistoryRecordManager;
 import org.schabi.newpipe.report.ErrorActivity;
 import org.schabi.newpipe.report.UserAction;
 import org.schabi.newpipe.util.InfoCache;
+import org.schabi.newpipe.util.SuggestionCache;
 
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.CompositeDisposable;
@@ -44,6 +45,7 @@ public class HistorySettingsFragment extends BasePreferenceFragment {
     public boolean onPreferenceTreeClick(Preference preference) {
         if (preference.getKey().equals(cacheWipeKey)) {
             InfoCache.getInstance().clearCache();
+            SuggestionCache.getInstance().clearCache();
             Toast.makeText(preference.getContext(), R.string.metadata_cache_wipe_complete_notice,
                     Toast.LENGTH_SHORT).show();
         }
@@ -1,12 +1,40 @@
 package org.schabi.newpipe.settings;
 
 import android.os.Bundle;
+import android.util.Log;
+
+import androidx.preference.Preference;
 
 import org.schabi.newpipe.R;
+import org.schabi.newpipe.player.metrics.PlaybackMetricsStore;
+import org.schabi.newpipe.util.ShareUtils;
+
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
 
 public class VideoAudioSettingsFragment extends BasePreferenceFragment {
+    private Disposable exportDisposable;
+
     @Override
     public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
         addPreferencesFromResource(R.xml.video_audio_settings);
+
+        final Preference exportMetrics = findPreference(
+                getString(R.string.export_playback_metrics_key));
+        exportMetrics.setOnPreferenceClickListener((Preference p) -> {
+            if (exportDisposable != null) exportDisposable.dispose();
+            exportDisposable = PlaybackMetricsStore.getInstance(requireContext()).exportJson()
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(json -> ShareUtils.shareUrl(requireContext(),
+                            getString(R.string.export_playback_metrics_title), json),
+                            error -> Log.e(TAG, "Unable to export playback metrics", error));
+            return true;
+        });
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (exportDisposable != null) exportDisposable.dispose();
     }
 }
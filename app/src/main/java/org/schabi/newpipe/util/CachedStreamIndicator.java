@@ -0,0 +1,61 @@
+package org.schabi.newpipe.util;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import org.schabi.newpipe.R;
+import org.schabi.newpipe.player.helper.MediaCacheManager;
+
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Marks the duration of list items whose stream is fully in the media cache, and can
+ * therefore be played without network access.
+ * */
+public final class CachedStreamIndicator {
+    private static final String TAG = "CachedStreamIndicator";
+
+    private CachedStreamIndicator() {
+        //no instance
+    }
+
+    /**
+     * Clears the mark from the view, and sets it again once the stream is found in the cache.
+     * The cache is looked up in the background, so the returned disposable must be disposed
+     * when the view is bound to another stream.
+     * */
+    @NonNull
+    public static Disposable bind(@NonNull final TextView durationView,
+                                  @NonNull final String streamUrl) {
+        setMarked(durationView, false);
+
+        final Context context = durationView.getContext().getApplicationContext();
+        return Single.fromCallable(() ->
+                MediaCacheManager.getInstance(context).isFullyCached(streamUrl))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(isCached -> setMarked(durationView, isCached),
+                        error -> Log.e(TAG, "Unable to look up cached stream", error));
+    }
+
+    private static void setMarked(@NonNull final TextView durationView, final boolean isMarked) {
+        Drawable icon = null;
+        if (isMarked) {
+            icon = ContextCompat.getDrawable(durationView.getContext(),
+                    R.drawable.ic_file_download_white_24dp);
+            if (icon != null) {
+                final int size = Math.round(durationView.getTextSize());
+                icon.setBounds(0, 0, size, size);
+            }
+        }
+        durationView.setCompoundDrawables(icon, null, null, null);
+    }
+}
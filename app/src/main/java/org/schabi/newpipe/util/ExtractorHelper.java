@@ -95,15 +95,25 @@ public final class ExtractorHelper {
 
     }
 
+    /**
+     * Loads the suggestions from the {@link SuggestionCache} if they are there, otherwise from
+     * the network, putting them in the cache.
+     */
     public static Single<List<String>> suggestionsFor(final int serviceId,
                                                       final String query) {
         checkServiceId(serviceId);
+        final SuggestionCache suggestionCache = SuggestionCache.getInstance();
+        final List<String> cached = suggestionCache.get(serviceId, query);
+        if (cached != null) return Single.just(cached);
+
         return Single.fromCallable(() -> {
             SuggestionExtractor extractor = NewPipe.getService(serviceId)
                     .getSuggestionExtractor();
-            return extractor != null
+            final List<String> suggestions = extractor != null
                     ? extractor.suggestionList(query)
-                    : Collections.emptyList();
+                    : Collections.<String>emptyList();
+            suggestionCache.put(serviceId, query, suggestions);
+            return suggestions;
         });
     }
 
@@ -52,6 +52,7 @@ import org.schabi.newpipe.player.PopupVideoPlayer;
 import org.schabi.newpipe.player.PopupVideoPlayerActivity;
 import org.schabi.newpipe.player.VideoPlayer;
 import org.schabi.newpipe.player.playqueue.PlayQueue;
+import org.schabi.newpipe.player.playqueue.PlayQueueHandoff;
 import org.schabi.newpipe.settings.SettingsActivity;
 
 import java.util.ArrayList;
@@ -73,8 +74,7 @@ public class NavigationHelper {
                                          final boolean resumePlayback) {
         Intent intent = new Intent(context, targetClazz);
 
-        final String cacheKey = SerializedCache.getInstance().put(playQueue, PlayQueue.class);
-        if (cacheKey != null) intent.putExtra(VideoPlayer.PLAY_QUEUE_KEY, cacheKey);
+        intent.putExtra(VideoPlayer.PLAY_QUEUE_KEY, PlayQueueHandoff.put(playQueue));
         if (quality != null) intent.putExtra(VideoPlayer.PLAYBACK_QUALITY, quality);
         intent.putExtra(VideoPlayer.RESUME_PLAYBACK, resumePlayback);
 
@@ -1,6 +1,7 @@
 package org.schabi.newpipe.util;
 
 import android.content.Context;
+import android.util.Pair;
 import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -17,11 +18,16 @@ import org.schabi.newpipe.extractor.stream.Stream;
 import org.schabi.newpipe.extractor.stream.SubtitlesStream;
 import org.schabi.newpipe.extractor.stream.VideoStream;
 
+import androidx.collection.LruCache;
+
 import java.io.Serializable;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.schedulers.Schedulers;
@@ -154,9 +160,17 @@ public class StreamItemAdapter<T extends Stream, U extends Stream> extends BaseA
      */
     public static class StreamSizeWrapper<T extends Stream> implements Serializable {
         private static final StreamSizeWrapper<Stream> EMPTY = new StreamSizeWrapper<>(Collections.emptyList(), null);
+        private static final int MAX_CONCURRENT_FETCHES = 4;
+
+        /** Sizes fetched recently, by url, so reopening the download dialog doesn't refetch them */
+        private static final LruCache<String, CachedSize> SIZE_CACHE = new LruCache<>(256);
+        private static final long SIZE_CACHE_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
         private final List<T> streamsList;
         private final long[] streamSizes;
         private final String unknownSize;
+        /** Index of each stream in the list, built on first lookup by stream */
+        private transient Map<T, Integer> streamIndices;
 
         public StreamSizeWrapper(List<T> sL, Context context) {
             this.streamsList = sL != null
@@ -170,29 +184,44 @@ public class StreamItemAdapter<T extends Stream, U extends Stream> extends BaseA
 
         /**
          * Helper method to fetch the sizes of all the streams in a wrapper.
+         * <br><br>
+         * Sizes are fetched concurrently, up to {@link #MAX_CONCURRENT_FETCHES} at once, and
+         * sizes fetched recently for the same url are reused. Sizes are set on the main thread,
+         * where they are read.
          *
          * @param streamsWrapper the wrapper
-         * @return a {@link Single} that returns a boolean indicating if any elements were changed
+         * @return an {@link Observable} emitting, on the main thread, the index of each stream
+         * as soon as its size is set
          */
-        public static <X extends Stream> Single<Boolean> fetchSizeForWrapper(StreamSizeWrapper<X> streamsWrapper) {
-            final Callable<Boolean> fetchAndSet = () -> {
-                boolean hasChanged = false;
-                for (X stream : streamsWrapper.getStreamsList()) {
-                    if (streamsWrapper.getSizeInBytes(stream) > -2) {
-                        continue;
-                    }
-
-                    final long contentLength = DownloaderImpl.getInstance().getContentLength(stream.getUrl());
-                    streamsWrapper.setSize(stream, contentLength);
-                    hasChanged = true;
+        public static <X extends Stream> Observable<Integer> fetchSizeForWrapper(StreamSizeWrapper<X> streamsWrapper) {
+            return Observable.range(0, streamsWrapper.getStreamsList().size())
+                    .filter(index -> streamsWrapper.getSizeInBytes(index) == -2)
+                    .flatMap(index -> fetchSize(streamsWrapper.getStreamsList().get(index).getUrl())
+                            .map(size -> new Pair<>(index, size))
+                            .toObservable(), MAX_CONCURRENT_FETCHES)
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .map(indexAndSize -> {
+                        streamsWrapper.setSize(indexAndSize.first, indexAndSize.second);
+                        return indexAndSize.first;
+                    });
+        }
+
+        private static Single<Long> fetchSize(final String url) {
+            synchronized (SIZE_CACHE) {
+                final CachedSize cached = SIZE_CACHE.get(url);
+                if (cached != null && System.currentTimeMillis() - cached.fetchedAt < SIZE_CACHE_EXPIRY_MILLIS) {
+                    return Single.just(cached.sizeInBytes);
                 }
-                return hasChanged;
-            };
+            }
 
-            return Single.fromCallable(fetchAndSet)
+            return Single.fromCallable(() -> DownloaderImpl.getInstance().getContentLength(url))
                     .subscribeOn(Schedulers.io())
-                    .observeOn(AndroidSchedulers.mainThread())
-                    .onErrorReturnItem(true);
+                    .doOnSuccess(size -> {
+                        synchronized (SIZE_CACHE) {
+                            SIZE_CACHE.put(url, new CachedSize(size, System.currentTimeMillis()));
+                        }
+                    })
+                    .onErrorReturnItem(-1L);
         }
 
         public List<T> getStreamsList() {
@@ -204,7 +233,7 @@ public class StreamItemAdapter<T extends Stream, U extends Stream> extends BaseA
         }
 
         public long getSizeInBytes(T stream) {
-            return streamSizes[streamsList.indexOf(stream)];
+            return streamSizes[indexOf(stream)];
         }
 
         public String getFormattedSize(int streamIndex) {
@@ -227,12 +256,33 @@ public class StreamItemAdapter<T extends Stream, U extends Stream> extends BaseA
         }
 
         public void setSize(T stream, long sizeInBytes) {
-            streamSizes[streamsList.indexOf(stream)] = sizeInBytes;
+            streamSizes[indexOf(stream)] = sizeInBytes;
+        }
+
+        private int indexOf(T stream) {
+            if (streamIndices == null) {
+                streamIndices = new IdentityHashMap<>(streamsList.size());
+                for (int i = streamsList.size() - 1; i >= 0; i--) {
+                    streamIndices.put(streamsList.get(i), i);
+                }
+            }
+            final Integer index = streamIndices.get(stream);
+            return index != null ? index : streamsList.indexOf(stream);
         }
 
         public static <X extends Stream> StreamSizeWrapper<X> empty() {
             //noinspection unchecked
             return (StreamSizeWrapper<X>) EMPTY;
         }
+
+        private static final class CachedSize {
+            final long sizeInBytes;
+            final long fetchedAt;
+
+            CachedSize(final long sizeInBytes, final long fetchedAt) {
+                this.sizeInBytes = sizeInBytes;
+                this.fetchedAt = fetchedAt;
+            }
+        }
     }
 }
@@ -0,0 +1,84 @@
+package org.schabi.newpipe.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Keeps the search suggestions given by the services for the recent queries.
+ * <br><br>
+ * While typing, each query extends the previous one, so the suggestions of a query can be
+ * approximated right away by those of its longest cached prefix which still start with it,
+ * until the suggestions of the query itself arrive.
+ * */
+public final class SuggestionCache {
+    private static final int MAX_ITEMS_ON_CACHE = 100;
+
+    private static final SuggestionCache instance = new SuggestionCache();
+
+    private final LruCache<String, List<String>> lruCache = new LruCache<>(MAX_ITEMS_ON_CACHE);
+
+    private SuggestionCache() {
+        //no instance
+    }
+
+    public static SuggestionCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return the suggestions of exactly this query, or null if they are not cached.
+     * */
+    @Nullable
+    public List<String> get(final int serviceId, @NonNull final String query) {
+        synchronized (lruCache) {
+            return lruCache.get(keyOf(serviceId, query));
+        }
+    }
+
+    /**
+     * @return the suggestions of the longest cached prefix of the query which start with the
+     * query, or null if no prefix is cached.
+     * */
+    @Nullable
+    public List<String> getFromPrefix(final int serviceId, @NonNull final String query) {
+        List<String> prefixSuggestions = null;
+        synchronized (lruCache) {
+            for (int length = query.length() - 1; length > 0 && prefixSuggestions == null; length--) {
+                prefixSuggestions = lruCache.get(keyOf(serviceId, query.substring(0, length)));
+            }
+        }
+        if (prefixSuggestions == null) return null;
+
+        final String normalizedQuery = query.toLowerCase(Locale.ROOT);
+        final List<String> result = new ArrayList<>();
+        for (final String suggestion : prefixSuggestions) {
+            if (suggestion.toLowerCase(Locale.ROOT).startsWith(normalizedQuery)) {
+                result.add(suggestion);
+            }
+        }
+        return result;
+    }
+
+    public void put(final int serviceId, @NonNull final String query,
+                    @NonNull final List<String> suggestions) {
+        synchronized (lruCache) {
+            lruCache.put(keyOf(serviceId, query), suggestions);
+        }
+    }
+
+    public void clearCache() {
+        synchronized (lruCache) {
+            lruCache.evictAll();
+        }
+    }
+
+    @NonNull
+    private static String keyOf(final int serviceId, @NonNull final String query) {
+        return serviceId + ":" + query;
+    }
+}
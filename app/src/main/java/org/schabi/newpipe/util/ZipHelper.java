@@ -1,11 +1,8 @@
 package org.schabi.newpipe.util;
 
 import java.io.BufferedInputStream;
-import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -30,7 +27,7 @@ import java.util.zip.ZipOutputStream;
 
 public class ZipHelper {
 
-    private static final int BUFFER_SIZE = 2048;
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     /**
      * This function helps to create zip files.
@@ -52,47 +49,4 @@ public class ZipHelper {
         }
         inputStream.close();
     }
-
-    /**
-     * This will extract data from Zipfiles.
-     * Caution this will override the original file.
-     * @param file The path of the file on the disk where the data should be extracted to.
-     * @param name The path of the file inside the zip.
-     * @return will return true if the file was found within the zip file
-     * @throws Exception
-     */
-    public static boolean extractFileFromZip(String filePath, String file, String name) throws Exception {
-
-        ZipInputStream inZip = new ZipInputStream(
-                new BufferedInputStream(
-                        new FileInputStream(filePath)));
-
-        byte data[] = new byte[BUFFER_SIZE];
-
-        boolean found = false;
-
-        ZipEntry ze;
-        while((ze = inZip.getNextEntry()) != null) {
-            if(ze.getName().equals(name)) {
-                found = true;
-                // delete old file first
-                File oldFile = new File(file);
-                if(oldFile.exists()) {
-                    if(!oldFile.delete()) {
-                        throw new Exception("Could not delete " + file);
-                    }
-                }
-
-                FileOutputStream outFile = new FileOutputStream(file);
-                int count = 0;
-                while((count = inZip.read(data)) != -1) {
-                    outFile.write(data, 0, count);
-                }
-
-                outFile.close();
-                inZip.closeEntry();
-            }
-        }
-        return found;
-    }
 }
@@ -0,0 +1,24 @@
+package org.schabi.newpipe.local.search;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.schabi.newpipe.local.search.LocalSearchManager.toMatchExpression;
+
+public class LocalSearchManagerTest {
+    @Test
+    public void everyWordBecomesPrefixSearch() {
+        assertEquals("linux* talk*", toMatchExpression("  Linux talk "));
+    }
+
+    @Test
+    public void ftsSyntaxIsNotPassedThrough() {
+        assertEquals("a* or* b* c*", toMatchExpression("\"a\" OR -b* c:"));
+        assertEquals("", toMatchExpression("\"*() -"));
+    }
+
+    @Test
+    public void nonAsciiCharactersAreKept() {
+        assertEquals("Über* 東京*", toMatchExpression("Über, 東京"));
+    }
+}
@@ -0,0 +1,33 @@
+package org.schabi.newpipe.player.helper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class PlayerHelperTest {
+    @Test
+    public void streamUrlOfCacheKey() {
+        assertEquals("https://www.youtube.com/watch?v=c",
+                PlayerHelper.streamUrlOf("https://www.youtube.com/watch?v=c 720pMPEG-4"));
+        assertEquals("https://soundcloud.com/user/track",
+                PlayerHelper.streamUrlOf("https://soundcloud.com/user/track 128mp3"));
+    }
+
+    @Test
+    public void streamUrlIsNotMatchedByPrefix() {
+        // Both the url and a longer one starting with it used to match a prefix search
+        assertNotEquals("https://soundcloud.com/user/track",
+                PlayerHelper.streamUrlOf("https://soundcloud.com/user/track-remix 128mp3"));
+        assertNotEquals("https://www.youtube.com/watch?v=a",
+                PlayerHelper.streamUrlOf("https://www.youtube.com/watch?v=aB 720pMPEG-4"));
+    }
+
+    @Test
+    public void keyWithoutSeparatorHasNoStreamUrl() {
+        assertNull(PlayerHelper.streamUrlOf("https://www.youtube.com/watch?v=c720pMPEG-4"));
+        assertNull(PlayerHelper.streamUrlOf(" 720pMPEG-4"));
+        assertNull(PlayerHelper.streamUrlOf(""));
+    }
+}
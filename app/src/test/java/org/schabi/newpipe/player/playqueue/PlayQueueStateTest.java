@@ -0,0 +1,79 @@
+package org.schabi.newpipe.player.playqueue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.extractor.stream.StreamType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class PlayQueueStateTest {
+    private static final int SIZE = 10;
+
+    private final List<PlayQueueItem> items = new ArrayList<>();
+    private PlayQueueState state;
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < SIZE; i++) {
+            items.add(makeItem(i));
+        }
+        state = new PlayQueueState(items);
+    }
+
+    @Test
+    public void indexOfFollowsMoves() {
+        final PlayQueueState moved = state.move(2, 7);
+
+        assertEquals(7, moved.indexOf(items.get(2)));
+        assertEquals(2, moved.indexOf(items.get(3)));
+        assertEquals(2, state.indexOf(items.get(2)));
+    }
+
+    @Test
+    public void shuffleStartsWithCurrentItemAndUnshuffleRestoresOrder() {
+        final PlayQueueState shuffled = state.shuffle(4);
+
+        assertSame(items.get(4), shuffled.get(0));
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(i, shuffled.indexOf(shuffled.get(i)));
+        }
+        assertEquals(items, shuffled.unshuffle().asList());
+    }
+
+    @Test
+    public void removeWhileShuffledAlsoRemovesFromOriginalOrder() {
+        final PlayQueueState shuffled = state.shuffle(0);
+        final PlayQueueItem removed = shuffled.get(3);
+
+        final PlayQueueState remaining = shuffled.remove(3);
+
+        final List<PlayQueueItem> expected = new ArrayList<>(items);
+        expected.remove(removed);
+        assertEquals(-1, remaining.indexOf(removed));
+        assertEquals(expected, remaining.unshuffle().asList());
+    }
+
+    @Test
+    public void appendWhileShuffledKeepsExistingPlaybackOrder() {
+        final PlayQueueState shuffled = state.shuffle(0);
+        final List<PlayQueueItem> appended = Arrays.asList(makeItem(SIZE), makeItem(SIZE + 1));
+
+        final PlayQueueState result = shuffled.append(appended);
+
+        assertEquals(shuffled.asList(), result.asList().subList(0, SIZE));
+        final List<PlayQueueItem> expected = new ArrayList<>(items);
+        expected.addAll(appended);
+        assertEquals(expected, result.unshuffle().asList());
+    }
+
+    private static PlayQueueItem makeItem(final int id) {
+        return new PlayQueueItem(new StreamInfoItem(0, "https://example.com/" + id,
+                "Stream " + id, StreamType.VIDEO_STREAM));
+    }
+}